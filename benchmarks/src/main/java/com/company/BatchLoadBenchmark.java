@@ -0,0 +1,66 @@
+package com.company;
+
+import com.company.model.Command;
+import com.company.model.Order;
+import com.company.model.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk load of an empty Dashboard, as at market open, order by order and with a single applyBatch.
+ *
+ * The {@code orders} orders are spread over {@code levels} prices per side, in random order, so that most new
+ * levels land in the middle of the book.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchLoadBenchmark {
+
+    @Param({"10000"})
+    public int orders;
+
+    @Param({"100", "5000"})
+    public int levels;
+
+    private List<Order> load;
+    private List<Command> commands;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        load = new ArrayList<>(orders);
+        commands = new ArrayList<>(orders);
+        for (int i = 0; i < orders; i++) {
+            int level = random.nextInt(levels);
+            Order order = random.nextBoolean()
+                    ? new Order(Side.BUY, "user " + i, 1 + random.nextInt(100), 1000.0 - level * 0.01)
+                    : new Order(Side.SELL, "user " + i, 1 + random.nextInt(100), 1000.01 + level * 0.01);
+            load.add(order);
+            commands.add(Command.add(order));
+        }
+    }
+
+    @Benchmark
+    public Dashboard oneByOne() {
+        Dashboard dashboard = new Dashboard();
+        for (Order order : load) {
+            dashboard.addOrder(order);
+        }
+        return dashboard;
+    }
+
+    @Benchmark
+    public Dashboard batched() {
+        Dashboard dashboard = new Dashboard();
+        dashboard.applyBatch(commands);
+        return dashboard;
+    }
+}
@@ -0,0 +1,108 @@
+package com.company;
+
+import com.company.codec.CancelMessage;
+import com.company.codec.CommandApplier;
+import com.company.codec.DepthMessage;
+import com.company.codec.OrderMessage;
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.OrderIdGenerator;
+import com.company.model.OrderPool;
+import com.company.model.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inbound commands and outbound depth through the binary codec.
+ *
+ * applyFromWire applies an encoded add and cancel onto a pooled dashboard, while decodeToObjects decodes the same
+ * messages into Order and String objects first, as a hand-written decoder would. Run with {@code -prof gc} to
+ * compare their allocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    private static final int MESSAGES = 1 << 10;
+    private static final int DEPTH = 10;
+
+    private ByteBuffer inbound;
+    private int[] offsets;
+    private int next;
+
+    private OrderPool pool;
+    private Dashboard pooledDashboard;
+    private CommandApplier applier;
+    private Dashboard dashboard;
+    private final OrderMessage orderMessage = new OrderMessage();
+    private final CancelMessage cancelMessage = new CancelMessage();
+
+    private final ByteBuffer outbound = ByteBuffer.allocateDirect(1024);
+    private final DepthMessage depthMessage = new DepthMessage();
+    private final long[] priceTicks = new long[DEPTH];
+    private final long[] volumeLots = new long[DEPTH];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        inbound = ByteBuffer.allocateDirect(MESSAGES * 2 * 64);
+        offsets = new int[MESSAGES * 2];
+        int end = 0;
+        for (int i = 0; i < MESSAGES; i++) {
+            Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+            long price = side == Side.BUY ? 1000 - random.nextInt(100) : 1001 + random.nextInt(100);
+            offsets[2 * i] = end;
+            end += orderMessage.encode(inbound, end, i, "", side, "user " + random.nextInt(100),
+                    1 + random.nextInt(100), price);
+            offsets[2 * i + 1] = end;
+            end += cancelMessage.encode(inbound, end, i);
+        }
+
+        pool = new OrderPool(Increments.DEFAULT, new OrderIdGenerator(), 1024);
+        pooledDashboard = new Dashboard(Increments.DEFAULT, pool);
+        applier = new CommandApplier(pooledDashboard, pool);
+        dashboard = new Dashboard();
+        for (int i = 0; i < 1000; i++) {
+            Order order = new Order(MESSAGES + i, i % 2 == 0 ? Side.BUY : Side.SELL, "resting", 1.0,
+                    i % 2 == 0 ? 9.0 - i % 50 * 0.01 : 11.0 + i % 50 * 0.01, Increments.DEFAULT);
+            pooledDashboard.addOrder(Order.inTicks(order.getNumericId(), order.getSide(), order.getUserId(),
+                    order.getQuantityLots(), order.getPriceTicks(), Increments.DEFAULT));
+            dashboard.addOrder(order);
+        }
+    }
+
+    private int nextMessage() {
+        int message = next;
+        next = (next + 1) & (MESSAGES - 1);
+        return message;
+    }
+
+    @Benchmark
+    public boolean applyFromWire() {
+        int message = nextMessage();
+        applier.apply(inbound, offsets[2 * message]);
+        return applier.apply(inbound, offsets[2 * message + 1]);
+    }
+
+    @Benchmark
+    public boolean decodeToObjects() {
+        int message = nextMessage();
+        OrderMessage order = orderMessage.wrap(inbound, offsets[2 * message]);
+        dashboard.addOrder(Order.inTicks(order.getId(), order.getSide(), order.getUserId(), order.getQuantityLots(),
+                order.getPriceTicks(), Increments.DEFAULT));
+        return dashboard.removeOrder(cancelMessage.wrap(inbound, offsets[2 * message + 1]).getId());
+    }
+
+    @Benchmark
+    public int encodeTopTen() {
+        int count = dashboard.getDepth(Side.BUY, priceTicks, volumeLots);
+        return depthMessage.encode(outbound, 0, Side.BUY, 0, Increments.DEFAULT, priceTicks, volumeLots, count);
+    }
+}
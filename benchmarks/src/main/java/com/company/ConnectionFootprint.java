@@ -0,0 +1,227 @@
+package com.company;
+
+import com.company.codec.DepthMessage;
+import com.company.gateway.GatewayClient;
+import com.company.gateway.ThreadPerConnectionGatewayServer;
+import com.company.model.Side;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory footprint and latency of the ThreadPerConnectionGatewayServer with many idle connections, on virtual
+ * threads or on platform threads.
+ *
+ * It opens the idle connections, measures the heap, the resident set size of the process and the number of
+ * platform threads, and then measures the round-trip latency of a few busy connections sending one request at a
+ * time while the idle ones stay open.
+ *
+ * <pre>
+ *     java -cp benchmarks/target/benchmarks.jar com.company.ConnectionFootprint
+ *         [-threads virtual|platform] [-connections 10000] [-busy 4] [-seconds 5]
+ * </pre>
+ *
+ * Virtual threads need Java 21. Both ends of every connection are in this process, so it needs two file
+ * descriptors per connection: raise {@code ulimit -n} above 100000 for 50000 connections.
+ */
+public class ConnectionFootprint {
+
+    public static void main(String[] args) throws Exception {
+        String threads = "virtual";
+        int connections = 10000;
+        int busy = 4;
+        int seconds = 5;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-threads":
+                    threads = args[i + 1];
+                    break;
+                case "-connections":
+                    connections = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-busy":
+                    busy = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-seconds":
+                    seconds = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        ThreadFactory factory = threads.equals("virtual")
+                ? ThreadPerConnectionGatewayServer.virtualThreadFactory()
+                : runnable -> {
+                    Thread thread = new Thread(runnable);
+                    thread.setDaemon(true);
+                    return thread;
+                };
+
+        try (ThreadPerConnectionGatewayServer server = new ThreadPerConnectionGatewayServer(new Dashboard(), null,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 10, factory).start()) {
+            Footprint before = Footprint.measure();
+            List<SocketChannel> idle = new ArrayList<>(connections);
+            for (int i = 0; i < connections; i++) {
+                idle.add(SocketChannel.open(server.getAddress()));
+            }
+            while (server.getConnectionCount() < connections) {
+                Thread.sleep(10);
+            }
+            Footprint after = Footprint.measure();
+            System.out.printf("%s threads, %d idle connections: heap +%.1f MB, resident +%.1f MB, "
+                            + "%d platform threads, %.1f KB per connection%n",
+                    threads, connections, (after.heap - before.heap) / 1e6, (after.resident - before.resident) / 1e6,
+                    after.platformThreads, Math.max(after.heap - before.heap, after.resident - before.resident)
+                            / 1e3 / connections);
+
+            long[] latencies = measureLatency(server.getAddress(), busy, seconds);
+            System.out.printf("%d busy connections, %d requests: p50 %.1f us, p99 %.1f us, p999 %.1f us%n",
+                    busy, latencies.length, percentile(latencies, 0.5), percentile(latencies, 0.99),
+                    percentile(latencies, 0.999));
+
+            for (SocketChannel channel : idle) {
+                channel.close();
+            }
+        }
+    }
+
+    private static long[] measureLatency(InetSocketAddress address, int busy, int seconds) throws Exception {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        Busy[] workers = new Busy[busy];
+        for (int i = 0; i < busy; i++) {
+            workers[i] = new Busy(address, i, end);
+            workers[i].start();
+        }
+        int samples = 0;
+        for (Busy worker : workers) {
+            worker.join();
+            if (worker.failure != null) {
+                throw worker.failure;
+            }
+            samples += worker.samples;
+        }
+        long[] latencies = new long[samples];
+        int next = 0;
+        for (Busy worker : workers) {
+            System.arraycopy(worker.latencies, 0, latencies, next, worker.samples);
+            next += worker.samples;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1000.0;
+    }
+
+    /**
+     * A connection sending one request at a time: an order, then its cancel.
+     */
+    private static final class Busy extends Thread implements GatewayClient.Listener {
+
+        private final InetSocketAddress address;
+        private final long firstId;
+        private final long end;
+        private long[] latencies = new long[1 << 16];
+        private int samples;
+        private boolean received;
+        private IOException failure;
+
+        Busy(InetSocketAddress address, int index, long end) {
+            super("busy-" + index);
+            this.address = address;
+            this.firstId = (long) index << 40;
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+            try (GatewayClient client = new GatewayClient(address)) {
+                for (long id = firstId; System.nanoTime() < end; id++) {
+                    client.sendOrder(id, Side.BUY, "user", 100, 1000 - id % 100);
+                    roundTrip(client);
+                    client.sendCancel(id);
+                    roundTrip(client);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        private void roundTrip(GatewayClient client) throws IOException {
+            long sentAt = System.nanoTime();
+            client.flush();
+            received = false;
+            while (!received) {
+                client.poll(this);
+            }
+            if (samples == latencies.length) {
+                latencies = Arrays.copyOf(latencies, samples * 2);
+            }
+            latencies[samples++] = System.nanoTime() - sentAt;
+        }
+
+        @Override
+        public void onResult(long request, boolean accepted) {
+            received = true;
+        }
+
+        @Override
+        public void onDepth(DepthMessage depth) {
+            //Not subscribed.
+        }
+    }
+
+    private static final class Footprint {
+
+        private final long heap;
+        private final long resident;
+        private final int platformThreads;
+
+        private Footprint(long heap, long resident, int platformThreads) {
+            this.heap = heap;
+            this.resident = resident;
+            this.platformThreads = platformThreads;
+        }
+
+        static Footprint measure() throws Exception {
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+                Thread.sleep(100);
+            }
+            Runtime runtime = Runtime.getRuntime();
+            return new Footprint(runtime.totalMemory() - runtime.freeMemory(), residentSetSize(),
+                    ManagementFactory.getThreadMXBean().getThreadCount());
+        }
+
+        /**
+         * @return the resident set size of the process on Linux, where thread stacks show up, or 0 elsewhere.
+         */
+        private static long residentSetSize() throws IOException {
+            if (!Files.exists(Paths.get("/proc/self/status"))) {
+                return 0;
+            }
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.US_ASCII)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.company;
+
+import com.company.model.Order;
+import com.company.model.Side;
+import com.company.order.book.PriceVolumePair;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the public Dashboard operations on a book of a given shape.
+ *
+ * The book starts with {@code levels} price levels per side and {@code ordersPerLevel} orders in each level, and
+ * {@code buyRatio} of the orders are bids. Cancel benchmarks remove a resting order and add it back, so the shape
+ * of the book does not change during the measurement and no orders are created in the measured code.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DashboardBenchmark {
+
+    private static final int OPERATIONS = 1 << 14;
+    private static final int DEPTH = 10;
+
+    @Param({"10", "1000"})
+    public int levels;
+
+    @Param({"1", "100"})
+    public int ordersPerLevel;
+
+    @Param({"0.5", "0.9"})
+    public double buyRatio;
+
+    /**
+     * Share of the operations of the mixed workload that read a snapshot. The rest are cancels and re-adds,
+     * spread evenly over the three removeOrder overloads.
+     */
+    @Param({"0.2"})
+    public double readRatio;
+
+    private Dashboard dashboard;
+    private Order[] orders;
+    private int[] workload;
+    private int next;
+    private int operation;
+    private final double[] depthPrices = new double[DEPTH];
+    private final double[] depthVolumes = new double[DEPTH];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        dashboard = new Dashboard();
+
+        //Every order has its own user, so that cancelling by user, price and quantity removes that same order.
+        int bidLevels = Math.max(1, (int) Math.round(levels * 2 * buyRatio));
+        int offerLevels = Math.max(1, levels * 2 - bidLevels);
+        orders = new Order[(bidLevels + offerLevels) * ordersPerLevel];
+        int count = 0;
+        for (int level = 0; level < bidLevels; level++) {
+            for (int i = 0; i < ordersPerLevel; i++) {
+                orders[count] = new Order(Side.BUY, "user " + count, 1 + random.nextInt(100), 10.0 - level * 0.01);
+                count++;
+            }
+        }
+        for (int level = 0; level < offerLevels; level++) {
+            for (int i = 0; i < ordersPerLevel; i++) {
+                orders[count] = new Order(Side.SELL, "user " + count, 1 + random.nextInt(100), 10.01 + level * 0.01);
+                count++;
+            }
+        }
+        //Shuffled so that cancels hit the levels in no particular order.
+        for (int i = orders.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Order order = orders[i];
+            orders[i] = orders[j];
+            orders[j] = order;
+        }
+        for (Order order : orders) {
+            dashboard.addOrder(order);
+        }
+
+        workload = new int[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            workload[i] = random.nextDouble() < readRatio ? 3 : random.nextInt(3);
+        }
+    }
+
+    private Order nextOrder() {
+        Order order = orders[next];
+        next = next + 1 == orders.length ? 0 : next + 1;
+        return order;
+    }
+
+    @Benchmark
+    public boolean cancelByIdAndAdd() {
+        Order order = nextOrder();
+        boolean removed = dashboard.removeOrder(order.getId());
+        dashboard.addOrder(order);
+        return removed;
+    }
+
+    @Benchmark
+    public boolean cancelByOrderAndAdd() {
+        Order order = nextOrder();
+        boolean removed = dashboard.removeOrder(order);
+        dashboard.addOrder(order);
+        return removed;
+    }
+
+    @Benchmark
+    public boolean cancelByParametersAndAdd() {
+        Order order = nextOrder();
+        boolean removed = dashboard.removeOrder(order.getSide(), order.getUserId(), order.getPrice(),
+                order.getVolume());
+        dashboard.addOrder(order);
+        return removed;
+    }
+
+    @Benchmark
+    public List<PriceVolumePair> bidsSnapshot() {
+        return dashboard.getPriceVolumePairs(Side.BUY);
+    }
+
+    @Benchmark
+    public List<PriceVolumePair> offersSnapshot() {
+        return dashboard.getPriceVolumePairs(Side.SELL);
+    }
+
+    @Benchmark
+    public PriceVolumePair bidsTopOfBook() {
+        return dashboard.getTopOfBook(Side.BUY);
+    }
+
+    @Benchmark
+    public List<PriceVolumePair> bidsTopTen() {
+        return dashboard.getDepth(Side.BUY, DEPTH);
+    }
+
+    @Benchmark
+    public int bidsTopTenIntoBuffer() {
+        return dashboard.getDepth(Side.BUY, depthPrices, depthVolumes);
+    }
+
+    @Benchmark
+    public Object mixedWorkload() {
+        operation = (operation + 1) & (OPERATIONS - 1);
+        switch (workload[operation]) {
+            case 0:
+                return cancelByIdAndAdd();
+            case 1:
+                return cancelByOrderAndAdd();
+            case 2:
+                return cancelByParametersAndAdd();
+            default:
+                return dashboard.getPriceVolumePairs((operation & 1) == 0 ? Side.BUY : Side.SELL);
+        }
+    }
+}
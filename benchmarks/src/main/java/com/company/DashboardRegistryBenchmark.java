@@ -0,0 +1,93 @@
+package com.company;
+
+import com.company.loop.WaitStrategy;
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.Side;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of a DashboardRegistry with its number of shards: producer threads add and cancel orders spread over
+ * many instruments, and the registry applies them on 1 to 8 shard threads.
+ *
+ * Commands are not awaited, so the producers run ahead until the queues of the shards are full, and the
+ * throughput is that of the shards. There is one producer per core by default; throughput can only scale with
+ * the shards while there are cores left for them, so run it with {@code -t} set to half the cores of the
+ * machine and compare the shard counts up to the other half.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class DashboardRegistryBenchmark {
+
+    private static final int ORDERS = 1 << 12;
+
+    @Param({"1", "2", "4", "8"})
+    public int shards;
+
+    @Param({"64"})
+    public int instruments;
+
+    private DashboardRegistry registry;
+    private String[] instrumentIds;
+
+    @Setup
+    public void setUp() {
+        registry = new DashboardRegistry(shards, 1 << 14, WaitStrategy.YIELD).start();
+        instrumentIds = new String[instruments];
+        for (int i = 0; i < instruments; i++) {
+            instrumentIds[i] = "bar " + i;
+            registry.register(instrumentIds[i], new Dashboard());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        registry.close();
+    }
+
+    /**
+     * Orders of one producer thread, each always sent to the same instrument, so that an order is only added again
+     * once the cancel before it has been applied.
+     */
+    @State(Scope.Thread)
+    public static class Producer {
+
+        private Order[] orders;
+        private String[] instrumentOf;
+        private int next;
+
+        @Setup
+        public void setUp(DashboardRegistryBenchmark benchmark, ThreadParams threadParams) {
+            Random random = new Random(threadParams.getThreadIndex());
+            long firstId = (long) threadParams.getThreadIndex() << 40;
+            orders = new Order[ORDERS];
+            instrumentOf = new String[ORDERS];
+            for (int i = 0; i < ORDERS; i++) {
+                Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+                double price = side == Side.BUY ? 10.0 - random.nextInt(100) * 0.01 : 10.01 + random.nextInt(100) * 0.01;
+                orders[i] = new Order(firstId + i, side, "user " + random.nextInt(100), 1 + random.nextInt(100), price,
+                        Increments.DEFAULT);
+                instrumentOf[i] = benchmark.instrumentIds[random.nextInt(benchmark.instruments)];
+            }
+        }
+    }
+
+    @Benchmark
+    public CompletableFuture<Boolean> addAndCancel(Producer producer) {
+        int i = producer.next;
+        producer.next = (i + 1) & (ORDERS - 1);
+        Order order = producer.orders[i];
+        registry.addOrder(producer.instrumentOf[i], order);
+        return registry.removeOrder(producer.instrumentOf[i], order.getNumericId());
+    }
+}
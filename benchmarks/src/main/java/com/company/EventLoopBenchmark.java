@@ -0,0 +1,117 @@
+package com.company;
+
+import com.company.loop.WaitStrategy;
+import com.company.model.Order;
+import com.company.model.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the EventLoopDashboard with a plain Dashboard behind a single lock, with several threads adding and
+ * cancelling orders at the same time.
+ *
+ * Every operation adds an order and cancels it by id, over a book with {@code levels} resting levels per side.
+ * The event loop is measured both waiting for every cancel (round trip latency) and only waiting for the last of
+ * {@code PIPELINE} operations (throughput when callers do not need the answer straight away).
+ *
+ * Run with {@code -bm sample} to see the latency percentiles.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class EventLoopBenchmark {
+
+    private static final int ORDERS_PER_THREAD = 1 << 10;
+    private static final int PIPELINE = 64;
+
+    @Param({"BUSY_SPIN", "YIELD", "PARK"})
+    public WaitStrategy waitStrategy;
+
+    @Param({"100"})
+    public int levels;
+
+    private Dashboard lockedDashboard;
+    private EventLoopDashboard eventLoopDashboard;
+    private final AtomicInteger threads = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Producer {
+        private Order[] orders;
+        private int next;
+
+        @Setup
+        public void setUp(EventLoopBenchmark benchmark) {
+            int thread = benchmark.threads.getAndIncrement();
+            Random random = new Random(thread);
+            orders = new Order[ORDERS_PER_THREAD];
+            for (int i = 0; i < orders.length; i++) {
+                Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+                int level = random.nextInt(benchmark.levels);
+                double price = side == Side.BUY ? 10.0 - level * 0.01 : 10.01 + level * 0.01;
+                orders[i] = new Order(side, "user " + thread, 1 + random.nextInt(100), price);
+            }
+        }
+
+        Order nextOrder() {
+            Order order = orders[next];
+            next = (next + 1) & (ORDERS_PER_THREAD - 1);
+            return order;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        lockedDashboard = new Dashboard();
+        Dashboard dashboard = new Dashboard();
+        for (int level = 0; level < levels; level++) {
+            for (Dashboard target : new Dashboard[]{lockedDashboard, dashboard}) {
+                target.addOrder(new Order(Side.BUY, "resting", 100, 10.0 - level * 0.01));
+                target.addOrder(new Order(Side.SELL, "resting", 100, 10.01 + level * 0.01));
+            }
+        }
+        eventLoopDashboard = new EventLoopDashboard(dashboard, 1 << 14, waitStrategy).start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        eventLoopDashboard.close();
+    }
+
+    @Benchmark
+    public boolean lockedAddAndCancel(Producer producer) {
+        Order order = producer.nextOrder();
+        synchronized (lockedDashboard) {
+            lockedDashboard.addOrder(order);
+        }
+        synchronized (lockedDashboard) {
+            return lockedDashboard.removeOrder(order.getId());
+        }
+    }
+
+    @Benchmark
+    public boolean eventLoopAddAndCancel(Producer producer) {
+        Order order = producer.nextOrder();
+        eventLoopDashboard.addOrder(order);
+        return eventLoopDashboard.removeOrder(order.getId()).join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE)
+    public boolean eventLoopPipelinedAddAndCancel(Producer producer) {
+        CompletableFuture<Boolean> last = null;
+        for (int i = 0; i < PIPELINE; i++) {
+            Order order = producer.nextOrder();
+            eventLoopDashboard.addOrder(order);
+            last = eventLoopDashboard.removeOrder(order.getId());
+        }
+        return last.join();
+    }
+}
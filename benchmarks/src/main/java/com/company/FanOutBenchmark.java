@@ -0,0 +1,143 @@
+package com.company;
+
+import com.company.model.Order;
+import com.company.model.Side;
+import com.company.order.book.ConflatingDepthPublisher;
+import com.company.order.book.DepthListener;
+import com.company.order.book.DepthUpdate;
+import org.openjdk.jmh.annotations.*;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fan-out of depth updates through the ConflatingDepthPublisher to {@code subscribers} viewers.
+ *
+ * writerWithSubscribers measures what the subscribers cost the thread that updates the dashboard.
+ * changesDelivered makes {@code CHANGES} changes and waits until every viewer has the latest one, which measures
+ * how many changes per second reach all the viewers once conflated.
+ *
+ * The book has {@code levels} levels per side which are never emptied, so every change is a CHANGED update.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FanOutBenchmark {
+
+    private static final int CHANGES = 100;
+
+    @Param({"1", "1000"})
+    public int subscribers;
+
+    @Param({"10"})
+    public int levels;
+
+    private Dashboard dashboard;
+    private ExecutorService executor;
+    private List<Viewer> viewers;
+    private Order[] orders;
+    private int next;
+    private volatile long lastSequence;
+
+    private static class Viewer implements Subscriber<DepthUpdate> {
+        private volatile long sequence;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(DepthUpdate update) {
+            //Conflated updates come in level order, not in sequence order.
+            if (update.getSequence() > sequence) {
+                sequence = update.getSequence();
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            throw new IllegalStateException(error);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        dashboard = new Dashboard();
+        orders = new Order[levels * 2];
+        for (int level = 0; level < levels; level++) {
+            dashboard.addOrder(new Order(Side.BUY, "resting", 100, 10.0 - level * 0.01));
+            dashboard.addOrder(new Order(Side.SELL, "resting", 100, 10.01 + level * 0.01));
+            orders[level * 2] = new Order(Side.BUY, "user", 1, 10.0 - level * 0.01);
+            orders[level * 2 + 1] = new Order(Side.SELL, "user", 1, 10.01 + level * 0.01);
+        }
+
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        ConflatingDepthPublisher publisher = new ConflatingDepthPublisher(executor, 1024);
+        dashboard.subscribe(publisher);
+        dashboard.subscribe(new DepthListener() {
+            @Override
+            public void onSnapshot(long sequence, List<DepthUpdate> bids, List<DepthUpdate> offers) {
+                lastSequence = sequence;
+            }
+
+            @Override
+            public void onUpdate(DepthUpdate update) {
+                lastSequence = update.getSequence();
+            }
+        });
+        viewers = new ArrayList<>(subscribers);
+        for (int i = 0; i < subscribers; i++) {
+            Viewer viewer = new Viewer();
+            publisher.subscribe(viewer);
+            viewers.add(viewer);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private void change() {
+        Order order = orders[next];
+        next = next + 1 == orders.length ? 0 : next + 1;
+        if (!dashboard.removeOrder(order)) {
+            dashboard.addOrder(order);
+        }
+    }
+
+    @Benchmark
+    public long writerWithSubscribers() {
+        change();
+        return lastSequence;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHANGES)
+    public long changesDelivered() {
+        for (int i = 0; i < CHANGES; i++) {
+            change();
+        }
+        long sequence = lastSequence;
+        for (Viewer viewer : viewers) {
+            while (viewer.sequence < sequence) {
+                LockSupport.parkNanos(1_000);
+            }
+        }
+        return sequence;
+    }
+}
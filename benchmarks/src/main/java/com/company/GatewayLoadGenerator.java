@@ -0,0 +1,186 @@
+package com.company;
+
+import com.company.codec.DepthMessage;
+import com.company.gateway.GatewayClient;
+import com.company.gateway.GatewayServer;
+import com.company.model.Side;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load generator for the GatewayServer, reporting the round-trip latency of the requests.
+ *
+ * Every connection runs on its own thread and sends rounds of pipelined requests: a window of new orders, then a
+ * cancel for each of them, each window written at once. The latency of a request is the time from the write of
+ * its window to the arrival of its result. Requests sent during the warmup are not recorded.
+ *
+ * <pre>
+ *     java -cp benchmarks/target/benchmarks.jar com.company.GatewayLoadGenerator
+ *         [-host localhost] [-port 0] [-connections 4] [-window 32] [-warmup 2] [-seconds 10]
+ * </pre>
+ *
+ * With port 0 (the default) it starts a server of its own on the loopback address.
+ */
+public class GatewayLoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        String host = "localhost";
+        int port = 0;
+        int connections = 4;
+        int window = 32;
+        int warmupSeconds = 2;
+        int seconds = 10;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-host":
+                    host = args[i + 1];
+                    break;
+                case "-port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-connections":
+                    connections = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-window":
+                    window = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-warmup":
+                    warmupSeconds = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-seconds":
+                    seconds = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        GatewayServer server = null;
+        InetSocketAddress address;
+        if (port == 0) {
+            server = new GatewayServer(new Dashboard(), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                    .start();
+            address = server.getAddress();
+        } else {
+            address = new InetSocketAddress(host, port);
+        }
+
+        long start = System.nanoTime();
+        long recordFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = recordFrom + TimeUnit.SECONDS.toNanos(seconds);
+        Connection[] workers = new Connection[connections];
+        for (int i = 0; i < connections; i++) {
+            workers[i] = new Connection(address, i, window, recordFrom, end);
+            workers[i].start();
+        }
+        int samples = 0;
+        for (Connection worker : workers) {
+            worker.join();
+            if (worker.failure != null) {
+                throw worker.failure;
+            }
+            samples += worker.samples;
+        }
+        if (server != null) {
+            server.close();
+        }
+
+        long[] latencies = new long[samples];
+        int next = 0;
+        for (Connection worker : workers) {
+            System.arraycopy(worker.latencies, 0, latencies, next, worker.samples);
+            next += worker.samples;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%d connections, window of %d requests, %d requests in %d s (%.0f requests/s)%n",
+                connections, window, samples, seconds, samples / (double) seconds);
+        if (samples > 0) {
+            System.out.printf("round trip: p50 %.1f us, p99 %.1f us, p999 %.1f us, max %.1f us%n",
+                    percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 0.999),
+                    latencies[samples - 1] / 1000.0);
+        }
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1000.0;
+    }
+
+    private static final class Connection extends Thread implements GatewayClient.Listener {
+
+        private final InetSocketAddress address;
+        private final long firstId;
+        private final int window;
+        private final long recordFrom;
+        private final long end;
+        private final Random random;
+        private long[] latencies = new long[1 << 16];
+        private int samples;
+        private int received;
+        private long sentAt;
+        private IOException failure;
+
+        Connection(final InetSocketAddress address, int index, int window, long recordFrom, long end) {
+            super("load-" + index);
+            this.address = address;
+            this.firstId = (long) index << 40;
+            this.window = window;
+            this.recordFrom = recordFrom;
+            this.end = end;
+            this.random = new Random(index);
+        }
+
+        @Override
+        public void run() {
+            try (GatewayClient client = new GatewayClient(address)) {
+                long nextId = firstId;
+                while (System.nanoTime() < end) {
+                    for (int i = 0; i < window; i++) {
+                        Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+                        long priceTicks = side == Side.BUY ? 1000 - random.nextInt(100) : 1001 + random.nextInt(100);
+                        client.sendOrder(nextId + i, side, "user", 1 + random.nextInt(100), priceTicks);
+                    }
+                    roundTrip(client);
+                    for (int i = 0; i < window; i++) {
+                        client.sendCancel(nextId + i);
+                    }
+                    roundTrip(client);
+                    nextId += window;
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        private void roundTrip(GatewayClient client) throws IOException {
+            sentAt = System.nanoTime();
+            client.flush();
+            received = 0;
+            while (received < window) {
+                client.poll(this);
+            }
+        }
+
+        @Override
+        public void onResult(long request, boolean accepted) {
+            received++;
+            if (sentAt < recordFrom) {
+                return;
+            }
+            if (samples == latencies.length) {
+                latencies = Arrays.copyOf(latencies, samples * 2);
+            }
+            latencies[samples++] = System.nanoTime() - sentAt;
+        }
+
+        @Override
+        public void onDepth(DepthMessage depth) {
+            //Not subscribed.
+        }
+    }
+}
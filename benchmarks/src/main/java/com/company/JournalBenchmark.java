@@ -0,0 +1,88 @@
+package com.company;
+
+import com.company.journal.FsyncPolicy;
+import com.company.journal.Journal;
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of journaling: the same add and cancel by id on a Dashboard, without a journal and with a JournaledDashboard
+ * under every fsync policy.
+ *
+ * The journal is written to a temporary directory, which should be on the disk being measured (set java.io.tmpdir).
+ * Run with {@code -prof gc} to check that journaling does not allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JournalBenchmark {
+
+    private static final int ORDERS = 1 << 12;
+
+    @Param({"OS", "BATCHED", "EVERY_WRITE"})
+    public FsyncPolicy fsyncPolicy;
+
+    private Path directory;
+    private Dashboard dashboard;
+    private JournaledDashboard journaledDashboard;
+    private Order[] orders;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        orders = new Order[ORDERS];
+        for (int i = 0; i < ORDERS; i++) {
+            Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+            double price = side == Side.BUY ? 10.0 - random.nextInt(100) * 0.01 : 10.01 + random.nextInt(100) * 0.01;
+            orders[i] = new Order(side, "user " + i, 1 + random.nextInt(100), price);
+        }
+        dashboard = new Dashboard();
+        directory = Files.createTempDirectory("journal-benchmark");
+        journaledDashboard = new JournaledDashboard(new Dashboard(),
+                new Journal(directory, Increments.DEFAULT, fsyncPolicy));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journaledDashboard.close();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private Order nextOrder() {
+        Order order = orders[next];
+        next = (next + 1) & (ORDERS - 1);
+        return order;
+    }
+
+    @Benchmark
+    public boolean unjournaledAddAndCancel() {
+        Order order = nextOrder();
+        dashboard.addOrder(order);
+        return dashboard.removeOrder(order.getId());
+    }
+
+    @Benchmark
+    public boolean journaledAddAndCancel() {
+        Order order = nextOrder();
+        journaledDashboard.addOrder(order);
+        return journaledDashboard.removeOrder(order.getId());
+    }
+}
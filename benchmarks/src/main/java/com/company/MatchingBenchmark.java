@@ -0,0 +1,81 @@
+package com.company;
+
+import com.company.model.Increments;
+import com.company.model.OrderIdGenerator;
+import com.company.model.OrderPool;
+import com.company.model.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a Dashboard in orders per second, matching incoming orders or only resting them.
+ *
+ * Orders are pooled, and their prices are spread around a mid price, {@code spreadTicks} either side, so that a
+ * share of them cross the other side. Each operation adds one order and cancels the one added {@code resting}
+ * operations earlier if it is still resting, which keeps the size of the book steady.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatchingBenchmark {
+
+    private static final int ORDERS = 1 << 14;
+    private static final long MID_TICKS = 1000;
+
+    @Param({"false", "true"})
+    public boolean matching;
+
+    @Param({"10", "100"})
+    public int spreadTicks;
+
+    @Param({"1024"})
+    public int resting;
+
+    private Dashboard dashboard;
+    private OrderPool pool;
+    private Side[] sides;
+    private long[] lots;
+    private long[] ticks;
+    private long nextId;
+    private long trades;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        sides = new Side[ORDERS];
+        lots = new long[ORDERS];
+        ticks = new long[ORDERS];
+        for (int i = 0; i < ORDERS; i++) {
+            sides[i] = random.nextBoolean() ? Side.BUY : Side.SELL;
+            lots[i] = 1 + random.nextInt(100);
+            ticks[i] = MID_TICKS - spreadTicks + random.nextInt(2 * spreadTicks + 1);
+        }
+        pool = new OrderPool(Increments.DEFAULT, new OrderIdGenerator(), ORDERS);
+        dashboard = new Dashboard(Increments.DEFAULT, pool, matching);
+        dashboard.setTradeListener(trade -> trades++);
+        for (int i = 0; i < resting; i++) {
+            addOrder();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%n%.2f trades per order%n", trades / (double) nextId);
+    }
+
+    private void addOrder() {
+        int i = (int) (nextId & (ORDERS - 1));
+        dashboard.addOrder(pool.acquire(nextId++, sides[i], "user", lots[i], ticks[i]));
+    }
+
+    @Benchmark
+    public boolean addAndCancel() {
+        addOrder();
+        return dashboard.removeOrder(nextId - 1 - resting);
+    }
+}
@@ -0,0 +1,100 @@
+package com.company;
+
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.OrderIdGenerator;
+import com.company.model.OrderPool;
+import com.company.model.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steady-state insertion: every operation adds a new order and cancels the oldest one, so the size of the book
+ * stays the same. Run it with {@code -prof gc}: the pooled path should report close to 0 B/op, while the UUID
+ * path pays for the UUID, its string and the HashMap node of the index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderInsertionBenchmark {
+
+    private static final int PRICES = 1024;
+
+    @Param({"10000"})
+    public int restingOrders;
+
+    @Param({"100"})
+    public int levels;
+
+    private OrderPool pool;
+    private Dashboard pooledDashboard;
+    private long[] pooledIds;
+
+    private Dashboard uuidDashboard;
+    private String[] uuidIds;
+
+    private long[] priceTicks;
+    private Side[] sides;
+    private int next;
+    private int oldest;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        priceTicks = new long[PRICES];
+        sides = new Side[PRICES];
+        for (int i = 0; i < PRICES; i++) {
+            sides[i] = random.nextBoolean() ? Side.BUY : Side.SELL;
+            //Bids below 1000 ticks and offers above, so the two books never share a price.
+            int level = random.nextInt(levels);
+            priceTicks[i] = sides[i] == Side.BUY ? 999 - level : 1001 + level;
+        }
+
+        pool = new OrderPool(Increments.DEFAULT, new OrderIdGenerator(), restingOrders);
+        pooledDashboard = new Dashboard(Increments.DEFAULT, pool);
+        pooledIds = new long[restingOrders];
+
+        uuidDashboard = new Dashboard();
+        uuidIds = new String[restingOrders];
+
+        for (int i = 0; i < restingOrders; i++) {
+            pooledIds[i] = addPooledOrder();
+            uuidIds[i] = addUuidOrder();
+        }
+    }
+
+    private long addPooledOrder() {
+        int price = next++ & (PRICES - 1);
+        Order order = pool.acquire(sides[price], "user", 100, priceTicks[price]);
+        pooledDashboard.addOrder(order);
+        return order.getNumericId();
+    }
+
+    private String addUuidOrder() {
+        int price = next++ & (PRICES - 1);
+        Order order = new Order(sides[price], "user", 1.0, Increments.DEFAULT.toPrice(priceTicks[price]));
+        uuidDashboard.addOrder(order);
+        return order.getId();
+    }
+
+    @Benchmark
+    public boolean pooledAddAndCancel() {
+        boolean removed = pooledDashboard.removeOrder(pooledIds[oldest]);
+        pooledIds[oldest] = addPooledOrder();
+        oldest = (oldest + 1) % restingOrders;
+        return removed;
+    }
+
+    @Benchmark
+    public boolean uuidAddAndCancel() {
+        boolean removed = uuidDashboard.removeOrder(uuidIds[oldest]);
+        uuidIds[oldest] = addUuidOrder();
+        oldest = (oldest + 1) % restingOrders;
+        return removed;
+    }
+}
@@ -0,0 +1,105 @@
+package com.company;
+
+import com.company.journal.FsyncPolicy;
+import com.company.journal.Journal;
+import com.company.journal.SnapshotStore;
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Restart time of a dashboard with many resting orders: replaying the whole journal against restoring the latest
+ * snapshot. Also how long taking a snapshot holds up the thread that updates the dashboard, and how long the
+ * executor then takes to build it from the previous snapshot and the journal.
+ *
+ * The default size keeps the heap needed small. Run with {@code -p orders=5000000 -jvmArgs -Xmx4g} for the size of
+ * a busy day.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+    @Param({"1000000"})
+    public int orders;
+
+    private Path directory;
+    private JournaledDashboard journaled;
+    private Journal journal;
+    private SnapshotStore snapshots;
+    /**
+     * Its executor drops the writes, so taking a snapshot only copies the orders.
+     */
+    private SnapshotStore captureOnly;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("snapshot-benchmark");
+        snapshots = new SnapshotStore(directory.resolve("snapshots"), Increments.DEFAULT, Runnable::run);
+        captureOnly = new SnapshotStore(directory.resolve("dropped"), Increments.DEFAULT, write -> { });
+        Random random = new Random(42);
+        journal = new Journal(directory.resolve("journal"), Increments.DEFAULT, FsyncPolicy.OS);
+        journaled = new JournaledDashboard(new Dashboard(), journal, snapshots);
+        for (int i = 0; i < orders; i++) {
+            Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+            double price = side == Side.BUY
+                    ? 10.0 - random.nextInt(900) * 0.01
+                    : 10.01 + random.nextInt(900) * 0.01;
+            journaled.addOrder(new Order(i, side, "user " + random.nextInt(1000), 1 + random.nextInt(100), price,
+                    Increments.DEFAULT));
+        }
+        journaled.snapshot().join();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journaled.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Dashboard replayJournal() throws IOException {
+        Dashboard restored = new Dashboard();
+        journal.replay(restored, 0, journal.getPosition());
+        return restored;
+    }
+
+    @Benchmark
+    public Dashboard restoreSnapshot() throws IOException {
+        Dashboard restored = new Dashboard();
+        snapshots.restore(restored);
+        return restored;
+    }
+
+    /**
+     * What the thread that updates the dashboard waits for: the snapshot itself is left to an executor that drops
+     * it.
+     */
+    @Benchmark
+    public Object captureSnapshot() {
+        return captureOnly.take(journaled.getDashboard(), journal);
+    }
+
+    /**
+     * What the executor does: restoring the previous snapshot, replaying the journal since, here nothing, and
+     * writing the new snapshot.
+     */
+    @Benchmark
+    public Path buildSnapshot() {
+        return snapshots.take(journaled.getDashboard(), journal).join();
+    }
+}
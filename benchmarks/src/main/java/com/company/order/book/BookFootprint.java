@@ -0,0 +1,196 @@
+package com.company.order.book;
+
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.Side;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap footprint and garbage collection pauses of a very large book, kept on the heap in a Book or off it in an
+ * OffHeapBook.
+ *
+ * It fills one side with millions of orders, measures the heap left after a full collection and how long that
+ * collection took, and then churns the book for a while, cancelling a random order and adding a new one, while
+ * recording every pause of the collector. Each operation also allocates a little garbage, as decoding a request
+ * would, so that the young collections run at the same pace with both books.
+ *
+ * <pre>
+ *     java -Xmx4g -cp benchmarks/target/benchmarks.jar com.company.order.book.BookFootprint
+ *         [-book heap|offheap] [-orders 5000000] [-seconds 10]
+ * </pre>
+ */
+public class BookFootprint {
+
+    private static final int USERS = 1000;
+    private static final int LEVELS = 1000;
+
+    /**
+     * Last request allocated, kept so that the allocations cannot be optimised away.
+     */
+    private static byte[] lastRequest;
+
+    public static void main(String[] args) throws Exception {
+        String kind = "offheap";
+        int orders = 5_000_000;
+        int seconds = 10;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-book":
+                    kind = args[i + 1];
+                    break;
+                case "-orders":
+                    orders = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-seconds":
+                    seconds = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        String[] users = new String[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = "user " + i;
+        }
+        Random random = new Random(42);
+        long before = usedHeap();
+        TestedBook book = kind.equals("heap") ? new HeapBook() : new OffHeap(orders);
+        for (long id = 0; id < orders; id++) {
+            book.add(id, users[random.nextInt(USERS)], 1 + random.nextInt(100), 1000 - random.nextInt(LEVELS));
+        }
+        long after = usedHeap();
+        long fullGcStart = System.nanoTime();
+        System.gc();
+        double fullGcMillis = (System.nanoTime() - fullGcStart) / 1e6;
+        System.out.printf("%s book, %d orders: heap +%.1f MB, off-heap %.1f MB, %.1f bytes per order on the heap, "
+                        + "full GC %.1f ms%n", kind, orders, (after - before) / 1e6, book.getOffHeapBytes() / 1e6,
+                (after - before) / (double) orders, fullGcMillis);
+
+        Pauses pauses = new Pauses();
+        pauses.listen();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long nextId = orders;
+        long operations = 0;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 1000; i++) {
+                //Ids taken at random among the last ones added, most of which are still resting.
+                book.removeOrder(nextId - 1 - random.nextInt(orders));
+                book.add(nextId++, users[random.nextInt(USERS)], 1 + random.nextInt(100),
+                        1000 - random.nextInt(LEVELS));
+                lastRequest = new byte[64];
+            }
+            operations += 1000;
+        }
+        pauses.stop();
+        System.out.printf("%d operations in %d s: %d GC pauses, %.1f ms in total, longest %.1f ms%n",
+                operations, seconds, pauses.count, pauses.totalMillis, pauses.longestMillis);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private interface TestedBook {
+
+        void add(long id, String userId, long lots, long ticks);
+
+        void removeOrder(long id);
+
+        long getOffHeapBytes();
+    }
+
+    private static final class HeapBook implements TestedBook {
+
+        private final Book book = new Book(Side.BUY,
+                (p1, p2) -> Long.compare(p2.getPriceTicks(), p1.getPriceTicks()));
+
+        @Override
+        public void add(long id, String userId, long lots, long ticks) {
+            book.add(Order.inTicks(id, Side.BUY, userId, lots, ticks, Increments.DEFAULT));
+        }
+
+        @Override
+        public void removeOrder(long id) {
+            book.removeOrder(id);
+        }
+
+        @Override
+        public long getOffHeapBytes() {
+            return 0;
+        }
+    }
+
+    private static final class OffHeap implements TestedBook {
+
+        private final OffHeapBook book;
+
+        OffHeap(int orders) {
+            book = new OffHeapBook(Side.BUY, Increments.DEFAULT, orders);
+        }
+
+        @Override
+        public void add(long id, String userId, long lots, long ticks) {
+            book.add(id, userId, lots, ticks);
+        }
+
+        @Override
+        public void removeOrder(long id) {
+            book.removeOrder(id);
+        }
+
+        @Override
+        public long getOffHeapBytes() {
+            return book.getOffHeapBytes();
+        }
+    }
+
+    /**
+     * Records the pauses of the collectors, leaving out the concurrent cycles, which do not stop the application.
+     */
+    private static final class Pauses implements NotificationListener {
+
+        private int count;
+        private double totalMillis;
+        private double longestMillis;
+
+        void listen() {
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+            }
+        }
+
+        void stop() throws Exception {
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                ((NotificationEmitter) collector).removeNotificationListener(this);
+            }
+        }
+
+        @Override
+        public synchronized void handleNotification(Notification notification, Object handback) {
+            if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from(
+                    (CompositeData) notification.getUserData());
+            if (info.getGcName().contains("Concurrent")) {
+                return;
+            }
+            double millis = info.getGcInfo().getDuration();
+            count++;
+            totalMillis += millis;
+            longestMillis = Math.max(longestMillis, millis);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.company.order.book;
+
+import com.company.model.Increments;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the level index of the Book (a LongObjectHashMap plus a SortedTickIndex) with a TreeMap keyed on boxed
+ * prices. Run it with {@code -prof gc} to see the allocation rate of each one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LevelIndexBenchmark {
+
+    private static final int LOOKUPS = 1024;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int levels;
+
+    private TreeMap<Long, PriceLevel> treeMap;
+    private LongObjectHashMap<PriceLevel> levelsByPrice;
+    private SortedTickIndex sortedIndex;
+    private long[] lookups;
+    private int next;
+    private PriceLevel newBestLevel;
+    private PriceLevel newWorstLevel;
+
+    @Setup
+    public void setUp() {
+        treeMap = new TreeMap<>();
+        levelsByPrice = new LongObjectHashMap<>();
+        sortedIndex = new SortedTickIndex(false);
+
+        //Offers at every other tick from 1000 upwards, so that there is always room for a new best price.
+        for (int i = 0; i < levels; i++) {
+            PriceLevel level = new PriceLevel(1000 + 2L * i, Increments.DEFAULT);
+            treeMap.put(level.getPriceTicks(), level);
+            levelsByPrice.put(level.getPriceTicks(), level);
+            sortedIndex.insert(level);
+        }
+
+        Random random = new Random(42);
+        lookups = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = 1000 + 2L * random.nextInt(levels);
+        }
+        newBestLevel = new PriceLevel(999, Increments.DEFAULT);
+        newWorstLevel = new PriceLevel(1000 + 2L * levels, Increments.DEFAULT);
+    }
+
+    private long nextLookup() {
+        next = (next + 1) & (LOOKUPS - 1);
+        return lookups[next];
+    }
+
+    @Benchmark
+    public PriceLevel treeMapLookup() {
+        return treeMap.get(nextLookup());
+    }
+
+    @Benchmark
+    public PriceLevel primitiveLookup() {
+        return levelsByPrice.get(nextLookup());
+    }
+
+    /**
+     * A new best offer appears and is then cancelled, which is what most level insertions look like.
+     */
+    @Benchmark
+    public PriceLevel treeMapInsertAndRemoveBest() {
+        treeMap.put(newBestLevel.getPriceTicks(), newBestLevel);
+        return treeMap.remove(newBestLevel.getPriceTicks());
+    }
+
+    @Benchmark
+    public PriceLevel primitiveInsertAndRemoveBest() {
+        levelsByPrice.put(newBestLevel.getPriceTicks(), newBestLevel);
+        sortedIndex.insert(newBestLevel);
+        sortedIndex.remove(newBestLevel.getPriceTicks());
+        return levelsByPrice.remove(newBestLevel.getPriceTicks());
+    }
+
+    /**
+     * A new offer behind every other one appears and is then cancelled, the worst case of the sorted arrays, which
+     * shift every level.
+     */
+    @Benchmark
+    public PriceLevel treeMapInsertAndRemoveWorst() {
+        treeMap.put(newWorstLevel.getPriceTicks(), newWorstLevel);
+        return treeMap.remove(newWorstLevel.getPriceTicks());
+    }
+
+    @Benchmark
+    public PriceLevel primitiveInsertAndRemoveWorst() {
+        levelsByPrice.put(newWorstLevel.getPriceTicks(), newWorstLevel);
+        sortedIndex.insert(newWorstLevel);
+        sortedIndex.remove(newWorstLevel.getPriceTicks());
+        return levelsByPrice.remove(newWorstLevel.getPriceTicks());
+    }
+
+    @Benchmark
+    public void treeMapTraversal(Blackhole blackhole) {
+        for (Map.Entry<Long, PriceLevel> entry : treeMap.entrySet()) {
+            blackhole.consume(entry.getValue().getTotalVolumeLots());
+        }
+    }
+
+    @Benchmark
+    public void primitiveTraversal(Blackhole blackhole) {
+        for (int rank = 0; rank < sortedIndex.size(); rank++) {
+            blackhole.consume(sortedIndex.get(rank).getTotalVolumeLots());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.company.order.book;
+
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the linked PriceLevel with the ColumnarPriceLevel on scans over every order of a level: adding up the
+ * volume, and removing an order by user and quantity that is at the end of the level, then adding it back.
+ *
+ * The orders are allocated in one order and added to the levels in another, as they would be after the heap has
+ * been churned for a while, so that going down the linked level jumps around the heap.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PriceLevelLayoutBenchmark {
+
+    @Param({"16", "256", "4096"})
+    public int orders;
+
+    private PriceLevel linked;
+    private ColumnarPriceLevel columnar;
+    private Order last;
+
+    @Setup
+    public void setUp() {
+        List<Order> allocated = new ArrayList<>();
+        for (int i = 0; i < orders; i++) {
+            allocated.add(Order.inTicks(i, Side.BUY, "user " + i % 100, 1 + i % 50, 1000, Increments.DEFAULT));
+        }
+        Collections.shuffle(allocated, new Random(42));
+        last = Order.inTicks(orders, Side.BUY, "last user", 7, 1000, Increments.DEFAULT);
+        allocated.add(last);
+
+        linked = new PriceLevel(1000, Increments.DEFAULT);
+        columnar = new ColumnarPriceLevel(1000, Increments.DEFAULT);
+        for (Order order : allocated) {
+            linked.addOrder(order);
+            columnar.addOrder(order);
+        }
+    }
+
+    @Benchmark
+    public long linkedVolume() {
+        return linked.recomputeTotalVolumeLots();
+    }
+
+    @Benchmark
+    public long columnarVolume() {
+        return columnar.recomputeTotalVolumeLots();
+    }
+
+    @Benchmark
+    public boolean linkedRemoveByUserAndQuantity() {
+        boolean removed = linked.removeOrder("last user", 0.07);
+        linked.addOrder(last);
+        return removed;
+    }
+
+    @Benchmark
+    public boolean columnarRemoveByUserAndQuantity() {
+        boolean removed = columnar.removeOrder("last user", 0.07);
+        columnar.addOrder(last);
+        return removed;
+    }
+}
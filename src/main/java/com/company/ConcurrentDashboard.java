@@ -0,0 +1,146 @@
+package com.company;
+
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.Side;
+import com.company.order.book.ConcurrentBook;
+import com.company.order.book.DepthSnapshot;
+import com.company.order.book.OrderEntry;
+import com.company.order.book.PriceVolumePair;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Thread safe version of the Dashboard, with the same operations.
+ *
+ * BUY and SELL orders are kept in two independent ConcurrentBooks, so they never wait for each other, and within
+ * a book orders at different price levels are usually added and removed in parallel.
+ *
+ * @see ConcurrentBook
+ */
+public class ConcurrentDashboard {
+
+    private static final int DEFAULT_STRIPES = 64;
+
+    private final ConcurrentBook offersBook;
+    private final ConcurrentBook bidsBook;
+    /**
+     * Index of the orders resting in either book, so that an order can be cancelled by id without looking
+     * through the books.
+     */
+    private final ConcurrentMap<String, OrderEntry> orderIndex;
+    /**
+     * Latest published snapshot of each side, read without any locking.
+     */
+    private volatile DepthSnapshot bidsSnapshot;
+    private volatile DepthSnapshot offersSnapshot;
+
+    public ConcurrentDashboard() {
+        this(Increments.DEFAULT, DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param increments tick size and lot size of the orders on the dashboard.
+     * @param stripes number of price-level lock stripes of each side.
+     */
+    public ConcurrentDashboard(final Increments increments, int stripes) {
+        requireNonNull(increments);
+        orderIndex = new ConcurrentHashMap<>();
+        offersBook = new ConcurrentBook(Side.SELL, increments, orderIndex, stripes);
+        bidsBook = new ConcurrentBook(Side.BUY, increments, orderIndex, stripes);
+        bidsSnapshot = bidsBook.getSnapshot(null);
+        offersSnapshot = offersBook.getSnapshot(null);
+    }
+
+    private ConcurrentBook bookFor(Side side) {
+        return side.equals(Side.BUY) ? bidsBook : offersBook;
+    }
+
+    /**
+     * Adds an order object to the dashboard.
+     *
+     * @param  order  The order object to be added to the dashboard.
+     */
+    public void addOrder(final Order order) {
+        requireNonNull(order);
+        bookFor(order.getSide()).add(order);
+    }
+
+    /**
+     * Returns a list of all the PriceVolumePairs contained in the dashboard for a side, as they were at a single
+     * point in time.
+     *
+     * @param side The side for which all orders need to be retrieved
+     * @return A list with all the PriceVolumePairs
+     * @see PriceVolumePair
+     * @see Side
+     */
+    public List<PriceVolumePair> getPriceVolumePairs(Side side) {
+        return bookFor(side).getPriceVolumePairs();
+    }
+
+    /**
+     * Returns the latest published snapshot of a side. It never takes a lock, so readers polling it do not slow
+     * down the writers, unlike getPriceVolumePairs.
+     *
+     * @param side The side of the snapshot
+     * @return the snapshot published by the last call to publishSnapshots
+     * @see #publishSnapshots()
+     */
+    public DepthSnapshot getSnapshot(Side side) {
+        return side.equals(Side.BUY) ? bidsSnapshot : offersSnapshot;
+    }
+
+    /**
+     * Publishes a new snapshot for each side that has changed since the last one was published. It is meant to
+     * be called periodically by a single publishing thread, and it only holds each side lock while the levels of
+     * that side are copied.
+     */
+    public synchronized void publishSnapshots() {
+        bidsSnapshot = bidsBook.getSnapshot(bidsSnapshot);
+        offersSnapshot = offersBook.getSnapshot(offersSnapshot);
+    }
+
+    /**
+     * Removes an order by id.
+     * @param id id of order to remove
+     * @return true if successful, false if the other was not found.
+     * @see Order
+     */
+    public boolean removeOrder(String id) {
+        OrderEntry entry = orderIndex.get(id);
+        return entry != null && bookFor(entry.getSide()).remove(entry);
+    }
+
+    /**
+     * Removes an order from the dashboard, based on side, userId, price and quantity.
+     * If there are more than one order with the same parameters it provides no guarantees about which
+     * one is removed.
+     *
+     * @param side of order to remove
+     * @param userId owner of of order to remove
+     * @param price price of of order to remove
+     * @param quantity quantity of of order to remove
+     * @return true if successful, false if the other was not found.
+     *
+     * @see Side
+     * @see Order
+     */
+    public boolean removeOrder(Side side, String userId, double price, double quantity) {
+        return bookFor(side).removeOrder(userId, price, quantity);
+    }
+
+    /**
+     * Removes an order from the dashboard.
+     * @param order order to remove
+     * @return true if successful, false if the other was not found.
+     * @see Order
+     */
+    public boolean removeOrder(Order order) {
+        return bookFor(order.getSide()).removeOrder(order);
+    }
+}
@@ -1,11 +1,17 @@
 package com.company;
 
+import com.company.model.Command;
+import com.company.model.Increments;
 import com.company.model.Order;
+import com.company.model.OrderPool;
 import com.company.model.Side;
 import com.company.order.book.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static java.util.Objects.requireNonNull;
 
@@ -17,35 +23,215 @@ public class Dashboard {
      */
     private final Book offersBook;
     private final Book bidsBook;
+    /**
+     * Index of the orders resting in either book, so that an order can be cancelled by id without looking
+     * through the books.
+     */
+    private final OrderIndex orderIndex;
+    /**
+     * Latest published snapshot of each side. They are replaced, never modified, so other threads can read them
+     * at any time without locking.
+     */
+    private volatile DepthSnapshot bidsSnapshot;
+    private volatile DepthSnapshot offersSnapshot;
+    /**
+     * Subscribers to the depth updates. The array is replaced, never modified, so listeners can subscribe and
+     * unsubscribe while an update is being delivered.
+     */
+    private DepthListener[] depthListeners = new DepthListener[0];
+    /**
+     * Sequence of the last depth update.
+     */
+    private long depthSequence;
+    /**
+     * True if incoming orders trade against the orders of the other side that they cross, instead of resting on
+     * top of them.
+     */
+    private final boolean matching;
+    /**
+     * Told about every trade, or null if nobody is listening.
+     */
+    private TradeListener tradeListener;
 
     public Dashboard() {
+        this(Increments.DEFAULT);
+    }
+
+    /**
+     * @param increments tick size and lot size of the orders on the dashboard.
+     */
+    public Dashboard(final Increments increments) {
+        this(increments, null);
+    }
+
+    /**
+     * Creates a dashboard that gives removed orders back to a pool.
+     *
+     * @param increments tick size and lot size of the orders on the dashboard.
+     * @param orderPool pool that removed orders are released to, or null if the orders are not pooled.
+     * @see OrderPool
+     */
+    public Dashboard(final Increments increments, final OrderPool orderPool) {
+        this(increments, orderPool, false);
+    }
+
+    /**
+     * Creates a dashboard that can match the orders it is given.
+     *
+     * @param increments tick size and lot size of the orders on the dashboard.
+     * @param orderPool pool that removed orders are released to, or null if the orders are not pooled.
+     * @param matching true to match every order added against the orders of the other side that it crosses, in
+     *                 price-time priority, so that only what is left of it rests. With false, crossing orders
+     *                 rest on both sides, as they always used to.
+     * @see #addOrder(Order)
+     */
+    public Dashboard(final Increments increments, final OrderPool orderPool, boolean matching) {
+        requireNonNull(increments);
+        this.matching = matching;
+        orderIndex = new OrderIndex();
 
         offersBook = new Book(Side.SELL, new Comparator<PriceLevel>() {
             @Override
             public int compare(PriceLevel p1, PriceLevel p2) {
-                return Double.compare(p1.getPrice(), p2.getPrice());
+                return Long.compare(p1.getPriceTicks(), p2.getPriceTicks());
             }
-        });
+        }, orderIndex, increments, orderPool);
 
         bidsBook = new Book(Side.BUY, new Comparator<PriceLevel>() {
             @Override
             public int compare(PriceLevel p1, PriceLevel p2) {
-                return Double.compare(p2.getPrice(), p1.getPrice());
+                return Long.compare(p2.getPriceTicks(), p1.getPriceTicks());
             }
-        });
+        }, orderIndex, increments, orderPool);
+
+        bidsSnapshot = bidsBook.getSnapshot();
+        offersSnapshot = offersBook.getSnapshot();
+    }
+
+    /**
+     * @return the tick size and lot size of the orders on the dashboard.
+     */
+    public Increments getIncrements() {
+        return bidsBook.getIncrements();
+    }
+
+    private Book bookFor(Side side) {
+        return side.equals(Side.BUY) ? bidsBook : offersBook;
+    }
+
+    /**
+     * @return true if the dashboard matches the orders it is given.
+     */
+    public boolean isMatching() {
+        return matching;
+    }
+
+    /**
+     * @param tradeListener told about every trade from now on, or null to stop telling anyone. Like depth
+     *                      listeners, it is called by the thread that updates the dashboard.
+     */
+    public void setTradeListener(final TradeListener tradeListener) {
+        this.tradeListener = tradeListener;
     }
 
     /**
      * Adds an order object to the dashboard.
      *
+     * If the dashboard matches orders, the order first trades against the orders of the other side that it
+     * crosses, best price first and oldest first within a price, at their price. Its quantity is reduced by every
+     * fill, as are those of the orders it trades against, and only what is left of it rests on the dashboard. An
+     * order filled completely is not added at all, and is released to the pool if it was acquired from it.
+     *
+     * Fills change the orders in place, so a caller that keeps an order sees its quantity go down. Orders
+     * acquired from the pool may be reused as soon as they are filled completely or removed, so callers must not
+     * keep those.
+     *
      * @param  order  The order object to be added to the dashboard.
+     * @throws IllegalArgumentException if the order is already on the dashboard or uses other increments. Nothing
+     * is traded then.
      */
     public void addOrder(final Order order) {
         requireNonNull(order);
         if (order.getSide().equals(Side.BUY)) {
-            bidsBook.add(order);
+            if (!matching || !offersBook.match(order, tradeListener)) {
+                bidsBook.add(order);
+            }
         } else {
-            offersBook.add(order);
+            if (!matching || !bidsBook.match(order, tradeListener)) {
+                offersBook.add(order);
+            }
+        }
+    }
+
+    /**
+     * Applies many commands at once, e.g. a burst of orders from the gateway or the bulk load at market open.
+     *
+     * Commands are applied in the order of the list, so a command sees the effect of every command before it, but
+     * the sorted levels of each book are only brought up to date once, at the end of the batch: the new price
+     * levels are sorted and merged in one pass, and the emptied ones are swept out in another.
+     *
+     * Unlike addOrder, an order that cannot be added does not stop the batch, its result is just false.
+     *
+     * @param commands commands to apply
+     * @return for every command, in the same order, true if it added or removed an order and false if the order
+     * was rejected or not found.
+     * @see Command
+     */
+    public boolean[] applyBatch(final List<Command> commands) {
+        boolean[] results = new boolean[commands.size()];
+        bidsBook.beginBatch();
+        offersBook.beginBatch();
+        try {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = apply(commands.get(i));
+            }
+        } finally {
+            bidsBook.endBatch();
+            offersBook.endBatch();
+        }
+        return results;
+    }
+
+    /**
+     * Adds many orders at once, e.g. when a snapshot is restored at startup. It goes through the batch path of the
+     * books, so the new price levels are sorted and merged once at the end, and the index of the orders is sized
+     * for all of them up front instead of growing as they are added.
+     *
+     * @param orders orders to add, in the order they must be added
+     * @throws IllegalArgumentException if an order cannot be added, as addOrder does. The orders before it stay on
+     * the dashboard.
+     */
+    public void addOrders(final List<Order> orders) {
+        orderIndex.ensureCapacity(orderIndex.size() + orders.size());
+        bidsBook.beginBatch();
+        offersBook.beginBatch();
+        try {
+            for (Order order : orders) {
+                addOrder(order);
+            }
+        } finally {
+            bidsBook.endBatch();
+            offersBook.endBatch();
+        }
+    }
+
+    private boolean apply(final Command command) {
+        switch (command.getType()) {
+            case ADD:
+                try {
+                    addOrder(command.getOrder());
+                    return true;
+                } catch (IllegalArgumentException e) {
+                    return false;
+                }
+            case REMOVE_ORDER:
+                return removeOrder(command.getOrder());
+            case REMOVE_BY_ID:
+                return removeOrder(command.getId());
+            case REMOVE_BY_PARAMETERS:
+                return removeOrder(command.getSide(), command.getUserId(), command.getPrice(), command.getQuantity());
+            default:
+                throw new IllegalArgumentException("Unknown command " + command.getType());
         }
     }
 
@@ -65,6 +251,161 @@ public class Dashboard {
         }
     }
 
+    /**
+     * Returns the best bid or the best offer.
+     *
+     * @param side The side of the book
+     * @return the best level of the side, or null if there are no orders on that side.
+     */
+    public PriceVolumePair getTopOfBook(Side side) {
+        return bookFor(side).getBest();
+    }
+
+    /**
+     * Returns the best levels of a side. Unlike getPriceVolumePairs, the levels below them are not looked at.
+     *
+     * @param side The side of the book
+     * @param levels maximum number of levels to return
+     * @return the best levels, best price first
+     * @throws IllegalArgumentException if levels is negative.
+     */
+    public List<PriceVolumePair> getDepth(Side side, int levels) {
+        return bookFor(side).getDepth(levels);
+    }
+
+    /**
+     * Copies the best levels of a side into arrays supplied by the caller, so that a render loop can read the
+     * depth repeatedly without creating any garbage.
+     *
+     * @param side The side of the book
+     * @param prices receives the price of each level, best price first
+     * @param volumes receives the volume of each level
+     * @return the number of levels copied, at most the length of the arrays
+     */
+    public int getDepth(Side side, double[] prices, double[] volumes) {
+        return bookFor(side).getDepth(prices, volumes);
+    }
+
+    /**
+     * Copies the best levels of a side into arrays supplied by the caller as ticks and lots, e.g. to encode them
+     * without converting them to doubles and back.
+     *
+     * @param side The side of the book
+     * @param priceTicks receives the price of each level in ticks, best price first
+     * @param volumeLots receives the volume of each level in lots
+     * @return the number of levels copied, at most the length of the arrays
+     */
+    public int getDepth(Side side, long[] priceTicks, long[] volumeLots) {
+        return bookFor(side).getDepth(priceTicks, volumeLots);
+    }
+
+    /**
+     * Goes through every resting order of a side, best price first and in arrival order within a price, e.g. to
+     * copy them into a snapshot. Adding the orders back in the same order rebuilds the side as it is.
+     *
+     * It must be called by the thread that updates the dashboard, and the action must not change the dashboard.
+     *
+     * @param side The side of the book
+     * @param action called with every order of the side
+     */
+    public void forEachOrder(Side side, final Consumer<Order> action) {
+        bookFor(side).forEachOrder(action);
+    }
+
+    /**
+     * Returns the latest published snapshot of a side. Unlike the rest of the dashboard, it can be called from any
+     * thread, and it never blocks or slows down the thread that updates the dashboard.
+     *
+     * @param side The side of the snapshot
+     * @return the snapshot published by the last call to publishSnapshots
+     * @see #publishSnapshots()
+     */
+    public DepthSnapshot getSnapshot(Side side) {
+        if (side.equals(Side.BUY)) {
+            return bidsSnapshot;
+        } else {
+            return offersSnapshot;
+        }
+    }
+
+    /**
+     * @param side The side of the book
+     * @return the number of changes made to the side so far, e.g. to find out whether it changed since it was
+     * last looked at.
+     */
+    public long getVersion(Side side) {
+        return bookFor(side).getVersion();
+    }
+
+    /**
+     * Publishes a new snapshot for each side that has changed since the last one was published.
+     *
+     * It must be called by the thread that updates the dashboard, as often as readers need fresh data, e.g. after
+     * every batch of orders. Sides that have not changed keep their current snapshot.
+     */
+    public void publishSnapshots() {
+        if (bidsBook.getVersion() != bidsSnapshot.getSequence()) {
+            bidsSnapshot = bidsBook.getSnapshot();
+        }
+        if (offersBook.getVersion() != offersSnapshot.getSequence()) {
+            offersSnapshot = offersBook.getSnapshot();
+        }
+    }
+
+    /**
+     * Subscribes to the changes of the price levels of both sides. The listener first receives every level of the
+     * dashboard, and then an update for every change of a level, with no gap in their sequence. Listeners are
+     * called by the thread that updates the dashboard, so they must be quick.
+     *
+     * It must be called by the thread that updates the dashboard.
+     *
+     * @param listener listener to subscribe
+     * @see DepthListener
+     */
+    public void subscribe(final DepthListener listener) {
+        requireNonNull(listener);
+        listener.onSnapshot(depthSequence, bidsBook.getDepthUpdates(depthSequence),
+                offersBook.getDepthUpdates(depthSequence));
+        depthListeners = Arrays.copyOf(depthListeners, depthListeners.length + 1);
+        depthListeners[depthListeners.length - 1] = listener;
+        if (depthListeners.length == 1) {
+            //Books only build updates while somebody is listening.
+            bidsBook.setLevelListener(this::publishDepthUpdate);
+            offersBook.setLevelListener(this::publishDepthUpdate);
+        }
+    }
+
+    /**
+     * Stops sending depth updates to a listener.
+     *
+     * @param listener listener to unsubscribe
+     * @return true if successful, false if the listener was not subscribed.
+     */
+    public boolean unsubscribe(final DepthListener listener) {
+        for (int i = 0; i < depthListeners.length; i++) {
+            if (depthListeners[i] == listener) {
+                DepthListener[] remaining = new DepthListener[depthListeners.length - 1];
+                System.arraycopy(depthListeners, 0, remaining, 0, i);
+                System.arraycopy(depthListeners, i + 1, remaining, i, remaining.length - i);
+                depthListeners = remaining;
+                if (remaining.length == 0) {
+                    bidsBook.setLevelListener(null);
+                    offersBook.setLevelListener(null);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void publishDepthUpdate(Side side, PriceLevel level, DepthUpdate.Type type) {
+        DepthUpdate update = new DepthUpdate(type, side, ++depthSequence, level.getPriceTicks(),
+                level.getTotalVolumeLots(), level.getNumberOfOrders(), level.getIncrements());
+        for (DepthListener listener : depthListeners) {
+            listener.onUpdate(update);
+        }
+    }
+
     /**
      * Removes an order by id.
      * @param id id of order to remove
@@ -72,10 +413,32 @@ public class Dashboard {
      * @see Order
      */
     public boolean removeOrder(String id) {
-        if (bidsBook.removeOrder(id)) {
-            return true;
+        OrderEntry entry = orderIndex.get(id);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.getSide().equals(Side.BUY)) {
+            return bidsBook.remove(entry);
         } else {
-            return offersBook.removeOrder(id);
+            return offersBook.remove(entry);
+        }
+    }
+
+    /**
+     * Removes an order by numeric id.
+     * @param id numeric id of order to remove
+     * @return true if successful, false if the other was not found.
+     * @see Order#getNumericId()
+     */
+    public boolean removeOrder(long id) {
+        OrderEntry entry = orderIndex.get(id);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.getSide().equals(Side.BUY)) {
+            return bidsBook.remove(entry);
+        } else {
+            return offersBook.remove(entry);
         }
     }
 
@@ -102,10 +465,63 @@ public class Dashboard {
     }
 
     /**
-     * Removes an order from the dashboard.
+     * Cancels every resting order of a user on both sides, e.g. when the user disconnects. It only looks at the
+     * orders of that user, not at the rest of the books.
+     *
+     * @param userId owner of the orders to cancel
+     * @return the number of orders cancelled.
+     */
+    public int cancelAllForUser(String userId) {
+        UserIndex users = orderIndex.getUsers();
+        int user = users.find(userId);
+        if (users.getOrderCount(user) == 0) {
+            return 0;
+        }
+        int cancelled = 0;
+        //Emptied levels are swept out of the sorted levels once at the end instead of one at a time.
+        bidsBook.beginBatch();
+        offersBook.beginBatch();
+        try {
+            OrderEntry entry = users.getFirst(user);
+            while (entry != null) {
+                OrderEntry next = entry.getNextOfUser();
+                if (bookFor(entry.getSide()).remove(entry)) {
+                    cancelled++;
+                }
+                entry = next;
+            }
+        } finally {
+            bidsBook.endBatch();
+            offersBook.endBatch();
+        }
+        return cancelled;
+    }
+
+    /**
+     * Returns the resting orders of a user on both sides, in arrival order. It only looks at the orders of that
+     * user, not at the rest of the books.
+     *
+     * It must be called by the thread that updates the dashboard.
+     *
+     * @param userId owner of the orders
+     * @return the orders of the user, or an empty list if there are none.
+     */
+    public List<Order> getOrdersForUser(String userId) {
+        UserIndex users = orderIndex.getUsers();
+        int user = users.find(userId);
+        List<Order> orders = new ArrayList<>(users.getOrderCount(user));
+        for (OrderEntry entry = users.getFirst(user); entry != null; entry = entry.getNextOfUser()) {
+            orders.add(entry.getOrder());
+        }
+        return orders;
+    }
+
+    /**
+     * Removes an order from the dashboard. The order is found by id, side, user and price, not by quantity, so it
+     * can be a copy taken before the order was partly filled.
      * @param order order to remove
      * @return true if successful, false if the other was not found.
-     * @see Order
+     * @see Order#isSameOrder(Order)
      */
     public boolean removeOrder(Order order){
         if(order.getSide().equals(Side.BUY)){
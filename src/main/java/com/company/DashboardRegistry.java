@@ -0,0 +1,388 @@
+package com.company;
+
+import com.company.loop.CommandLoop;
+import com.company.loop.WaitStrategy;
+import com.company.model.Order;
+import com.company.model.Side;
+import com.company.order.book.DepthSnapshot;
+import com.company.order.book.PriceVolumePair;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Dashboards of many instruments, e.g. different bars, metals or venues, spread over a fixed number of shards.
+ *
+ * Every shard is a thread that owns the dashboards of its instruments and applies every change to them, as an
+ * EventLoopDashboard does for a single dashboard: commands are queued in the RingBuffer of the shard, and their
+ * results are given back through CompletableFutures once the snapshots of the batch have been published. Shards
+ * share nothing, so instruments of different shards are updated in parallel without any locking, and throughput
+ * grows with the number of shards as long as there are cores to run them and the commands are spread over enough
+ * instruments.
+ *
+ * Every instrument is routed to a shard by the hash of its id. Queries that span every instrument, like cancelling
+ * the orders of a user, are sent to every shard and their results are added up.
+ *
+ * Commands submitted by one thread for one instrument are applied in the order they were submitted. Callbacks
+ * attached to the futures may run on a shard thread, so they must not block.
+ *
+ * @see EventLoopDashboard
+ * @see CommandLoop
+ */
+public class DashboardRegistry implements AutoCloseable {
+
+    private static final int DEFAULT_CAPACITY = 1 << 14;
+    /**
+     * Maximum number of commands a shard applies between two snapshots, so that snapshots stay fresh under load.
+     */
+    private static final int MAX_BATCH = 256;
+
+    private enum CommandType {
+        ADD,
+        REMOVE_BY_ID,
+        REMOVE_BY_NUMERIC_ID,
+        PRICE_VOLUME_PAIRS,
+        CANCEL_ALL_FOR_USER
+    }
+
+    /**
+     * A registered dashboard and the shard that owns it.
+     */
+    private static final class Instrument {
+        final String id;
+        final Dashboard dashboard;
+        final Shard shard;
+        /**
+         * True while the snapshots of the dashboard wait to be published at the end of the batch, only accessed by
+         * the shard.
+         */
+        boolean changed;
+
+        Instrument(final String id, final Dashboard dashboard, final Shard shard) {
+            this.id = id;
+            this.dashboard = dashboard;
+            this.shard = shard;
+        }
+    }
+
+    /**
+     * A slot of the ring buffer of a shard, filled in by the submitting thread and cleared by the shard once applied.
+     */
+    private static final class CommandSlot extends CommandLoop.Command {
+        CommandType type;
+        Instrument instrument;
+        Order order;
+        String id;
+        long numericId;
+        Side side;
+
+        @Override
+        protected void clear() {
+            super.clear();
+            instrument = null;
+            order = null;
+            id = null;
+            side = null;
+        }
+    }
+
+    private final Shard[] shards;
+    private final ConcurrentMap<String, Instrument> instruments = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a registry whose shards yield while they have no commands.
+     *
+     * @param shards number of shard threads, usually up to the number of cores
+     */
+    public DashboardRegistry(int shards) {
+        this(shards, DEFAULT_CAPACITY, WaitStrategy.YIELD);
+    }
+
+    /**
+     * @param shards number of shard threads, usually up to the number of cores
+     * @param capacity maximum number of queued commands of each shard, rounded up to a power of two
+     * @param waitStrategy what the shards do while there are no commands, and what submitting threads do while
+     *                     the queue of a shard is full
+     * @throws IllegalArgumentException if there are no shards.
+     */
+    public DashboardRegistry(int shards, int capacity, final WaitStrategy waitStrategy) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("A registry needs at least one shard");
+        }
+        requireNonNull(waitStrategy);
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard(i, capacity, waitStrategy);
+        }
+    }
+
+    /**
+     * Starts the shard threads. Commands submitted before they are started fail with an IllegalStateException.
+     *
+     * @return this registry
+     */
+    public DashboardRegistry start() {
+        for (Shard shard : shards) {
+            shard.loop.start();
+        }
+        return this;
+    }
+
+    /**
+     * Applies the commands already submitted, then stops the shard threads. Commands submitted afterwards fail
+     * with an IllegalStateException. If the calling thread is interrupted while waiting, it stops waiting and
+     * keeps its interrupt status, and the shards still apply the remaining commands.
+     */
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.loop.stop();
+        }
+        for (Shard shard : shards) {
+            shard.loop.close();
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @param instrumentId id of an instrument, registered or not
+     * @return the index of the shard that owns the instrument, from 0 to getShardCount() - 1.
+     */
+    public int shardOf(String instrumentId) {
+        int hash = instrumentId.hashCode();
+        //Spreads the high bits, as ids that differ only in their last characters are common.
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    /**
+     * Adds the dashboard of an instrument to the registry. It can be called at any time, from any thread.
+     *
+     * @param instrumentId id of the instrument
+     * @param dashboard dashboard of the instrument. It belongs to the shard of the instrument from now on, and must
+     *                  not be used directly any more.
+     * @throws IllegalArgumentException if the instrument is already registered.
+     */
+    public void register(final String instrumentId, final Dashboard dashboard) {
+        requireNonNull(instrumentId);
+        requireNonNull(dashboard);
+        Shard shard = shards[shardOf(instrumentId)];
+        Instrument instrument = new Instrument(instrumentId, dashboard, shard);
+        if (instruments.putIfAbsent(instrumentId, instrument) != null) {
+            throw new IllegalArgumentException("Instrument " + instrumentId + " is already registered");
+        }
+        shard.instruments.add(instrument);
+    }
+
+    /**
+     * @return the ids of the registered instruments.
+     */
+    public Set<String> getInstrumentIds() {
+        return instruments.keySet();
+    }
+
+    private Instrument instrument(String instrumentId) {
+        Instrument instrument = instruments.get(requireNonNull(instrumentId));
+        if (instrument == null) {
+            throw new IllegalArgumentException("Instrument " + instrumentId + " is not registered");
+        }
+        return instrument;
+    }
+
+    /**
+     * Adds an order to the dashboard of an instrument.
+     *
+     * @return a future completed once the order is in the dashboard, or completed exceptionally if it was rejected.
+     * @throws IllegalArgumentException if the instrument is not registered.
+     * @see Dashboard#addOrder(Order)
+     */
+    public CompletableFuture<Boolean> addOrder(String instrumentId, final Order order) {
+        requireNonNull(order);
+        Instrument instrument = instrument(instrumentId);
+        return instrument.shard.submit(CommandType.ADD, instrument, order, null, 0, null);
+    }
+
+    /**
+     * Removes an order of an instrument by id.
+     *
+     * @return a future with true if successful, false if the order was not found.
+     * @throws IllegalArgumentException if the instrument is not registered.
+     */
+    public CompletableFuture<Boolean> removeOrder(String instrumentId, String id) {
+        requireNonNull(id);
+        Instrument instrument = instrument(instrumentId);
+        return instrument.shard.submit(CommandType.REMOVE_BY_ID, instrument, null, id, 0, null);
+    }
+
+    /**
+     * Removes an order of an instrument by numeric id.
+     *
+     * @return a future with true if successful, false if the order was not found.
+     * @throws IllegalArgumentException if the instrument is not registered.
+     * @see Order#getNumericId()
+     */
+    public CompletableFuture<Boolean> removeOrder(String instrumentId, long id) {
+        Instrument instrument = instrument(instrumentId);
+        return instrument.shard.submit(CommandType.REMOVE_BY_NUMERIC_ID, instrument, null, null, id, null);
+    }
+
+    /**
+     * Returns every level of a side of an instrument, after every command submitted before it has been applied.
+     * getSnapshot is cheaper when the latest batch is recent enough.
+     *
+     * @throws IllegalArgumentException if the instrument is not registered.
+     */
+    public CompletableFuture<List<PriceVolumePair>> getPriceVolumePairs(String instrumentId, Side side) {
+        requireNonNull(side);
+        Instrument instrument = instrument(instrumentId);
+        return instrument.shard.submit(CommandType.PRICE_VOLUME_PAIRS, instrument, null, null, 0, side);
+    }
+
+    /**
+     * Returns the snapshot of a side of an instrument published after the latest batch of its shard. It can be
+     * called from any thread and never waits for the shard.
+     *
+     * @throws IllegalArgumentException if the instrument is not registered.
+     */
+    public DepthSnapshot getSnapshot(String instrumentId, Side side) {
+        return instrument(instrumentId).dashboard.getSnapshot(side);
+    }
+
+    /**
+     * Returns the best level of a side of every instrument, read from their latest snapshots, so it never waits
+     * for the shards.
+     *
+     * @param side The side of the book
+     * @return the best level of every instrument that has orders on that side, by instrument id.
+     */
+    public Map<String, PriceVolumePair> getTopOfBook(Side side) {
+        Map<String, PriceVolumePair> best = new HashMap<>();
+        for (Instrument instrument : instruments.values()) {
+            List<PriceVolumePair> levels = instrument.dashboard.getSnapshot(side).getPriceVolumePairs();
+            if (!levels.isEmpty()) {
+                best.put(instrument.id, levels.get(0));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Cancels every resting order of a user on every instrument, e.g. when the user disconnects. Every shard
+     * cancels the orders on its own instruments, in parallel.
+     *
+     * @param userId owner of the orders to cancel
+     * @return a future with the number of orders cancelled on all the instruments.
+     * @see Dashboard#cancelAllForUser(String)
+     */
+    public CompletableFuture<Integer> cancelAllForUser(String userId) {
+        requireNonNull(userId);
+        CompletableFuture<Integer> total = CompletableFuture.completedFuture(0);
+        for (Shard shard : shards) {
+            CompletableFuture<Integer> cancelled = shard.submit(CommandType.CANCEL_ALL_FOR_USER, null, null, userId,
+                    0, null);
+            total = total.thenCombine(cancelled, Integer::sum);
+        }
+        return total;
+    }
+
+    /**
+     * A shard thread and the queue of its commands.
+     */
+    private static final class Shard {
+
+        private final CommandLoop<CommandSlot> loop;
+        /**
+         * Instruments owned by the shard. Registering is rare, so the list is copied on write.
+         */
+        private final List<Instrument> instruments = new CopyOnWriteArrayList<>();
+        /**
+         * Instruments changed by the batch being applied, only accessed by the loop of the shard.
+         */
+        private Instrument[] changed = new Instrument[16];
+        private int changedCount;
+
+        Shard(int index, int capacity, final WaitStrategy waitStrategy) {
+            this.loop = new CommandLoop<>("dashboard-shard-" + index, capacity, CommandSlot::new, waitStrategy,
+                    MAX_BATCH, this::execute, this::publishChanged);
+        }
+
+        /**
+         * Publishes the snapshots of the instruments changed by the batch, and only those.
+         */
+        private void publishChanged() {
+            for (int i = 0; i < changedCount; i++) {
+                changed[i].dashboard.publishSnapshots();
+                changed[i].changed = false;
+                changed[i] = null;
+            }
+            changedCount = 0;
+        }
+
+        private Object execute(CommandSlot command) {
+            Instrument instrument = command.instrument;
+            switch (command.type) {
+                case ADD:
+                    markChanged(instrument);
+                    instrument.dashboard.addOrder(command.order);
+                    return Boolean.TRUE;
+                case REMOVE_BY_ID:
+                    markChanged(instrument);
+                    return instrument.dashboard.removeOrder(command.id);
+                case REMOVE_BY_NUMERIC_ID:
+                    markChanged(instrument);
+                    return instrument.dashboard.removeOrder(command.numericId);
+                case PRICE_VOLUME_PAIRS:
+                    return instrument.dashboard.getPriceVolumePairs(command.side);
+                case CANCEL_ALL_FOR_USER:
+                    int cancelled = 0;
+                    for (Instrument owned : instruments) {
+                        int count = owned.dashboard.cancelAllForUser(command.id);
+                        if (count > 0) {
+                            markChanged(owned);
+                            cancelled += count;
+                        }
+                    }
+                    return cancelled;
+                default:
+                    throw new IllegalStateException("Unknown command " + command.type);
+            }
+        }
+
+        private void markChanged(Instrument instrument) {
+            if (!instrument.changed) {
+                instrument.changed = true;
+                if (changedCount == changed.length) {
+                    changed = Arrays.copyOf(changed, changedCount * 2);
+                }
+                changed[changedCount++] = instrument;
+            }
+        }
+
+        private <T> CompletableFuture<T> submit(CommandType type, final Instrument instrument, final Order order,
+                                                final String id, long numericId, final Side side) {
+            long sequence = loop.claim();
+            if (sequence < 0) {
+                return CommandLoop.notRunning();
+            }
+            CommandSlot command = loop.get(sequence);
+            command.type = type;
+            command.instrument = instrument;
+            command.order = order;
+            command.id = id;
+            command.numericId = numericId;
+            command.side = side;
+            return loop.publish(sequence);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.company;
+
+import com.company.loop.CommandLoop;
+import com.company.loop.WaitStrategy;
+import com.company.model.Order;
+import com.company.model.Side;
+import com.company.order.book.DepthSnapshot;
+import com.company.order.book.PriceVolumePair;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Thread safe Dashboard where a single thread applies every change.
+ *
+ * Any thread can submit commands. They are queued in a RingBuffer of preallocated slots and applied in order by
+ * the event loop thread, which owns a plain Dashboard, so the books need no locks at all. The result of each
+ * command is given back through a CompletableFuture, completed by the event loop thread.
+ *
+ * After every batch of commands the event loop publishes new depth snapshots, which any thread can read with
+ * getSnapshot without going through the event loop. The futures of a batch are completed after its snapshots are
+ * published, so once a future is done the snapshots include that command.
+ *
+ * Commands submitted by one thread are applied in the order they were submitted. Callbacks attached to the futures
+ * may run on the event loop thread, so they must not block, or wait for other commands of this dashboard.
+ *
+ * @see CommandLoop
+ * @see WaitStrategy
+ */
+public class EventLoopDashboard implements AutoCloseable {
+
+    private static final int DEFAULT_CAPACITY = 1 << 14;
+    /**
+     * Maximum number of commands applied between two snapshots, so that snapshots stay fresh under load.
+     */
+    private static final int MAX_BATCH = 256;
+
+    private enum CommandType {
+        ADD,
+        REMOVE_BY_ID,
+        REMOVE_BY_PARAMETERS,
+        REMOVE_ORDER,
+        PRICE_VOLUME_PAIRS
+    }
+
+    /**
+     * A slot of the ring buffer, filled in by the submitting thread and cleared by the event loop once applied.
+     */
+    private static final class CommandSlot extends CommandLoop.Command {
+        CommandType type;
+        Order order;
+        String id;
+        Side side;
+        String userId;
+        double price;
+        double quantity;
+
+        @Override
+        protected void clear() {
+            super.clear();
+            order = null;
+            id = null;
+            side = null;
+            userId = null;
+        }
+    }
+
+    private final Dashboard dashboard;
+    private final CommandLoop<CommandSlot> loop;
+
+    /**
+     * Creates a dashboard with the default increments, whose event loop yields while there are no commands.
+     */
+    public EventLoopDashboard() {
+        this(new Dashboard(), DEFAULT_CAPACITY, WaitStrategy.YIELD);
+    }
+
+    /**
+     * @param dashboard dashboard to apply the commands to. It must not be used directly any more.
+     * @param capacity maximum number of queued commands, rounded up to a power of two
+     * @param waitStrategy what the event loop does while there are no commands, and what submitting threads do
+     *                     while the queue is full
+     */
+    public EventLoopDashboard(final Dashboard dashboard, int capacity, final WaitStrategy waitStrategy) {
+        this.dashboard = requireNonNull(dashboard);
+        this.loop = new CommandLoop<>("dashboard-event-loop", capacity, CommandSlot::new, waitStrategy, MAX_BATCH,
+                this::execute, dashboard::publishSnapshots);
+    }
+
+    /**
+     * Starts the event loop thread. Commands submitted before it is started fail with an IllegalStateException.
+     *
+     * @return this dashboard
+     */
+    public EventLoopDashboard start() {
+        loop.start();
+        return this;
+    }
+
+    /**
+     * Applies the commands already submitted, then stops the event loop thread. Commands submitted afterwards
+     * fail with an IllegalStateException. If the calling thread is interrupted while waiting, it stops waiting
+     * and keeps its interrupt status, and the event loop thread still applies the remaining commands.
+     */
+    @Override
+    public void close() {
+        loop.close();
+    }
+
+    private Object execute(CommandSlot command) {
+        switch (command.type) {
+            case ADD:
+                dashboard.addOrder(command.order);
+                return Boolean.TRUE;
+            case REMOVE_BY_ID:
+                return dashboard.removeOrder(command.id);
+            case REMOVE_BY_PARAMETERS:
+                return dashboard.removeOrder(command.side, command.userId, command.price, command.quantity);
+            case REMOVE_ORDER:
+                return dashboard.removeOrder(command.order);
+            case PRICE_VOLUME_PAIRS:
+                return dashboard.getPriceVolumePairs(command.side);
+            default:
+                throw new IllegalStateException("Unknown command " + command.type);
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(CommandType type, final Order order, final String id, final Side side,
+                                            final String userId, double price, double quantity) {
+        long sequence = loop.claim();
+        if (sequence < 0) {
+            return CommandLoop.notRunning();
+        }
+        CommandSlot command = loop.get(sequence);
+        command.type = type;
+        command.order = order;
+        command.id = id;
+        command.side = side;
+        command.userId = userId;
+        command.price = price;
+        command.quantity = quantity;
+        return loop.publish(sequence);
+    }
+
+    /**
+     * Adds an order object to the dashboard.
+     *
+     * @param  order  The order object to be added to the dashboard.
+     * @return a future completed once the order is in the dashboard, or completed exceptionally if it was rejected.
+     */
+    public CompletableFuture<Boolean> addOrder(final Order order) {
+        requireNonNull(order);
+        return submit(CommandType.ADD, order, null, null, null, 0, 0);
+    }
+
+    /**
+     * Returns a list of all the PriceVolumePairs contained in the dashboard for a side, after every command
+     * submitted before it has been applied. getSnapshot is cheaper when the latest batch is recent enough.
+     *
+     * @param side The side for which all orders need to be retrieved
+     * @return a future with all the PriceVolumePairs
+     * @see PriceVolumePair
+     */
+    public CompletableFuture<List<PriceVolumePair>> getPriceVolumePairs(Side side) {
+        requireNonNull(side);
+        return submit(CommandType.PRICE_VOLUME_PAIRS, null, null, side, null, 0, 0);
+    }
+
+    /**
+     * Returns the snapshot of a side published after the latest batch of commands. It can be called from any
+     * thread and never waits for the event loop.
+     *
+     * @param side The side of the snapshot
+     * @return the latest published snapshot
+     */
+    public DepthSnapshot getSnapshot(Side side) {
+        return dashboard.getSnapshot(side);
+    }
+
+    /**
+     * Removes an order by id.
+     * @param id id of order to remove
+     * @return a future with true if successful, false if the order was not found.
+     */
+    public CompletableFuture<Boolean> removeOrder(String id) {
+        requireNonNull(id);
+        return submit(CommandType.REMOVE_BY_ID, null, id, null, null, 0, 0);
+    }
+
+    /**
+     * Removes an order from the dashboard, based on side, userId, price and quantity.
+     * If there are more than one order with the same parameters it provides no guarantees about which
+     * one is removed.
+     *
+     * @return a future with true if successful, false if the order was not found.
+     */
+    public CompletableFuture<Boolean> removeOrder(Side side, String userId, double price, double quantity) {
+        requireNonNull(side);
+        requireNonNull(userId);
+        return submit(CommandType.REMOVE_BY_PARAMETERS, null, null, side, userId, price, quantity);
+    }
+
+    /**
+     * Removes an order from the dashboard.
+     * @param order order to remove
+     * @return a future with true if successful, false if the order was not found.
+     */
+    public CompletableFuture<Boolean> removeOrder(Order order) {
+        requireNonNull(order);
+        return submit(CommandType.REMOVE_ORDER, order, null, null, null, 0, 0);
+    }
+}
@@ -0,0 +1,164 @@
+package com.company;
+
+import com.company.journal.Journal;
+import com.company.journal.SnapshotStore;
+import com.company.model.Command;
+import com.company.model.Order;
+import com.company.model.Side;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Dashboard whose changes are written to a Journal before they are applied, so that they survive a restart.
+ *
+ * When it is created, every command already in the journal is replayed into the dashboard, which must be empty.
+ * Afterwards, every change must go through this class, while the dashboard itself can be read as usual.
+ *
+ * With a SnapshotStore, the dashboard is restored from the newest snapshot instead, and only the commands
+ * journaled after it are replayed. Snapshots should then be taken regularly, so that the tail stays short.
+ *
+ * @see Journal
+ * @see SnapshotStore
+ */
+public class JournaledDashboard implements AutoCloseable {
+
+    private final Dashboard dashboard;
+    private final Journal journal;
+    /**
+     * Snapshots of the dashboard, or null if it is only rebuilt from the journal.
+     */
+    private final SnapshotStore snapshots;
+
+    /**
+     * @param dashboard empty dashboard to rebuild from the journal
+     * @param journal journal of the dashboard
+     * @throws IOException if the journal cannot be read.
+     */
+    public JournaledDashboard(final Dashboard dashboard, final Journal journal) throws IOException {
+        this(dashboard, journal, null);
+    }
+
+    /**
+     * @param dashboard empty dashboard to rebuild from the newest snapshot and the journal
+     * @param journal journal of the dashboard
+     * @param snapshots snapshots of the dashboard, or null if it is only rebuilt from the journal
+     * @throws IOException if the snapshot or the journal cannot be read.
+     */
+    public JournaledDashboard(final Dashboard dashboard, final Journal journal, final SnapshotStore snapshots)
+            throws IOException {
+        this.dashboard = requireNonNull(dashboard);
+        this.journal = requireNonNull(journal);
+        this.snapshots = snapshots;
+        journal.replay(dashboard, snapshots == null ? 0 : snapshots.restore(dashboard));
+    }
+
+    /**
+     * @return the dashboard, to be read but not changed directly.
+     */
+    public Dashboard getDashboard() {
+        return dashboard;
+    }
+
+    /**
+     * Adds an order object to the dashboard.
+     *
+     * @param  order  The order object to be added to the dashboard.
+     * @see Dashboard#addOrder(Order)
+     */
+    public void addOrder(final Order order) {
+        requireNonNull(order);
+        journal.appendAdd(order);
+        dashboard.addOrder(order);
+    }
+
+    /**
+     * @see Dashboard#applyBatch(List)
+     */
+    public boolean[] applyBatch(final List<Command> commands) {
+        for (Command command : commands) {
+            switch (command.getType()) {
+                case ADD:
+                    journal.appendAdd(command.getOrder());
+                    break;
+                case REMOVE_ORDER:
+                    journal.appendRemoveOrder(command.getOrder());
+                    break;
+                case REMOVE_BY_ID:
+                    journal.appendRemoveById(command.getId());
+                    break;
+                default:
+                    journal.appendRemoveByParameters(command.getSide(), command.getUserId(), command.getPrice(),
+                            command.getQuantity());
+            }
+        }
+        return dashboard.applyBatch(commands);
+    }
+
+    /**
+     * @see Dashboard#removeOrder(String)
+     */
+    public boolean removeOrder(String id) {
+        journal.appendRemoveById(id);
+        return dashboard.removeOrder(id);
+    }
+
+    /**
+     * @see Dashboard#removeOrder(long)
+     */
+    public boolean removeOrder(long id) {
+        journal.appendRemoveByNumericId(id);
+        return dashboard.removeOrder(id);
+    }
+
+    /**
+     * @see Dashboard#removeOrder(Side, String, double, double)
+     */
+    public boolean removeOrder(Side side, String userId, double price, double quantity) {
+        journal.appendRemoveByParameters(side, userId, price, quantity);
+        return dashboard.removeOrder(side, userId, price, quantity);
+    }
+
+    /**
+     * @see Dashboard#removeOrder(Order)
+     */
+    public boolean removeOrder(Order order) {
+        journal.appendRemoveOrder(order);
+        return dashboard.removeOrder(order);
+    }
+
+    /**
+     * @see Dashboard#cancelAllForUser(String)
+     */
+    public int cancelAllForUser(String userId) {
+        journal.appendCancelAllForUser(userId);
+        return dashboard.cancelAllForUser(userId);
+    }
+
+    /**
+     * Takes a snapshot of the dashboard, up to date with every command journaled so far. It is built in the
+     * background from the previous snapshot and the files of the journal, without reading the dashboard.
+     *
+     * @return completed with the snapshot file once it has been written
+     * @throws IllegalStateException if the dashboard was created without a SnapshotStore.
+     * @see SnapshotStore#take(Dashboard, Journal)
+     */
+    public CompletableFuture<Path> snapshot() {
+        if (snapshots == null) {
+            throw new IllegalStateException("The dashboard has no snapshot store");
+        }
+        return snapshots.take(dashboard, journal);
+    }
+
+    /**
+     * Forces the journal to disk and closes it.
+     */
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+}
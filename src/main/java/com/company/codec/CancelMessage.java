@@ -0,0 +1,89 @@
+package com.company.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A request to cancel an order by id.
+ *
+ * <pre>
+ *     header
+ *     numericId  int64, -1 if the order has a string id
+ *     id         uint16 length + UTF-8, empty if the order has a numeric id
+ * </pre>
+ */
+public final class CancelMessage extends Flyweight {
+
+    public static final int TEMPLATE_ID = 2;
+    static final int BLOCK_LENGTH = 8;
+
+    private static final int NUMERIC_ID = 0;
+
+    private final MessageHeader header = new MessageHeader();
+    private int blockLength;
+
+    /**
+     * Wraps an encoded message, whose fields can then be read.
+     *
+     * @param offset offset of the header of the message
+     * @throws IllegalArgumentException if it is not a cancel message.
+     */
+    public CancelMessage wrap(final ByteBuffer buffer, int offset) {
+        header.wrap(buffer, offset).check(TEMPLATE_ID, BLOCK_LENGTH);
+        blockLength = header.getBlockLength();
+        wrapBuffer(buffer, offset + MessageHeader.ENCODED_LENGTH);
+        return this;
+    }
+
+    /**
+     * @return the length of the message, header included
+     */
+    public int encode(final ByteBuffer buffer, int offset, long numericId) {
+        return encode(buffer, offset, numericId, "");
+    }
+
+    /**
+     * @return the length of the message, header included
+     */
+    public int encode(final ByteBuffer buffer, int offset, final CharSequence id) {
+        return encode(buffer, offset, -1, id);
+    }
+
+    private int encode(final ByteBuffer buffer, int offset, long numericId, final CharSequence id) {
+        header.wrap(buffer, offset).encode(BLOCK_LENGTH, TEMPLATE_ID);
+        blockLength = BLOCK_LENGTH;
+        wrapBuffer(buffer, offset + MessageHeader.ENCODED_LENGTH);
+        this.buffer.putLong(this.offset + NUMERIC_ID, numericId);
+        putString(this.offset + BLOCK_LENGTH, id);
+        return getEncodedLength();
+    }
+
+    public boolean hasNumericId() {
+        return getNumericId() >= 0;
+    }
+
+    public long getNumericId() {
+        return buffer.getLong(offset + NUMERIC_ID);
+    }
+
+    /**
+     * @return the id of the order. It allocates the string.
+     */
+    public String getId() {
+        return hasNumericId() ? Long.toString(getNumericId()) : getString(offset + blockLength);
+    }
+
+    /**
+     * @return the numeric id of the order, including a string id that is a decimal number, or -1 if the id is not
+     * numeric. It does not allocate.
+     */
+    long parseNumericId() {
+        return hasNumericId() ? getNumericId() : parseNumericString(offset + blockLength);
+    }
+
+    /**
+     * @return the length of the message, header included
+     */
+    public int getEncodedLength() {
+        return MessageHeader.ENCODED_LENGTH + blockLength + 2 + stringLength(offset + blockLength);
+    }
+}
@@ -0,0 +1,106 @@
+package com.company.codec;
+
+import com.company.Dashboard;
+import com.company.model.Order;
+import com.company.model.OrderPool;
+
+import java.nio.ByteBuffer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Applies inbound order and cancel messages straight onto a Dashboard, reading their fields in place.
+ *
+ * Cancels do not create anything either: numeric ids, including string ids that are decimal numbers, are parsed
+ * from the message and looked up as numbers. Only a string id that is a number but not the id of a numeric order
+ * is then looked up as a string, as an order may have been added with it. New orders with a numeric id are acquired from the OrderPool of the dashboard,
+ * if there is one, and their user id usually comes from a cache, so a steady flow of them does not allocate once
+ * the pool has warmed up. Only orders with UUIDs, or without a pool, are created on the heap.
+ *
+ * It is not thread safe, it must be used by the thread that updates the dashboard.
+ */
+public final class CommandApplier {
+
+    private static final int USER_ID_CACHE_SIZE = 4096;
+
+    private final Dashboard dashboard;
+    private final OrderPool orderPool;
+    private final MessageHeader header = new MessageHeader();
+    private final OrderMessage orderMessage = new OrderMessage();
+    private final CancelMessage cancelMessage = new CancelMessage();
+    private final UserIdCache userIds = new UserIdCache(USER_ID_CACHE_SIZE);
+    private int limit;
+
+    /**
+     * @param dashboard dashboard to apply the messages to
+     * @param orderPool pool the dashboard releases its orders to, or null if its orders are not pooled
+     */
+    public CommandApplier(final Dashboard dashboard, final OrderPool orderPool) {
+        this.dashboard = requireNonNull(dashboard);
+        this.orderPool = orderPool;
+    }
+
+    /**
+     * Applies the message at an offset of a buffer.
+     *
+     * @param offset offset of the header of the message
+     * @return true if the order was added or removed, false if it was rejected or not found.
+     * @throws IllegalArgumentException if the message is neither an order nor a cancel.
+     * @see #getLimit()
+     */
+    public boolean apply(final ByteBuffer buffer, int offset) {
+        switch (header.wrap(buffer, offset).getTemplateId()) {
+            case OrderMessage.TEMPLATE_ID:
+                orderMessage.wrap(buffer, offset);
+                limit = offset + orderMessage.getEncodedLength();
+                return add(orderMessage);
+            case CancelMessage.TEMPLATE_ID:
+                cancelMessage.wrap(buffer, offset);
+                limit = offset + cancelMessage.getEncodedLength();
+                return cancel(cancelMessage);
+            default:
+                throw new IllegalArgumentException("Message " + header.getTemplateId() + " is not a command");
+        }
+    }
+
+    /**
+     * @return the offset right after the last message applied, where the next message of the buffer starts.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    private boolean add(OrderMessage message) {
+        int userIdIndex = message.userIdIndex();
+        String userId = userIds.get(message.buffer, userIdIndex + 2, message.stringLength(userIdIndex));
+        Order order;
+        if (message.hasNumericId() && orderPool != null) {
+            order = orderPool.acquire(message.getNumericId(), message.getSide(), userId, message.getQuantityLots(),
+                    message.getPriceTicks());
+        } else if (message.hasNumericId()) {
+            order = Order.inTicks(message.getNumericId(), message.getSide(), userId, message.getQuantityLots(),
+                    message.getPriceTicks(), dashboard.getIncrements());
+        } else {
+            order = Order.inTicks(message.getId(), message.getSide(), userId, message.getQuantityLots(),
+                    message.getPriceTicks(), dashboard.getIncrements());
+        }
+        try {
+            dashboard.addOrder(order);
+            return true;
+        } catch (IllegalArgumentException e) {
+            if (orderPool != null) {
+                orderPool.release(order);
+            }
+            return false;
+        }
+    }
+
+    private boolean cancel(CancelMessage message) {
+        long numericId = message.parseNumericId();
+        if (numericId >= 0 && dashboard.removeOrder(numericId)) {
+            return true;
+        }
+        //A string id that reads as a number, such as "123", may be the id of an order added as a string.
+        return !message.hasNumericId() && dashboard.removeOrder(message.getId());
+    }
+}
@@ -0,0 +1,173 @@
+package com.company.codec;
+
+import com.company.model.Increments;
+import com.company.model.Side;
+import com.company.order.book.DepthSnapshot;
+import com.company.order.book.PriceVolumePair;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The price levels of one side of a dashboard, best price first.
+ *
+ * <pre>
+ *     header
+ *     sequence     int64
+ *     tickSize     double
+ *     lotSize      double
+ *     side         uint8, 0 for BUY and 1 for SELL
+ *     levels       group of: priceTicks int64, volumeLots int64
+ * </pre>
+ *
+ * The group starts with the length of each entry, as a uint16, and the number of entries, as an int32.
+ */
+public final class DepthMessage extends Flyweight {
+
+    public static final int TEMPLATE_ID = 3;
+    static final int BLOCK_LENGTH = 25;
+    static final int LEVEL_LENGTH = 16;
+
+    private static final int SEQUENCE = 0;
+    private static final int TICK_SIZE = 8;
+    private static final int LOT_SIZE = 16;
+    private static final int SIDE = 24;
+    private static final int GROUP_HEADER_LENGTH = 2 + 4;
+
+    private final MessageHeader header = new MessageHeader();
+    private int blockLength;
+    private int levelLength;
+
+    /**
+     * Wraps an encoded message, whose fields can then be read.
+     *
+     * @param offset offset of the header of the message
+     * @throws IllegalArgumentException if it is not a depth message.
+     */
+    public DepthMessage wrap(final ByteBuffer buffer, int offset) {
+        header.wrap(buffer, offset).check(TEMPLATE_ID, BLOCK_LENGTH);
+        blockLength = header.getBlockLength();
+        wrapBuffer(buffer, offset + MessageHeader.ENCODED_LENGTH);
+        levelLength = this.buffer.getShort(this.offset + blockLength) & 0xFFFF;
+        if (levelLength < LEVEL_LENGTH) {
+            throw new IllegalArgumentException("Depth levels of " + levelLength + " bytes, expected at least "
+                    + LEVEL_LENGTH);
+        }
+        return this;
+    }
+
+    /**
+     * Encodes a snapshot of one side.
+     *
+     * @param increments increments of the dashboard the snapshot was taken from
+     * @return the length of the message, header included
+     */
+    public int encode(final ByteBuffer buffer, int offset, final DepthSnapshot snapshot, final Increments increments) {
+        List<PriceVolumePair> levels = snapshot.getPriceVolumePairs();
+        encodeFixedFields(buffer, offset, snapshot.getSide(), snapshot.getSequence(), increments, levels.size());
+        for (int i = 0; i < levels.size(); i++) {
+            putLevel(i, levels.get(i).getPriceTicks(), levels.get(i).getVolumeLots());
+        }
+        return getEncodedLength();
+    }
+
+    /**
+     * Encodes levels copied into arrays, e.g. by Dashboard.getDepth, without going through any other object.
+     *
+     * @param count number of levels in the arrays
+     * @return the length of the message, header included
+     */
+    public int encode(final ByteBuffer buffer, int offset, final Side side, long sequence, final Increments increments,
+                      final long[] priceTicks, final long[] volumeLots, int count) {
+        encodeFixedFields(buffer, offset, side, sequence, increments, count);
+        for (int i = 0; i < count; i++) {
+            putLevel(i, priceTicks[i], volumeLots[i]);
+        }
+        return getEncodedLength();
+    }
+
+    private void encodeFixedFields(ByteBuffer buffer, int offset, Side side, long sequence, Increments increments,
+                                   int count) {
+        header.wrap(buffer, offset).encode(BLOCK_LENGTH, TEMPLATE_ID);
+        blockLength = BLOCK_LENGTH;
+        levelLength = LEVEL_LENGTH;
+        wrapBuffer(buffer, offset + MessageHeader.ENCODED_LENGTH);
+        this.buffer.putLong(this.offset + SEQUENCE, sequence)
+                .putDouble(this.offset + TICK_SIZE, increments.getTickSize())
+                .putDouble(this.offset + LOT_SIZE, increments.getLotSize())
+                .put(this.offset + SIDE, side == Side.BUY ? (byte) 0 : (byte) 1)
+                .putShort(this.offset + blockLength, (short) LEVEL_LENGTH)
+                .putInt(this.offset + blockLength + 2, count);
+    }
+
+    private void putLevel(int index, long priceTicks, long volumeLots) {
+        int level = levelIndex(index);
+        buffer.putLong(level, priceTicks).putLong(level + 8, volumeLots);
+    }
+
+    private int levelIndex(int index) {
+        return offset + blockLength + GROUP_HEADER_LENGTH + index * levelLength;
+    }
+
+    public long getSequence() {
+        return buffer.getLong(offset + SEQUENCE);
+    }
+
+    public double getTickSize() {
+        return buffer.getDouble(offset + TICK_SIZE);
+    }
+
+    public double getLotSize() {
+        return buffer.getDouble(offset + LOT_SIZE);
+    }
+
+    public Side getSide() {
+        return buffer.get(offset + SIDE) == 0 ? Side.BUY : Side.SELL;
+    }
+
+    public int getLevelCount() {
+        return buffer.getInt(offset + blockLength + 2);
+    }
+
+    /**
+     * @param index rank of the level, 0 for the best price
+     */
+    public long getPriceTicks(int index) {
+        return buffer.getLong(levelIndex(index));
+    }
+
+    /**
+     * @param index rank of the level, 0 for the best price
+     */
+    public long getVolumeLots(int index) {
+        return buffer.getLong(levelIndex(index) + 8);
+    }
+
+    /**
+     * Decodes the message into a DepthSnapshot, which allocates the snapshot and every level.
+     */
+    public DepthSnapshot toSnapshot() {
+        Increments increments = new Increments(getTickSize(), getLotSize());
+        List<PriceVolumePair> levels = new ArrayList<>(getLevelCount());
+        for (int i = 0; i < getLevelCount(); i++) {
+            levels.add(new PriceVolumePair(getPriceTicks(i), getVolumeLots(i), increments));
+        }
+        return new DepthSnapshot(getSide(), getSequence(), levels);
+    }
+
+    /**
+     * @param levelCount number of levels of a message
+     * @return the length of the message, header included
+     */
+    public static int encodedLength(int levelCount) {
+        return MessageHeader.ENCODED_LENGTH + BLOCK_LENGTH + GROUP_HEADER_LENGTH + levelCount * LEVEL_LENGTH;
+    }
+
+    /**
+     * @return the length of the message, header included
+     */
+    public int getEncodedLength() {
+        return MessageHeader.ENCODED_LENGTH + blockLength + GROUP_HEADER_LENGTH + getLevelCount() * levelLength;
+    }
+}
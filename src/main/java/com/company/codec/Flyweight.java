@@ -0,0 +1,116 @@
+package com.company.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Base of the message flyweights. A flyweight does not hold any message itself: it is wrapped around a buffer at
+ * the offset of a message and reads and writes its fields in place, so one instance can go through any number of
+ * messages without allocating.
+ *
+ * Fields are little-endian whatever the order of the buffer, and are accessed with absolute gets and puts, so the
+ * position of the buffer is never changed.
+ */
+abstract class Flyweight {
+
+    private static final int MAX_STRING_LENGTH = 0xFFFF;
+
+    private ByteBuffer source;
+    /**
+     * Little-endian view of the source buffer, only created when a different big-endian buffer is wrapped. Buffers
+     * that are already little-endian are used as they are, so switching between them does not allocate.
+     */
+    ByteBuffer buffer;
+    int offset;
+
+    void wrapBuffer(final ByteBuffer buffer, int offset) {
+        if (buffer != source) {
+            source = buffer;
+            this.buffer = buffer.order() == ByteOrder.LITTLE_ENDIAN
+                    ? buffer
+                    : buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        //The source may have been flipped or cleared since it was last wrapped.
+        this.buffer.limit(buffer.limit());
+        this.offset = offset;
+    }
+
+    /**
+     * Writes a string as its length in bytes followed by its UTF-8 encoding, without creating a byte array.
+     *
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the encoding is longer than 65535 bytes.
+     */
+    final int putString(int index, CharSequence value) {
+        int position = index + 2;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put(position++, (byte) c);
+            } else if (c < 0x800) {
+                buffer.put(position++, (byte) (0xC0 | c >> 6));
+                buffer.put(position++, (byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put(position++, (byte) (0xF0 | codePoint >> 18));
+                buffer.put(position++, (byte) (0x80 | codePoint >> 12 & 0x3F));
+                buffer.put(position++, (byte) (0x80 | codePoint >> 6 & 0x3F));
+                buffer.put(position++, (byte) (0x80 | codePoint & 0x3F));
+            } else {
+                buffer.put(position++, (byte) (0xE0 | c >> 12));
+                buffer.put(position++, (byte) (0x80 | c >> 6 & 0x3F));
+                buffer.put(position++, (byte) (0x80 | c & 0x3F));
+            }
+        }
+        int length = position - index - 2;
+        if (length > MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException("Strings of more than " + MAX_STRING_LENGTH
+                    + " bytes cannot be encoded");
+        }
+        buffer.putShort(index, (short) length);
+        return 2 + length;
+    }
+
+    /**
+     * @return the length in bytes of the string at an index, not counting its own length.
+     */
+    final int stringLength(int index) {
+        return buffer.getShort(index) & 0xFFFF;
+    }
+
+    /**
+     * Decodes the string at an index. Unlike the other fields, it allocates the string.
+     */
+    final String getString(int index) {
+        byte[] bytes = new byte[stringLength(index)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(index + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the value of the string at an index if it is a decimal number that fits in a long, written as
+     * Long.toString writes it, or -1 otherwise. With leading zeros it is another id, as OrderIndex has it.
+     */
+    final long parseNumericString(int index) {
+        int length = stringLength(index);
+        if (length == 0 || length > 19) {
+            return -1;
+        }
+        if (length > 1 && buffer.get(index + 2) == '0') {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = buffer.get(index + 2 + i);
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value < 0 ? -1 : value;
+    }
+}
@@ -0,0 +1,63 @@
+package com.company.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Header in front of every message: the length of its fixed block, which message it is, and the schema and version
+ * it was encoded with. A decoder that meets a message of a later version with a longer block can still read the
+ * fields it knows, and skips the rest using the block length.
+ */
+public final class MessageHeader extends Flyweight {
+
+    public static final int ENCODED_LENGTH = 8;
+    public static final int SCHEMA_ID = 0x5342;
+    public static final int SCHEMA_VERSION = 1;
+
+    private static final int BLOCK_LENGTH = 0;
+    private static final int TEMPLATE_ID = 2;
+    private static final int SCHEMA = 4;
+    private static final int VERSION = 6;
+
+    public MessageHeader wrap(final ByteBuffer buffer, int offset) {
+        wrapBuffer(buffer, offset);
+        return this;
+    }
+
+    void encode(int blockLength, int templateId) {
+        buffer.putShort(offset + BLOCK_LENGTH, (short) blockLength)
+                .putShort(offset + TEMPLATE_ID, (short) templateId)
+                .putShort(offset + SCHEMA, (short) SCHEMA_ID)
+                .putShort(offset + VERSION, (short) SCHEMA_VERSION);
+    }
+
+    public int getBlockLength() {
+        return buffer.getShort(offset + BLOCK_LENGTH) & 0xFFFF;
+    }
+
+    public int getTemplateId() {
+        return buffer.getShort(offset + TEMPLATE_ID) & 0xFFFF;
+    }
+
+    public int getSchemaId() {
+        return buffer.getShort(offset + SCHEMA) & 0xFFFF;
+    }
+
+    public int getVersion() {
+        return buffer.getShort(offset + VERSION) & 0xFFFF;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the message is not of the given template of this schema, or if its block
+     * is shorter than the fixed fields of that template.
+     */
+    void check(int templateId, int minBlockLength) {
+        if (getSchemaId() != SCHEMA_ID || getTemplateId() != templateId) {
+            throw new IllegalArgumentException("Expected message " + templateId + " of schema " + SCHEMA_ID
+                    + " but found message " + getTemplateId() + " of schema " + getSchemaId());
+        }
+        if (getBlockLength() < minBlockLength) {
+            throw new IllegalArgumentException("Message " + templateId + " has a block of " + getBlockLength()
+                    + " bytes, expected at least " + minBlockLength);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.company.codec;
+
+import com.company.model.Order;
+import com.company.model.Side;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An order, sent downstream or received as a new order to add.
+ *
+ * <pre>
+ *     header
+ *     numericId     int64, -1 if the order has a string id
+ *     priceTicks    int64
+ *     quantityLots  int64
+ *     side          uint8, 0 for BUY and 1 for SELL
+ *     id            uint16 length + UTF-8, empty if the order has a numeric id
+ *     userId        uint16 length + UTF-8
+ * </pre>
+ */
+public final class OrderMessage extends Flyweight {
+
+    public static final int TEMPLATE_ID = 1;
+    static final int BLOCK_LENGTH = 25;
+    /**
+     * Length of an order with the longest ids that can be encoded.
+     */
+    public static final int MAX_ENCODED_LENGTH = MessageHeader.ENCODED_LENGTH + BLOCK_LENGTH + 2 * (2 + 0xFFFF);
+
+    private static final int NUMERIC_ID = 0;
+    private static final int PRICE_TICKS = 8;
+    private static final int QUANTITY_LOTS = 16;
+    private static final int SIDE = 24;
+
+    private final MessageHeader header = new MessageHeader();
+    private int blockLength;
+
+    /**
+     * Wraps an encoded message, whose fields can then be read.
+     *
+     * @param offset offset of the header of the message
+     * @throws IllegalArgumentException if it is not an order message.
+     */
+    public OrderMessage wrap(final ByteBuffer buffer, int offset) {
+        header.wrap(buffer, offset).check(TEMPLATE_ID, BLOCK_LENGTH);
+        blockLength = header.getBlockLength();
+        wrapBuffer(buffer, offset + MessageHeader.ENCODED_LENGTH);
+        return this;
+    }
+
+    /**
+     * Encodes an order at an offset of a buffer.
+     *
+     * @return the length of the message, header included
+     */
+    public int encode(final ByteBuffer buffer, int offset, final Order order) {
+        return encode(buffer, offset, order.getNumericId(), order.hasNumericId() ? "" : order.getId(),
+                order.getSide(), order.getUserId(), order.getQuantityLots(), order.getPriceTicks());
+    }
+
+    /**
+     * Encodes an order from its fields, e.g. in a client that does not keep Order objects.
+     *
+     * @param numericId numeric id of the order, or -1 if it has a string id
+     * @param id string id of the order, or an empty string if it has a numeric id
+     * @return the length of the message, header included
+     */
+    public int encode(final ByteBuffer buffer, int offset, long numericId, final CharSequence id, final Side side,
+                      final CharSequence userId, long quantityLots, long priceTicks) {
+        header.wrap(buffer, offset).encode(BLOCK_LENGTH, TEMPLATE_ID);
+        blockLength = BLOCK_LENGTH;
+        wrapBuffer(buffer, offset + MessageHeader.ENCODED_LENGTH);
+        this.buffer.putLong(this.offset + NUMERIC_ID, numericId)
+                .putLong(this.offset + PRICE_TICKS, priceTicks)
+                .putLong(this.offset + QUANTITY_LOTS, quantityLots)
+                .put(this.offset + SIDE, side == Side.BUY ? (byte) 0 : (byte) 1);
+        int idLength = putString(this.offset + BLOCK_LENGTH, id);
+        putString(this.offset + BLOCK_LENGTH + idLength, userId);
+        return getEncodedLength();
+    }
+
+    public boolean hasNumericId() {
+        return getNumericId() >= 0;
+    }
+
+    public long getNumericId() {
+        return buffer.getLong(offset + NUMERIC_ID);
+    }
+
+    public long getPriceTicks() {
+        return buffer.getLong(offset + PRICE_TICKS);
+    }
+
+    public long getQuantityLots() {
+        return buffer.getLong(offset + QUANTITY_LOTS);
+    }
+
+    public Side getSide() {
+        return buffer.get(offset + SIDE) == 0 ? Side.BUY : Side.SELL;
+    }
+
+    int idIndex() {
+        return offset + blockLength;
+    }
+
+    int userIdIndex() {
+        return idIndex() + 2 + stringLength(idIndex());
+    }
+
+    /**
+     * @return the id of the order. It allocates the string.
+     */
+    public String getId() {
+        return hasNumericId() ? Long.toString(getNumericId()) : getString(idIndex());
+    }
+
+    /**
+     * @return the user id of the order. It allocates the string.
+     */
+    public String getUserId() {
+        return getString(userIdIndex());
+    }
+
+    /**
+     * @return the length of the message, header included
+     */
+    public int getEncodedLength() {
+        return MessageHeader.ENCODED_LENGTH + userIdIndex() + 2 + stringLength(userIdIndex()) - offset;
+    }
+}
@@ -0,0 +1,54 @@
+package com.company.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The result of a request, sent back in the order the requests were received.
+ *
+ * <pre>
+ *     header
+ *     request   int64, number of the request on its connection, starting from 0
+ *     accepted  uint8, 1 if the order was added or removed, 0 if it was rejected or not found
+ * </pre>
+ */
+public final class ResultMessage extends Flyweight {
+
+    public static final int TEMPLATE_ID = 4;
+    static final int BLOCK_LENGTH = 9;
+    public static final int ENCODED_LENGTH = MessageHeader.ENCODED_LENGTH + BLOCK_LENGTH;
+
+    private static final int REQUEST = 0;
+    private static final int ACCEPTED = 8;
+
+    private final MessageHeader header = new MessageHeader();
+
+    /**
+     * Wraps an encoded message, whose fields can then be read.
+     *
+     * @param offset offset of the header of the message
+     * @throws IllegalArgumentException if it is not a result message.
+     */
+    public ResultMessage wrap(final ByteBuffer buffer, int offset) {
+        header.wrap(buffer, offset).check(TEMPLATE_ID, BLOCK_LENGTH);
+        wrapBuffer(buffer, offset + MessageHeader.ENCODED_LENGTH);
+        return this;
+    }
+
+    /**
+     * @return the length of the message, header included
+     */
+    public int encode(final ByteBuffer buffer, int offset, long request, boolean accepted) {
+        header.wrap(buffer, offset).encode(BLOCK_LENGTH, TEMPLATE_ID);
+        wrapBuffer(buffer, offset + MessageHeader.ENCODED_LENGTH);
+        this.buffer.putLong(this.offset + REQUEST, request).put(this.offset + ACCEPTED, accepted ? (byte) 1 : 0);
+        return ENCODED_LENGTH;
+    }
+
+    public long getRequest() {
+        return buffer.getLong(offset + REQUEST);
+    }
+
+    public boolean isAccepted() {
+        return buffer.get(offset + ACCEPTED) == 1;
+    }
+}
@@ -0,0 +1,22 @@
+package com.company.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A request to receive the depth of both sides, as DepthMessages, from now on. It has no fields.
+ */
+public final class SubscribeMessage {
+
+    public static final int TEMPLATE_ID = 5;
+    public static final int ENCODED_LENGTH = MessageHeader.ENCODED_LENGTH;
+
+    private final MessageHeader header = new MessageHeader();
+
+    /**
+     * @return the length of the message, header included
+     */
+    public int encode(final ByteBuffer buffer, int offset) {
+        header.wrap(buffer, offset).encode(0, TEMPLATE_ID);
+        return ENCODED_LENGTH;
+    }
+}
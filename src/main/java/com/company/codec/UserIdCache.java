@@ -0,0 +1,61 @@
+package com.company.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Direct-mapped cache of the user ids decoded from messages, looked up by their encoded bytes. A busy user sends
+ * many orders, so most of them find their user id here instead of decoding a new string.
+ */
+final class UserIdCache {
+
+    private final String[] userIds;
+    private final byte[][] encodings;
+
+    /**
+     * @param size number of user ids kept, rounded up to a power of two
+     */
+    UserIdCache(int size) {
+        int capacity = 1;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+        userIds = new String[capacity];
+        encodings = new byte[capacity][];
+    }
+
+    /**
+     * @param index index of the first byte of the encoded user id
+     * @param length length of the encoded user id, in bytes
+     */
+    String get(ByteBuffer buffer, int index, int length) {
+        int hash = 0x811C9DC5;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ buffer.get(index + i)) * 0x01000193;
+        }
+        int slot = (hash ^ hash >>> 16) & (userIds.length - 1);
+        byte[] encoding = encodings[slot];
+        if (encoding != null && matches(encoding, buffer, index, length)) {
+            return userIds[slot];
+        }
+        encoding = new byte[length];
+        for (int i = 0; i < length; i++) {
+            encoding[i] = buffer.get(index + i);
+        }
+        encodings[slot] = encoding;
+        userIds[slot] = new String(encoding, StandardCharsets.UTF_8);
+        return userIds[slot];
+    }
+
+    private static boolean matches(byte[] encoding, ByteBuffer buffer, int index, int length) {
+        if (encoding.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (encoding[i] != buffer.get(index + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
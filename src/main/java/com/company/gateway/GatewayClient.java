@@ -0,0 +1,182 @@
+package com.company.gateway;
+
+import com.company.codec.CancelMessage;
+import com.company.codec.DepthMessage;
+import com.company.codec.MessageHeader;
+import com.company.codec.OrderMessage;
+import com.company.codec.ResultMessage;
+import com.company.codec.SubscribeMessage;
+import com.company.model.Order;
+import com.company.model.Side;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Blocking client of a GatewayServer.
+ *
+ * Requests are buffered and only sent by flush, or when the buffer is full, so many of them can be pipelined in
+ * one write. Results and depth are read by poll, which hands them to a Listener. Request numbers start from 0 and
+ * follow the order the requests were sent in.
+ *
+ * A client is not thread safe.
+ *
+ * @see GatewayServer
+ */
+public class GatewayClient implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_REQUEST_LENGTH = GatewayServer.FRAME_HEADER_LENGTH + OrderMessage.MAX_ENCODED_LENGTH;
+
+    /**
+     * Receives what the server sends back.
+     */
+    public interface Listener {
+
+        /**
+         * @param request number of the request
+         * @param accepted true if the order was added or removed, false if it was rejected or not found
+         */
+        void onResult(long request, boolean accepted);
+
+        /**
+         * @param depth depth of one side, only valid until the method returns
+         */
+        void onDepth(DepthMessage depth);
+    }
+
+    private final SocketChannel channel;
+    private final ByteBuffer outbound;
+    private final ByteBuffer inbound;
+    private final OrderMessage orderMessage = new OrderMessage();
+    private final CancelMessage cancelMessage = new CancelMessage();
+    private final SubscribeMessage subscribeMessage = new SubscribeMessage();
+    private final MessageHeader header = new MessageHeader();
+    private final ResultMessage result = new ResultMessage();
+    private final DepthMessage depth = new DepthMessage();
+    private long requests;
+
+    public GatewayClient(final InetSocketAddress address) throws IOException {
+        channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        outbound = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, MAX_REQUEST_LENGTH))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        inbound = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @return the number of the request
+     */
+    public long sendOrder(final Order order) throws IOException {
+        makeRoom();
+        return endFrame(orderMessage.encode(outbound, outbound.position() + GatewayServer.FRAME_HEADER_LENGTH,
+                order));
+    }
+
+    /**
+     * Sends an order with a numeric id, without creating an Order.
+     *
+     * @return the number of the request
+     */
+    public long sendOrder(long id, final Side side, final CharSequence userId, long quantityLots, long priceTicks)
+            throws IOException {
+        makeRoom();
+        return endFrame(orderMessage.encode(outbound, outbound.position() + GatewayServer.FRAME_HEADER_LENGTH, id,
+                "", side, userId, quantityLots, priceTicks));
+    }
+
+    /**
+     * @return the number of the request
+     */
+    public long sendCancel(long id) throws IOException {
+        makeRoom();
+        return endFrame(cancelMessage.encode(outbound, outbound.position() + GatewayServer.FRAME_HEADER_LENGTH, id));
+    }
+
+    /**
+     * @return the number of the request
+     */
+    public long sendCancel(final String id) throws IOException {
+        makeRoom();
+        return endFrame(cancelMessage.encode(outbound, outbound.position() + GatewayServer.FRAME_HEADER_LENGTH, id));
+    }
+
+    /**
+     * Subscribes to the depth of both sides, which is then passed to Listener.onDepth.
+     *
+     * @return the number of the request
+     */
+    public long subscribe() throws IOException {
+        makeRoom();
+        return endFrame(subscribeMessage.encode(outbound,
+                outbound.position() + GatewayServer.FRAME_HEADER_LENGTH));
+    }
+
+    private void makeRoom() throws IOException {
+        if (outbound.remaining() < MAX_REQUEST_LENGTH) {
+            flush();
+        }
+    }
+
+    private long endFrame(int messageLength) {
+        outbound.putInt(outbound.position(), messageLength);
+        outbound.position(outbound.position() + GatewayServer.FRAME_HEADER_LENGTH + messageLength);
+        return requests++;
+    }
+
+    /**
+     * Sends the requests buffered so far.
+     */
+    public void flush() throws IOException {
+        outbound.flip();
+        while (outbound.hasRemaining()) {
+            channel.write(outbound);
+        }
+        outbound.clear();
+    }
+
+    /**
+     * Waits for something from the server and passes everything received to a listener.
+     *
+     * @param listener receives the results and the depth
+     * @return the number of messages received
+     * @throws EOFException if the server closed the connection.
+     */
+    public int poll(final Listener listener) throws IOException {
+        int messages = 0;
+        while (messages == 0) {
+            if (channel.read(inbound) < 0) {
+                throw new EOFException("The server closed the connection");
+            }
+            inbound.flip();
+            while (inbound.remaining() >= GatewayServer.FRAME_HEADER_LENGTH) {
+                int start = inbound.position();
+                int length = inbound.getInt(start);
+                if (inbound.remaining() < GatewayServer.FRAME_HEADER_LENGTH + length) {
+                    break;
+                }
+                int offset = start + GatewayServer.FRAME_HEADER_LENGTH;
+                if (header.wrap(inbound, offset).getTemplateId() == ResultMessage.TEMPLATE_ID) {
+                    result.wrap(inbound, offset);
+                    listener.onResult(result.getRequest(), result.isAccepted());
+                } else {
+                    listener.onDepth(depth.wrap(inbound, offset));
+                }
+                inbound.position(offset + length);
+                messages++;
+            }
+            inbound.compact();
+        }
+        return messages;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
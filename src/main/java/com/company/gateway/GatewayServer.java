@@ -0,0 +1,481 @@
+package com.company.gateway;
+
+import com.company.Dashboard;
+import com.company.codec.CommandApplier;
+import com.company.codec.DepthMessage;
+import com.company.codec.MessageHeader;
+import com.company.codec.ResultMessage;
+import com.company.codec.SubscribeMessage;
+import com.company.model.OrderPool;
+import com.company.model.Side;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * TCP server in front of a Dashboard, for clients in other processes.
+ *
+ * A single thread runs a selector over every connection and is the thread that updates the dashboard, so the
+ * dashboard needs no locking. Every frame is a 32-bit little-endian length followed by a message of the binary
+ * codec:
+ * <ul>
+ *     <li>OrderMessage and CancelMessage requests are applied to the dashboard with a CommandApplier.</li>
+ *     <li>SubscribeMessage requests start sending the depth of both sides to the connection.</li>
+ * </ul>
+ * Every request gets a ResultMessage back, in the order the requests were received, so clients can pipeline as
+ * many requests as they want without waiting for the results.
+ *
+ * Writes are batched: results and depth are appended to the outbound buffer of each connection while the frames
+ * read in one pass of the selector are handled, and every buffer is written once at the end of the pass. The
+ * depth of a side is sent at most once per pass, however many changes it went through, so subscribers get the
+ * latest depth instead of every change. A connection whose outbound buffer fills up because it does not read is
+ * closed.
+ *
+ * @see GatewayClient
+ */
+public class GatewayServer implements AutoCloseable {
+
+    public static final int FRAME_HEADER_LENGTH = 4;
+    public static final int DEFAULT_DEPTH_LEVELS = 10;
+
+    private static final int INBOUND_SIZE = 1 << 16;
+    private static final int OUTBOUND_SIZE = 1 << 16;
+    private static final int MAX_OUTBOUND_SIZE = 1 << 22;
+    private static final long MIN_ACCEPT_BACK_OFF_MILLIS = 10;
+    private static final long MAX_ACCEPT_BACK_OFF_MILLIS = 1000;
+
+    private final Dashboard dashboard;
+    private final CommandApplier applier;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final SelectionKey acceptKey;
+
+    private final MessageHeader header = new MessageHeader();
+    private final ResultMessage result = new ResultMessage();
+    private final DepthMessage depth = new DepthMessage();
+    private final long[] priceTicks;
+    private final long[] volumeLots;
+    /**
+     * Connections with something to write at the end of the pass, and connections that subscribed to the depth.
+     */
+    private final List<Connection> pending = new ArrayList<>();
+    private final List<Connection> subscribers = new ArrayList<>();
+    /**
+     * Version of each side when its depth was last sent to the subscribers.
+     */
+    private long bidsVersion = -1;
+    private long offersVersion = -1;
+    /**
+     * Set while accepting is paused after accept() failed, until acceptResumesAt (System.nanoTime).
+     */
+    private boolean acceptPaused;
+    private long acceptResumesAt;
+    private long acceptBackOffMillis = MIN_ACCEPT_BACK_OFF_MILLIS;
+
+    private Thread thread;
+    private volatile boolean running;
+
+    public GatewayServer(final Dashboard dashboard, final InetSocketAddress address) throws IOException {
+        this(dashboard, null, address, DEFAULT_DEPTH_LEVELS);
+    }
+
+    /**
+     * Binds the server, which only starts accepting connections once started.
+     *
+     * @param dashboard dashboard to update, which only the server thread must use once the server is started
+     * @param orderPool pool the dashboard releases its orders to, or null if its orders are not pooled
+     * @param address address to listen to, with port 0 to pick any free port
+     * @param depthLevels number of levels of each side sent to the subscribers
+     * @throws IOException if the address cannot be bound.
+     */
+    public GatewayServer(final Dashboard dashboard, final OrderPool orderPool, final InetSocketAddress address,
+                         int depthLevels) throws IOException {
+        if (depthLevels < 1) {
+            throw new IllegalArgumentException("Subscribers must get at least one level");
+        }
+        this.dashboard = requireNonNull(dashboard);
+        this.applier = new CommandApplier(dashboard, orderPool);
+        this.priceTicks = new long[depthLevels];
+        this.volumeLots = new long[depthLevels];
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(address);
+            serverChannel.configureBlocking(false);
+            this.acceptKey = serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the address the server listens to, with the actual port if port 0 was asked for.
+     */
+    public InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Starts the server thread.
+     *
+     * @return this server
+     * @throws IllegalStateException if the server has already been started.
+     */
+    public synchronized GatewayServer start() {
+        if (thread != null) {
+            throw new IllegalStateException("The server has already been started");
+        }
+        running = true;
+        thread = new Thread(this::run, "gateway-server");
+        thread.start();
+        return this;
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.markPending();
+                        }
+                    }
+                }
+                publishDepth();
+                for (Connection connection : pending) {
+                    connection.flush();
+                }
+                pending.clear();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("The gateway server stopped", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+        }
+    }
+
+    /**
+     * Waits for the selector, and for no longer than the end of a pause in accepting connections.
+     */
+    private void select() throws IOException {
+        if (!acceptPaused) {
+            selector.select();
+            return;
+        }
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(acceptResumesAt - System.nanoTime());
+        if (remainingMillis > 0) {
+            //Not select(0), which waits for ever.
+            selector.select(remainingMillis);
+        } else {
+            selector.selectNow();
+        }
+        if (System.nanoTime() - acceptResumesAt >= 0) {
+            acceptPaused = false;
+            acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+        }
+    }
+
+    /**
+     * Accepts a connection. A failure only costs the connection being accepted, never the ones already open.
+     */
+    private void accept() {
+        SocketChannel channel;
+        try {
+            channel = serverChannel.accept();
+        } catch (IOException e) {
+            //E.g. out of file descriptors, which closing connections gives back: stops accepting for a while,
+            //longer each time, as the pending connection would otherwise be selected again straight away.
+            acceptPaused = true;
+            acceptResumesAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acceptBackOffMillis);
+            acceptBackOffMillis = Math.min(acceptBackOffMillis * 2, MAX_ACCEPT_BACK_OFF_MILLIS);
+            acceptKey.interestOps(0);
+            return;
+        }
+        if (channel == null) {
+            return;
+        }
+        acceptBackOffMillis = MIN_ACCEPT_BACK_OFF_MILLIS;
+        try {
+            configure(channel);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new Connection(channel, key));
+        } catch (IOException e) {
+            //Most likely reset by the client already, and not worth serving.
+            try {
+                channel.close();
+            } catch (IOException closing) {
+                //Nothing left to do with it.
+            }
+        }
+    }
+
+    /**
+     * Sets up a connection that has just been accepted, before it is registered with the selector.
+     */
+    void configure(SocketChannel channel) throws IOException {
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    }
+
+    private void publishDepth() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        long bids = dashboard.getVersion(Side.BUY);
+        long offers = dashboard.getVersion(Side.SELL);
+        sendDepth(Side.BUY, bids, bids != bidsVersion);
+        sendDepth(Side.SELL, offers, offers != offersVersion);
+        bidsVersion = bids;
+        offersVersion = offers;
+        for (Connection subscriber : subscribers) {
+            subscriber.newSubscriber = false;
+        }
+    }
+
+    /**
+     * Sends the depth of a side to every subscriber if it changed, or else only to the subscribers that have not
+     * received anything yet.
+     *
+     * Subscribers are walked backwards: one that is too slow is closed by beginFrame, which removes it from the
+     * list, and only shifts the subscribers already visited.
+     */
+    private void sendDepth(Side side, long version, boolean changed) {
+        int count = -1;
+        for (int i = subscribers.size() - 1; i >= 0; i--) {
+            Connection subscriber = subscribers.get(i);
+            if (!changed && !subscriber.newSubscriber) {
+                continue;
+            }
+            if (count < 0) {
+                count = dashboard.getDepth(side, priceTicks, volumeLots);
+            }
+            ByteBuffer frame = subscriber.beginFrame(DepthMessage.encodedLength(count));
+            if (frame != null) {
+                subscriber.endFrame(depth.encode(frame, frame.position() + FRAME_HEADER_LENGTH, side, version,
+                        dashboard.getIncrements(), priceTicks, volumeLots, count));
+            }
+        }
+    }
+
+    private void closeQuietly(SelectionKey key) {
+        Object attachment = key.attachment();
+        if (attachment instanceof Connection) {
+            ((Connection) attachment).close();
+        } else {
+            key.cancel();
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                //Nothing left to do with it.
+            }
+        }
+    }
+
+    /**
+     * Stops the server and closes every connection.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        Thread started;
+        synchronized (this) {
+            started = thread;
+        }
+        if (started != null) {
+            try {
+                started.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        serverChannel.close();
+        selector.close();
+    }
+
+    private final class Connection {
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer inbound;
+        /**
+         * Frames waiting to be written, in write mode: they go from the start of the buffer to its position.
+         */
+        private ByteBuffer outbound;
+        private long requests;
+        private boolean isPending;
+        private boolean subscribed;
+        private boolean newSubscriber;
+        private boolean closed;
+
+        Connection(final SocketChannel channel, final SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            this.inbound = ByteBuffer.allocateDirect(INBOUND_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            this.outbound = ByteBuffer.allocateDirect(OUTBOUND_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void read() {
+            int read;
+            try {
+                read = channel.read(inbound);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            if (read < 0) {
+                close();
+                return;
+            }
+            inbound.flip();
+            while (!closed && inbound.remaining() >= FRAME_HEADER_LENGTH) {
+                int start = inbound.position();
+                int length = inbound.getInt(start);
+                if (length < MessageHeader.ENCODED_LENGTH || length > inbound.capacity() - FRAME_HEADER_LENGTH) {
+                    //Not a frame of this protocol, or one that can never fit in the buffer.
+                    close();
+                    return;
+                }
+                if (inbound.remaining() < FRAME_HEADER_LENGTH + length) {
+                    break;
+                }
+                handle(start + FRAME_HEADER_LENGTH);
+                inbound.position(start + FRAME_HEADER_LENGTH + length);
+            }
+            inbound.compact();
+        }
+
+        private void handle(int offset) {
+            boolean accepted;
+            if (header.wrap(inbound, offset).getTemplateId() == SubscribeMessage.TEMPLATE_ID) {
+                if (!subscribed) {
+                    subscribed = true;
+                    newSubscriber = true;
+                    subscribers.add(this);
+                }
+                accepted = true;
+            } else {
+                try {
+                    accepted = applier.apply(inbound, offset);
+                } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                    //Malformed or unknown message.
+                    close();
+                    return;
+                }
+            }
+            ByteBuffer frame = beginFrame(ResultMessage.ENCODED_LENGTH);
+            if (frame != null) {
+                endFrame(result.encode(frame, frame.position() + FRAME_HEADER_LENGTH, requests, accepted));
+            }
+            requests++;
+        }
+
+        /**
+         * Makes room for a frame in the outbound buffer, growing it if needed.
+         *
+         * @return the outbound buffer, whose position is where the frame starts, or null if the connection is
+         * closed, or has just been closed because too much is waiting to be written to it.
+         */
+        ByteBuffer beginFrame(int messageLength) {
+            if (closed) {
+                return null;
+            }
+            int needed = FRAME_HEADER_LENGTH + messageLength;
+            if (outbound.remaining() < needed) {
+                int size = outbound.capacity();
+                while (size - outbound.position() < needed) {
+                    size <<= 1;
+                }
+                if (size > MAX_OUTBOUND_SIZE) {
+                    close();
+                    return null;
+                }
+                ByteBuffer grown = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+                outbound.flip();
+                grown.put(outbound);
+                outbound = grown;
+            }
+            return outbound;
+        }
+
+        void endFrame(int messageLength) {
+            outbound.putInt(outbound.position(), messageLength);
+            outbound.position(outbound.position() + FRAME_HEADER_LENGTH + messageLength);
+            markPending();
+        }
+
+        void markPending() {
+            if (!isPending) {
+                isPending = true;
+                pending.add(this);
+            }
+        }
+
+        void flush() {
+            isPending = false;
+            if (closed) {
+                return;
+            }
+            outbound.flip();
+            try {
+                channel.write(outbound);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            boolean everythingWritten = !outbound.hasRemaining();
+            outbound.compact();
+            //Only waits for the socket to be writable while something is left to write.
+            key.interestOps(everythingWritten ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            subscribers.remove(this);
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //Nothing left to do with it.
+            }
+        }
+    }
+}
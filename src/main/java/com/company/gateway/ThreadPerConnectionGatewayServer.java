@@ -0,0 +1,434 @@
+package com.company.gateway;
+
+import com.company.Dashboard;
+import com.company.codec.CommandApplier;
+import com.company.codec.DepthMessage;
+import com.company.codec.MessageHeader;
+import com.company.codec.ResultMessage;
+import com.company.codec.SubscribeMessage;
+import com.company.model.OrderPool;
+import com.company.model.Side;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * TCP server in front of a Dashboard that serves every connection with threads of its own, blocking on the socket,
+ * and calls the dashboard directly under a lock. It speaks the same protocol as the GatewayServer.
+ *
+ * It is meant to be run on virtual threads, where tens of thousands of mostly idle connections cost little more
+ * than their buffers. With platform threads every connection holds a thread and its stack, so the selector-based
+ * GatewayServer scales better.
+ *
+ * Every connection has a reader thread, which applies the requests read in one go under the dashboard lock and
+ * writes all their results at once. A connection that subscribes to the depth gets a second thread, which waits
+ * for either side to change and then writes the latest depth of both, so a slow subscriber only ever misses
+ * intermediate changes. The dashboard lock is a ReentrantLock rather than a monitor, as a virtual thread blocked
+ * on a monitor holds on to its carrier thread.
+ *
+ * @see #virtualThreadFactory()
+ * @see GatewayServer
+ */
+public class ThreadPerConnectionGatewayServer implements AutoCloseable {
+
+    private static final int INITIAL_BUFFER_SIZE = 1 << 10;
+    private static final int MAX_FRAME_LENGTH = 1 << 16;
+    private static final long MIN_ACCEPT_BACK_OFF_MILLIS = 10;
+    private static final long MAX_ACCEPT_BACK_OFF_MILLIS = 1000;
+
+    private final Dashboard dashboard;
+    private final ThreadFactory threadFactory;
+    private final int depthLevels;
+    private final ServerSocketChannel serverChannel;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    /**
+     * Guards the dashboard and the applier, which is only used while holding it. Depth writers wait on the
+     * condition for either side to change.
+     */
+    private final ReentrantLock dashboardLock = new ReentrantLock();
+    private final Condition depthChanged = dashboardLock.newCondition();
+    private final CommandApplier applier;
+    private int subscribers;
+
+    private Thread acceptor;
+    private volatile boolean running;
+
+    /**
+     * Binds the server, which only starts accepting connections once started.
+     *
+     * @param dashboard dashboard to update, which must only be used under the server's lock once it is started
+     * @param orderPool pool the dashboard releases its orders to, or null if its orders are not pooled
+     * @param address address to listen to, with port 0 to pick any free port
+     * @param depthLevels number of levels of each side sent to the subscribers
+     * @param threadFactory creates the threads of the server, e.g. virtual threads
+     * @throws IOException if the address cannot be bound.
+     */
+    public ThreadPerConnectionGatewayServer(final Dashboard dashboard, final OrderPool orderPool,
+                                            final InetSocketAddress address, int depthLevels,
+                                            final ThreadFactory threadFactory) throws IOException {
+        if (depthLevels < 1) {
+            throw new IllegalArgumentException("Subscribers must get at least one level");
+        }
+        this.dashboard = requireNonNull(dashboard);
+        this.applier = new CommandApplier(dashboard, orderPool);
+        this.depthLevels = depthLevels;
+        this.threadFactory = requireNonNull(threadFactory);
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(address);
+        } catch (IOException e) {
+            serverChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a factory of virtual threads. They are looked up by reflection, so that the rest of the code still
+     * builds and runs on Java 8.
+     *
+     * @return a factory of virtual threads named gateway-0, gateway-1...
+     * @throws UnsupportedOperationException if the JVM has no virtual threads, before Java 21.
+     */
+    public static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "gateway-", 0L);
+            Method factory = builderType.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later", e);
+        }
+    }
+
+    /**
+     * @return the address the server listens to, with the actual port if port 0 was asked for.
+     */
+    public InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the number of open connections.
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * Starts accepting connections.
+     *
+     * @return this server
+     * @throws IllegalStateException if the server has already been started.
+     */
+    public synchronized ThreadPerConnectionGatewayServer start() {
+        if (acceptor != null) {
+            throw new IllegalStateException("The server has already been started");
+        }
+        running = true;
+        acceptor = threadFactory.newThread(this::accept);
+        acceptor.start();
+        return this;
+    }
+
+    private void accept() {
+        long backOffMillis = MIN_ACCEPT_BACK_OFF_MILLIS;
+        while (running) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                if (!running || !serverChannel.isOpen()) {
+                    //Closed by close(), or no longer able to accept anything.
+                    return;
+                }
+                //E.g. out of file descriptors, which closing connections gives back: waits and tries again, longer
+                //each time, rather than leaving a running server that no longer accepts connections.
+                try {
+                    Thread.sleep(backOffMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backOffMillis = Math.min(backOffMillis * 2, MAX_ACCEPT_BACK_OFF_MILLIS);
+                continue;
+            }
+            backOffMillis = MIN_ACCEPT_BACK_OFF_MILLIS;
+            try {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (IOException e) {
+                //Most likely reset by the client already, and not worth serving.
+                closeQuietly(channel);
+                continue;
+            }
+            Connection connection = new Connection(channel);
+            connections.add(connection);
+            if (!running) {
+                //Accepted while closing, after close() went through the connections.
+                connection.close();
+                return;
+            }
+            threadFactory.newThread(connection::read).start();
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            //Nothing left to do with it.
+        }
+    }
+
+    /**
+     * Stops accepting connections and closes every connection.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverChannel.close();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        Thread started;
+        synchronized (this) {
+            started = acceptor;
+        }
+        if (started != null) {
+            try {
+                started.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private final class Connection {
+
+        private final SocketChannel channel;
+        private final MessageHeader header = new MessageHeader();
+        private final ResultMessage result = new ResultMessage();
+        /**
+         * Guards writes to the channel, as results and depth are written by different threads.
+         */
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private ByteBuffer inbound = ByteBuffer.allocate(INITIAL_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private ByteBuffer outbound = ByteBuffer.allocate(INITIAL_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        /**
+         * Length of the frame at the start of the inbound buffer that has not been read in full yet, or 0.
+         */
+        private int incompleteFrame;
+        private long requests;
+        private boolean subscribed;
+        private volatile boolean closed;
+
+        Connection(final SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read() {
+            try {
+                while (channel.read(inbound) >= 0) {
+                    inbound.flip();
+                    if (!handleFrames()) {
+                        return;
+                    }
+                    inbound.compact();
+                    if (incompleteFrame > inbound.capacity()) {
+                        inbound = grow(inbound, incompleteFrame);
+                    }
+                    incompleteFrame = 0;
+                    if (outbound.position() > 0) {
+                        write(outbound);
+                    }
+                }
+            } catch (IOException e) {
+                //The client went away, or the server is closing.
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Handles every complete frame in the inbound buffer, under a single hold of the dashboard lock.
+         *
+         * @return false if the client sent something that is not a frame of the protocol.
+         */
+        private boolean handleFrames() {
+            dashboardLock.lock();
+            try {
+                long bids = dashboard.getVersion(Side.BUY);
+                long offers = dashboard.getVersion(Side.SELL);
+                while (inbound.remaining() >= GatewayServer.FRAME_HEADER_LENGTH) {
+                    int start = inbound.position();
+                    int length = inbound.getInt(start);
+                    if (length < MessageHeader.ENCODED_LENGTH || length > MAX_FRAME_LENGTH) {
+                        return false;
+                    }
+                    if (inbound.remaining() < GatewayServer.FRAME_HEADER_LENGTH + length) {
+                        incompleteFrame = GatewayServer.FRAME_HEADER_LENGTH + length;
+                        break;
+                    }
+                    if (!handle(start + GatewayServer.FRAME_HEADER_LENGTH)) {
+                        return false;
+                    }
+                    inbound.position(start + GatewayServer.FRAME_HEADER_LENGTH + length);
+                }
+                if (subscribers > 0 && (dashboard.getVersion(Side.BUY) != bids
+                        || dashboard.getVersion(Side.SELL) != offers)) {
+                    depthChanged.signalAll();
+                }
+                return true;
+            } finally {
+                dashboardLock.unlock();
+            }
+        }
+
+        /**
+         * Must be called holding the dashboard lock.
+         */
+        private boolean handle(int offset) {
+            boolean accepted;
+            if (header.wrap(inbound, offset).getTemplateId() == SubscribeMessage.TEMPLATE_ID) {
+                if (!subscribed) {
+                    subscribed = true;
+                    subscribers++;
+                    threadFactory.newThread(this::writeDepth).start();
+                }
+                accepted = true;
+            } else {
+                try {
+                    accepted = applier.apply(inbound, offset);
+                } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                    //Malformed or unknown message.
+                    return false;
+                }
+            }
+            int needed = GatewayServer.FRAME_HEADER_LENGTH + ResultMessage.ENCODED_LENGTH;
+            if (outbound.remaining() < needed) {
+                outbound = grow(outbound, outbound.position() + needed);
+            }
+            int length = result.encode(outbound, outbound.position() + GatewayServer.FRAME_HEADER_LENGTH, requests++,
+                    accepted);
+            outbound.putInt(outbound.position(), length);
+            outbound.position(outbound.position() + GatewayServer.FRAME_HEADER_LENGTH + length);
+            return true;
+        }
+
+        /**
+         * Runs on a thread of its own once the connection has subscribed.
+         */
+        private void writeDepth() {
+            DepthMessage depth = new DepthMessage();
+            long[] priceTicks = new long[depthLevels];
+            long[] volumeLots = new long[depthLevels];
+            ByteBuffer frames = ByteBuffer.allocate(2 * (GatewayServer.FRAME_HEADER_LENGTH
+                    + DepthMessage.encodedLength(depthLevels))).order(ByteOrder.LITTLE_ENDIAN);
+            long bidsSent = -1;
+            long offersSent = -1;
+            try {
+                while (!closed) {
+                    dashboardLock.lock();
+                    try {
+                        while (!closed && dashboard.getVersion(Side.BUY) == bidsSent
+                                && dashboard.getVersion(Side.SELL) == offersSent) {
+                            depthChanged.await();
+                        }
+                        if (closed) {
+                            return;
+                        }
+                        //Both sides are sent every time, copied while holding the lock so that they match.
+                        for (Side side : Side.values()) {
+                            long version = dashboard.getVersion(side);
+                            int count = dashboard.getDepth(side, priceTicks, volumeLots);
+                            int length = depth.encode(frames, frames.position() + GatewayServer.FRAME_HEADER_LENGTH,
+                                    side, version, dashboard.getIncrements(), priceTicks, volumeLots, count);
+                            frames.putInt(frames.position(), length);
+                            frames.position(frames.position() + GatewayServer.FRAME_HEADER_LENGTH + length);
+                        }
+                        bidsSent = dashboard.getVersion(Side.BUY);
+                        offersSent = dashboard.getVersion(Side.SELL);
+                    } finally {
+                        dashboardLock.unlock();
+                    }
+                    write(frames);
+                }
+            } catch (IOException | InterruptedException e) {
+                //The client went away, or the server is closing.
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Writes the frames in a buffer, from its start to its position, and clears it.
+         */
+        private void write(ByteBuffer frames) throws IOException {
+            frames.flip();
+            writeLock.lock();
+            try {
+                while (frames.hasRemaining()) {
+                    channel.write(frames);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            frames.clear();
+        }
+
+        void close() {
+            dashboardLock.lock();
+            try {
+                //The reader, the depth writer and the server may all close the connection at once.
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                connections.remove(this);
+                if (subscribed) {
+                    subscribers--;
+                    depthChanged.signalAll();
+                }
+            } finally {
+                dashboardLock.unlock();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //Nothing left to do with it.
+            }
+        }
+    }
+
+    /**
+     * @param buffer buffer in write mode, whose content goes from its start to its position
+     */
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        int size = buffer.capacity();
+        while (size < capacity) {
+            size <<= 1;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
@@ -0,0 +1,20 @@
+package com.company.journal;
+
+/**
+ * When a Journal forces its records to disk. Records that have not been forced survive a crash of the process,
+ * as they are in the page cache, but not necessarily a crash of the machine.
+ */
+public enum FsyncPolicy {
+    /**
+     * After every record. Nothing acknowledged is ever lost, at the cost of a disk flush per command.
+     */
+    EVERY_WRITE,
+    /**
+     * After a fixed number of records, and on flush and close. At most one batch is lost.
+     */
+    BATCHED,
+    /**
+     * Never: the operating system writes the pages back when it sees fit.
+     */
+    OS
+}
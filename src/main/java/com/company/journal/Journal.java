@@ -0,0 +1,510 @@
+package com.company.journal;
+
+import com.company.Dashboard;
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.Side;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Write-ahead journal of the commands applied to a Dashboard, so that its orders can be rebuilt after a restart.
+ *
+ * Commands are appended as compact binary records to a log split into segment files of a fixed size, each one
+ * memory-mapped while it is written. Appending a record copies its fields straight into the mapped file, without
+ * allocating anything. When a segment is full the journal moves on to a new one.
+ *
+ * Every segment starts with a header recording the increments of the orders, and every record is made of its
+ * length, a CRC32 of its content and its content. A zero length marks the end of the log, and a record whose
+ * checksum does not match, e.g. because the process died while writing it, ends it as well.
+ *
+ * A journal is not thread safe, it must be used by the thread that updates the dashboard. Only replaying up to a
+ * position can be done by another thread while records are appended, e.g. to build a snapshot in the background.
+ *
+ * @see FsyncPolicy
+ */
+public class Journal implements AutoCloseable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    public static final int DEFAULT_FSYNC_BATCH = 256;
+
+    private static final String SUFFIX = ".journal";
+    private static final int MAGIC = 0x53424a31;
+    private static final int FORMAT_VERSION = 1;
+    /**
+     * Magic, format version, segment index, tick size and lot size.
+     */
+    private static final int SEGMENT_HEADER_SIZE = 4 + 4 + 8 + 8 + 8;
+    /**
+     * Length and checksum of the content.
+     */
+    private static final int RECORD_HEADER_SIZE = 4 + 4;
+    private static final int MAX_STRING_LENGTH = 0x7FFF;
+    private static final int UTF16_FLAG = 0x8000;
+
+    static final byte ADD = 1;
+    static final byte REMOVE_ORDER = 2;
+    static final byte REMOVE_BY_ID = 3;
+    static final byte REMOVE_BY_NUMERIC_ID = 4;
+    static final byte REMOVE_BY_PARAMETERS = 5;
+    static final byte CANCEL_ALL_FOR_USER = 6;
+
+    private final Path directory;
+    private final Increments increments;
+    private final FsyncPolicy fsyncPolicy;
+    private final int segmentSize;
+    private final int fsyncBatch;
+    private final CRC32 checksum = new CRC32();
+
+    private long segmentIndex;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int unsyncedRecords;
+
+    public Journal(final Path directory, final Increments increments, final FsyncPolicy fsyncPolicy)
+            throws IOException {
+        this(directory, increments, fsyncPolicy, DEFAULT_SEGMENT_SIZE, DEFAULT_FSYNC_BATCH);
+    }
+
+    /**
+     * Opens the journal in a directory, creating it if needed. New records are appended after the last valid one.
+     *
+     * @param directory directory of the segment files
+     * @param increments tick size and lot size of the orders of the dashboard
+     * @param fsyncPolicy when records are forced to disk
+     * @param segmentSize size in bytes of every segment file
+     * @param fsyncBatch number of records forced to disk at once with the BATCHED policy
+     * @throws IOException if the journal cannot be opened, or if it was written with other increments.
+     */
+    public Journal(final Path directory, final Increments increments, final FsyncPolicy fsyncPolicy, int segmentSize,
+                   int fsyncBatch) throws IOException {
+        if (segmentSize < SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE + 64) {
+            throw new IllegalArgumentException("Segments of " + segmentSize + " bytes are too small");
+        }
+        if (fsyncBatch < 1) {
+            throw new IllegalArgumentException("The fsync batch must have at least one record");
+        }
+        this.directory = requireNonNull(directory);
+        this.increments = requireNonNull(increments);
+        this.fsyncPolicy = requireNonNull(fsyncPolicy);
+        this.segmentSize = segmentSize;
+        this.fsyncBatch = fsyncBatch;
+
+        Files.createDirectories(directory);
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) {
+            openSegment(0, true);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            openSegment(indexOf(last), false);
+            segment.position(endOfRecords(segment, checksum));
+            //Whatever follows the last valid record is the remains of a torn write. It must not be read again, as
+            //shorter records written over it could leave part of it right after them.
+            int i = segment.position();
+            for (; i + 8 <= segment.limit(); i += 8) {
+                if (segment.getLong(i) != 0) {
+                    segment.putLong(i, 0);
+                }
+            }
+            for (; i < segment.limit(); i++) {
+                segment.put(i, (byte) 0);
+            }
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        //The names are zero-padded indexes, so they sort in index order.
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static long indexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private Path pathOf(long index) {
+        return directory.resolve(String.format("%016d%s", index, SUFFIX));
+    }
+
+    private void openSegment(long index, boolean create) throws IOException {
+        Path path = pathOf(index);
+        channel = create
+                ? FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int size = create ? segmentSize : (int) channel.size();
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        segmentIndex = index;
+        if (create) {
+            segment.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(index)
+                    .putDouble(increments.getTickSize()).putDouble(increments.getLotSize());
+        } else {
+            checkHeader(segment, path);
+        }
+    }
+
+    private void checkHeader(ByteBuffer buffer, Path path) throws IOException {
+        if (buffer.limit() < SEGMENT_HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not a journal segment");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException(path + " has format version " + buffer.getInt(4));
+        }
+        Increments written = new Increments(buffer.getDouble(16), buffer.getDouble(24));
+        if (!written.equals(increments)) {
+            throw new IOException(path + " was written with " + written + " but the journal uses " + increments);
+        }
+        buffer.position(SEGMENT_HEADER_SIZE);
+    }
+
+    /**
+     * @return the position after the last valid record of a segment, starting from the current position.
+     */
+    private static int endOfRecords(ByteBuffer buffer, CRC32 checksum) {
+        int position = buffer.position();
+        while (position + RECORD_HEADER_SIZE <= buffer.limit()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > buffer.limit()
+                    || checksumOf(buffer, position + RECORD_HEADER_SIZE, length, checksum)
+                    != buffer.getInt(position + 4)) {
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private static int checksumOf(ByteBuffer buffer, int from, int length, CRC32 checksum) {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        buffer.limit(from + length).position(from);
+        checksum.reset();
+        checksum.update(buffer);
+        buffer.limit(limit).position(position);
+        return (int) checksum.getValue();
+    }
+
+    public void appendAdd(final Order order) {
+        appendOrder(ADD, order);
+    }
+
+    public void appendRemoveOrder(final Order order) {
+        appendOrder(REMOVE_ORDER, order);
+    }
+
+    private void appendOrder(byte type, final Order order) {
+        int size = 1 + 1 + (order.hasNumericId() ? 8 : sizeOf(order.getId())) + 1 + sizeOf(order.getUserId()) + 8 + 8;
+        int start = begin(size);
+        segment.put(type);
+        if (order.hasNumericId()) {
+            segment.put((byte) 1).putLong(order.getNumericId());
+        } else {
+            segment.put((byte) 0);
+            putString(segment, order.getId());
+        }
+        segment.put(order.getSide() == Side.BUY ? (byte) 0 : (byte) 1);
+        putString(segment, order.getUserId());
+        segment.putLong(order.getQuantityLots()).putLong(order.getPriceTicks());
+        end(start);
+    }
+
+    public void appendRemoveById(final String id) {
+        int start = begin(1 + sizeOf(id));
+        segment.put(REMOVE_BY_ID);
+        putString(segment, id);
+        end(start);
+    }
+
+    public void appendRemoveByNumericId(long id) {
+        int start = begin(1 + 8);
+        segment.put(REMOVE_BY_NUMERIC_ID).putLong(id);
+        end(start);
+    }
+
+    public void appendRemoveByParameters(final Side side, final String userId, double price, double quantity) {
+        int start = begin(1 + 1 + sizeOf(userId) + 8 + 8);
+        segment.put(REMOVE_BY_PARAMETERS).put(side == Side.BUY ? (byte) 0 : (byte) 1);
+        putString(segment, userId);
+        segment.putDouble(price).putDouble(quantity);
+        end(start);
+    }
+
+    public void appendCancelAllForUser(final String userId) {
+        int start = begin(1 + sizeOf(userId));
+        segment.put(CANCEL_ALL_FOR_USER);
+        putString(segment, userId);
+        end(start);
+    }
+
+    /**
+     * Strings are stored as their length followed by one byte per character if they are all Latin-1, or two bytes
+     * per character otherwise, so that ids and user ids are encoded without allocating a byte array.
+     */
+    static int sizeOf(String value) {
+        if (value.length() > MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException("Strings of more than " + MAX_STRING_LENGTH
+                    + " characters cannot be journaled");
+        }
+        return 2 + (isLatin1(value) ? value.length() : value.length() * 2);
+    }
+
+    private static boolean isLatin1(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static void putString(ByteBuffer buffer, String value) {
+        if (isLatin1(value)) {
+            buffer.putShort((short) value.length());
+            for (int i = 0; i < value.length(); i++) {
+                buffer.put((byte) value.charAt(i));
+            }
+        } else {
+            buffer.putShort((short) (value.length() | UTF16_FLAG));
+            for (int i = 0; i < value.length(); i++) {
+                buffer.putChar(value.charAt(i));
+            }
+        }
+    }
+
+    static String getString(ByteBuffer buffer) {
+        int header = buffer.getShort() & 0xFFFF;
+        char[] chars = new char[header & MAX_STRING_LENGTH];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (header & UTF16_FLAG) != 0 ? buffer.getChar() : (char) (buffer.get() & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Makes room for a record, moving on to a new segment if needed.
+     *
+     * @return the position of the record
+     */
+    private int begin(int contentSize) {
+        if (SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE + contentSize > segmentSize) {
+            throw new IllegalArgumentException("A record of " + contentSize + " bytes does not fit in a segment");
+        }
+        if (segment.remaining() < RECORD_HEADER_SIZE + contentSize) {
+            roll();
+        }
+        int start = segment.position();
+        segment.position(start + RECORD_HEADER_SIZE);
+        return start;
+    }
+
+    /**
+     * Completes a record. The length is written last, so a record is never read before its content is complete.
+     */
+    private void end(int start) {
+        int length = segment.position() - start - RECORD_HEADER_SIZE;
+        segment.putInt(start + 4, checksumOf(segment, start + RECORD_HEADER_SIZE, length, checksum));
+        segment.putInt(start, length);
+        switch (fsyncPolicy) {
+            case EVERY_WRITE:
+                segment.force();
+                break;
+            case BATCHED:
+                if (++unsyncedRecords >= fsyncBatch) {
+                    flush();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void roll() {
+        try {
+            if (fsyncPolicy != FsyncPolicy.OS) {
+                segment.force();
+            }
+            channel.close();
+            openSegment(segmentIndex + 1, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open journal segment " + (segmentIndex + 1), e);
+        }
+    }
+
+    /**
+     * Returns the position right after the last record appended, e.g. to record up to where a snapshot of the
+     * dashboard is up to date. Positions grow with every record, but are otherwise opaque.
+     *
+     * @return the position of the next record
+     * @see #replay(Dashboard, long)
+     */
+    public long getPosition() {
+        return segmentIndex << 32 | segment.position();
+    }
+
+    /**
+     * Forces the records written so far to disk, whatever the policy.
+     */
+    public void flush() {
+        segment.force();
+        unsyncedRecords = 0;
+    }
+
+    /**
+     * Applies every record of the journal to a dashboard, in order. It is meant to rebuild an empty dashboard on
+     * startup, before anything else is appended.
+     *
+     * @param dashboard dashboard to apply the commands to
+     * @return the number of records applied
+     * @throws IOException if a segment cannot be read, or was written with other increments.
+     */
+    public long replay(final Dashboard dashboard) throws IOException {
+        return replay(dashboard, 0);
+    }
+
+    /**
+     * Applies the records of the journal from a position on, e.g. the ones appended after a snapshot of the
+     * dashboard was taken.
+     *
+     * @param dashboard dashboard to apply the commands to
+     * @param from position returned by getPosition, or 0 to apply every record
+     * @return the number of records applied
+     * @throws IOException if a segment cannot be read, or was written with other increments.
+     * @see #getPosition()
+     */
+    public long replay(final Dashboard dashboard, long from) throws IOException {
+        return replay(dashboard, from, Long.MAX_VALUE);
+    }
+
+    /**
+     * Applies the records of the journal between two positions. It can be called by another thread than the one
+     * appending to the journal, as long as the records up to the end position were appended before the call.
+     *
+     * @param dashboard dashboard to apply the commands to
+     * @param from position returned by getPosition, or 0 to apply every record
+     * @param to position returned by getPosition after the last record to apply
+     * @return the number of records applied
+     * @throws IOException if a segment cannot be read, or was written with other increments.
+     * @see #getPosition()
+     */
+    public long replay(final Dashboard dashboard, long from, long to) throws IOException {
+        requireNonNull(dashboard);
+        long fromSegment = from >>> 32;
+        long toSegment = to >>> 32;
+        //Not the checksum of the appends, which may go on meanwhile.
+        CRC32 checksum = new CRC32();
+        long records = 0;
+        for (Path path : listSegments()) {
+            long index = indexOf(path);
+            if (index < fromSegment) {
+                continue;
+            }
+            if (index > toSegment) {
+                break;
+            }
+            ByteBuffer buffer;
+            try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+                buffer = reader.map(FileChannel.MapMode.READ_ONLY, 0, reader.size());
+            }
+            checkHeader(buffer, path);
+            if (index == toSegment) {
+                //What follows may be being appended.
+                buffer.limit(Math.max(SEGMENT_HEADER_SIZE, Math.min((int) to, buffer.limit())));
+            }
+            if (index == fromSegment) {
+                buffer.position(Math.max(SEGMENT_HEADER_SIZE, Math.min((int) from, buffer.limit())));
+            }
+            int end = endOfRecords(buffer, checksum);
+            while (buffer.position() < end) {
+                int length = buffer.getInt();
+                int next = buffer.position() + 4 + length;
+                buffer.position(buffer.position() + 4);
+                apply(buffer, dashboard);
+                buffer.position(next);
+                records++;
+            }
+            if (end + RECORD_HEADER_SIZE <= buffer.limit() && buffer.getInt(end) != 0) {
+                //A torn record: whatever follows it was never acknowledged.
+                break;
+            }
+        }
+        return records;
+    }
+
+    private void apply(ByteBuffer record, Dashboard dashboard) throws IOException {
+        byte type = record.get();
+        switch (type) {
+            case ADD:
+                try {
+                    dashboard.addOrder(getOrder(record));
+                } catch (IllegalArgumentException e) {
+                    //It was rejected when it was first applied too.
+                }
+                break;
+            case REMOVE_ORDER:
+                dashboard.removeOrder(getOrder(record));
+                break;
+            case REMOVE_BY_ID:
+                dashboard.removeOrder(getString(record));
+                break;
+            case REMOVE_BY_NUMERIC_ID:
+                dashboard.removeOrder(record.getLong());
+                break;
+            case REMOVE_BY_PARAMETERS:
+                Side side = getSide(record);
+                String userId = getString(record);
+                dashboard.removeOrder(side, userId, record.getDouble(), record.getDouble());
+                break;
+            case CANCEL_ALL_FOR_USER:
+                dashboard.cancelAllForUser(getString(record));
+                break;
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    private Order getOrder(ByteBuffer record) {
+        boolean numeric = record.get() == 1;
+        long numericId = numeric ? record.getLong() : -1;
+        String id = numeric ? null : getString(record);
+        Side side = getSide(record);
+        String userId = getString(record);
+        long quantityLots = record.getLong();
+        long priceTicks = record.getLong();
+        return numeric
+                ? Order.inTicks(numericId, side, userId, quantityLots, priceTicks, increments)
+                : Order.inTicks(id, side, userId, quantityLots, priceTicks, increments);
+    }
+
+    private static Side getSide(ByteBuffer record) {
+        return record.get() == 0 ? Side.BUY : Side.SELL;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.OS) {
+            flush();
+        }
+        channel.close();
+    }
+}
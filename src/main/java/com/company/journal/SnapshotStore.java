@@ -0,0 +1,340 @@
+package com.company.journal;
+
+import com.company.Dashboard;
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.Side;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Binary snapshots of every resting order of a Dashboard, so that a restart only has to replay the tail of the
+ * Journal instead of all of it.
+ *
+ * Snapshots are built on the executor, without reading the dashboard: the thread that updates it only records the
+ * position of the journal, which is the state the snapshot must have, and carries on. The executor restores the
+ * previous snapshot into a dashboard of its own, replays the records of the journal appended since, up to that
+ * position, and writes the orders of the result. Its cost grows with the size of the book and the length of the
+ * tail, but it is only paid by the executor, which briefly holds a second copy of the book in memory. Snapshots
+ * are built one after the other, each one from the one before.
+ *
+ * A snapshot file starts with a header recording the increments of the orders and the journal position it is up
+ * to date with, followed by the distinct user ids, then the bids and the offers in the order they must be added
+ * back in, and ends with a CRC32 of all of it. Files are written under a temporary name and renamed once they are
+ * complete, and only the two newest ones are kept.
+ *
+ * <pre>
+ *     long position = snapshots.restore(dashboard);
+ *     journal.replay(dashboard, position);
+ *     ...
+ *     snapshots.take(dashboard, journal);
+ * </pre>
+ *
+ * @see Journal#getPosition()
+ */
+public class SnapshotStore {
+
+    private static final String SUFFIX = ".snapshot";
+    private static final int MAGIC = 0x53425331;
+    private static final int FORMAT_VERSION = 1;
+    /**
+     * Magic, format version, tick size, lot size, journal position, number of user ids, bids and offers.
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 4 + 4 + 4;
+    private static final int BUFFER_SIZE = 1 << 20;
+    /**
+     * Room left in the buffer before it is written out, enough for the largest user id or order.
+     */
+    private static final int MAX_ENTRY_SIZE = 1 << 17;
+    private static final int KEPT_SNAPSHOTS = 2;
+
+    private final Path directory;
+    private final Increments increments;
+    private final Executor executor;
+    /**
+     * Number of orders in the last snapshot, used to size the arrays of the next one. Only used by the snapshots
+     * being built, one at a time.
+     */
+    private int lastSize = 1024;
+    /**
+     * The snapshot being built, which the next one waits for. Only used by the thread that updates the dashboard.
+     */
+    private CompletableFuture<Path> last = CompletableFuture.completedFuture(null);
+
+    /**
+     * @param directory directory of the snapshot files, created if needed
+     * @param increments tick size and lot size of the orders of the dashboard
+     * @param executor writes the snapshots
+     * @throws IOException if the directory cannot be created.
+     */
+    public SnapshotStore(final Path directory, final Increments increments, final Executor executor)
+            throws IOException {
+        this.directory = requireNonNull(directory);
+        this.increments = requireNonNull(increments);
+        this.executor = requireNonNull(executor);
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Takes a snapshot of a dashboard as it is now, that is of every command appended to its journal so far. It
+     * must be called by the thread that updates the dashboard and appends to the journal, which only reads the
+     * position of the journal: the snapshot is built on the executor, however large the book is.
+     *
+     * @param dashboard dashboard to take a snapshot of, whose every change has been appended to the journal
+     * @param journal journal of the dashboard, whose files are read again by the executor
+     * @return completed with the snapshot file once it has been written and forced to disk
+     */
+    public CompletableFuture<Path> take(final Dashboard dashboard, final Journal journal) {
+        long journalPosition = journal.getPosition();
+        boolean matching = dashboard.isMatching();
+        //A failed snapshot does not hold up the next one, which is built from the snapshot before.
+        last = last.handle((previous, failure) -> null).thenApplyAsync(ignored -> {
+            try {
+                return write(build(journal, matching, journalPosition), journalPosition);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write the snapshot at journal position " + journalPosition, e);
+            }
+        }, executor);
+        return last;
+    }
+
+    /**
+     * Rebuilds the dashboard at a journal position from the newest snapshot and the journal, and copies its orders.
+     */
+    private Image build(Journal journal, boolean matching, long journalPosition) throws IOException {
+        Dashboard dashboard = new Dashboard(increments, null, matching);
+        long from = restore(dashboard);
+        if (from > journalPosition) {
+            throw new IllegalStateException("The newest snapshot is at journal position " + from + ", after "
+                    + journalPosition);
+        }
+        journal.replay(dashboard, from, journalPosition);
+
+        Image image = new Image(lastSize);
+        dashboard.forEachOrder(Side.BUY, image);
+        image.bids = image.size;
+        dashboard.forEachOrder(Side.SELL, image);
+        lastSize = Math.max(image.size, 1024);
+        return image;
+    }
+
+    private Path write(Image image, long journalPosition) throws IOException {
+        Map<String, Integer> userIndexes = new HashMap<>();
+        List<String> users = new ArrayList<>();
+        int[] userOfOrder = new int[image.size];
+        for (int i = 0; i < image.size; i++) {
+            Integer index = userIndexes.get(image.userIds[i]);
+            if (index == null) {
+                index = users.size();
+                userIndexes.put(image.userIds[i], index);
+                users.add(image.userIds[i]);
+            }
+            userOfOrder[i] = index;
+        }
+
+        Path temporary = Files.createTempFile(directory, "snapshot", ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            CRC32 checksum = new CRC32();
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION)
+                    .putDouble(increments.getTickSize()).putDouble(increments.getLotSize())
+                    .putLong(journalPosition)
+                    .putInt(users.size()).putInt(image.bids).putInt(image.size - image.bids);
+            for (String user : users) {
+                ensureRoom(channel, buffer, checksum);
+                Journal.putString(buffer, user);
+            }
+            for (int i = 0; i < image.size; i++) {
+                ensureRoom(channel, buffer, checksum);
+                if (image.ids[i] == null) {
+                    buffer.put((byte) 1).putLong(image.numericIds[i]);
+                } else {
+                    buffer.put((byte) 0);
+                    Journal.putString(buffer, image.ids[i]);
+                }
+                buffer.putInt(userOfOrder[i]).putLong(image.quantityLots[i]).putLong(image.priceTicks[i]);
+            }
+            writeOut(channel, buffer, checksum);
+            buffer.putInt((int) checksum.getValue());
+            writeOut(channel, buffer, checksum);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Path snapshot = directory.resolve(String.format("%016x%s", journalPosition, SUFFIX));
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        List<Path> snapshots = listSnapshots();
+        for (int i = 0; i < snapshots.size() - KEPT_SNAPSHOTS; i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+        return snapshot;
+    }
+
+    private static void ensureRoom(FileChannel channel, ByteBuffer buffer, CRC32 checksum) throws IOException {
+        if (buffer.remaining() < MAX_ENTRY_SIZE) {
+            writeOut(channel, buffer, checksum);
+        }
+    }
+
+    private static void writeOut(FileChannel channel, ByteBuffer buffer, CRC32 checksum) throws IOException {
+        buffer.flip();
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private List<Path> listSnapshots() throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                snapshots.add(file);
+            }
+        }
+        //The names are zero-padded journal positions, so they sort from the oldest to the newest.
+        Collections.sort(snapshots);
+        return snapshots;
+    }
+
+    /**
+     * Adds the orders of the newest valid snapshot to a dashboard, which must be empty. Snapshots that are
+     * damaged are skipped in favour of the one before.
+     *
+     * @param dashboard empty dashboard to restore
+     * @return the journal position the restored dashboard is up to date with, or 0 if there is no snapshot and
+     * the whole journal must be replayed.
+     * @throws IOException if a snapshot cannot be read, or was written with other increments.
+     * @see Journal#replay(Dashboard, long)
+     */
+    public long restore(final Dashboard dashboard) throws IOException {
+        requireNonNull(dashboard);
+        List<Path> snapshots = listSnapshots();
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path path = snapshots.get(i);
+            ByteBuffer buffer;
+            try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (reader.size() > Integer.MAX_VALUE) {
+                    throw new IOException(path + " is too large to be a snapshot");
+                }
+                buffer = reader.map(FileChannel.MapMode.READ_ONLY, 0, reader.size());
+            }
+            if (isValid(buffer, path)) {
+                return restore(buffer, dashboard);
+            }
+        }
+        return 0;
+    }
+
+    private boolean isValid(ByteBuffer buffer, Path path) throws IOException {
+        int end = buffer.limit() - 4;
+        if (end < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            return false;
+        }
+        CRC32 checksum = new CRC32();
+        ByteBuffer content = buffer.duplicate();
+        content.limit(end);
+        checksum.update(content);
+        if ((int) checksum.getValue() != buffer.getInt(end)) {
+            return false;
+        }
+        Increments written = new Increments(buffer.getDouble(8), buffer.getDouble(16));
+        if (!written.equals(increments)) {
+            throw new IOException(path + " was written with " + written + " but the dashboard uses " + increments);
+        }
+        return true;
+    }
+
+    private long restore(ByteBuffer buffer, Dashboard dashboard) {
+        buffer.position(24);
+        long journalPosition = buffer.getLong();
+        String[] users = new String[buffer.getInt()];
+        int bids = buffer.getInt();
+        int orders = bids + buffer.getInt();
+        for (int i = 0; i < users.length; i++) {
+            users[i] = Journal.getString(buffer);
+        }
+        List<Order> restored = new ArrayList<>(orders);
+        for (int i = 0; i < orders; i++) {
+            Side side = i < bids ? Side.BUY : Side.SELL;
+            boolean numeric = buffer.get() == 1;
+            long numericId = numeric ? buffer.getLong() : -1;
+            String id = numeric ? null : Journal.getString(buffer);
+            String userId = users[buffer.getInt()];
+            long quantityLots = buffer.getLong();
+            long priceTicks = buffer.getLong();
+            restored.add(numeric
+                    ? Order.inTicks(numericId, side, userId, quantityLots, priceTicks, increments)
+                    : Order.inTicks(id, side, userId, quantityLots, priceTicks, increments));
+        }
+        //In one batch, as a busy day leaves millions of orders on thousands of levels.
+        dashboard.addOrders(restored);
+        return journalPosition;
+    }
+
+    /**
+     * The fields of the orders of both sides, bids first.
+     */
+    private static final class Image implements Consumer<Order> {
+
+        private String[] ids;
+        private long[] numericIds;
+        private String[] userIds;
+        private long[] quantityLots;
+        private long[] priceTicks;
+        private int size;
+        private int bids;
+
+        Image(int capacity) {
+            ids = new String[capacity];
+            numericIds = new long[capacity];
+            userIds = new String[capacity];
+            quantityLots = new long[capacity];
+            priceTicks = new long[capacity];
+        }
+
+        @Override
+        public void accept(Order order) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                numericIds = Arrays.copyOf(numericIds, capacity);
+                userIds = Arrays.copyOf(userIds, capacity);
+                quantityLots = Arrays.copyOf(quantityLots, capacity);
+                priceTicks = Arrays.copyOf(priceTicks, capacity);
+            }
+            //A numeric id is kept as a number, so that its string form is never created.
+            if (order.hasNumericId()) {
+                numericIds[size] = order.getNumericId();
+            } else {
+                ids[size] = order.getId();
+            }
+            userIds[size] = order.getUserId();
+            quantityLots[size] = order.getQuantityLots();
+            priceTicks[size] = order.getPriceTicks();
+            size++;
+        }
+    }
+}
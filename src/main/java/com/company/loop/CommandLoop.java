@@ -0,0 +1,251 @@
+package com.company.loop;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A thread that applies commands submitted by any thread, one batch at a time, and answers each of them through a
+ * CompletableFuture.
+ *
+ * Commands are queued in a RingBuffer of preallocated slots. The loop thread drains up to a batch of them, applies
+ * each one with the executor, runs the end of batch action (e.g. publishing snapshots) and only then completes the
+ * futures of the batch, so that callers always see the effect of their command once its future is done. Whatever
+ * a command throws, errors included, fails its own future and nothing else.
+ *
+ * A submitting thread claims a slot, fills it in and publishes it:
+ *
+ * <pre>
+ *     long sequence = loop.claim();
+ *     if (sequence &lt; 0) {
+ *         return CommandLoop.notRunning();
+ *     }
+ *     loop.get(sequence).set(...);
+ *     return loop.publish(sequence);
+ * </pre>
+ *
+ * @param <C> type of the slots
+ * @see RingBuffer
+ */
+public final class CommandLoop<C extends CommandLoop.Command> implements AutoCloseable {
+
+    /**
+     * A slot of the ring buffer, filled in by the submitting thread and cleared by the loop once applied.
+     */
+    public abstract static class Command {
+
+        CompletableFuture<Object> result;
+
+        /**
+         * Drops the references held by the command once it has been applied. Overrides must call it.
+         */
+        protected void clear() {
+            result = null;
+        }
+    }
+
+    private final RingBuffer<C> ring;
+    private final WaitStrategy waitStrategy;
+    private final Function<? super C, Object> executor;
+    private final Runnable endOfBatch;
+    private final int maxBatch;
+    private final Thread thread;
+    /**
+     * Held while commands are drained, so that a command submitted while the loop stops can be applied by the
+     * submitting thread without ever having two consumers of the ring buffer.
+     */
+    private final Object drainLock = new Object();
+    private volatile boolean running;
+    /**
+     * Replies of the batch being applied, only accessed holding the drain lock.
+     */
+    private final CompletableFuture<Object>[] replies;
+    private final Object[] outcomes;
+    private final boolean[] failed;
+    private int replyCount;
+
+    /**
+     * @param threadName name of the loop thread
+     * @param capacity maximum number of queued commands, rounded up to a power of two
+     * @param slotFactory creates the slots of the ring buffer
+     * @param waitStrategy what the loop does while there are no commands, and what submitting threads do while the
+     *                     queue is full
+     * @param maxBatch maximum number of commands applied between two ends of batch
+     * @param executor applies a command and returns its result
+     * @param endOfBatch run once the commands of a batch have been applied, before their futures are completed
+     */
+    @SuppressWarnings("unchecked")
+    public CommandLoop(final String threadName, int capacity, final Supplier<C> slotFactory,
+                       final WaitStrategy waitStrategy, int maxBatch, final Function<? super C, Object> executor,
+                       final Runnable endOfBatch) {
+        this.waitStrategy = requireNonNull(waitStrategy);
+        this.executor = requireNonNull(executor);
+        this.endOfBatch = requireNonNull(endOfBatch);
+        this.maxBatch = maxBatch;
+        this.ring = new RingBuffer<>(capacity, slotFactory, waitStrategy);
+        this.replies = (CompletableFuture<Object>[]) new CompletableFuture<?>[maxBatch];
+        this.outcomes = new Object[maxBatch];
+        this.failed = new boolean[maxBatch];
+        this.thread = new Thread(this::run, threadName);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the loop thread. Commands submitted before it is started are rejected.
+     *
+     * @return this loop
+     */
+    public CommandLoop<C> start() {
+        running = true;
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Tells the loop thread to stop once it has applied the commands already submitted, without waiting for it.
+     * Commands submitted afterwards are rejected.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Stops the loop and waits for the thread to end. If the calling thread is interrupted while waiting, it stops
+     * waiting and keeps its interrupt status, and the loop thread still applies the remaining commands.
+     */
+    @Override
+    public void close() {
+        stop();
+        if (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @param <T> type of the result of the command
+     * @return a future failed with an IllegalStateException, for a command submitted while the loop is not running.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompletableFuture<T> notRunning() {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        result.completeExceptionally(new IllegalStateException("The command loop is not running"));
+        return (CompletableFuture<T>) (CompletableFuture<?>) result;
+    }
+
+    /**
+     * Claims the slot of a new command, waiting while the queue is full. The slot must then be filled in and
+     * published.
+     *
+     * @return the sequence of the slot, or -1 if the loop is not running, in which case nothing is claimed.
+     */
+    public long claim() {
+        return running ? ring.claim() : -1;
+    }
+
+    public C get(long sequence) {
+        return ring.get(sequence);
+    }
+
+    /**
+     * Publishes a claimed slot, once it is filled in.
+     *
+     * @param <T> type of the result of the command
+     * @return a future with the result of the command, or failed with what it threw.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> publish(long sequence) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        ring.get(sequence).result = result;
+        ring.publish(sequence);
+        if (!running && Thread.currentThread() != thread) {
+            //The loop was stopped after the command was claimed, and its thread may already be gone.
+            while (!result.isDone()) {
+                if (drain() == 0) {
+                    waitStrategy.idle();
+                }
+            }
+        }
+        return (CompletableFuture<T>) (CompletableFuture<?>) result;
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                if (drain() == 0) {
+                    waitStrategy.idle();
+                }
+            }
+            //Commands claimed before the loop stopped are still applied.
+            while (ring.size() > 0) {
+                if (drain() == 0) {
+                    waitStrategy.idle();
+                }
+            }
+        } catch (Throwable e) {
+            //Nothing is applied any more, so the commands still queued fail instead of waiting forever.
+            running = false;
+            synchronized (drainLock) {
+                while (ring.size() > 0) {
+                    ring.drain(command -> {
+                        command.result.completeExceptionally(e);
+                        command.clear();
+                    }, maxBatch);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private int drain() {
+        synchronized (drainLock) {
+            try {
+                int applied = ring.drain(this::apply, maxBatch);
+                if (applied > 0) {
+                    endOfBatch.run();
+                }
+                return applied;
+            } finally {
+                //Completed after the end of the batch, so that callers always see their changes, and completed even
+                //if the end of the batch failed, so that no caller waits forever.
+                for (int i = 0; i < replyCount; i++) {
+                    if (failed[i]) {
+                        replies[i].completeExceptionally((Throwable) outcomes[i]);
+                    } else {
+                        replies[i].complete(outcomes[i]);
+                    }
+                    replies[i] = null;
+                    outcomes[i] = null;
+                }
+                replyCount = 0;
+            }
+        }
+    }
+
+    /**
+     * Applies a command and keeps its outcome. Errors are kept too, such as an AssertionError from a consistency
+     * check, so that they fail the future of the command instead of the loop.
+     */
+    private void apply(C command) {
+        replies[replyCount] = command.result;
+        try {
+            outcomes[replyCount] = executor.apply(command);
+            failed[replyCount] = false;
+        } catch (Throwable e) {
+            outcomes[replyCount] = e;
+            failed[replyCount] = true;
+        } finally {
+            replyCount++;
+            command.clear();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.company.loop;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Bounded ring buffer for many producer threads and a single consumer thread.
+ *
+ * The slots are created once, up front, and reused: a producer claims the next sequence, fills in the slot of that
+ * sequence and publishes it, and the consumer processes the published slots in sequence order. Nothing is allocated
+ * per event, and producers only contend on one atomic increment.
+ *
+ * <pre>
+ *     long sequence = ring.claim();
+ *     try {
+ *         ring.get(sequence).set(...);
+ *     } finally {
+ *         ring.publish(sequence);
+ *     }
+ * </pre>
+ *
+ * @param <E> type of the slots
+ */
+public final class RingBuffer<E> {
+
+    private final Object[] slots;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    /**
+     * Next sequence to be claimed by a producer.
+     */
+    private final AtomicLong claimed = new AtomicLong();
+    /**
+     * Sequence published in each slot. A slot is ready for the consumer once it holds the sequence the consumer
+     * expects next.
+     */
+    private final AtomicLongArray published;
+    /**
+     * Next sequence to be processed by the consumer. Producers wait for it when the buffer is full.
+     */
+    private final AtomicLong consumed = new AtomicLong();
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     * @param slotFactory creates the slots
+     * @param waitStrategy what producers do while the buffer is full
+     */
+    public RingBuffer(int capacity, final Supplier<E> slotFactory, final WaitStrategy waitStrategy) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new Object[size];
+        this.mask = size - 1;
+        this.waitStrategy = requireNonNull(waitStrategy);
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = requireNonNull(slotFactory.get());
+            //No slot is published yet: slot i first expects sequence i.
+            published.set(i, i - 1);
+        }
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Claims the next sequence, waiting while the buffer is full. The slot of the sequence must then be published,
+     * even if filling it fails, as the consumer cannot go past an unpublished slot.
+     *
+     * @return the claimed sequence
+     */
+    public long claim() {
+        long sequence = claimed.getAndIncrement();
+        while (sequence - consumed.get() >= slots.length) {
+            waitStrategy.idle();
+        }
+        return sequence;
+    }
+
+    /**
+     * @return the slot of a claimed sequence
+     */
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) slots[(int) sequence & mask];
+    }
+
+    /**
+     * Hands the slot of a claimed sequence over to the consumer.
+     */
+    public void publish(long sequence) {
+        published.lazySet((int) sequence & mask, sequence);
+    }
+
+    /**
+     * Processes the published slots, in sequence order. Must only be called by the consumer thread.
+     *
+     * @param handler called with every slot, which can be reused as soon as the handler returns
+     * @param limit maximum number of slots to process
+     * @return the number of slots processed
+     */
+    public int drain(final Consumer<E> handler, int limit) {
+        long next = consumed.get();
+        int count = 0;
+        while (count < limit && published.get((int) next & mask) == next) {
+            try {
+                handler.accept(get(next));
+            } finally {
+                next++;
+                count++;
+                //Frees the slot for the producers one event at a time, so that a full buffer drains steadily.
+                consumed.lazySet(next);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of claimed sequences that have not been processed yet.
+     */
+    public long size() {
+        return claimed.get() - consumed.get();
+    }
+}
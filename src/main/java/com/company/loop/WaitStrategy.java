@@ -0,0 +1,48 @@
+package com.company.loop;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What a thread does while it waits for a RingBuffer: the consumer when there is nothing to process, and
+ * producers when the buffer is full.
+ *
+ * The choice trades latency for CPU: spinning reacts fastest but keeps a core busy, parking frees the core but
+ * adds the wake-up latency of the OS.
+ */
+public enum WaitStrategy {
+
+    /**
+     * Keeps the thread running. Only suitable when the thread has a core to itself.
+     */
+    BUSY_SPIN {
+        @Override
+        public void idle() {
+            // Nothing to do, the caller checks again straight away.
+        }
+    },
+    /**
+     * Gives the core to other runnable threads, if there are any, before checking again.
+     */
+    YIELD {
+        @Override
+        public void idle() {
+            Thread.yield();
+        }
+    },
+    /**
+     * Sleeps for a few microseconds before checking again.
+     */
+    PARK {
+        @Override
+        public void idle() {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    };
+
+    private static final long PARK_NANOS = 50_000;
+
+    /**
+     * Called once for every failed attempt to make progress.
+     */
+    public abstract void idle();
+}
@@ -0,0 +1,108 @@
+package com.company.model;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A change to a dashboard: adding an order, or cancelling one in any of the three ways the dashboard supports.
+ * Commands are created with the static factories and applied in bulk with Dashboard.applyBatch.
+ */
+public final class Command {
+
+    public enum Type {
+        ADD,
+        REMOVE_ORDER,
+        REMOVE_BY_ID,
+        REMOVE_BY_PARAMETERS
+    }
+
+    private final Type type;
+    private final Order order;
+    private final String id;
+    private final Side side;
+    private final String userId;
+    private final double price;
+    private final double quantity;
+
+    private Command(final Type type, final Order order, final String id, final Side side, final String userId,
+                    double price, double quantity) {
+        this.type = type;
+        this.order = order;
+        this.id = id;
+        this.side = side;
+        this.userId = userId;
+        this.price = price;
+        this.quantity = quantity;
+    }
+
+    /**
+     * @param order order to add
+     */
+    public static Command add(final Order order) {
+        return new Command(Type.ADD, requireNonNull(order), null, order.getSide(), null, 0, 0);
+    }
+
+    /**
+     * @param order order to remove
+     */
+    public static Command removeOrder(final Order order) {
+        return new Command(Type.REMOVE_ORDER, requireNonNull(order), null, order.getSide(), null, 0, 0);
+    }
+
+    /**
+     * @param id id of order to remove
+     */
+    public static Command removeById(final String id) {
+        return new Command(Type.REMOVE_BY_ID, null, requireNonNull(id), null, null, 0, 0);
+    }
+
+    /**
+     * @param side of order to remove
+     * @param userId owner of order to remove
+     * @param price price of order to remove
+     * @param quantity quantity of order to remove
+     */
+    public static Command removeByParameters(final Side side, final String userId, double price, double quantity) {
+        return new Command(Type.REMOVE_BY_PARAMETERS, null, null, requireNonNull(side), requireNonNull(userId),
+                price, quantity);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the order to add or remove, or null for the other types.
+     */
+    public Order getOrder() {
+        return order;
+    }
+
+    /**
+     * @return the id of the order to remove, or null for the other types.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the side of the order, or null when removing by id.
+     */
+    public Side getSide() {
+        return side;
+    }
+
+    /**
+     * @return the owner of the order to remove, or null for the other types.
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public double getQuantity() {
+        return quantity;
+    }
+}
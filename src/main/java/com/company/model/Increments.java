@@ -0,0 +1,122 @@
+package com.company.model;
+
+/**
+ * Tick size and lot size of the prices and quantities on a dashboard.
+ *
+ * Prices are stored as a whole number of ticks and quantities as a whole number of lots, so that price levels can
+ * be compared and hashed exactly and adding up volumes does not accumulate rounding errors. The double values are
+ * only used at the edges, when orders are created and when prices and volumes are shown.
+ */
+public final class Increments {
+
+    /**
+     * Prices and quantities with up to two decimals.
+     */
+    public static final Increments DEFAULT = new Increments(0.01, 0.01);
+
+    /**
+     * Relative tolerance used to decide whether a double is a whole number of ticks or lots. It absorbs the
+     * representation error of values such as 9.87, which are not exact in binary.
+     */
+    private static final double TOLERANCE = 1e-6;
+
+    private final double tickSize;
+    private final double lotSize;
+    /**
+     * Number of ticks (lots) in one unit of price (quantity), or 0 when the tick (lot) size does not divide one.
+     * Dividing by it gives the double closest to the exact decimal value, which multiplying by 0.01 does not.
+     */
+    private final long ticksPerUnit;
+    private final long lotsPerUnit;
+
+    public Increments(double tickSize, double lotSize) {
+        if (!(tickSize > 0) || !(lotSize > 0)) {
+            throw new IllegalArgumentException("Tick size and lot size must be positive");
+        }
+        this.tickSize = tickSize;
+        this.lotSize = lotSize;
+        this.ticksPerUnit = unitsPerIncrement(tickSize);
+        this.lotsPerUnit = unitsPerIncrement(lotSize);
+    }
+
+    private static long unitsPerIncrement(double size) {
+        double perUnit = 1.0 / size;
+        long rounded = Math.round(perUnit);
+        return Math.abs(perUnit - rounded) < TOLERANCE * perUnit ? rounded : 0;
+    }
+
+    public double getTickSize() {
+        return tickSize;
+    }
+
+    public double getLotSize() {
+        return lotSize;
+    }
+
+    /**
+     * @param price price to convert
+     * @return the price as a number of ticks
+     * @throws IllegalArgumentException if the price is not a multiple of the tick size.
+     */
+    public long toTicks(double price) {
+        return toIncrements(price, tickSize, "Price", "tick");
+    }
+
+    /**
+     * @param quantity quantity to convert
+     * @return the quantity as a number of lots
+     * @throws IllegalArgumentException if the quantity is not a multiple of the lot size.
+     */
+    public long toLots(double quantity) {
+        return toIncrements(quantity, lotSize, "Quantity", "lot");
+    }
+
+    public boolean isTickMultiple(double price) {
+        return isMultiple(price, tickSize);
+    }
+
+    public boolean isLotMultiple(double quantity) {
+        return isMultiple(quantity, lotSize);
+    }
+
+    public double toPrice(long ticks) {
+        return ticksPerUnit > 0 ? ticks / (double) ticksPerUnit : ticks * tickSize;
+    }
+
+    public double toQuantity(long lots) {
+        return lotsPerUnit > 0 ? lots / (double) lotsPerUnit : lots * lotSize;
+    }
+
+    private static boolean isMultiple(double value, double size) {
+        double increments = value / size;
+        return Math.abs(increments - Math.rint(increments)) < TOLERANCE;
+    }
+
+    private static long toIncrements(double value, double size, String what, String unit) {
+        if (!isMultiple(value, size)) {
+            throw new IllegalArgumentException(what + " " + value + " is not a multiple of the " + unit
+                    + " size " + size);
+        }
+        return Math.round(value / size);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Double.hashCode(tickSize) + Double.hashCode(lotSize);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Increments)) {
+            return false;
+        }
+        Increments that = (Increments) o;
+
+        return this.tickSize == that.tickSize && this.lotSize == that.lotSize;
+    }
+
+    @Override
+    public String toString() {
+        return "Increments{tickSize=" + tickSize + ", lotSize=" + lotSize + "}";
+    }
+}
@@ -5,25 +5,126 @@ import java.util.UUID;
 import static java.util.Objects.requireNonNull;
 
 public class Order {
-    private final String id;
-    private final Side side;
-    private final String userId;
-    private final double quantity;
-    private final double price;
+    /**
+     * Orders have either a random UUID or a numeric id. The string form of a numeric id is only created when
+     * getId() is called, so numeric orders can be created and stored without allocating strings.
+     */
+    private static final long NO_NUMERIC_ID = -1;
 
+    private String id;
+    private long numericId;
+    private Side side;
+    private String userId;
+    /**
+     * Quantity and price are stored as a whole number of lots and ticks of the increments of the order.
+     */
+    private long quantityLots;
+    private long priceTicks;
+    private Increments increments;
+    /**
+     * Set while the order has been acquired from an OrderPool and not released yet. Only the pool uses it.
+     */
+    boolean pooled;
+
+    /**
+     * Creates an order for a dashboard using the default increments.
+     *
+     * @throws IllegalArgumentException if the quantity or the price are not multiples of the default increments.
+     * @see Increments#DEFAULT
+     */
     public Order(final Side side, final String userId, double quantity, double price) {
-        this.id = UUID.randomUUID().toString();
+        this(side, userId, quantity, price, Increments.DEFAULT);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the quantity or the price are not multiples of the increments.
+     */
+    public Order(final Side side, final String userId, double quantity, double price, final Increments increments) {
+        this(UUID.randomUUID().toString(), NO_NUMERIC_ID, side, userId, increments.toLots(quantity),
+                increments.toTicks(price), increments);
+    }
+
+    /**
+     * Creates an order with a numeric id, usually from an {@link OrderIdGenerator}.
+     *
+     * @throws IllegalArgumentException if the id is negative, or if the quantity or the price are not multiples of
+     * the increments.
+     */
+    public Order(long id, final Side side, final String userId, double quantity, double price,
+                 final Increments increments) {
+        this(null, checkNumericId(id), side, userId, increments.toLots(quantity), increments.toTicks(price),
+                increments);
+    }
+
+    private Order(final String id, long numericId, final Side side, final String userId, long quantityLots,
+                  long priceTicks, final Increments increments) {
+        init(id, numericId, side, userId, quantityLots, priceTicks, increments);
+    }
+
+    /**
+     * Creates an order with a numeric id whose quantity and price are already expressed in lots and ticks.
+     *
+     * @throws IllegalArgumentException if the id is negative.
+     */
+    public static Order inTicks(long id, final Side side, final String userId, long quantityLots, long priceTicks,
+                                final Increments increments) {
+        return new Order(null, checkNumericId(id), side, userId, quantityLots, priceTicks, increments);
+    }
+
+    /**
+     * Recreates an order that has a string id, e.g. when replaying a journal, with its quantity and price already
+     * expressed in lots and ticks.
+     */
+    public static Order inTicks(final String id, final Side side, final String userId, long quantityLots,
+                                long priceTicks, final Increments increments) {
+        return new Order(requireNonNull(id), NO_NUMERIC_ID, side, userId, quantityLots, priceTicks, increments);
+    }
+
+    private static long checkNumericId(long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Order ids must not be negative");
+        }
+        return id;
+    }
+
+    /**
+     * Only used by the OrderPool to reuse an order that has been released.
+     */
+    void reset(long numericId, final Side side, final String userId, long quantityLots, long priceTicks,
+               final Increments increments) {
+        init(null, checkNumericId(numericId), side, userId, quantityLots, priceTicks, increments);
+    }
+
+    private void init(final String id, long numericId, final Side side, final String userId, long quantityLots,
+                      long priceTicks, final Increments increments) {
+        this.id = id;
+        this.numericId = numericId;
         this.side = requireNonNull(side);
         this.userId = requireNonNull(userId);
 
-        this.quantity = quantity;
-        this.price = price;
+        this.quantityLots = quantityLots;
+        this.priceTicks = priceTicks;
+        this.increments = requireNonNull(increments);
     }
 
     public String getId() {
+        if (id == null) {
+            id = Long.toString(numericId);
+        }
         return id;
     }
 
+    public boolean hasNumericId() {
+        return numericId != NO_NUMERIC_ID;
+    }
+
+    /**
+     * @return the numeric id of the order, or -1 if it has a UUID.
+     */
+    public long getNumericId() {
+        return numericId;
+    }
+
     public Side getSide() {
         return side;
     }
@@ -33,11 +134,53 @@ public class Order {
     }
 
     public double getVolume() {
-        return quantity;
+        return increments.toQuantity(quantityLots);
     }
 
     public double getPrice() {
-        return price;
+        return increments.toPrice(priceTicks);
+    }
+
+    public long getQuantityLots() {
+        return quantityLots;
+    }
+
+    public long getPriceTicks() {
+        return priceTicks;
+    }
+
+    public Increments getIncrements() {
+        return increments;
+    }
+
+    /**
+     * Takes the lots that have traded off the quantity of the order, which is what is left of it afterwards.
+     *
+     * It is meant to be called by a dashboard that matches orders, while it matches this one or while this one
+     * is resting on it.
+     *
+     * @param lots number of lots filled
+     * @throws IllegalArgumentException if the lots are not positive or are more than the quantity of the order.
+     */
+    public void fill(long lots) {
+        if (lots <= 0 || lots > quantityLots) {
+            throw new IllegalArgumentException("Cannot fill " + lots + " lots of order " + getId() + " of "
+                    + quantityLots + " lots");
+        }
+        quantityLots -= lots;
+    }
+
+    /**
+     * @return true if the other order is this order, maybe as it was before fills: it has the same id, side, user,
+     * price and increments, whatever quantity is left of either.
+     */
+    public boolean isSameOrder(final Order that) {
+        return this.getNumericId() == that.getNumericId()
+                && (this.hasNumericId() || this.getId().equals(that.getId()))
+                && this.getUserId().equals(that.getUserId())
+                && this.getPriceTicks() == that.getPriceTicks()
+                && this.getIncrements().equals(that.getIncrements())
+                && this.getSide() == that.getSide();
     }
 
     @Override
@@ -47,10 +190,12 @@ public class Order {
         }
         Order that = (Order) o;
 
-        return this.getId().equals(that.getId())
-                && this.getVolume() == that.getVolume()
+        return this.getNumericId() == that.getNumericId()
+                && (this.hasNumericId() || this.getId().equals(that.getId()))
+                && this.getQuantityLots() == that.getQuantityLots()
                 && this.getUserId().equals(that.getUserId())
-                && this.getPrice() == that.getPrice()
+                && this.getPriceTicks() == that.getPriceTicks()
+                && this.getIncrements().equals(that.getIncrements())
                 && this.getSide() == that.getSide();
     }
 }
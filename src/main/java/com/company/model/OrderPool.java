@@ -0,0 +1,84 @@
+package com.company.model;
+
+import java.util.ArrayDeque;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Free list of orders with numeric ids, so that a steady flow of new orders does not allocate.
+ *
+ * An order acquired from the pool belongs to the dashboard once it has been added to it. A Dashboard created with
+ * the pool releases the order back to the pool when it is removed, so callers must not keep using an order after
+ * removing it. Only orders acquired from the pool are taken back, once each: orders created by callers are never
+ * reused, so a dashboard with a pool can be given both. The pool is not thread safe: it is meant to be used by the
+ * thread that owns the dashboard.
+ */
+public final class OrderPool {
+
+    private final Increments increments;
+    private final OrderIdGenerator idGenerator;
+    private final ArrayDeque<Order> free;
+    private final int maxFree;
+
+    /**
+     * @param increments increments of the orders created by the pool
+     * @param idGenerator generator of the ids of the orders
+     * @param maxFree maximum number of released orders kept for reuse
+     */
+    public OrderPool(final Increments increments, final OrderIdGenerator idGenerator, int maxFree) {
+        this.increments = requireNonNull(increments);
+        this.idGenerator = requireNonNull(idGenerator);
+        this.maxFree = maxFree;
+        this.free = new ArrayDeque<>(Math.min(maxFree, 1 << 16));
+    }
+
+    public Increments getIncrements() {
+        return increments;
+    }
+
+    /**
+     * @return an order with a new id, reusing a released one if there is any.
+     */
+    public Order acquire(final Side side, final String userId, long quantityLots, long priceTicks) {
+        return acquire(idGenerator.nextId(), side, userId, quantityLots, priceTicks);
+    }
+
+    /**
+     * Acquires an order whose id was given elsewhere, e.g. by the client that sent it.
+     *
+     * @return an order with the given id, reusing a released one if there is any.
+     * @throws IllegalArgumentException if the id is negative.
+     */
+    public Order acquire(long id, final Side side, final String userId, long quantityLots, long priceTicks) {
+        Order order = free.pollLast();
+        if (order == null) {
+            order = Order.inTicks(id, side, userId, quantityLots, priceTicks, increments);
+        } else {
+            order.reset(id, side, userId, quantityLots, priceTicks, increments);
+        }
+        order.pooled = true;
+        return order;
+    }
+
+    /**
+     * Gives an order back to the pool. Orders that were not acquired from the pool, or that have already been
+     * released since, are ignored.
+     * @param order order that is no longer used
+     */
+    public void release(final Order order) {
+        if (!order.pooled) {
+            return;
+        }
+        order.pooled = false;
+        if (free.size() < maxFree) {
+            free.addLast(order);
+        }
+    }
+
+    /**
+     * @return the number of released orders waiting to be reused.
+     */
+    public int getFreeCount() {
+        return free.size();
+    }
+}
@@ -1,68 +1,431 @@
 package com.company.order.book;
 
+import com.company.model.Increments;
 import com.company.model.Order;
+import com.company.model.OrderPool;
 import com.company.model.Side;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
 
 import static java.util.Objects.requireNonNull;
 
 public class Book {
 
+    /**
+     * Maximum number of removed entries and emptied levels kept for reuse.
+     */
+    private static final int MAX_FREE_ENTRIES = 1 << 16;
+    private static final int MAX_FREE_LEVELS = 1 << 10;
+
     private final Side side;
     /**
      *  Both bids and offers use the same data structure and methods, but they use a different comparator to sort
      *  the orders. SELL orders are ordered incrementally and BUY orders are ordered from highest to lowest value.
+     *
+     *  The comparator must order the levels by price. It is only used once, when the book is created, to find out
+     *  whether the best price is the highest or the lowest one.
      */
     private final Comparator<PriceLevel> comparator;
     /**
-     * Each book keeps an ordered list of PriceLevels.
-     *
      * Each PriceLevel corresponds to a given price, and contains a list of all the orders that have been stored
      * with the same value for the price.
      *
-     * I haven't used a HashMap structure with either a Double or a BigDecimal as a key, because for values close
-     * enough the hash code would be the same and therefore would not be able to distinguish two different price levels.
+     * Prices are whole numbers of ticks, so the levels are found by price in a primitive long hash map, without
+     * boxing the price or calling the comparator.
+     */
+    private final LongObjectHashMap<PriceLevel> levelsByPrice;
+    /**
+     * The same levels, sorted in the order they are displayed.
+     */
+    private final SortedTickIndex priceLevels;
+    /**
+     * Index of the resting orders by id. It can be shared with other books (the Dashboard shares one between
+     * bids and offers), so every entry records the side of the book it belongs to.
+     */
+    private final OrderIndex orderIndex;
+    /**
+     * Tick size and lot size of every order in the book.
+     */
+    private final Increments increments;
+    /**
+     * Pool that removed orders are released to, or null if the orders are not pooled.
+     */
+    private final OrderPool orderPool;
+    /**
+     * Removed entries and emptied levels, kept for reuse so that adding orders does not allocate once the book
+     * has warmed up.
+     */
+    private final ArrayDeque<OrderEntry> freeEntries;
+    private final ArrayDeque<PriceLevel> freeLevels;
+    /**
+     * Number of changes made to the book, used as the sequence of its snapshots.
+     */
+    private long version;
+    /**
+     * True between beginBatch and endBatch. Meanwhile new levels are only found by price, and are added to the
+     * sorted index all at once when the batch ends, as are the levels that were emptied removed from it.
+     */
+    private boolean batching;
+    private PriceLevel[] pendingLevels = new PriceLevel[16];
+    private int pendingCount;
+    private boolean emptiedInBatch;
+    /**
+     * Told about every change of a level, or null if nobody is listening.
      */
-    private final List<PriceLevel> priceLevels;
+    private LevelListener levelListener;
 
     public Book(final Side side, final Comparator<PriceLevel> comparator) {
+        this(side, comparator, new OrderIndex());
+    }
+
+    public Book(final Side side, final Comparator<PriceLevel> comparator, final OrderIndex orderIndex) {
+        this(side, comparator, orderIndex, Increments.DEFAULT);
+    }
+
+    public Book(final Side side, final Comparator<PriceLevel> comparator, final OrderIndex orderIndex,
+                final Increments increments) {
+        this(side, comparator, orderIndex, increments, null);
+    }
+
+    /**
+     * @param orderPool pool that removed orders are released to, or null if the orders are not pooled.
+     */
+    public Book(final Side side, final Comparator<PriceLevel> comparator, final OrderIndex orderIndex,
+                final Increments increments, final OrderPool orderPool) {
         this.side = side;
-        this.priceLevels = new ArrayList<>();
-        this.comparator = comparator;
+        this.comparator = requireNonNull(comparator);
+        this.orderIndex = requireNonNull(orderIndex);
+        this.increments = requireNonNull(increments);
+        this.orderPool = orderPool;
+        this.freeEntries = new ArrayDeque<>();
+        this.freeLevels = new ArrayDeque<>();
+        this.levelsByPrice = new LongObjectHashMap<>();
+        this.priceLevels = new SortedTickIndex(isDescending(comparator, increments));
+    }
+
+    private static boolean isDescending(Comparator<PriceLevel> comparator, Increments increments) {
+        int order = comparator.compare(new PriceLevel(0, increments), new PriceLevel(1, increments));
+        if (order == 0) {
+            throw new IllegalArgumentException("The comparator does not order price levels by price");
+        }
+        return order > 0;
     }
 
     public Side getSide() {
         return side;
     }
 
+    public Increments getIncrements() {
+        return increments;
+    }
+
     /**
      * Adds an order to the book.
      * @param order Order to add to book.
+     * @throws IllegalArgumentException if an order with the same id is already resting in the book, if the
+     * order uses different increments from the book or if its quantity is not positive.
      */
     public void add(final Order order) {
         requireNonNull(order);
+        checkCanAdd(order);
 
-        PriceLevel priceLevel;
+        PriceLevel priceLevel = findLevel(order.getPriceTicks());
+        //A level emptied during a batch is still there, but it is created again as far as listeners are concerned.
+        boolean created = priceLevel == null || priceLevel.getNumberOfOrders() < 1;
 
-        for (int i = 0; i < priceLevels.size(); i++) {
-            if (priceLevels.get(i).getPrice() == order.getPrice()) {
-                priceLevel = priceLevels.get(i);
-                priceLevel.addOrder(order);
-                return;
+        if (priceLevel == null) {
+            priceLevel = newLevel(order.getPriceTicks());
+            levelsByPrice.put(priceLevel.getPriceTicks(), priceLevel);
+            if (batching) {
+                if (pendingCount == pendingLevels.length) {
+                    pendingLevels = Arrays.copyOf(pendingLevels, pendingCount * 2);
+                }
+                pendingLevels[pendingCount++] = priceLevel;
+            } else {
+                priceLevels.insert(priceLevel);
             }
         }
+        OrderEntry entry = newEntry(order);
+        priceLevel.addEntry(entry);
+        orderIndex.put(entry);
+        version++;
+        if (levelListener != null) {
+            levelListener.onLevelChanged(side, priceLevel,
+                    created ? DepthUpdate.Type.CREATED : DepthUpdate.Type.CHANGED);
+        }
+    }
 
-        priceLevel = new PriceLevel(order.getPrice());
-        priceLevel.addOrder(order);
+    private void checkCanAdd(Order order) {
+        if (order.getQuantityLots() < 1) {
+            throw new IllegalArgumentException("Order " + order.getId() + " has a quantity of "
+                    + order.getQuantityLots() + " lots");
+        }
+        if (!order.getIncrements().equals(increments)) {
+            throw new IllegalArgumentException("Order " + order.getId() + " uses " + order.getIncrements()
+                    + " but the book uses " + increments);
+        }
+        if (orderIndex.contains(order)) {
+            throw new IllegalArgumentException("Order " + order.getId() + " is already in the book");
+        }
+    }
+
+    /**
+     * Matches an incoming order of the other side against the orders resting in this book, as long as their
+     * prices cross: best price first, and in arrival order within a price. Every fill is taken off both orders
+     * and traded at the price of the resting order, and resting orders that are filled completely are removed
+     * from the book. Whatever is left of the incoming order is meant to be added to the book of its side.
+     *
+     * During a batch, the sorted levels are brought up to date first, so that the best price can be found.
+     *
+     * Orders are filled in place: the incoming order and the resting orders it trades against are the objects
+     * the callers added, and their quantity is what is left of them.
+     *
+     * @param incoming order of the other side, not added to any book yet
+     * @param tradeListener told about every trade, or null
+     * @return true if the incoming order has been filled completely, and must not be added to its book. It has
+     * then been released to the pool, like a removed order, if it was acquired from it.
+     * @throws IllegalArgumentException if the incoming order is on the side of the book, is already resting,
+     * uses different increments from the book or its quantity is not positive. Nothing is traded then.
+     */
+    public boolean match(final Order incoming, final TradeListener tradeListener) {
+        requireNonNull(incoming);
+        if (incoming.getSide() == side) {
+            throw new IllegalArgumentException("Order " + incoming.getId() + " is on the " + side + " side too");
+        }
+        checkCanAdd(incoming);
+        if (batching && (pendingCount > 0 || emptiedInBatch)) {
+            mergeBatch();
+        }
+        int rank = 0;
+        while (incoming.getQuantityLots() > 0 && rank < priceLevels.size()) {
+            PriceLevel level = priceLevels.get(rank);
+            if (level.getNumberOfOrders() < 1) {
+                //Emptied by this batch, it stays in the sorted levels until the batch ends.
+                rank++;
+                continue;
+            }
+            if (side == Side.SELL ? level.getPriceTicks() > incoming.getPriceTicks()
+                    : level.getPriceTicks() < incoming.getPriceTicks()) {
+                break;
+            }
+            OrderEntry resting = level.getFirst();
+            Order restingOrder = resting.getOrder();
+            long lots = Math.min(incoming.getQuantityLots(), restingOrder.getQuantityLots());
+            if (tradeListener != null) {
+                tradeListener.onTrade(new Trade(incoming.getSide(), incoming.getId(), incoming.getUserId(),
+                        restingOrder.getId(), restingOrder.getUserId(), level.getPriceTicks(), lots, increments));
+            }
+            incoming.fill(lots);
+            if (lots == restingOrder.getQuantityLots()) {
+                remove(resting);
+            } else {
+                level.fill(resting, lots);
+                version++;
+                if (levelListener != null) {
+                    levelListener.onLevelChanged(side, level, DepthUpdate.Type.CHANGED);
+                }
+            }
+        }
+        if (incoming.getQuantityLots() > 0) {
+            return false;
+        }
+        if (orderPool != null) {
+            orderPool.release(incoming);
+        }
+        return true;
+    }
+
+    /**
+     * @param levelListener told about every change of a level from now on, or null to stop telling anyone.
+     */
+    public void setLevelListener(final LevelListener levelListener) {
+        this.levelListener = levelListener;
+    }
+
+    private PriceLevel newLevel(long priceTicks) {
+        PriceLevel level = freeLevels.pollLast();
+        if (level == null) {
+            return new PriceLevel(priceTicks, increments);
+        }
+        level.reset(priceTicks);
+        return level;
+    }
+
+    private OrderEntry newEntry(Order order) {
+        OrderEntry entry = freeEntries.pollLast();
+        if (entry == null) {
+            return new OrderEntry(order, side);
+        }
+        entry.reset(order, side);
+        return entry;
+    }
+
+    /**
+     * Starts a batch of changes. Until endBatch is called, adding an order at a new price does not update the
+     * sorted levels, and neither does removing the last order of a level, so a bulk load costs a single sort and
+     * merge at the end instead of one array shift per level. Orders can be added and removed as usual, but the
+     * levels must not be read before the batch ends.
+     *
+     * @throws IllegalStateException if a batch has already been started.
+     */
+    public void beginBatch() {
+        if (batching) {
+            throw new IllegalStateException("A batch has already been started");
+        }
+        batching = true;
+    }
+
+    /**
+     * Ends a batch of changes, bringing the sorted levels up to date in one pass.
+     *
+     * @throws IllegalStateException if no batch has been started.
+     */
+    public void endBatch() {
+        if (!batching) {
+            throw new IllegalStateException("No batch has been started");
+        }
+        batching = false;
+        mergeBatch();
+    }
 
-        priceLevels.add(priceLevel);
-        Collections.sort(priceLevels, comparator);
+    /**
+     * Sweeps the levels emptied so far in the batch out of the sorted levels, and merges the new ones in.
+     */
+    private void mergeBatch() {
+        if (emptiedInBatch) {
+            emptiedInBatch = false;
+            priceLevels.removeEmpty(this::discardLevel);
+        }
+        int kept = 0;
+        for (int i = 0; i < pendingCount; i++) {
+            PriceLevel level = pendingLevels[i];
+            pendingLevels[i] = null;
+            //A level created and emptied within the batch never makes it to the sorted levels.
+            if (level.getNumberOfOrders() < 1) {
+                discardLevel(level);
+            } else {
+                pendingLevels[kept++] = level;
+            }
+        }
+        priceLevels.insertAll(pendingLevels, kept);
+        Arrays.fill(pendingLevels, 0, kept, null);
+        pendingCount = 0;
     }
 
     public List<PriceVolumePair> getPriceVolumePairs() {
-        return priceLevels.stream().map(priceLevel -> new PriceVolumePair(priceLevel.getPrice(), priceLevel.getTotalVolume())).collect(Collectors.toList());
+        return getDepth(priceLevels.size());
+    }
+
+    /**
+     * @return the best level of the book, or null if the book is empty.
+     */
+    public PriceVolumePair getBest() {
+        if (priceLevels.isEmpty()) {
+            return null;
+        }
+        PriceLevel best = priceLevels.get(0);
+        return new PriceVolumePair(best.getPriceTicks(), best.getTotalVolumeLots(), increments);
+    }
+
+    /**
+     * @param levels maximum number of levels to return
+     * @return the best levels of the book, best price first. Only those levels are looked at.
+     * @throws IllegalArgumentException if levels is negative.
+     */
+    public List<PriceVolumePair> getDepth(int levels) {
+        if (levels < 0) {
+            throw new IllegalArgumentException("The number of levels must not be negative");
+        }
+        int count = Math.min(levels, priceLevels.size());
+        List<PriceVolumePair> priceVolumePairs = new ArrayList<>(count);
+        for (int rank = 0; rank < count; rank++) {
+            PriceLevel priceLevel = priceLevels.get(rank);
+            priceVolumePairs.add(new PriceVolumePair(priceLevel.getPriceTicks(), priceLevel.getTotalVolumeLots(), increments));
+        }
+        return priceVolumePairs;
+    }
+
+    /**
+     * @param sequence sequence of the updates
+     * @return every level of the book as a CREATED update, best price first.
+     */
+    public List<DepthUpdate> getDepthUpdates(long sequence) {
+        List<DepthUpdate> updates = new ArrayList<>(priceLevels.size());
+        for (int rank = 0; rank < priceLevels.size(); rank++) {
+            PriceLevel level = priceLevels.get(rank);
+            updates.add(new DepthUpdate(DepthUpdate.Type.CREATED, side, sequence, level.getPriceTicks(),
+                    level.getTotalVolumeLots(), level.getNumberOfOrders(), increments));
+        }
+        return updates;
+    }
+
+    /**
+     * Copies the best levels of the book into arrays supplied by the caller, without allocating anything.
+     *
+     * @param prices receives the price of each level, best price first
+     * @param volumes receives the volume of each level
+     * @return the number of levels copied, which is the smallest of the length of the arrays and the number of
+     * levels in the book. The rest of the arrays is left as it was.
+     */
+    public int getDepth(double[] prices, double[] volumes) {
+        int count = Math.min(Math.min(prices.length, volumes.length), priceLevels.size());
+        for (int rank = 0; rank < count; rank++) {
+            PriceLevel priceLevel = priceLevels.get(rank);
+            prices[rank] = increments.toPrice(priceLevel.getPriceTicks());
+            volumes[rank] = increments.toQuantity(priceLevel.getTotalVolumeLots());
+        }
+        return count;
+    }
+
+    /**
+     * Goes through every order of the book, best price first and in arrival order within a price, which is the
+     * order they must be added back in to rebuild the book. It must not be called during a batch.
+     *
+     * @param action called with every order of the book
+     */
+    public void forEachOrder(final Consumer<Order> action) {
+        requireNonNull(action);
+        for (int rank = 0; rank < priceLevels.size(); rank++) {
+            priceLevels.get(rank).forEachOrder(action);
+        }
+    }
+
+    /**
+     * Copies the best levels of the book into arrays supplied by the caller, as ticks and lots, without allocating
+     * anything.
+     *
+     * @param priceTicks receives the price of each level in ticks, best price first
+     * @param volumeLots receives the volume of each level in lots
+     * @return the number of levels copied, which is the smallest of the length of the arrays and the number of
+     * levels in the book. The rest of the arrays is left as it was.
+     */
+    public int getDepth(long[] priceTicks, long[] volumeLots) {
+        int count = Math.min(Math.min(priceTicks.length, volumeLots.length), priceLevels.size());
+        for (int rank = 0; rank < count; rank++) {
+            PriceLevel priceLevel = priceLevels.get(rank);
+            priceTicks[rank] = priceLevel.getPriceTicks();
+            volumeLots[rank] = priceLevel.getTotalVolumeLots();
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of changes made to the book since it was created.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return an immutable copy of the price levels, whose sequence is the current version of the book.
+     */
+    public DepthSnapshot getSnapshot() {
+        return new DepthSnapshot(side, version, getPriceVolumePairs());
     }
 
     /**
@@ -72,15 +435,10 @@ public class Book {
      * @see Order
      */
     public boolean removeOrder(Order order) {
-        for (int i = 0; i < priceLevels.size(); i++) {
-            PriceLevel level = priceLevels.get(i);
-            if(level.removeOrder(order)){
-                if(level.getNumberOfOrders()<1){
-                    //If there are no more orders stored with this price, the PriceLevel is removed from the book.
-                    priceLevels.remove(i);
-                }
-                return true;
-            }
+        OrderEntry entry = order.hasNumericId() ? orderIndex.get(order.getNumericId()) : orderIndex.get(order.getId());
+        //Not equals, as the quantity of a resting order goes down as it is filled.
+        if (entry != null && entry.getOrder().isSameOrder(order)) {
+            return remove(entry);
         }
         return false;
     }
@@ -92,17 +450,19 @@ public class Book {
      * @see Order
      */
     public boolean removeOrder(String id) {
-        for (int i = 0; i < priceLevels.size(); i++) {
-            PriceLevel level = priceLevels.get(i);
-            if (level.removeOrder(id)) {
-                if (level.getNumberOfOrders() < 1) {
-                    //If there are no more orders stored with this price, the PriceLevel is removed from the book.
-                    priceLevels.remove(i);
-                }
-                return true;
-            }
-        }
-        return false;
+        OrderEntry entry = orderIndex.get(id);
+        return entry != null && remove(entry);
+    }
+
+    /**
+     * Removes an order by numeric id.
+     * @param id numeric id of order to remove
+     * @return true if successful, false if the other was not found.
+     * @see Order#getNumericId()
+     */
+    public boolean removeOrder(long id) {
+        OrderEntry entry = orderIndex.get(id);
+        return entry != null && remove(entry);
     }
 
     /**
@@ -118,16 +478,81 @@ public class Book {
      * @see Order
      */
     public boolean removeOrder(String userId, double price, double quantity) {
-        for (int i = 0; i < priceLevels.size(); i++) {
-            PriceLevel level = priceLevels.get(i);
-            if (level.getPrice() == price && level.removeOrder(userId, quantity)) {
-                if (level.getNumberOfOrders() < 1) {
-                    //If there are no more orders stored with this price, the PriceLevel is removed from the book.
-                    priceLevels.remove(i);
-                }
-                return true;
+        if (!increments.isTickMultiple(price) || !increments.isLotMultiple(quantity)) {
+            return false;
+        }
+        PriceLevel level = findLevel(increments.toTicks(price));
+        UserIndex users = orderIndex.getUsers();
+        int user = users.find(userId);
+        int userOrders = users.getOrderCount(user);
+        if (level == null || userOrders == 0) {
+            return false;
+        }
+        long quantityLots = increments.toLots(quantity);
+        if (userOrders >= level.getNumberOfOrders()) {
+            return remove(level.find(user, quantityLots));
+        }
+        //The user has fewer orders than the level, so they are quicker to look through.
+        for (OrderEntry entry = users.getFirst(user); entry != null; entry = entry.getNextOfUser()) {
+            if (entry.getLevel() == level && entry.getOrder().getQuantityLots() == quantityLots) {
+                return remove(entry);
             }
         }
         return false;
     }
+
+    /**
+     * Removes an order whose entry has already been looked up in the OrderIndex.
+     * @param entry entry of the order to remove
+     * @return true if successful, false if the entry is null, belongs to the other side or was already removed.
+     * @see OrderIndex
+     */
+    public boolean remove(OrderEntry entry) {
+        if (entry == null || entry.getSide() != side || entry.getLevel() == null) {
+            return false;
+        }
+        PriceLevel level = entry.getLevel();
+        Order order = entry.getOrder();
+        level.removeEntry(entry);
+        orderIndex.remove(entry);
+        if (levelListener != null) {
+            levelListener.onLevelChanged(side, level,
+                    level.getNumberOfOrders() < 1 ? DepthUpdate.Type.REMOVED : DepthUpdate.Type.CHANGED);
+        }
+        removeIfEmpty(level);
+        version++;
+
+        entry.reset(null, null);
+        if (freeEntries.size() < MAX_FREE_ENTRIES) {
+            freeEntries.addLast(entry);
+        }
+        if (orderPool != null) {
+            orderPool.release(order);
+        }
+        return true;
+    }
+
+    private PriceLevel findLevel(long priceTicks) {
+        return levelsByPrice.get(priceTicks);
+    }
+
+    private void removeIfEmpty(PriceLevel level) {
+        if (level.getNumberOfOrders() < 1) {
+            if (batching) {
+                //Kept until the batch ends, as another order may still be added at the same price.
+                emptiedInBatch = true;
+                return;
+            }
+            //If there are no more orders stored with this price, the PriceLevel is removed from the book.
+            priceLevels.remove(level.getPriceTicks());
+            discardLevel(level);
+        }
+    }
+
+    private void discardLevel(PriceLevel level) {
+        levelsByPrice.remove(level.getPriceTicks());
+        if (freeLevels.size() < MAX_FREE_LEVELS) {
+            freeLevels.addLast(level);
+        }
+    }
 }
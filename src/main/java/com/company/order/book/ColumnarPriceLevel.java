@@ -0,0 +1,232 @@
+package com.company.order.book;
+
+import com.company.model.Increments;
+import com.company.model.Order;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A price level laid out as columns: the ids, quantities and users of its orders are kept in parallel primitive
+ * arrays, in arrival order, next to an array of the orders themselves.
+ *
+ * PriceLevel chains its orders through their entries, so going over them loads an entry and an Order for each
+ * one, wherever they were allocated. Here a scan only reads the columns it needs, which are contiguous: finding an
+ * order by id reads the ids, finding one by user and quantity reads the users and the quantities, and adding up
+ * the volume reads the quantities alone. These are plain counted loops without calls or branches on objects,
+ * which the JIT unrolls and, for the sums, can turn into SIMD instructions.
+ *
+ * The columns are kept compact: removing an order shifts the later ones back, which keeps their time priority
+ * and costs a copy of the rest of the columns instead of unlinking an entry. Adding an order appends to the
+ * columns and only allocates when they grow.
+ *
+ * Users are stored as numbers, given to them by a map that the levels of a book can share. Only orders with
+ * numeric ids can be added, and their quantity is copied when they are added, so orders must not be filled
+ * while they rest here.
+ */
+public final class ColumnarPriceLevel {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final long priceTicks;
+    private final Increments increments;
+    /**
+     * Number of every user seen, shared with the other levels of the book.
+     */
+    private final Map<String, Integer> userNumbers;
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] quantityLots = new long[INITIAL_CAPACITY];
+    private int[] users = new int[INITIAL_CAPACITY];
+    private Order[] orders = new Order[INITIAL_CAPACITY];
+    private int numberOfOrders;
+    /**
+     * Running total of the quantity column, in lots.
+     */
+    private long totalVolumeLots;
+
+    public ColumnarPriceLevel(long priceTicks, final Increments increments) {
+        this(priceTicks, increments, new HashMap<>());
+    }
+
+    /**
+     * @param userNumbers numbers of the users, which the level adds to. Levels that share it can compare users
+     * by number.
+     */
+    public ColumnarPriceLevel(long priceTicks, final Increments increments, final Map<String, Integer> userNumbers) {
+        this.priceTicks = priceTicks;
+        this.increments = increments;
+        this.userNumbers = userNumbers;
+    }
+
+    public long getPriceTicks() {
+        return priceTicks;
+    }
+
+    public double getPrice() {
+        return increments.toPrice(priceTicks);
+    }
+
+    public Increments getIncrements() {
+        return increments;
+    }
+
+    public int getNumberOfOrders() {
+        return numberOfOrders;
+    }
+
+    public double getTotalVolume() {
+        return increments.toQuantity(totalVolumeLots);
+    }
+
+    public long getTotalVolumeLots() {
+        return totalVolumeLots;
+    }
+
+    /**
+     * Adds up the quantity column, ignoring the running total.
+     */
+    long recomputeTotalVolumeLots() {
+        long volumeLots = 0;
+        for (int i = 0; i < numberOfOrders; i++) {
+            volumeLots += quantityLots[i];
+        }
+        return volumeLots;
+    }
+
+    /**
+     * @return the volume of the orders of a user at this price, in lots.
+     */
+    public long getVolumeLots(String userId) {
+        Integer user = userNumbers.get(userId);
+        if (user == null) {
+            return 0;
+        }
+        int number = user;
+        long volumeLots = 0;
+        for (int i = 0; i < numberOfOrders; i++) {
+            //Multiplied rather than branched on, so that the loop has no branch in its body.
+            volumeLots += quantityLots[i] * (users[i] == number ? 1 : 0);
+        }
+        return volumeLots;
+    }
+
+    private boolean totalsAreConsistent() {
+        for (int i = 0; i < numberOfOrders; i++) {
+            if (orders[i].getNumericId() != ids[i] || !userNumbers.get(orders[i].getUserId()).equals(users[i])) {
+                throw new AssertionError("Level " + priceTicks + " has columns out of step at " + i);
+            }
+        }
+        long expectedVolumeLots = recomputeTotalVolumeLots();
+        if (expectedVolumeLots != totalVolumeLots) {
+            throw new AssertionError("Level " + priceTicks + " has a running volume of " + totalVolumeLots
+                    + " lots but its orders add up to " + expectedVolumeLots);
+        }
+        return true;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the order does not have a numeric id.
+     */
+    public void addOrder(final Order order) {
+        if (!order.hasNumericId()) {
+            throw new IllegalArgumentException("Order " + order.getId() + " does not have a numeric id");
+        }
+        Integer user = userNumbers.get(order.getUserId());
+        if (user == null) {
+            user = userNumbers.size();
+            userNumbers.put(order.getUserId(), user);
+        }
+        if (numberOfOrders == ids.length) {
+            int capacity = numberOfOrders * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            quantityLots = Arrays.copyOf(quantityLots, capacity);
+            users = Arrays.copyOf(users, capacity);
+            orders = Arrays.copyOf(orders, capacity);
+        }
+        ids[numberOfOrders] = order.getNumericId();
+        quantityLots[numberOfOrders] = order.getQuantityLots();
+        users[numberOfOrders] = user;
+        orders[numberOfOrders] = order;
+        numberOfOrders++;
+        totalVolumeLots += order.getQuantityLots();
+        assert totalsAreConsistent();
+    }
+
+    private void removeAt(int index) {
+        totalVolumeLots -= quantityLots[index];
+        int moved = numberOfOrders - index - 1;
+        System.arraycopy(ids, index + 1, ids, index, moved);
+        System.arraycopy(quantityLots, index + 1, quantityLots, index, moved);
+        System.arraycopy(users, index + 1, users, index, moved);
+        System.arraycopy(orders, index + 1, orders, index, moved);
+        orders[--numberOfOrders] = null;
+        assert totalsAreConsistent();
+    }
+
+    private boolean removeIfFound(int index) {
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    int indexOf(long id) {
+        for (int i = 0; i < numberOfOrders; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int indexOf(int user, long lots) {
+        for (int i = 0; i < numberOfOrders; i++) {
+            if (users[i] == user && quantityLots[i] == lots) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes an order by id.
+     * @return true if successful, false if the order was not found.
+     */
+    public boolean removeOrder(long id) {
+        return removeIfFound(indexOf(id));
+    }
+
+    /**
+     * Removes an order equal to the given one.
+     * @return true if successful, false if the order was not found.
+     */
+    public boolean removeOrder(final Order order) {
+        int index = order.hasNumericId() ? indexOf(order.getNumericId()) : -1;
+        return removeIfFound(index >= 0 && orders[index].equals(order) ? index : -1);
+    }
+
+    /**
+     * Removes the oldest order of a user with the given quantity, as PriceLevel does.
+     *
+     * @param userId owner of order to remove
+     * @param quantity quantity of order to remove
+     * @return true if successful, false if the order was not found.
+     */
+    public boolean removeOrder(final String userId, double quantity) {
+        Integer user = userNumbers.get(userId);
+        return user != null && increments.isLotMultiple(quantity)
+                && removeIfFound(indexOf(user, increments.toLots(quantity)));
+    }
+
+    /**
+     * @param action called with every order of the level, in arrival order
+     */
+    public void forEachOrder(final Consumer<Order> action) {
+        for (int i = 0; i < numberOfOrders; i++) {
+            action.accept(orders[i]);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.company.order.book;
+
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.Side;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Thread safe version of the Book, for dashboards that are updated from several threads.
+ *
+ * Locking is done at two levels:
+ * <ul>
+ *     <li>Every change to the book holds the shared side lock, and snapshots hold it exclusively. Writers never
+ *     wait for each other on it, and a snapshot sees the book between two changes.</li>
+ *     <li>Every change to a level also holds the stripe lock of its price. Orders at prices in different stripes
+ *     are added and removed in parallel, while changes to the same level are serialized.</li>
+ * </ul>
+ * The levels themselves are kept in a ConcurrentSkipListMap, so creating and removing levels of different stripes
+ * does not need any other lock.
+ */
+public class ConcurrentBook {
+
+    private final Side side;
+    private final Increments increments;
+    private final ConcurrentSkipListMap<Long, PriceLevel> priceLevels;
+    /**
+     * Index of the resting orders by id. The ConcurrentDashboard shares one between bids and offers, so every
+     * entry records the side of the book it belongs to.
+     */
+    private final ConcurrentMap<String, OrderEntry> orderIndex;
+    private final ReentrantReadWriteLock sideLock;
+    private final ReentrantLock[] stripes;
+    /**
+     * Number of changes made to the book. It is a LongAdder so that writers do not contend on it, and it is only
+     * read holding the side lock exclusively, when its sum is exact.
+     */
+    private final LongAdder version;
+
+    /**
+     * @param side side of the orders in the book
+     * @param increments tick size and lot size of the orders in the book
+     * @param orderIndex index of the resting orders by id, which can be shared with the book of the other side
+     * @param stripes number of stripe locks, rounded up to a power of two
+     */
+    public ConcurrentBook(final Side side, final Increments increments,
+                          final ConcurrentMap<String, OrderEntry> orderIndex, int stripes) {
+        this.side = requireNonNull(side);
+        this.increments = requireNonNull(increments);
+        this.orderIndex = requireNonNull(orderIndex);
+        //The best bid is the highest price and the best offer the lowest one.
+        this.priceLevels = side == Side.BUY
+                ? new ConcurrentSkipListMap<>(Collections.reverseOrder())
+                : new ConcurrentSkipListMap<>();
+        this.sideLock = new ReentrantReadWriteLock();
+        this.version = new LongAdder();
+
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public Side getSide() {
+        return side;
+    }
+
+    private ReentrantLock stripeOf(long priceTicks) {
+        long hash = priceTicks * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (hash >>> 32) & (stripes.length - 1)];
+    }
+
+    /**
+     * Adds an order to the book.
+     * @param order Order to add to book.
+     * @throws IllegalArgumentException if an order with the same id is already resting in the book, if the order
+     * uses different increments from the book or if its quantity is not positive.
+     */
+    public void add(final Order order) {
+        requireNonNull(order);
+        if (order.getQuantityLots() < 1) {
+            throw new IllegalArgumentException("Order " + order.getId() + " has a quantity of "
+                    + order.getQuantityLots() + " lots");
+        }
+        if (!order.getIncrements().equals(increments)) {
+            throw new IllegalArgumentException("Order " + order.getId() + " uses " + order.getIncrements()
+                    + " but the book uses " + increments);
+        }
+        OrderEntry entry = new OrderEntry(order, side);
+        ReentrantLock stripe = stripeOf(order.getPriceTicks());
+
+        sideLock.readLock().lock();
+        stripe.lock();
+        try {
+            //Indexed before it is linked to its level, but a cancel that finds it in the index takes this stripe
+            //lock too, so it only gets to the entry once it is linked.
+            if (orderIndex.putIfAbsent(order.getId(), entry) != null) {
+                throw new IllegalArgumentException("Order " + order.getId() + " is already in the book");
+            }
+            PriceLevel level = priceLevels.get(order.getPriceTicks());
+            if (level == null) {
+                level = new PriceLevel(order.getPriceTicks(), increments);
+                priceLevels.put(order.getPriceTicks(), level);
+            }
+            level.addEntry(entry);
+            version.increment();
+        } finally {
+            stripe.unlock();
+            sideLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the price levels of the book, best price first, as they were at a single point in time.
+     */
+    public List<PriceVolumePair> getPriceVolumePairs() {
+        sideLock.writeLock().lock();
+        try {
+            return collectPriceVolumePairs();
+        } finally {
+            sideLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Takes a snapshot of the book, unless it has not changed since a previous one.
+     * @param previous the last snapshot taken, or null
+     * @return a new snapshot, or the previous one if the book has not changed since it was taken.
+     */
+    public DepthSnapshot getSnapshot(DepthSnapshot previous) {
+        sideLock.writeLock().lock();
+        try {
+            long current = version.sum();
+            if (previous != null && previous.getSequence() == current) {
+                return previous;
+            }
+            return new DepthSnapshot(side, current, collectPriceVolumePairs());
+        } finally {
+            sideLock.writeLock().unlock();
+        }
+    }
+
+    private List<PriceVolumePair> collectPriceVolumePairs() {
+        List<PriceVolumePair> priceVolumePairs = new ArrayList<>(priceLevels.size());
+        for (PriceLevel level : priceLevels.values()) {
+            priceVolumePairs.add(new PriceVolumePair(level.getPriceTicks(), level.getTotalVolumeLots(), increments));
+        }
+        return priceVolumePairs;
+    }
+
+    /**
+     * Removes an order from the book.
+     * @param order order to remove
+     * @return true if successful, false if the other was not found.
+     * @see Order
+     */
+    public boolean removeOrder(Order order) {
+        OrderEntry entry = orderIndex.get(order.getId());
+        return entry != null && entry.getOrder().equals(order) && remove(entry);
+    }
+
+    /**
+     * Removes an order by id.
+     * @param id id of order to remove
+     * @return true if successful, false if the other was not found.
+     * @see Order
+     */
+    public boolean removeOrder(String id) {
+        OrderEntry entry = orderIndex.get(id);
+        return entry != null && remove(entry);
+    }
+
+    /**
+     * Removes an order from the book, based on userId, price and quantity.
+     * If there are more than one order with the same parameters it provides no guarantees about which
+     * one is removed.
+     *
+     * @param userId owner of order to remove
+     * @param price price of order to remove
+     * @param quantity quantity of order to remove
+     * @return true if successful, false if the other was not found.
+     *
+     * @see Order
+     */
+    public boolean removeOrder(String userId, double price, double quantity) {
+        if (!increments.isTickMultiple(price) || !increments.isLotMultiple(quantity)) {
+            return false;
+        }
+        long priceTicks = increments.toTicks(price);
+        ReentrantLock stripe = stripeOf(priceTicks);
+
+        sideLock.readLock().lock();
+        stripe.lock();
+        try {
+            PriceLevel level = priceLevels.get(priceTicks);
+            OrderEntry entry = level == null ? null : level.find(userId, increments.toLots(quantity));
+            return entry != null && unlink(entry);
+        } finally {
+            stripe.unlock();
+            sideLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an order whose entry has already been looked up in the order index.
+     * @param entry entry of the order to remove
+     * @return true if successful, false if the entry belongs to the other side or was already removed.
+     */
+    public boolean remove(OrderEntry entry) {
+        if (entry.getSide() != side) {
+            return false;
+        }
+        ReentrantLock stripe = stripeOf(entry.getOrder().getPriceTicks());
+
+        sideLock.readLock().lock();
+        stripe.lock();
+        try {
+            //Checked under the stripe lock, as another thread may have removed the order since it was looked up.
+            return entry.getLevel() != null && unlink(entry);
+        } finally {
+            stripe.unlock();
+            sideLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Must be called holding the side lock and the stripe lock of the price of the entry.
+     */
+    private boolean unlink(OrderEntry entry) {
+        PriceLevel level = entry.getLevel();
+        level.removeEntry(entry);
+        orderIndex.remove(entry.getOrder().getId(), entry);
+        if (level.getNumberOfOrders() < 1) {
+            //If there are no more orders stored with this price, the PriceLevel is removed from the book.
+            priceLevels.remove(level.getPriceTicks(), level);
+        }
+        version.increment();
+        return true;
+    }
+}
@@ -0,0 +1,305 @@
+package com.company.order.book;
+
+import com.company.model.Side;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Fans the depth updates of a dashboard out to many Reactive Streams subscribers, e.g. one per viewer of a board.
+ *
+ * Updates are conflated: while a subscriber has not taken an update, a later update of the same level replaces it,
+ * so a slow subscriber gets the latest volume of every level that changed instead of every change. The sequence of
+ * the updates it gets therefore has gaps, but it still ends up with the same depth as the dashboard. A subscriber
+ * starts with every level of the dashboard as a CREATED update.
+ *
+ * The thread that updates the dashboard only records the latest update of the level in a shared table, so neither
+ * the number of subscribers nor their speed slows it down. Distributing the updates to the subscribers and
+ * delivering them are done by tasks on the executor. Every subscriber has a bounded number of pending levels, and
+ * one that falls so far behind that it exceeds it is failed with an IllegalStateException.
+ *
+ * <pre>
+ *     ConflatingDepthPublisher publisher = new ConflatingDepthPublisher(executor, 1024);
+ *     dashboard.subscribe(publisher);
+ *     publisher.subscribe(viewer);
+ * </pre>
+ */
+public class ConflatingDepthPublisher implements Publisher<DepthUpdate>, DepthListener {
+
+    private final Executor executor;
+    private final int maxPendingLevels;
+    private final CopyOnWriteArrayList<ConflatingSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    /**
+     * Updates not distributed to the subscribers yet, conflated by level. Guarded by this publisher.
+     */
+    private LinkedHashMap<Long, DepthUpdate> undistributed = new LinkedHashMap<>();
+    private boolean distributionScheduled;
+    /**
+     * Every level of the dashboard, as of the updates distributed so far. New subscribers start from it. Guarded
+     * by the distribution lock, which serializes distributions and new subscriptions.
+     */
+    private final Map<Long, DepthUpdate> levels = new LinkedHashMap<>();
+    private final Object distributionLock = new Object();
+
+    /**
+     * @param executor runs the distribution and delivery tasks
+     * @param maxPendingLevels maximum number of levels with updates waiting for a subscriber
+     */
+    public ConflatingDepthPublisher(final Executor executor, int maxPendingLevels) {
+        if (maxPendingLevels < 1) {
+            throw new IllegalArgumentException("Subscribers must be able to keep at least one pending level");
+        }
+        this.executor = requireNonNull(executor);
+        this.maxPendingLevels = maxPendingLevels;
+    }
+
+    private static long keyOf(DepthUpdate update) {
+        return update.getPriceTicks() << 1 | (update.getSide() == Side.BUY ? 0 : 1);
+    }
+
+    /**
+     * Conflates an update with the one still pending for the same level.
+     *
+     * @param pending update not taken yet, or null
+     * @param update later update of the same level
+     * @return the update that replaces both, or null if the level was created and removed in between.
+     */
+    static DepthUpdate conflate(DepthUpdate pending, DepthUpdate update) {
+        if (pending == null) {
+            return update;
+        }
+        switch (pending.getType()) {
+            case CREATED:
+                //The receiver never saw the level, so it is still new to it, or it can forget about it.
+                return update.getType() == DepthUpdate.Type.REMOVED ? null : retype(update, DepthUpdate.Type.CREATED);
+            case REMOVED:
+                //The receiver still has the level, so for it the level has just changed.
+                return retype(update, DepthUpdate.Type.CHANGED);
+            default:
+                return update;
+        }
+    }
+
+    private static DepthUpdate retype(DepthUpdate update, DepthUpdate.Type type) {
+        if (update.getType() == type) {
+            return update;
+        }
+        return new DepthUpdate(type, update.getSide(), update.getSequence(), update.getPriceTicks(),
+                update.getVolumeLots(), update.getNumberOfOrders(), update.getIncrements());
+    }
+
+    private static void merge(Map<Long, DepthUpdate> pending, DepthUpdate update) {
+        Long key = keyOf(update);
+        DepthUpdate conflated = conflate(pending.get(key), update);
+        if (conflated == null) {
+            pending.remove(key);
+        } else {
+            pending.put(key, conflated);
+        }
+    }
+
+    @Override
+    public void onSnapshot(long sequence, List<DepthUpdate> bids, List<DepthUpdate> offers) {
+        boolean idle;
+        synchronized (this) {
+            for (DepthUpdate level : bids) {
+                merge(undistributed, level);
+            }
+            for (DepthUpdate level : offers) {
+                merge(undistributed, level);
+            }
+            idle = markDistributionScheduled();
+        }
+        if (idle) {
+            executor.execute(this::distribute);
+        }
+    }
+
+    @Override
+    public void onUpdate(DepthUpdate update) {
+        boolean idle;
+        synchronized (this) {
+            merge(undistributed, update);
+            idle = markDistributionScheduled();
+        }
+        if (idle) {
+            executor.execute(this::distribute);
+        }
+    }
+
+    /**
+     * Must be called holding this publisher's lock.
+     *
+     * @return true if no distribution was scheduled yet, in which case the caller must schedule one.
+     */
+    private boolean markDistributionScheduled() {
+        if (distributionScheduled) {
+            return false;
+        }
+        distributionScheduled = true;
+        return true;
+    }
+
+    /**
+     * Runs until there is nothing left to distribute. Only one distribution runs at a time, so batches reach the
+     * subscribers in order.
+     */
+    private void distribute() {
+        while (true) {
+            Map<Long, DepthUpdate> batch;
+            synchronized (this) {
+                if (undistributed.isEmpty()) {
+                    distributionScheduled = false;
+                    return;
+                }
+                batch = undistributed;
+                undistributed = new LinkedHashMap<>();
+            }
+            synchronized (distributionLock) {
+                for (DepthUpdate update : batch.values()) {
+                    if (update.getType() == DepthUpdate.Type.REMOVED) {
+                        levels.remove(keyOf(update));
+                    } else {
+                        levels.put(keyOf(update), retype(update, DepthUpdate.Type.CREATED));
+                    }
+                }
+                for (ConflatingSubscription subscription : subscriptions) {
+                    subscription.offer(batch.values());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super DepthUpdate> subscriber) {
+        requireNonNull(subscriber);
+        ConflatingSubscription subscription = new ConflatingSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        synchronized (distributionLock) {
+            if (!subscription.cancelled) {
+                subscription.offer(levels.values());
+                subscriptions.add(subscription);
+            }
+        }
+    }
+
+    /**
+     * @return the number of subscribers that have not cancelled or failed.
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    private final class ConflatingSubscription implements Subscription {
+
+        private final Subscriber<? super DepthUpdate> subscriber;
+        /**
+         * Updates not delivered yet, conflated by level. Guarded by this subscription.
+         */
+        private final LinkedHashMap<Long, DepthUpdate> pending = new LinkedHashMap<>();
+        private final AtomicLong demand = new AtomicLong();
+        /**
+         * Number of times delivery was asked for while it was running, so that only one task delivers at a time.
+         */
+        private final AtomicInteger deliveries = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+
+        ConflatingSubscription(final Subscriber<? super DepthUpdate> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(Iterable<DepthUpdate> updates) {
+            if (cancelled) {
+                return;
+            }
+            synchronized (this) {
+                for (DepthUpdate update : updates) {
+                    merge(pending, update);
+                }
+                if (pending.size() > maxPendingLevels) {
+                    pending.clear();
+                    error = new IllegalStateException("The subscriber is more than " + maxPendingLevels
+                            + " levels behind");
+                }
+            }
+            scheduleDelivery();
+        }
+
+        private void scheduleDelivery() {
+            if (deliveries.getAndIncrement() == 0) {
+                executor.execute(this::deliver);
+            }
+        }
+
+        private void deliver() {
+            int missed = 1;
+            do {
+                while (!cancelled) {
+                    if (error != null) {
+                        cancel();
+                        subscriber.onError(error);
+                        break;
+                    }
+                    if (demand.get() == 0) {
+                        break;
+                    }
+                    DepthUpdate next = poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                    subscriber.onNext(next);
+                }
+                missed = deliveries.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private synchronized DepthUpdate poll() {
+            Iterator<DepthUpdate> iterator = pending.values().iterator();
+            if (!iterator.hasNext()) {
+                return null;
+            }
+            DepthUpdate next = iterator.next();
+            iterator.remove();
+            return next;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Subscribers must request a positive number of updates");
+            } else {
+                long current;
+                long updated;
+                do {
+                    current = demand.get();
+                    updated = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!demand.compareAndSet(current, updated));
+            }
+            scheduleDelivery();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            synchronized (this) {
+                pending.clear();
+            }
+        }
+    }
+}
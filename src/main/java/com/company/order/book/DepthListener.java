@@ -0,0 +1,27 @@
+package com.company.order.book;
+
+import java.util.List;
+
+/**
+ * Subscriber to the depth updates of a dashboard.
+ *
+ * It first receives the full depth of the dashboard, and then every update that follows it, so a subscriber can
+ * join at any time and keep its own copy of the depth without ever reading the whole dashboard again.
+ */
+public interface DepthListener {
+
+    /**
+     * Called once, when subscribing, with every level of the dashboard as a CREATED update.
+     *
+     * @param sequence sequence of the last update before the subscription. The first update received afterwards
+     *                 has the next sequence.
+     * @param bids the levels of the BUY side, best price first
+     * @param offers the levels of the SELL side, best price first
+     */
+    void onSnapshot(long sequence, List<DepthUpdate> bids, List<DepthUpdate> offers);
+
+    /**
+     * Called with every update after the snapshot, in sequence order.
+     */
+    void onUpdate(DepthUpdate update);
+}
@@ -0,0 +1,41 @@
+package com.company.order.book;
+
+import com.company.model.Side;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable view of the price levels of one side of a dashboard, as they were at a given version of the book.
+ *
+ * The sequence is the number of changes the book had gone through when the snapshot was taken. Clients can keep
+ * the sequence of the last snapshot they read and compare it with the latest one to find out whether anything
+ * changed since.
+ */
+public final class DepthSnapshot {
+
+    private final Side side;
+    private final long sequence;
+    private final List<PriceVolumePair> priceVolumePairs;
+
+    public DepthSnapshot(final Side side, long sequence, final List<PriceVolumePair> priceVolumePairs) {
+        this.side = side;
+        this.sequence = sequence;
+        this.priceVolumePairs = Collections.unmodifiableList(priceVolumePairs);
+    }
+
+    public Side getSide() {
+        return side;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the price levels, best price first. The list cannot be modified.
+     */
+    public List<PriceVolumePair> getPriceVolumePairs() {
+        return priceVolumePairs;
+    }
+}
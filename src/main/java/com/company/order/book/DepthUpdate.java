@@ -0,0 +1,90 @@
+package com.company.order.book;
+
+import com.company.model.Increments;
+import com.company.model.Side;
+
+/**
+ * Immutable change of one price level: its new total volume and number of orders after an order was added to it
+ * or removed from it.
+ *
+ * Updates of a dashboard are numbered by a single sequence shared by both sides, increasing by one with every
+ * update, so a subscriber can tell whether it missed any.
+ */
+public final class DepthUpdate {
+
+    public enum Type {
+        /**
+         * The first order was added at a new price.
+         */
+        CREATED,
+        /**
+         * An order was added to or removed from a level that still has orders.
+         */
+        CHANGED,
+        /**
+         * The last order of a level was removed. Its volume and number of orders are 0.
+         */
+        REMOVED
+    }
+
+    private final Type type;
+    private final Side side;
+    private final long sequence;
+    private final long priceTicks;
+    private final long volumeLots;
+    private final int numberOfOrders;
+    private final Increments increments;
+
+    public DepthUpdate(final Type type, final Side side, long sequence, long priceTicks, long volumeLots,
+                       int numberOfOrders, final Increments increments) {
+        this.type = type;
+        this.side = side;
+        this.sequence = sequence;
+        this.priceTicks = priceTicks;
+        this.volumeLots = volumeLots;
+        this.numberOfOrders = numberOfOrders;
+        this.increments = increments;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Side getSide() {
+        return side;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public double getPrice() {
+        return increments.toPrice(priceTicks);
+    }
+
+    public double getVolume() {
+        return increments.toQuantity(volumeLots);
+    }
+
+    public long getPriceTicks() {
+        return priceTicks;
+    }
+
+    public long getVolumeLots() {
+        return volumeLots;
+    }
+
+    public int getNumberOfOrders() {
+        return numberOfOrders;
+    }
+
+    public Increments getIncrements() {
+        return increments;
+    }
+
+    @Override
+    public String toString() {
+        return "DepthUpdate{" + type + " " + side + " #" + sequence + " " + getPrice() + " x " + getVolume()
+                + " (" + numberOfOrders + " orders)}";
+    }
+}
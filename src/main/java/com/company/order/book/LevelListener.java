@@ -0,0 +1,18 @@
+package com.company.order.book;
+
+import com.company.model.Side;
+
+/**
+ * Told by a Book about every change of one of its price levels, on the thread that made the change.
+ *
+ * @see Book#setLevelListener(LevelListener)
+ */
+public interface LevelListener {
+
+    /**
+     * @param side side of the book
+     * @param level the level, with its totals already updated. It must not be kept, as emptied levels are reused.
+     * @param type what happened to the level
+     */
+    void onLevelChanged(Side side, PriceLevel level, DepthUpdate.Type type);
+}
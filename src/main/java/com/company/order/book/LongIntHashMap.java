@@ -0,0 +1,126 @@
+package com.company.order.book;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive long keys to non-negative int values, laid out like LongObjectHashMap: two parallel
+ * arrays with open addressing, linear probing and removal by shifting back.
+ *
+ * A negative value marks an empty slot, so only two arrays are allocated whatever the number of entries, and
+ * neither of them holds references.
+ */
+final class LongIntHashMap {
+
+    static final int MISSING = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        //The map grows once it is half full.
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+    }
+
+    private int slotOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * @return the value for the key, or MISSING if the key is not in the map.
+     */
+    int get(long key) {
+        for (int slot = slotOf(key); values[slot] >= 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return MISSING;
+    }
+
+    /**
+     * @return the value previously stored for the key, or MISSING if there was none.
+     */
+    int put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative values cannot be stored");
+        }
+        int slot = slotOf(key);
+        for (; values[slot] >= 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > values.length) {
+            rehash(values.length << 1);
+        }
+        return MISSING;
+    }
+
+    /**
+     * @return the value that was removed, or MISSING if the key was not in the map.
+     */
+    int remove(long key) {
+        for (int slot = slotOf(key); values[slot] >= 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                int removed = values[slot];
+                values[slot] = MISSING;
+                size--;
+                shiftBack(slot);
+                return removed;
+            }
+        }
+        return MISSING;
+    }
+
+    private void shiftBack(int freed) {
+        for (int slot = (freed + 1) & mask; values[slot] >= 0; slot = (slot + 1) & mask) {
+            int home = slotOf(keys[slot]);
+            if (((slot - home) & mask) >= ((slot - freed) & mask)) {
+                keys[freed] = keys[slot];
+                values[freed] = values[slot];
+                values[slot] = MISSING;
+                freed = slot;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] >= 0) {
+                int slot = slotOf(oldKeys[i]);
+                while (values[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,170 @@
+package com.company.order.book;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive long keys to objects.
+ *
+ * Keys and values are kept in two parallel arrays with open addressing and linear probing, so lookups do not box
+ * the key and adding or removing a key does not allocate unless the map has to grow. Removal shifts the following
+ * entries of the probe sequence back instead of leaving tombstones, so lookups never slow down over time.
+ *
+ * Null values cannot be stored, as a null value marks an empty slot.
+ *
+ * @param <V> type of the values
+ */
+public final class LongObjectHashMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    public LongObjectHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize number of entries the map can hold before it has to grow.
+     */
+    public LongObjectHashMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        //The map grows once it is half full.
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Grows the map at once, if needed, so that it can hold the given number of entries without growing again.
+     * Adding many keys one by one would otherwise rehash every entry each time the map doubles.
+     *
+     * @param expectedSize number of entries the map must be able to hold
+     */
+    public void ensureCapacity(int expectedSize) {
+        int capacity = values.length;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        if (capacity > values.length) {
+            rehash(capacity);
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    private int slotOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * @return the value for the key, or null if the key is not in the map.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        for (int slot = slotOf(key); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the value previously stored for the key, or null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Null values cannot be stored");
+        }
+        int slot = slotOf(key);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > values.length) {
+            rehash(values.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * @return the value that was removed, or null if the key was not in the map.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        for (int slot = slotOf(key); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                V removed = (V) values[slot];
+                values[slot] = null;
+                size--;
+                shiftBack(slot);
+                return removed;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Moves back the entries that follow a freed slot in its probe sequence, so that they can still be found.
+     */
+    private void shiftBack(int freed) {
+        for (int slot = (freed + 1) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+            int home = slotOf(keys[slot]);
+            //The entry can move to the freed slot if its home slot is not between the freed slot and its slot.
+            if (((slot - home) & mask) >= ((slot - freed) & mask)) {
+                keys[freed] = keys[slot];
+                values[freed] = values[slot];
+                values[slot] = null;
+                freed = slot;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slotOf(oldKeys[i]);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+}
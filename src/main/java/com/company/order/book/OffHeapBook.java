@@ -0,0 +1,402 @@
+package com.company.order.book;
+
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.Side;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * One side of an order book for very large books, whose orders are kept off the Java heap.
+ *
+ * A Book holds an Order, an OrderEntry and their strings for every resting order, and with millions of them the
+ * garbage collector spends its pauses tracing objects that hardly ever change. Here every order is a fixed-width
+ * record of an OrderSlab, and the rest of the book is made of primitive arrays: the index of the records by id,
+ * and the levels sorted by price, best price at the end as in SortedTickIndex. The orders of a level are chained
+ * through the previous and next fields of their records, in arrival order. User ids are interned, as the records
+ * only hold their number, and are never forgotten. Like SortedTickIndex, adding or removing a level shifts every
+ * level worse than it, so its cost grows with the number of levels behind it, see SortedTickIndex.
+ *
+ * Orders are added as values, and can be dropped or reused by the caller once added. They are read back through
+ * an OrderView, which points at a record instead of copying it. Only orders with numeric ids can be added, and
+ * the book does not support batches, listeners or matching.
+ */
+public final class OffHeapBook implements Closeable {
+
+    /**
+     * Number of records the slab grows by.
+     */
+    static final int RECORDS_PER_CHUNK = 1 << 16;
+
+    private static final int INITIAL_LEVELS = 16;
+
+    private final Side side;
+    private final Increments increments;
+    /**
+     * True when the best price is the highest one, as in a BUY book.
+     */
+    private final boolean descending;
+    private final OrderSlab slab;
+    /**
+     * Slot of the record of every resting order, by id.
+     */
+    private final LongIntHashMap orderIndex;
+    private final Map<String, Integer> userNumbers = new HashMap<>();
+    private String[] userIds = new String[16];
+    /**
+     * The levels, sorted by key in ascending order, which puts the best price last. A key is the price in ticks
+     * when the book is descending and its bitwise complement otherwise, as in SortedTickIndex.
+     */
+    private long[] levelKeys = new long[INITIAL_LEVELS];
+    private long[] levelVolumeLots = new long[INITIAL_LEVELS];
+    private int[] levelOrders = new int[INITIAL_LEVELS];
+    private int[] levelFirst = new int[INITIAL_LEVELS];
+    private int[] levelLast = new int[INITIAL_LEVELS];
+    private int levelCount;
+    private long version;
+
+    /**
+     * Creates a book whose records are allocated with ByteBuffer.allocateDirect.
+     *
+     * @param expectedOrders number of orders the index of the book is sized for
+     */
+    public OffHeapBook(final Side side, final Increments increments, int expectedOrders) {
+        this(side, increments, expectedOrders, RECORDS_PER_CHUNK);
+    }
+
+    /**
+     * @param recordsPerChunk number of records the slab grows by, a power of two
+     */
+    OffHeapBook(final Side side, final Increments increments, int expectedOrders, int recordsPerChunk) {
+        this(side, increments, expectedOrders, OrderSlab.direct(recordsPerChunk));
+    }
+
+    private OffHeapBook(final Side side, final Increments increments, int expectedOrders, final OrderSlab slab) {
+        this.side = requireNonNull(side);
+        this.increments = requireNonNull(increments);
+        this.descending = side == Side.BUY;
+        this.slab = slab;
+        this.orderIndex = new LongIntHashMap(expectedOrders);
+    }
+
+    /**
+     * Creates a book whose records are mapped from a file, which is created or truncated.
+     *
+     * @param expectedOrders number of orders the index of the book is sized for
+     * @param file file the records are mapped from
+     * @throws IOException if the file cannot be opened
+     */
+    public static OffHeapBook mapped(final Side side, final Increments increments, int expectedOrders,
+                                     final Path file) throws IOException {
+        return new OffHeapBook(side, increments, expectedOrders, OrderSlab.mapped(file, RECORDS_PER_CHUNK));
+    }
+
+    public Side getSide() {
+        return side;
+    }
+
+    public Increments getIncrements() {
+        return increments;
+    }
+
+    OrderSlab getSlab() {
+        return slab;
+    }
+
+    String getUserId(int user) {
+        return userIds[user];
+    }
+
+    private int internUser(String userId) {
+        Integer user = userNumbers.get(userId);
+        if (user != null) {
+            return user;
+        }
+        int count = userNumbers.size();
+        if (count == userIds.length) {
+            userIds = Arrays.copyOf(userIds, count * 2);
+        }
+        userIds[count] = userId;
+        userNumbers.put(userId, count);
+        return count;
+    }
+
+    private long keyOf(long priceTicks) {
+        return descending ? priceTicks : ~priceTicks;
+    }
+
+    private long priceOf(long key) {
+        return descending ? key : ~key;
+    }
+
+    /**
+     * Adds a copy of an order to the book.
+     * @param order order to add. It is not kept.
+     * @throws IllegalArgumentException if the order has no numeric id, is of the other side, uses different
+     * increments from the book or if an order with the same id is already resting in the book.
+     */
+    public void add(final Order order) {
+        requireNonNull(order);
+        if (!order.hasNumericId()) {
+            throw new IllegalArgumentException("Order " + order.getId() + " does not have a numeric id");
+        }
+        if (order.getSide() != side) {
+            throw new IllegalArgumentException("Order " + order.getId() + " is not a " + side + " order");
+        }
+        if (!order.getIncrements().equals(increments)) {
+            throw new IllegalArgumentException("Order " + order.getId() + " uses " + order.getIncrements()
+                    + " but the book uses " + increments);
+        }
+        add(order.getNumericId(), order.getUserId(), order.getQuantityLots(), order.getPriceTicks());
+    }
+
+    /**
+     * Adds an order of the side of the book, without creating an Order.
+     * @throws IllegalArgumentException if the quantity is not positive or if an order with the same id is already
+     * resting in the book.
+     */
+    public void add(long id, final String userId, long quantityLots, long priceTicks) {
+        requireNonNull(userId);
+        if (quantityLots < 1) {
+            throw new IllegalArgumentException("The quantity of order " + id + " must be positive");
+        }
+        if (orderIndex.get(id) != LongIntHashMap.MISSING) {
+            throw new IllegalArgumentException("Order " + id + " is already in the book");
+        }
+        int slot = slab.allocate();
+        slab.putLong(slot, OrderSlab.NUMERIC_ID, id);
+        slab.putLong(slot, OrderSlab.PRICE_TICKS, priceTicks);
+        slab.putLong(slot, OrderSlab.QUANTITY_LOTS, quantityLots);
+        slab.putInt(slot, OrderSlab.USER, internUser(userId));
+
+        int position = findOrInsertLevel(keyOf(priceTicks));
+        int last = levelLast[position];
+        slab.putInt(slot, OrderSlab.PREVIOUS, last);
+        slab.putInt(slot, OrderSlab.NEXT, OrderSlab.NONE);
+        if (last == OrderSlab.NONE) {
+            levelFirst[position] = slot;
+        } else {
+            slab.putInt(last, OrderSlab.NEXT, slot);
+        }
+        levelLast[position] = slot;
+        levelOrders[position]++;
+        levelVolumeLots[position] += quantityLots;
+        orderIndex.put(id, slot);
+        version++;
+    }
+
+    private int findOrInsertLevel(long key) {
+        int position = Arrays.binarySearch(levelKeys, 0, levelCount, key);
+        if (position >= 0) {
+            return position;
+        }
+        position = -position - 1;
+        if (levelCount == levelKeys.length) {
+            int capacity = levelCount * 2;
+            levelKeys = Arrays.copyOf(levelKeys, capacity);
+            levelVolumeLots = Arrays.copyOf(levelVolumeLots, capacity);
+            levelOrders = Arrays.copyOf(levelOrders, capacity);
+            levelFirst = Arrays.copyOf(levelFirst, capacity);
+            levelLast = Arrays.copyOf(levelLast, capacity);
+        }
+        int moved = levelCount - position;
+        System.arraycopy(levelKeys, position, levelKeys, position + 1, moved);
+        System.arraycopy(levelVolumeLots, position, levelVolumeLots, position + 1, moved);
+        System.arraycopy(levelOrders, position, levelOrders, position + 1, moved);
+        System.arraycopy(levelFirst, position, levelFirst, position + 1, moved);
+        System.arraycopy(levelLast, position, levelLast, position + 1, moved);
+        levelKeys[position] = key;
+        levelVolumeLots[position] = 0;
+        levelOrders[position] = 0;
+        levelFirst[position] = OrderSlab.NONE;
+        levelLast[position] = OrderSlab.NONE;
+        levelCount++;
+        return position;
+    }
+
+    private void removeLevel(int position) {
+        int moved = levelCount - position - 1;
+        System.arraycopy(levelKeys, position + 1, levelKeys, position, moved);
+        System.arraycopy(levelVolumeLots, position + 1, levelVolumeLots, position, moved);
+        System.arraycopy(levelOrders, position + 1, levelOrders, position, moved);
+        System.arraycopy(levelFirst, position + 1, levelFirst, position, moved);
+        System.arraycopy(levelLast, position + 1, levelLast, position, moved);
+        levelCount--;
+    }
+
+    /**
+     * Removes an order from the book.
+     * @param id numeric id of the order
+     * @return true if successful, false if the order was not found.
+     */
+    public boolean removeOrder(long id) {
+        int slot = orderIndex.remove(id);
+        if (slot == LongIntHashMap.MISSING) {
+            return false;
+        }
+        int position = Arrays.binarySearch(levelKeys, 0, levelCount,
+                keyOf(slab.getLong(slot, OrderSlab.PRICE_TICKS)));
+        int previous = slab.getInt(slot, OrderSlab.PREVIOUS);
+        int next = slab.getInt(slot, OrderSlab.NEXT);
+        if (previous == OrderSlab.NONE) {
+            levelFirst[position] = next;
+        } else {
+            slab.putInt(previous, OrderSlab.NEXT, next);
+        }
+        if (next == OrderSlab.NONE) {
+            levelLast[position] = previous;
+        } else {
+            slab.putInt(next, OrderSlab.PREVIOUS, previous);
+        }
+        levelVolumeLots[position] -= slab.getLong(slot, OrderSlab.QUANTITY_LOTS);
+        if (--levelOrders[position] == 0) {
+            removeLevel(position);
+        }
+        slab.free(slot);
+        version++;
+        return true;
+    }
+
+    public boolean contains(long id) {
+        return orderIndex.get(id) != LongIntHashMap.MISSING;
+    }
+
+    /**
+     * @return a view that getOrder can point at the orders of this book.
+     */
+    public OrderView newView() {
+        return new OrderView(this);
+    }
+
+    /**
+     * Points a view of this book at a resting order.
+     * @param id numeric id of the order
+     * @param view view created by newView
+     * @return true if successful, false if the order was not found, in which case the view is left as it was.
+     */
+    public boolean getOrder(long id, final OrderView view) {
+        int slot = orderIndex.get(id);
+        if (slot == LongIntHashMap.MISSING) {
+            return false;
+        }
+        view.moveTo(slot);
+        return true;
+    }
+
+    /**
+     * Goes through every order of the book, best price first and in arrival order within a price. The action is
+     * given the same view every time, pointed at each order in turn, and must not change the book.
+     *
+     * @param action called with every order of the book
+     */
+    public void forEachOrder(final Consumer<OrderView> action) {
+        requireNonNull(action);
+        OrderView view = newView();
+        for (int position = levelCount - 1; position >= 0; position--) {
+            for (int slot = levelFirst[position]; slot != OrderSlab.NONE;
+                 slot = slab.getInt(slot, OrderSlab.NEXT)) {
+                view.moveTo(slot);
+                action.accept(view);
+            }
+        }
+    }
+
+    public int getNumberOfOrders() {
+        return orderIndex.size();
+    }
+
+    public int getNumberOfLevels() {
+        return levelCount;
+    }
+
+    /**
+     * @return the number of bytes of memory reserved off the heap for order records.
+     */
+    public long getOffHeapBytes() {
+        return slab.getReservedBytes();
+    }
+
+    public List<PriceVolumePair> getPriceVolumePairs() {
+        return getDepth(levelCount);
+    }
+
+    /**
+     * @return the best level of the book, or null if the book is empty.
+     */
+    public PriceVolumePair getBest() {
+        if (levelCount == 0) {
+            return null;
+        }
+        return new PriceVolumePair(priceOf(levelKeys[levelCount - 1]), levelVolumeLots[levelCount - 1], increments);
+    }
+
+    /**
+     * @param levels maximum number of levels to return
+     * @return the best levels of the book, best price first.
+     * @throws IllegalArgumentException if levels is negative.
+     */
+    public List<PriceVolumePair> getDepth(int levels) {
+        if (levels < 0) {
+            throw new IllegalArgumentException("The number of levels must not be negative");
+        }
+        int count = Math.min(levels, levelCount);
+        List<PriceVolumePair> priceVolumePairs = new ArrayList<>(count);
+        for (int rank = 0; rank < count; rank++) {
+            int position = levelCount - 1 - rank;
+            priceVolumePairs.add(new PriceVolumePair(priceOf(levelKeys[position]), levelVolumeLots[position],
+                    increments));
+        }
+        return priceVolumePairs;
+    }
+
+    /**
+     * Copies the best levels of the book into arrays supplied by the caller, as ticks and lots, without allocating
+     * anything.
+     *
+     * @param priceTicks receives the price of each level in ticks, best price first
+     * @param volumeLots receives the volume of each level in lots
+     * @return the number of levels copied, which is the smallest of the length of the arrays and the number of
+     * levels in the book. The rest of the arrays is left as it was.
+     */
+    public int getDepth(long[] priceTicks, long[] volumeLots) {
+        int count = Math.min(Math.min(priceTicks.length, volumeLots.length), levelCount);
+        for (int rank = 0; rank < count; rank++) {
+            int position = levelCount - 1 - rank;
+            priceTicks[rank] = priceOf(levelKeys[position]);
+            volumeLots[rank] = levelVolumeLots[position];
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of changes made to the book since it was created.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return an immutable copy of the price levels, whose sequence is the current version of the book.
+     */
+    public DepthSnapshot getSnapshot() {
+        return new DepthSnapshot(side, version, getPriceVolumePairs());
+    }
+
+    /**
+     * Closes the file the records are mapped from, if any. The book must not be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        slab.close();
+    }
+}
@@ -0,0 +1,130 @@
+package com.company.order.book;
+
+import com.company.model.Order;
+import com.company.model.Side;
+
+/**
+ * Location of a resting order: the side of the book it rests on, its PriceLevel and its neighbours in the
+ * queue of that level. Entries are created by the Book when an order is added and are kept in the OrderIndex, so an
+ * order can be found and unlinked without scanning the book.
+ *
+ * While it is indexed, an entry is also a node of the list of orders of its user.
+ *
+ * @see UserIndex
+ */
+public final class OrderEntry {
+
+    private Order order;
+    private Side side;
+    private PriceLevel level;
+    /**
+     * Orders before and after this one in the queue of its level, in arrival order.
+     */
+    private OrderEntry previousInLevel;
+    private OrderEntry nextInLevel;
+    /**
+     * Int id of the user of the order and its neighbours in the list of the orders of that user, set while the
+     * entry is in the UserIndex.
+     */
+    private int user;
+    private OrderEntry previousOfUser;
+    private OrderEntry nextOfUser;
+
+    OrderEntry(final Order order, final Side side) {
+        this.order = order;
+        this.side = side;
+        this.user = UserIndex.NO_USER;
+    }
+
+    /**
+     * Only used by the Book to reuse an entry that has been removed.
+     */
+    void reset(final Order order, final Side side) {
+        this.order = order;
+        this.side = side;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public Side getSide() {
+        return side;
+    }
+
+    /**
+     * @return the level holding the order, or null once the order has been removed.
+     */
+    public PriceLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * @return the entry of the next order in the same level, in arrival order, or null if this is the last one.
+     */
+    public OrderEntry getNextInLevel() {
+        return nextInLevel;
+    }
+
+    OrderEntry getPreviousInLevel() {
+        return previousInLevel;
+    }
+
+    void setPreviousInLevel(OrderEntry previous) {
+        this.previousInLevel = previous;
+    }
+
+    void setNextInLevel(OrderEntry next) {
+        this.nextInLevel = next;
+    }
+
+    void link(PriceLevel level, OrderEntry previous) {
+        this.level = level;
+        this.previousInLevel = previous;
+        this.nextInLevel = null;
+    }
+
+    void unlink() {
+        this.level = null;
+        this.previousInLevel = null;
+        this.nextInLevel = null;
+    }
+
+    /**
+     * @return the int id of the user of the order, or UserIndex.NO_USER if the entry is not indexed.
+     */
+    public int getUser() {
+        return user;
+    }
+
+    /**
+     * @return the entry of the next order of the same user, in arrival order, or null if this is the last one.
+     */
+    public OrderEntry getNextOfUser() {
+        return nextOfUser;
+    }
+
+    OrderEntry getPreviousOfUser() {
+        return previousOfUser;
+    }
+
+    void linkUser(int user, OrderEntry previous) {
+        this.user = user;
+        this.previousOfUser = previous;
+        this.nextOfUser = null;
+    }
+
+    void setPreviousOfUser(OrderEntry previous) {
+        this.previousOfUser = previous;
+    }
+
+    void setNextOfUser(OrderEntry next) {
+        this.nextOfUser = next;
+    }
+
+    void unlinkUser() {
+        this.user = UserIndex.NO_USER;
+        this.previousOfUser = null;
+        this.nextOfUser = null;
+    }
+}
@@ -0,0 +1,135 @@
+package com.company.order.book;
+
+import com.company.model.Order;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index of every resting order by id.
+ *
+ * The Dashboard shares one index between its two books, so cancelling by id is a single hash lookup followed by
+ * an O(1) unlink from the PriceLevel, instead of a scan over every level of both books.
+ *
+ * Orders with numeric ids are kept in a primitive long map, so adding and removing them does not allocate. Orders
+ * with UUIDs are kept in a HashMap keyed by the id string.
+ *
+ * Both kinds share one space of ids, that of their text: the numeric id 7 is the id "7", so an order with the
+ * string id "7" and one with the numeric id 7 are the same order, and either lookup finds it. Other spellings of a
+ * number, such as "007", are different ids.
+ *
+ * It also indexes the same orders by user.
+ *
+ * @see UserIndex
+ */
+public class OrderIndex {
+
+    private final Map<String, OrderEntry> entriesById = new HashMap<>();
+    private final LongObjectHashMap<OrderEntry> entriesByNumericId = new LongObjectHashMap<>();
+    private final UserIndex users = new UserIndex();
+
+    /**
+     * @param id id of the order
+     * @return the entry for the order, or null if there is no resting order with that id.
+     */
+    public OrderEntry get(String id) {
+        OrderEntry entry = entriesById.get(id);
+        if (entry == null) {
+            long numericId = parseNumericId(id);
+            if (numericId >= 0) {
+                return entriesByNumericId.get(numericId);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * @param id numeric id of the order
+     * @return the entry for the order, or null if there is no resting order with that id.
+     */
+    public OrderEntry get(long id) {
+        OrderEntry entry = entriesByNumericId.get(id);
+        if (entry == null && !entriesById.isEmpty()) {
+            return entriesById.get(Long.toString(id));
+        }
+        return entry;
+    }
+
+    /**
+     * @return true if there is a resting order with the id of the given one, whichever kind of id it has.
+     */
+    public boolean contains(Order order) {
+        if (order.hasNumericId()) {
+            //The text of the id is only made when there are orders with string ids, so that it does not allocate.
+            return entriesByNumericId.containsKey(order.getNumericId())
+                    || !entriesById.isEmpty() && entriesById.containsKey(order.getId());
+        }
+        if (entriesById.containsKey(order.getId())) {
+            return true;
+        }
+        long numericId = parseNumericId(order.getId());
+        return numericId >= 0 && entriesByNumericId.containsKey(numericId);
+    }
+
+    /**
+     * @return the index of the same orders by user.
+     */
+    public UserIndex getUsers() {
+        return users;
+    }
+
+    /**
+     * Sizes the index of numeric ids for a number of orders up front, e.g. before a bulk load.
+     */
+    public void ensureCapacity(int expectedSize) {
+        entriesByNumericId.ensureCapacity(expectedSize);
+    }
+
+    public int size() {
+        return entriesById.size() + entriesByNumericId.size();
+    }
+
+    void put(OrderEntry entry) {
+        Order order = entry.getOrder();
+        if (order.hasNumericId()) {
+            entriesByNumericId.put(order.getNumericId(), entry);
+        } else {
+            entriesById.put(order.getId(), entry);
+        }
+        users.link(entry);
+    }
+
+    void remove(OrderEntry entry) {
+        Order order = entry.getOrder();
+        if (order.hasNumericId()) {
+            entriesByNumericId.remove(order.getNumericId());
+        } else {
+            entriesById.remove(order.getId());
+        }
+        users.unlink(entry);
+    }
+
+    /**
+     * @return the value of a decimal id, or -1 if the id is not a number written as Long.toString writes it.
+     * Unlike Long.parseLong, it does not throw (and allocate an exception) for the UUIDs.
+     */
+    private static long parseNumericId(String id) {
+        if (id == null || id.isEmpty() || id.length() > 19) {
+            return -1;
+        }
+        if (id.charAt(0) == '0' && id.length() > 1) {
+            //Leading zeros make another id, as "007" is not the text of any numeric id.
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        //Numbers of 19 digits above Long.MAX_VALUE overflow to negative values, so they are rejected as well.
+        return value < 0 ? -1 : value;
+    }
+}
@@ -0,0 +1,177 @@
+package com.company.order.book;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Fixed-width order records kept outside the Java heap, addressed by slot number.
+ *
+ * Records live in chunks of memory allocated with ByteBuffer.allocateDirect, or mapped from a file, so that the
+ * slab can grow without copying the records it already holds. A chunk is never given back: freed slots are
+ * chained into a free list through their next field and reused before new slots are taken.
+ *
+ * The garbage collector only ever sees the chunk buffers, whatever the number of records, and none of the record
+ * fields hold references.
+ */
+final class OrderSlab implements Closeable {
+
+    static final int NONE = -1;
+
+    /**
+     * Layout of a record. The longs come first so that they are all aligned on 8 bytes.
+     */
+    static final int NUMERIC_ID = 0;
+    static final int PRICE_TICKS = 8;
+    static final int QUANTITY_LOTS = 16;
+    static final int USER = 24;
+    static final int PREVIOUS = 28;
+    static final int NEXT = 32;
+    static final int RECORD_SIZE = 40;
+
+    /**
+     * Largest chunk, so that the offset of any record of a chunk fits in an int.
+     */
+    static final int MAX_RECORDS_PER_CHUNK = 1 << 25;
+
+    private final int chunkShift;
+    private final int slotMask;
+    /**
+     * File the chunks are mapped from, or null if they are allocated directly.
+     */
+    private final FileChannel channel;
+    private ByteBuffer[] chunks = new ByteBuffer[8];
+    private int chunkCount;
+    /**
+     * Slots from this one on have never been used.
+     */
+    private int nextUnused;
+    private int freeSlot = NONE;
+    private int size;
+
+    private OrderSlab(int recordsPerChunk, FileChannel channel) {
+        if (recordsPerChunk < 1 || recordsPerChunk > MAX_RECORDS_PER_CHUNK
+                || Integer.bitCount(recordsPerChunk) != 1) {
+            throw new IllegalArgumentException("The records per chunk must be a power of two up to "
+                    + MAX_RECORDS_PER_CHUNK);
+        }
+        this.chunkShift = Integer.numberOfTrailingZeros(recordsPerChunk);
+        this.slotMask = recordsPerChunk - 1;
+        this.channel = channel;
+    }
+
+    /**
+     * @param recordsPerChunk number of records the slab grows by, a power of two
+     */
+    static OrderSlab direct(int recordsPerChunk) {
+        return new OrderSlab(recordsPerChunk, null);
+    }
+
+    /**
+     * Creates a slab whose chunks are mapped from a file, which is created or truncated. The operating system
+     * pages the records in and out, so the slab can be larger than the memory of the machine.
+     *
+     * @param file file the records are mapped from
+     * @param recordsPerChunk number of records the slab grows by, a power of two
+     * @throws IOException if the file cannot be opened
+     */
+    static OrderSlab mapped(Path file, int recordsPerChunk) throws IOException {
+        return new OrderSlab(recordsPerChunk, FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * @return a free slot, whose fields are left as they were.
+     */
+    int allocate() {
+        int slot = freeSlot;
+        if (slot != NONE) {
+            freeSlot = getInt(slot, NEXT);
+        } else {
+            if (nextUnused == Integer.MAX_VALUE) {
+                throw new IllegalStateException("The slab is full");
+            }
+            slot = nextUnused++;
+            if ((slot >>> chunkShift) == chunkCount) {
+                addChunk();
+            }
+        }
+        size++;
+        return slot;
+    }
+
+    void free(int slot) {
+        putInt(slot, NEXT, freeSlot);
+        freeSlot = slot;
+        size--;
+    }
+
+    private void addChunk() {
+        int chunkBytes = (slotMask + 1) * RECORD_SIZE;
+        ByteBuffer chunk;
+        if (channel == null) {
+            chunk = ByteBuffer.allocateDirect(chunkBytes);
+        } else {
+            try {
+                chunk = channel.map(FileChannel.MapMode.READ_WRITE, (long) chunkCount * chunkBytes, chunkBytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+        }
+        chunks[chunkCount++] = chunk.order(ByteOrder.nativeOrder());
+    }
+
+    private int offsetOf(int slot, int field) {
+        return (slot & slotMask) * RECORD_SIZE + field;
+    }
+
+    long getLong(int slot, int field) {
+        return chunks[slot >>> chunkShift].getLong(offsetOf(slot, field));
+    }
+
+    void putLong(int slot, int field, long value) {
+        chunks[slot >>> chunkShift].putLong(offsetOf(slot, field), value);
+    }
+
+    int getInt(int slot, int field) {
+        return chunks[slot >>> chunkShift].getInt(offsetOf(slot, field));
+    }
+
+    void putInt(int slot, int field, int value) {
+        chunks[slot >>> chunkShift].putInt(offsetOf(slot, field), value);
+    }
+
+    /**
+     * @return the number of slots in use.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of bytes of memory reserved for records, used or not.
+     */
+    long getReservedBytes() {
+        return (long) chunkCount * (slotMask + 1) * RECORD_SIZE;
+    }
+
+    /**
+     * Closes the file the chunks are mapped from, if any. Mapped and direct memory is only given back once the
+     * buffers are garbage collected, so the slab must not be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
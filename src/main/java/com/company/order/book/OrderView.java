@@ -0,0 +1,84 @@
+package com.company.order.book;
+
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.Side;
+
+/**
+ * Flyweight over an order record of an OffHeapBook, with the getters of Order.
+ *
+ * A view does not copy the order: it reads the record it points at every time, and is pointed at another record
+ * by the book it belongs to. It is only valid until the book changes, and must be turned into an Order with
+ * toOrder to be kept.
+ */
+public final class OrderView {
+
+    private final OffHeapBook book;
+    private int slot = OrderSlab.NONE;
+
+    OrderView(final OffHeapBook book) {
+        this.book = book;
+    }
+
+    void moveTo(int slot) {
+        this.slot = slot;
+    }
+
+    private int slot() {
+        if (slot == OrderSlab.NONE) {
+            throw new IllegalStateException("The view does not point at an order");
+        }
+        return slot;
+    }
+
+    public long getNumericId() {
+        return book.getSlab().getLong(slot(), OrderSlab.NUMERIC_ID);
+    }
+
+    public String getId() {
+        return Long.toString(getNumericId());
+    }
+
+    public Side getSide() {
+        return book.getSide();
+    }
+
+    public String getUserId() {
+        return book.getUserId(book.getSlab().getInt(slot(), OrderSlab.USER));
+    }
+
+    public long getQuantityLots() {
+        return book.getSlab().getLong(slot(), OrderSlab.QUANTITY_LOTS);
+    }
+
+    public long getPriceTicks() {
+        return book.getSlab().getLong(slot(), OrderSlab.PRICE_TICKS);
+    }
+
+    public double getVolume() {
+        return getIncrements().toQuantity(getQuantityLots());
+    }
+
+    public double getPrice() {
+        return getIncrements().toPrice(getPriceTicks());
+    }
+
+    public Increments getIncrements() {
+        return book.getIncrements();
+    }
+
+    /**
+     * @return a copy of the order, which stays valid whatever happens to the book.
+     */
+    public Order toOrder() {
+        return Order.inTicks(getNumericId(), getSide(), getUserId(), getQuantityLots(), getPriceTicks(),
+                getIncrements());
+    }
+
+    @Override
+    public String toString() {
+        return slot == OrderSlab.NONE ? "OrderView{}" : "OrderView{id=" + getId() + ", side=" + getSide()
+                + ", userId=" + getUserId() + ", quantityLots=" + getQuantityLots() + ", priceTicks="
+                + getPriceTicks() + "}";
+    }
+}
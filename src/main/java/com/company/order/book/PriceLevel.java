@@ -1,29 +1,67 @@
 package com.company.order.book;
 
+import com.company.model.Increments;
 import com.company.model.Order;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.function.Consumer;
 
 
 public class PriceLevel {
 
     /**
-     * The price for this particular price level
+     * The price for this particular price level, as a number of ticks of its increments.
      */
-    private double price;
+    private long priceTicks;
+    private final Increments increments;
     /**
-     * A list of all the orders that have this price.
+     * All the orders that have this price, in arrival order, as a doubly linked list threaded through their
+     * entries. New orders are appended to the tail, and an order whose entry is known is unlinked in O(1) without
+     * moving any other order.
      */
-    private List<Order> orders;
+    private OrderEntry first;
+    private OrderEntry last;
+    private int numberOfOrders;
+    /**
+     * Running total of the volume of the orders in this level, in lots, updated on every add and remove so that
+     * reading it does not need to look at the orders.
+     */
+    private long totalVolumeLots;
 
+    /**
+     * Creates a level using the default increments.
+     *
+     * @throws IllegalArgumentException if the price is not a multiple of the default tick size.
+     * @see Increments#DEFAULT
+     */
     public PriceLevel(double price) {
-        this.price = price;
-        this.orders = new ArrayList();
+        this(Increments.DEFAULT.toTicks(price), Increments.DEFAULT);
+    }
+
+    public PriceLevel(long priceTicks, final Increments increments) {
+        this.priceTicks = priceTicks;
+        this.increments = increments;
+    }
+
+    /**
+     * Only used by the Book to reuse a level that has been emptied and removed from the book.
+     */
+    void reset(long priceTicks) {
+        if (numberOfOrders > 0) {
+            throw new IllegalStateException("Level " + this.priceTicks + " still has orders");
+        }
+        this.priceTicks = priceTicks;
     }
 
     public double getPrice() {
-        return price;
+        return increments.toPrice(priceTicks);
+    }
+
+    public long getPriceTicks() {
+        return priceTicks;
+    }
+
+    public Increments getIncrements() {
+        return increments;
     }
 
     /**
@@ -31,16 +69,115 @@ public class PriceLevel {
      * @return the total volume for all the orders stored at this price level.
      */
     public double getTotalVolume() {
-        return orders.stream().mapToDouble(Order::getVolume).sum();
+        return increments.toQuantity(totalVolumeLots);
+    }
+
+    /**
+     *
+     * @return the total volume for all the orders stored at this price level, in lots.
+     */
+    public long getTotalVolumeLots() {
+        return totalVolumeLots;
+    }
+
+    /**
+     * Adds up the volume of every order in the level, ignoring the running total.
+     *
+     * It is O(number of orders) and is only meant for consistency checks.
+     */
+    long recomputeTotalVolumeLots() {
+        long volumeLots = 0;
+        for (OrderEntry entry = first; entry != null; entry = entry.getNextInLevel()) {
+            volumeLots += entry.getOrder().getQuantityLots();
+        }
+        return volumeLots;
+    }
+
+    /**
+     * Checks the running totals against the orders actually stored in the level. It is called through
+     * {@code assert} after every change, so it only runs when assertions are enabled, as they are in the tests.
+     */
+    private boolean totalsAreConsistent() {
+        int storedOrders = 0;
+        for (OrderEntry entry = first; entry != null; entry = entry.getNextInLevel()) {
+            if (entry.getLevel() != this || (entry.getNextInLevel() == null) != (entry == last)) {
+                throw new AssertionError("Level " + priceTicks + " has a broken list of orders");
+            }
+            storedOrders++;
+        }
+        if (storedOrders != numberOfOrders) {
+            throw new AssertionError("Level " + priceTicks + " counts " + numberOfOrders + " orders but stores "
+                    + storedOrders);
+        }
+        long expectedVolumeLots = recomputeTotalVolumeLots();
+        if (expectedVolumeLots != totalVolumeLots) {
+            throw new AssertionError("Level " + priceTicks + " has a running volume of " + totalVolumeLots
+                    + " lots but its orders add up to " + expectedVolumeLots);
+        }
+        return true;
     }
 
     public void addOrder(final Order order) {
-        orders.add(order);
+        addEntry(new OrderEntry(order, order.getSide()));
+    }
+
+    void addEntry(OrderEntry entry) {
+        entry.link(this, last);
+        if (last == null) {
+            first = entry;
+        } else {
+            last.setNextInLevel(entry);
+        }
+        last = entry;
+        numberOfOrders++;
+        totalVolumeLots += entry.getOrder().getQuantityLots();
+        assert totalsAreConsistent();
+    }
+
+    /**
+     * @return the entry of the oldest order of the level, which is the first to trade, or null if it is empty.
+     */
+    OrderEntry getFirst() {
+        return first;
+    }
+
+    /**
+     * Takes a partial fill off an order of the level, which keeps its place in the queue.
+     * @param entry entry of an order stored in this level
+     * @param lots number of lots filled, fewer than the quantity of the order
+     */
+    void fill(OrderEntry entry, long lots) {
+        entry.getOrder().fill(lots);
+        totalVolumeLots -= lots;
+        assert totalsAreConsistent();
+    }
+
+    /**
+     * Removes an order whose entry is already known, in O(1), without searching the level.
+     * @param entry entry of an order stored in this level
+     */
+    void removeEntry(OrderEntry entry) {
+        OrderEntry previous = entry.getPreviousInLevel();
+        OrderEntry next = entry.getNextInLevel();
+        if (previous == null) {
+            first = next;
+        } else {
+            previous.setNextInLevel(next);
+        }
+        if (next == null) {
+            last = previous;
+        } else {
+            next.setPreviousInLevel(previous);
+        }
+        entry.unlink();
+        numberOfOrders--;
+        totalVolumeLots -= entry.getOrder().getQuantityLots();
+        assert totalsAreConsistent();
     }
 
     @Override
     public int hashCode() {
-        return Double.hashCode(price);
+        return Long.hashCode(priceTicks);
     }
 
     @Override
@@ -50,7 +187,7 @@ public class PriceLevel {
         }
         PriceLevel that = (PriceLevel) o;
 
-        return that.getPrice() == price;
+        return that.getPriceTicks() == priceTicks && that.increments.equals(increments);
     }
 
     /**
@@ -60,13 +197,7 @@ public class PriceLevel {
      * @see Order
      */
     public boolean removeOrder(Order order) {
-        for(int i=0;i<orders.size();i++){
-            if(orders.get(i).equals(order)){
-                orders.remove(i);
-                return true;
-            }
-        }
-        return false;
+        return removeIfFound(find(order));
     }
 
     /**
@@ -76,9 +207,9 @@ public class PriceLevel {
      * @see Order
      */
     public boolean removeOrder(String id) {
-        for (int i = 0; i < orders.size(); i++) {
-            if (orders.get(i).getId().equals(id)) {
-                orders.remove(i);
+        for (OrderEntry entry = first; entry != null; entry = entry.getNextInLevel()) {
+            if (entry.getOrder().getId().equals(id)) {
+                removeEntry(entry);
                 return true;
             }
         }
@@ -98,14 +229,57 @@ public class PriceLevel {
      * @see Order
      */
     public boolean removeOrder(String userId, double quantity) {
-        for (int i = 0; i < orders.size(); i++) {
-            Order order = orders.get(i);
-            if (order.getUserId().equals(userId) && order.getVolume() == quantity) {
-                orders.remove(i);
-                return true;
+        return increments.isLotMultiple(quantity) && removeIfFound(find(userId, increments.toLots(quantity)));
+    }
+
+    OrderEntry find(Order order) {
+        for (OrderEntry entry = first; entry != null; entry = entry.getNextInLevel()) {
+            if (entry.getOrder().isSameOrder(order)) {
+                return entry;
             }
         }
-        return false;
+        return null;
+    }
+
+    OrderEntry find(String userId, long quantityLots) {
+        for (OrderEntry entry = first; entry != null; entry = entry.getNextInLevel()) {
+            if (entry.getOrder().getUserId().equals(userId)
+                    && entry.getOrder().getQuantityLots() == quantityLots) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Same as find(String, long), for entries that are in a UserIndex, comparing the int ids of their users.
+     *
+     * @param user int id of the user in the UserIndex of the entries
+     */
+    OrderEntry find(int user, long quantityLots) {
+        for (OrderEntry entry = first; entry != null; entry = entry.getNextInLevel()) {
+            if (entry.getUser() == user && entry.getOrder().getQuantityLots() == quantityLots) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param action called with every order of the level, in arrival order
+     */
+    void forEachOrder(Consumer<Order> action) {
+        for (OrderEntry entry = first; entry != null; entry = entry.getNextInLevel()) {
+            action.accept(entry.getOrder());
+        }
+    }
+
+    private boolean removeIfFound(OrderEntry entry) {
+        if (entry == null) {
+            return false;
+        }
+        removeEntry(entry);
+        return true;
     }
 
 
@@ -114,6 +288,6 @@ public class PriceLevel {
      * @return the total number of orders with this price.
      */
     public int getNumberOfOrders() {
-        return orders.size();
+        return numberOfOrders;
     }
 }
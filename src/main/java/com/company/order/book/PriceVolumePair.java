@@ -1,20 +1,40 @@
 package com.company.order.book;
 
+import com.company.model.Increments;
+
 public class PriceVolumePair {
 
-    private final double price;
-    private final double volume;
+    private final long priceTicks;
+    private final long volumeLots;
+    private final Increments increments;
 
+    /**
+     * @throws IllegalArgumentException if the price or the volume are not multiples of the default increments.
+     * @see Increments#DEFAULT
+     */
     public PriceVolumePair(double price,double volume){
-        this.price = price;
-        this.volume = volume;
+        this(Increments.DEFAULT.toTicks(price), Increments.DEFAULT.toLots(volume), Increments.DEFAULT);
+    }
+
+    public PriceVolumePair(long priceTicks, long volumeLots, Increments increments) {
+        this.priceTicks = priceTicks;
+        this.volumeLots = volumeLots;
+        this.increments = increments;
     }
 
     public double getVolume(){
-        return volume;
+        return increments.toQuantity(volumeLots);
     }
 
     public double getPrice(){
-        return price;
+        return increments.toPrice(priceTicks);
+    }
+
+    public long getVolumeLots() {
+        return volumeLots;
+    }
+
+    public long getPriceTicks() {
+        return priceTicks;
     }
 }
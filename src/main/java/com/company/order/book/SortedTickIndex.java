@@ -0,0 +1,186 @@
+package com.company.order.book;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Consumer;
+
+/**
+ * The PriceLevels of a book sorted by price, in primitive arrays.
+ *
+ * Levels are ranked in display order: rank 0 is the best price (the highest bid or the lowest offer). They are
+ * stored the other way round, with the best price at the end of the arrays, because most new levels and most
+ * emptied levels are close to the best price, and inserting or removing there only shifts the few entries that
+ * are better than it.
+ *
+ * Positions are found with a binary search over the sort keys, without boxing and without a comparator.
+ *
+ * The price of this layout is that inserting or removing a level costs O(n) rather than the O(log n) of a
+ * TreeMap: every level worse than it is shifted by one. It is cheap where levels usually come and go, near the
+ * best price, and ranks are read in O(1), which the book does on every match and depth. Deep in a wide book it is
+ * not: in LevelIndexBenchmark, a level that is added behind every other one and then removed takes about 80 ns
+ * near the best price whatever the width, but 6 us with 10^4 levels and 66 us with 10^5, against 110 to 150 ns
+ * for a TreeMap. Books that keep tens of thousands of levels with activity far from the top should batch their
+ * changes, as insertAll and removeEmpty move every level only once per batch.
+ */
+public final class SortedTickIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * True when the best price is the highest one, as in a BUY book.
+     */
+    private final boolean descending;
+    /**
+     * Sort keys in ascending order. A key is the price in ticks when the index is descending, and its bitwise
+     * complement (which reverses the order without overflowing) when it is ascending.
+     */
+    private long[] keys;
+    private PriceLevel[] levels;
+    private int size;
+
+    /**
+     * @param descending true if the best price is the highest one, false if it is the lowest one.
+     */
+    public SortedTickIndex(boolean descending) {
+        this.descending = descending;
+        this.keys = new long[INITIAL_CAPACITY];
+        this.levels = new PriceLevel[INITIAL_CAPACITY];
+    }
+
+    private long keyOf(long priceTicks) {
+        return descending ? priceTicks : ~priceTicks;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param rank position in display order, 0 being the best price.
+     */
+    public PriceLevel get(int rank) {
+        if (rank < 0 || rank >= size) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " of " + size + " levels");
+        }
+        return levels[size - 1 - rank];
+    }
+
+    /**
+     * Adds a level to the index.
+     * @param level level to add
+     * @throws IllegalArgumentException if there already is a level with the same price.
+     */
+    public void insert(PriceLevel level) {
+        long key = keyOf(level.getPriceTicks());
+        int position = Arrays.binarySearch(keys, 0, size, key);
+        if (position >= 0) {
+            throw new IllegalArgumentException("There already is a level at " + level.getPriceTicks() + " ticks");
+        }
+        position = -position - 1;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            levels = Arrays.copyOf(levels, size * 2);
+        }
+        System.arraycopy(keys, position, keys, position + 1, size - position);
+        System.arraycopy(levels, position, levels, position + 1, size - position);
+        keys[position] = key;
+        levels[position] = level;
+        size++;
+    }
+
+    /**
+     * Removes the level with the given price.
+     * @param priceTicks price of the level, in ticks
+     * @return true if successful, false if there was no level with that price.
+     */
+    public boolean remove(long priceTicks) {
+        int position = Arrays.binarySearch(keys, 0, size, keyOf(priceTicks));
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(keys, position + 1, keys, position, size - position - 1);
+        System.arraycopy(levels, position + 1, levels, position, size - position - 1);
+        levels[--size] = null;
+        return true;
+    }
+
+    /**
+     * Adds many levels at once. The new levels are sorted and then merged with the index in a single pass, so
+     * adding k levels to an index of n levels costs O(k log k + n) instead of shifting the arrays k times.
+     *
+     * @param newLevels levels to add, in any order. The array itself is sorted.
+     * @param count number of levels of the array to add
+     * @throws IllegalArgumentException if two levels have the same price, in which case the index is unchanged.
+     */
+    public void insertAll(PriceLevel[] newLevels, int count) {
+        if (count == 0) {
+            return;
+        }
+        Arrays.sort(newLevels, 0, count, Comparator.comparingLong(level -> keyOf(level.getPriceTicks())));
+        for (int i = 0; i < count; i++) {
+            long key = keyOf(newLevels[i].getPriceTicks());
+            if ((i > 0 && key == keyOf(newLevels[i - 1].getPriceTicks()))
+                    || Arrays.binarySearch(keys, 0, size, key) >= 0) {
+                throw new IllegalArgumentException("There already is a level at " + newLevels[i].getPriceTicks()
+                        + " ticks");
+            }
+        }
+        if (size + count > keys.length) {
+            int capacity = keys.length;
+            while (capacity < size + count) {
+                capacity <<= 1;
+            }
+            keys = Arrays.copyOf(keys, capacity);
+            levels = Arrays.copyOf(levels, capacity);
+        }
+        //Merged from the end, so that every entry is moved at most once and no extra array is needed.
+        int existing = size - 1;
+        int added = count - 1;
+        for (int position = size + count - 1; added >= 0; position--) {
+            long addedKey = keyOf(newLevels[added].getPriceTicks());
+            if (existing >= 0 && keys[existing] > addedKey) {
+                keys[position] = keys[existing];
+                levels[position] = levels[existing--];
+            } else {
+                keys[position] = addedKey;
+                levels[position] = newLevels[added--];
+            }
+        }
+        size += count;
+    }
+
+    /**
+     * Removes every level that has no orders left, in a single pass.
+     *
+     * @param onRemoved called with every level removed
+     * @return the number of levels removed
+     */
+    public int removeEmpty(final Consumer<PriceLevel> onRemoved) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (levels[i].getNumberOfOrders() < 1) {
+                onRemoved.accept(levels[i]);
+            } else {
+                keys[kept] = keys[i];
+                levels[kept++] = levels[i];
+            }
+        }
+        int removed = size - kept;
+        Arrays.fill(levels, kept, size, null);
+        size = kept;
+        return removed;
+    }
+
+    public void clear() {
+        Arrays.fill(levels, 0, size, null);
+        size = 0;
+    }
+}
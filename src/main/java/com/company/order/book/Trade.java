@@ -0,0 +1,84 @@
+package com.company.order.book;
+
+import com.company.model.Increments;
+import com.company.model.Side;
+
+/**
+ * Immutable fill between an incoming order and an order resting on the other side, at the price of the resting
+ * order.
+ *
+ * @see TradeListener
+ */
+public final class Trade {
+
+    private final Side incomingSide;
+    private final String incomingOrderId;
+    private final String incomingUserId;
+    private final String restingOrderId;
+    private final String restingUserId;
+    private final long priceTicks;
+    private final long quantityLots;
+    private final Increments increments;
+
+    public Trade(final Side incomingSide, final String incomingOrderId, final String incomingUserId,
+                 final String restingOrderId, final String restingUserId, long priceTicks, long quantityLots,
+                 final Increments increments) {
+        this.incomingSide = incomingSide;
+        this.incomingOrderId = incomingOrderId;
+        this.incomingUserId = incomingUserId;
+        this.restingOrderId = restingOrderId;
+        this.restingUserId = restingUserId;
+        this.priceTicks = priceTicks;
+        this.quantityLots = quantityLots;
+        this.increments = increments;
+    }
+
+    /**
+     * @return the side of the incoming order, which took the liquidity of the resting one.
+     */
+    public Side getIncomingSide() {
+        return incomingSide;
+    }
+
+    public String getIncomingOrderId() {
+        return incomingOrderId;
+    }
+
+    public String getIncomingUserId() {
+        return incomingUserId;
+    }
+
+    public String getRestingOrderId() {
+        return restingOrderId;
+    }
+
+    public String getRestingUserId() {
+        return restingUserId;
+    }
+
+    public double getPrice() {
+        return increments.toPrice(priceTicks);
+    }
+
+    public double getQuantity() {
+        return increments.toQuantity(quantityLots);
+    }
+
+    public long getPriceTicks() {
+        return priceTicks;
+    }
+
+    public long getQuantityLots() {
+        return quantityLots;
+    }
+
+    public Increments getIncrements() {
+        return increments;
+    }
+
+    @Override
+    public String toString() {
+        return "Trade{" + incomingSide + " " + incomingOrderId + " (" + incomingUserId + ") against "
+                + restingOrderId + " (" + restingUserId + ") " + getQuantity() + " @ " + getPrice() + "}";
+    }
+}
@@ -0,0 +1,12 @@
+package com.company.order.book;
+
+/**
+ * Told about every trade of a dashboard that matches orders, on the thread that adds the incoming order, before
+ * the changes of the levels the trade causes.
+ *
+ * @see Book#match(com.company.model.Order, TradeListener)
+ */
+public interface TradeListener {
+
+    void onTrade(Trade trade);
+}
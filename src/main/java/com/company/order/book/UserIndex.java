@@ -0,0 +1,126 @@
+package com.company.order.book;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index of the resting orders by user.
+ *
+ * Every user id is interned as a small int the first time one of its orders is indexed, and the entries of each
+ * user are kept in a doubly linked list threaded through the entries themselves, in arrival order. Finding,
+ * counting or cancelling the orders of a user is then O(orders of the user) instead of a scan of the whole book,
+ * and comparing the owners of two entries is an int comparison instead of String.equals.
+ *
+ * A user keeps its int id after its last order is removed, so the index grows with the number of distinct users
+ * rather than with the number of orders, and adding an order for a known user does not allocate.
+ */
+public class UserIndex {
+
+    /**
+     * Int id of a user id that has never been interned.
+     */
+    public static final int NO_USER = -1;
+
+    private final Map<String, Integer> usersById = new HashMap<>();
+    private String[] userIds = new String[16];
+    private OrderEntry[] firstEntries = new OrderEntry[16];
+    private OrderEntry[] lastEntries = new OrderEntry[16];
+    private int[] orderCounts = new int[16];
+    private int size;
+
+    /**
+     * @param userId id of the user
+     * @return the int id of the user, or NO_USER if no order of the user has ever been indexed.
+     */
+    public int find(String userId) {
+        Integer user = usersById.get(userId);
+        return user == null ? NO_USER : user;
+    }
+
+    /**
+     * @param user int id of a user
+     * @return the id of the user.
+     */
+    public String getUserId(int user) {
+        return userIds[user];
+    }
+
+    /**
+     * @param user int id of a user, or NO_USER
+     * @return the number of resting orders of the user.
+     */
+    public int getOrderCount(int user) {
+        return user == NO_USER ? 0 : orderCounts[user];
+    }
+
+    /**
+     * @param user int id of a user, or NO_USER
+     * @return the entry of the oldest resting order of the user, or null if the user has none. The next ones
+     * follow from {@link OrderEntry#getNextOfUser()}.
+     */
+    public OrderEntry getFirst(int user) {
+        return user == NO_USER ? null : firstEntries[user];
+    }
+
+    /**
+     * @return the number of distinct users interned so far.
+     */
+    public int size() {
+        return size;
+    }
+
+    private int intern(String userId) {
+        Integer user = usersById.get(userId);
+        if (user != null) {
+            return user;
+        }
+        if (size == userIds.length) {
+            int capacity = size * 2;
+            userIds = Arrays.copyOf(userIds, capacity);
+            firstEntries = Arrays.copyOf(firstEntries, capacity);
+            lastEntries = Arrays.copyOf(lastEntries, capacity);
+            orderCounts = Arrays.copyOf(orderCounts, capacity);
+        }
+        userIds[size] = userId;
+        usersById.put(userId, size);
+        return size++;
+    }
+
+    /**
+     * Appends an entry to the list of its user, interning the user id if needed.
+     */
+    void link(OrderEntry entry) {
+        int user = intern(entry.getOrder().getUserId());
+        OrderEntry last = lastEntries[user];
+        entry.linkUser(user, last);
+        if (last == null) {
+            firstEntries[user] = entry;
+        } else {
+            last.setNextOfUser(entry);
+        }
+        lastEntries[user] = entry;
+        orderCounts[user]++;
+    }
+
+    /**
+     * Unlinks an entry from the list of its user in O(1).
+     */
+    void unlink(OrderEntry entry) {
+        int user = entry.getUser();
+        OrderEntry previous = entry.getPreviousOfUser();
+        OrderEntry next = entry.getNextOfUser();
+        if (previous == null) {
+            firstEntries[user] = next;
+        } else {
+            previous.setNextOfUser(next);
+        }
+        if (next == null) {
+            lastEntries[user] = previous;
+        } else {
+            next.setPreviousOfUser(previous);
+        }
+        orderCounts[user]--;
+        entry.unlinkUser();
+    }
+}
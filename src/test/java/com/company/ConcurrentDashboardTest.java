@@ -0,0 +1,304 @@
+package com.company;
+
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.Side;
+import com.company.order.book.DepthSnapshot;
+import com.company.order.book.PriceVolumePair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Multi-threaded harness for the ConcurrentDashboard. The threads are released together by a latch and work on a
+ * small set of prices, so that most of them contend on the same levels and stripes.
+ */
+public class ConcurrentDashboardTest {
+
+    private static final int THREADS = 8;
+    private static final int ORDERS_PER_THREAD = 5_000;
+    private static final double[] PRICES = {9.87, 9.88, 9.89, 9.9, 12.4, 12.41, 13.1};
+
+    private ConcurrentDashboard underTest;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        underTest = new ConcurrentDashboard();
+        executor = Executors.newFixedThreadPool(THREADS + 1);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Order createOrder(Side side, double price, double volume, String userId) {
+        return new Order(side, userId, volume, price);
+    }
+
+    private <T> List<T> runTogether(List<Callable<T>> tasks) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+        for (Callable<T> task : tasks) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            results.add(future.get(60, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    @Test
+    public void bidsAndOffersAreOrdered() {
+        underTest.addOrder(createOrder(Side.BUY, 12.4, 23.4, "user"));
+        underTest.addOrder(createOrder(Side.BUY, 13.1, 23.4, "user 2"));
+        underTest.addOrder(createOrder(Side.SELL, 9.87, 10.21, "user 3"));
+        underTest.addOrder(createOrder(Side.SELL, 5.56, 2.67, "user 4"));
+
+        List<PriceVolumePair> bidPrices = underTest.getPriceVolumePairs(Side.BUY);
+        List<PriceVolumePair> offerPrices = underTest.getPriceVolumePairs(Side.SELL);
+
+        assertEquals(13.1, bidPrices.get(0).getPrice(), 0.0);
+        assertEquals(12.4, bidPrices.get(1).getPrice(), 0.0);
+        assertEquals(5.56, offerPrices.get(0).getPrice(), 0.0);
+        assertEquals(9.87, offerPrices.get(1).getPrice(), 0.0);
+    }
+
+    @Test
+    public void rejectsOrdersWithoutAPositiveQuantity() {
+        underTest.addOrder(createOrder(Side.BUY, 12.4, 23.4, "user"));
+        for (long lots : new long[]{0, -4}) {
+            for (Side side : Side.values()) {
+                try {
+                    underTest.addOrder(Order.inTicks(1, side, "user", lots, 1240, Increments.DEFAULT));
+                    fail("An order of " + lots + " lots must be rejected");
+                } catch (IllegalArgumentException expected) {
+                    //Not added to any level.
+                }
+            }
+        }
+        assertEquals(1, underTest.getPriceVolumePairs(Side.BUY).size());
+        assertEquals(23.4, underTest.getPriceVolumePairs(Side.BUY).get(0).getVolume(), 1e-9);
+        assertTrue(underTest.getPriceVolumePairs(Side.SELL).isEmpty());
+        assertFalse(underTest.removeOrder("1"));
+    }
+
+    @Test
+    public void concurrentAddsAndCancelsEndInTheSameStateAsASequentialDashboard() throws Exception {
+        List<Callable<List<Order>>> writers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            writers.add(() -> {
+                Random random = new Random(thread);
+                List<Order> survivors = new ArrayList<>();
+                for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+                    Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+                    Order order = createOrder(side, PRICES[random.nextInt(PRICES.length)], 1 + random.nextInt(50),
+                            "user " + thread + "-" + i);
+                    underTest.addOrder(order);
+                    //Cancels two orders out of three, rotating over the three removeOrder overloads.
+                    switch (i % 3) {
+                        case 0:
+                            assertTrue(underTest.removeOrder(order.getId()));
+                            break;
+                        case 1:
+                            assertTrue(underTest.removeOrder(order));
+                            break;
+                        default:
+                            survivors.add(order);
+                    }
+                }
+                //And then one survivor out of two by user, price and quantity.
+                List<Order> remaining = new ArrayList<>();
+                for (int i = 0; i < survivors.size(); i++) {
+                    Order order = survivors.get(i);
+                    if (i % 2 == 0) {
+                        assertTrue(underTest.removeOrder(order.getSide(), order.getUserId(), order.getPrice(),
+                                order.getVolume()));
+                    } else {
+                        remaining.add(order);
+                    }
+                }
+                return remaining;
+            });
+        }
+
+        Dashboard expected = new Dashboard();
+        for (List<Order> remaining : runTogether(writers)) {
+            for (Order order : remaining) {
+                expected.addOrder(order);
+            }
+        }
+
+        for (Side side : Side.values()) {
+            assertSamePairs(expected.getPriceVolumePairs(side), underTest.getPriceVolumePairs(side));
+        }
+    }
+
+    @Test
+    public void snapshotsAreSortedWhileWritersAreRunning() throws Exception {
+        for (double price : PRICES) {
+            underTest.addOrder(createOrder(Side.BUY, price, 1000, "resting"));
+        }
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger finishedWriters = new AtomicInteger();
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            tasks.add(() -> {
+                Random random = new Random(thread);
+                for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+                    Order order = createOrder(Side.BUY, PRICES[random.nextInt(PRICES.length)], 1, "user " + thread);
+                    underTest.addOrder(order);
+                    underTest.removeOrder(order.getId());
+                }
+                if (finishedWriters.incrementAndGet() == THREADS) {
+                    writing.set(false);
+                }
+                return 0;
+            });
+        }
+        tasks.add(() -> {
+            int snapshots = 0;
+            while (writing.get()) {
+                List<PriceVolumePair> bids = underTest.getPriceVolumePairs(Side.BUY);
+                assertEquals(PRICES.length, bids.size());
+                long totalLots = 0;
+                for (int i = 0; i < bids.size(); i++) {
+                    if (i > 0) {
+                        assertTrue(bids.get(i - 1).getPriceTicks() > bids.get(i).getPriceTicks());
+                    }
+                    totalLots += bids.get(i).getVolumeLots();
+                }
+                //Every writer has at most one order of 1.0 (100 lots) resting at any time.
+                long restingLots = PRICES.length * 100_000L;
+                assertTrue(totalLots >= restingLots && totalLots <= restingLots + THREADS * 100);
+                snapshots++;
+            }
+            return snapshots;
+        });
+
+        List<Integer> results = runTogether(tasks);
+
+        assertTrue(results.get(THREADS) > 0);
+        for (PriceVolumePair pair : underTest.getPriceVolumePairs(Side.BUY)) {
+            assertEquals(1000.0, pair.getVolume(), 0.0);
+        }
+    }
+
+    @Test
+    public void onlyOneOfManyConcurrentCancelsSucceeds() throws Exception {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            Order order = createOrder(i % 2 == 0 ? Side.BUY : Side.SELL, PRICES[i % PRICES.length], 1, "user");
+            orders.add(order);
+            underTest.addOrder(order);
+        }
+
+        List<Callable<Integer>> cancellers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            cancellers.add(() -> {
+                int cancelled = 0;
+                for (Order order : orders) {
+                    if (underTest.removeOrder(order.getId())) {
+                        cancelled++;
+                    }
+                }
+                return cancelled;
+            });
+        }
+
+        int cancelled = 0;
+        for (int count : runTogether(cancellers)) {
+            cancelled += count;
+        }
+
+        assertEquals(orders.size(), cancelled);
+        assertEquals(0, underTest.getPriceVolumePairs(Side.BUY).size());
+        assertEquals(0, underTest.getPriceVolumePairs(Side.SELL).size());
+    }
+
+    private static void assertSamePairs(List<PriceVolumePair> expected, List<PriceVolumePair> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getPriceTicks(), actual.get(i).getPriceTicks());
+            assertEquals(expected.get(i).getVolumeLots(), actual.get(i).getVolumeLots());
+        }
+    }
+
+    @Test
+    public void readersSeeIncreasingSnapshotsWithoutBlockingWriters() throws Exception {
+        //Orders are never cancelled here, so the levels grow and fewer orders keep the consistency checks quick.
+        int ordersPerThread = ORDERS_PER_THREAD / 10;
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger finishedWriters = new AtomicInteger();
+        List<Callable<Long>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            tasks.add(() -> {
+                Random random = new Random(thread);
+                for (int i = 0; i < ordersPerThread; i++) {
+                    underTest.addOrder(createOrder(Side.SELL, PRICES[random.nextInt(PRICES.length)], 1,
+                            "user " + thread));
+                }
+                if (finishedWriters.incrementAndGet() == THREADS) {
+                    writing.set(false);
+                }
+                return 0L;
+            });
+        }
+        tasks.add(() -> {
+            while (writing.get()) {
+                underTest.publishSnapshots();
+                LockSupport.parkNanos(100_000);
+            }
+            underTest.publishSnapshots();
+            return 0L;
+        });
+        tasks.add(() -> {
+            long lastSequence = -1;
+            while (writing.get()) {
+                DepthSnapshot snapshot = underTest.getSnapshot(Side.SELL);
+                assertTrue(snapshot.getSequence() >= lastSequence);
+                lastSequence = snapshot.getSequence();
+            }
+            return lastSequence;
+        });
+        executor = Executors.newFixedThreadPool(tasks.size());
+
+        runTogether(tasks);
+
+        DepthSnapshot last = underTest.getSnapshot(Side.SELL);
+        assertEquals(THREADS * ordersPerThread, last.getSequence());
+        long totalLots = 0;
+        for (PriceVolumePair pair : last.getPriceVolumePairs()) {
+            totalLots += pair.getVolumeLots();
+        }
+        assertEquals(THREADS * ordersPerThread * 100L, totalLots);
+    }
+}
@@ -0,0 +1,170 @@
+package com.company;
+
+import com.company.loop.WaitStrategy;
+import com.company.model.Order;
+import com.company.model.Side;
+import com.company.order.book.PriceVolumePair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DashboardRegistryTest {
+
+    private static final int SHARDS = 3;
+    private static final int INSTRUMENTS = 12;
+
+    private DashboardRegistry underTest;
+
+    @Before
+    public void setUp() {
+        //Small ring buffers, so that the submitting threads also have to wait for free slots.
+        underTest = new DashboardRegistry(SHARDS, 64, WaitStrategy.PARK).start();
+        for (int i = 0; i < INSTRUMENTS; i++) {
+            underTest.register("bar " + i, new Dashboard());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        underTest.close();
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void routesCommandsToTheDashboardOfTheirInstrument() throws Exception {
+        Set<Integer> shards = new HashSet<>();
+        for (int i = 0; i < INSTRUMENTS; i++) {
+            shards.add(underTest.shardOf("bar " + i));
+            underTest.addOrder("bar " + i, new Order(Side.BUY, "user", 1 + i, 10.0));
+        }
+        assertEquals(SHARDS, shards.size());
+        Order order = new Order(Side.SELL, "user", 5, 10.5);
+        assertTrue(await(underTest.addOrder("bar 3", order)));
+
+        List<PriceVolumePair> bids = await(underTest.getPriceVolumePairs("bar 7", Side.BUY));
+        assertEquals(1, bids.size());
+        assertEquals(8, bids.get(0).getVolume(), 0.0);
+        assertEquals(1, underTest.getSnapshot("bar 3", Side.SELL).getPriceVolumePairs().size());
+
+        Map<String, PriceVolumePair> bestBids = underTest.getTopOfBook(Side.BUY);
+        assertEquals(INSTRUMENTS, bestBids.size());
+        assertEquals(12, bestBids.get("bar 11").getVolume(), 0.0);
+        assertEquals(1, underTest.getTopOfBook(Side.SELL).size());
+
+        assertFalse(await(underTest.removeOrder("bar 4", order.getId())));
+        assertTrue(await(underTest.removeOrder("bar 3", order.getId())));
+        assertEquals(0, underTest.getSnapshot("bar 3", Side.SELL).getPriceVolumePairs().size());
+
+        try {
+            underTest.addOrder("unknown bar", order);
+            fail("The instrument is not registered");
+        } catch (IllegalArgumentException expected) {
+            //Rejected straight away.
+        }
+        try {
+            underTest.register("bar 1", new Dashboard());
+            fail("The instrument is already registered");
+        } catch (IllegalArgumentException expected) {
+            //Its dashboard is still the first one.
+        }
+        assertEquals(INSTRUMENTS, underTest.getInstrumentIds().size());
+    }
+
+    @Test
+    public void cancelsTheOrdersOfAUserOnEveryShard() throws Exception {
+        int threads = 4;
+        int ordersPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<CompletableFuture<Boolean>>>> submitted = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                submitted.add(executor.submit(() -> {
+                    List<CompletableFuture<Boolean>> added = new ArrayList<>();
+                    for (int i = 0; i < ordersPerThread; i++) {
+                        String userId = i % 2 == 0 ? "leaving" : "staying";
+                        added.add(underTest.addOrder("bar " + (i + thread) % INSTRUMENTS,
+                                new Order(i % 3 == 0 ? Side.SELL : Side.BUY, userId, 1, 9.0 + 0.01 * (i % 50))));
+                    }
+                    return added;
+                }));
+            }
+            for (Future<List<CompletableFuture<Boolean>>> future : submitted) {
+                for (CompletableFuture<Boolean> added : future.get(10, TimeUnit.SECONDS)) {
+                    assertTrue(await(added));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(threads * ordersPerThread / 2, (int) await(underTest.cancelAllForUser("leaving")));
+        assertEquals(0, (int) await(underTest.cancelAllForUser("leaving")));
+
+        double volume = 0;
+        for (String instrumentId : underTest.getInstrumentIds()) {
+            for (Side side : Side.values()) {
+                for (PriceVolumePair pair : underTest.getSnapshot(instrumentId, side).getPriceVolumePairs()) {
+                    volume += pair.getVolume();
+                }
+            }
+        }
+        assertEquals(threads * ordersPerThread / 2, volume, 1e-9);
+    }
+
+    @Test
+    public void errorsFailTheirCommandWithoutStoppingTheShard() throws Exception {
+        underTest.register("broken bar", new Dashboard() {
+            @Override
+            public void addOrder(Order order) {
+                throw new AssertionError("Inconsistent book");
+            }
+        });
+        String sameShard = null;
+        for (int i = 0; sameShard == null; i++) {
+            if (underTest.shardOf("bar " + i) == underTest.shardOf("broken bar")) {
+                sameShard = "bar " + i;
+            }
+        }
+
+        try {
+            await(underTest.addOrder("broken bar", new Order(Side.BUY, "user", 1, 10.0)));
+            fail("The error should have failed the command");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof AssertionError);
+        }
+        assertTrue(await(underTest.addOrder(sameShard, new Order(Side.BUY, "user", 1, 10.0))));
+        assertEquals(1, underTest.getSnapshot(sameShard, Side.BUY).getPriceVolumePairs().size());
+    }
+
+    @Test
+    public void rejectsCommandsOnceClosed() throws Exception {
+        underTest.close();
+        try {
+            await(underTest.addOrder("bar 0", new Order(Side.BUY, "user", 1, 10.0)));
+            fail("The registry is closed");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+    }
+}
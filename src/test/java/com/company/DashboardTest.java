@@ -1,14 +1,30 @@
 package com.company;
 
+import com.company.model.Command;
+import com.company.model.Increments;
 import com.company.model.Order;
+import com.company.model.OrderIdGenerator;
+import com.company.model.OrderPool;
 import com.company.model.Side;
+import com.company.order.book.DepthListener;
+import com.company.order.book.DepthSnapshot;
+import com.company.order.book.DepthUpdate;
 import com.company.order.book.PriceVolumePair;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class DashboardTest {
 
@@ -149,6 +165,62 @@ public class DashboardTest {
     }
      */
 
+    @Test
+    public void addOrdersInOneGo() {
+        Dashboard expected = new Dashboard();
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Order order = createOrder(i % 2 == 0 ? Side.BUY : Side.SELL, 10 + i % 7, 1 + i % 3, "user " + i % 5);
+            expected.addOrder(order);
+            orders.add(order);
+        }
+        underTest.addOrders(orders);
+
+        for (Side side : Side.values()) {
+            List<Order> expectedOrders = new ArrayList<>();
+            expected.forEachOrder(side, expectedOrders::add);
+            List<Order> actualOrders = new ArrayList<>();
+            underTest.forEachOrder(side, actualOrders::add);
+            assertEquals(expectedOrders, actualOrders);
+        }
+
+        Order added = createOrder(Side.BUY, 8, 1, "user");
+        try {
+            underTest.addOrders(Arrays.asList(added, orders.get(0), createOrder(Side.BUY, 7, 1, "user")));
+            throw new AssertionError("An order already on the dashboard cannot be added again");
+        } catch (IllegalArgumentException e) {
+            assertEquals(Collections.singletonList(added), underTest.getOrdersForUser("user"));
+            assertEquals(8, underTest.getPriceVolumePairs(Side.BUY).get(7).getPrice(), 0.0);
+        }
+    }
+
+    @Test
+    public void numericAndStringIdsShareOneSpaceOfIds() {
+        Order numeric = Order.inTicks(7, Side.BUY, "user", 10, 1000, Increments.DEFAULT);
+        underTest.addOrder(numeric);
+        try {
+            underTest.addOrder(Order.inTicks("7", Side.SELL, "user", 10, 2000, Increments.DEFAULT));
+            throw new AssertionError("The string id 7 is the id of the numeric order 7");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(underTest.getPriceVolumePairs(Side.SELL).isEmpty());
+        }
+        assertFalse(underTest.removeOrder("007"));
+        assertTrue(underTest.removeOrder("7"));
+
+        Order string = Order.inTicks("8", Side.SELL, "user", 10, 2000, Increments.DEFAULT);
+        underTest.addOrder(string);
+        try {
+            underTest.addOrder(Order.inTicks(8, Side.BUY, "user", 10, 1000, Increments.DEFAULT));
+            throw new AssertionError("The numeric id 8 is the id of the order \"8\"");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(underTest.getPriceVolumePairs(Side.BUY).isEmpty());
+        }
+        underTest.addOrder(Order.inTicks("08", Side.BUY, "user", 10, 1000, Increments.DEFAULT));
+        assertTrue(underTest.removeOrder(8));
+        assertEquals(Collections.emptyList(), underTest.getPriceVolumePairs(Side.SELL));
+        assertTrue(underTest.removeOrder("08"));
+    }
+
     @Test
     public void removeOrderWithId() {
         Order order1 = createOrder(Side.SELL, 12.4, 23.4, "user");
@@ -232,4 +304,293 @@ public class DashboardTest {
 
         assertEquals(9.87, bidPrices.get(0).getPrice(), 0.0);
     }
+
+    @Test
+    public void orderRemovedByParametersCannotBeRemovedAgainById() {
+        Order order1 = createOrder(Side.BUY, 13.1, 23.4, "user 2");
+        Order order2 = createOrder(Side.SELL, 13.1, 23.4, "user 2");
+
+        underTest.addOrder(order1);
+        underTest.addOrder(order2);
+
+        assertTrue(underTest.removeOrder(order1.getSide(), order1.getUserId(), order1.getPrice(), order1.getVolume()));
+        assertFalse(underTest.removeOrder(order1.getId()));
+
+        assertTrue(underTest.removeOrder(order2.getId()));
+        assertFalse(underTest.removeOrder(order2));
+
+        assertEquals(0, underTest.getPriceVolumePairs(Side.BUY).size());
+        assertEquals(0, underTest.getPriceVolumePairs(Side.SELL).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnOrderThatIsAlreadyOnTheDashboard() {
+        Order order = createOrder(Side.BUY, 13.1, 23.4, "user 2");
+
+        underTest.addOrder(order);
+        underTest.addOrder(order);
+    }
+
+    @Test
+    public void releasesRemovedOrdersToThePool() {
+        OrderPool pool = new OrderPool(Increments.DEFAULT, new OrderIdGenerator(), 10);
+        underTest = new Dashboard(Increments.DEFAULT, pool);
+
+        Order order1 = pool.acquire(Side.BUY, "user", 2340, 1240);
+        Order order2 = pool.acquire(Side.SELL, "user 2", 1021, 987);
+        Order order3 = pool.acquire(Side.SELL, "user 3", 1145, 987);
+
+        underTest.addOrder(order1);
+        underTest.addOrder(order2);
+        underTest.addOrder(order3);
+
+        assertTrue(underTest.removeOrder(order1.getNumericId()));
+        assertTrue(underTest.removeOrder(Long.toString(order2.getNumericId())));
+        assertFalse(underTest.removeOrder(order2.getNumericId()));
+
+        assertEquals(2, pool.getFreeCount());
+        assertEquals(0, underTest.getPriceVolumePairs(Side.BUY).size());
+        assertEquals(11.45, underTest.getPriceVolumePairs(Side.SELL).get(0).getVolume(), 0.0);
+    }
+
+    @Test
+    public void snapshotsOnlyChangeWhenPublished() {
+        DepthSnapshot initial = underTest.getSnapshot(Side.BUY);
+        assertEquals(0, initial.getPriceVolumePairs().size());
+
+        Order order = createOrder(Side.BUY, 13.1, 23.4, "user");
+        underTest.addOrder(order);
+        assertSame(initial, underTest.getSnapshot(Side.BUY));
+
+        underTest.publishSnapshots();
+        DepthSnapshot published = underTest.getSnapshot(Side.BUY);
+        assertTrue(published.getSequence() > initial.getSequence());
+        assertEquals(13.1, published.getPriceVolumePairs().get(0).getPrice(), 0.0);
+
+        underTest.publishSnapshots();
+        assertSame(published, underTest.getSnapshot(Side.BUY));
+
+        underTest.removeOrder(order);
+        underTest.publishSnapshots();
+        assertTrue(underTest.getSnapshot(Side.BUY).getSequence() > published.getSequence());
+        assertEquals(0, underTest.getSnapshot(Side.BUY).getPriceVolumePairs().size());
+        assertEquals(1, published.getPriceVolumePairs().size());
+    }
+
+    @Test
+    public void appliesABatchOfCommandsInOrder() {
+        Order bid = createOrder(Side.BUY, 12.4, 23.4, "user");
+        Order otherBid = createOrder(Side.BUY, 13.1, 2, "user 2");
+        Order offer = createOrder(Side.SELL, 9.87, 10.21, "user 3");
+        Order otherOffer = createOrder(Side.SELL, 5.56, 2.67, "user 4");
+
+        boolean[] results = underTest.applyBatch(Arrays.asList(
+                Command.add(bid),
+                Command.add(otherBid),
+                Command.add(offer),
+                Command.add(bid),
+                Command.removeById(offer.getId()),
+                Command.add(otherOffer),
+                Command.removeOrder(offer),
+                Command.removeByParameters(Side.BUY, "user 2", 13.1, 2),
+                Command.add(offer)));
+
+        assertArrayEquals(new boolean[]{true, true, true, false, true, true, false, true, true}, results);
+
+        List<PriceVolumePair> bids = underTest.getPriceVolumePairs(Side.BUY);
+        assertEquals(1, bids.size());
+        assertEquals(12.4, bids.get(0).getPrice(), 0.0);
+
+        List<PriceVolumePair> offers = underTest.getPriceVolumePairs(Side.SELL);
+        assertEquals(2, offers.size());
+        assertEquals(5.56, offers.get(0).getPrice(), 0.0);
+        assertEquals(9.87, offers.get(1).getPrice(), 0.0);
+
+        //The dashboard works as usual after the batch.
+        underTest.addOrder(otherBid);
+        assertEquals(13.1, underTest.getPriceVolumePairs(Side.BUY).get(0).getPrice(), 0.0);
+    }
+
+    @Test
+    public void returnsOnlyTheBestLevels() {
+        assertEquals(null, underTest.getTopOfBook(Side.BUY));
+        assertEquals(0, underTest.getDepth(Side.BUY, 10).size());
+
+        underTest.addOrder(createOrder(Side.BUY, 12.4, 23.4, "user"));
+        underTest.addOrder(createOrder(Side.BUY, 13.1, 2, "user 2"));
+        underTest.addOrder(createOrder(Side.BUY, 12.5, 1, "user 3"));
+        underTest.addOrder(createOrder(Side.BUY, 13.1, 0.5, "user 4"));
+        underTest.addOrder(createOrder(Side.SELL, 13.2, 4, "user 5"));
+
+        PriceVolumePair bestBid = underTest.getTopOfBook(Side.BUY);
+        assertEquals(13.1, bestBid.getPrice(), 0.0);
+        assertEquals(2.5, bestBid.getVolume(), 0.0);
+        assertEquals(13.2, underTest.getTopOfBook(Side.SELL).getPrice(), 0.0);
+
+        List<PriceVolumePair> topTwo = underTest.getDepth(Side.BUY, 2);
+        assertEquals(2, topTwo.size());
+        assertEquals(13.1, topTwo.get(0).getPrice(), 0.0);
+        assertEquals(12.5, topTwo.get(1).getPrice(), 0.0);
+        assertEquals(3, underTest.getDepth(Side.BUY, 10).size());
+
+        double[] prices = {-1, -1, -1, -1};
+        double[] volumes = new double[4];
+        assertEquals(3, underTest.getDepth(Side.BUY, prices, volumes));
+        assertArrayEquals(new double[]{13.1, 12.5, 12.4, -1}, prices, 0.0);
+        assertArrayEquals(new double[]{2.5, 1, 23.4, 0}, volumes, 0.0);
+
+        assertEquals(1, underTest.getDepth(Side.BUY, new double[1], new double[2]));
+    }
+
+    /**
+     * Keeps a copy of the depth of one side from the snapshot and the updates, as a client would.
+     */
+    private static class DepthReplica implements DepthListener {
+        private final Side side;
+        private final Map<Long, Long> lotsByPrice = new TreeMap<>(Collections.reverseOrder());
+        private final List<DepthUpdate> updates = new ArrayList<>();
+        private long sequence = -1;
+
+        DepthReplica(Side side) {
+            this.side = side;
+        }
+
+        @Override
+        public void onSnapshot(long sequence, List<DepthUpdate> bids, List<DepthUpdate> offers) {
+            this.sequence = sequence;
+            for (DepthUpdate level : side == Side.BUY ? bids : offers) {
+                lotsByPrice.put(level.getPriceTicks(), level.getVolumeLots());
+            }
+        }
+
+        @Override
+        public void onUpdate(DepthUpdate update) {
+            assertEquals(++sequence, update.getSequence());
+            updates.add(update);
+            if (update.getSide() != side) {
+                return;
+            }
+            switch (update.getType()) {
+                case CREATED:
+                    assertEquals(null, lotsByPrice.put(update.getPriceTicks(), update.getVolumeLots()));
+                    break;
+                case CHANGED:
+                    assertTrue(lotsByPrice.containsKey(update.getPriceTicks()));
+                    lotsByPrice.put(update.getPriceTicks(), update.getVolumeLots());
+                    break;
+                default:
+                    assertEquals(0, update.getNumberOfOrders());
+                    assertTrue(lotsByPrice.remove(update.getPriceTicks()) != null);
+            }
+        }
+
+        void assertSameAs(List<PriceVolumePair> pairs) {
+            assertEquals(pairs.size(), lotsByPrice.size());
+            int rank = 0;
+            for (Map.Entry<Long, Long> level : lotsByPrice.entrySet()) {
+                assertEquals(pairs.get(rank).getPriceTicks(), (long) level.getKey());
+                assertEquals(pairs.get(rank).getVolumeLots(), (long) level.getValue());
+                rank++;
+            }
+        }
+    }
+
+    @Test
+    public void depthUpdatesKeepSubscribersInSync() {
+        DepthReplica early = new DepthReplica(Side.BUY);
+        underTest.subscribe(early);
+
+        Order order1 = createOrder(Side.BUY, 12.4, 23.4, "user");
+        Order order2 = createOrder(Side.BUY, 12.4, 1, "user 2");
+        underTest.addOrder(order1);
+        underTest.addOrder(order2);
+        underTest.addOrder(createOrder(Side.SELL, 13.1, 2, "user 3"));
+
+        assertEquals(3, early.updates.size());
+        assertEquals(DepthUpdate.Type.CREATED, early.updates.get(0).getType());
+        DepthUpdate changed = early.updates.get(1);
+        assertEquals(DepthUpdate.Type.CHANGED, changed.getType());
+        assertEquals(24.4, changed.getVolume(), 0.0);
+        assertEquals(2, changed.getNumberOfOrders());
+
+        //A late subscriber starts from a snapshot at the sequence of the last update.
+        DepthReplica late = new DepthReplica(Side.BUY);
+        underTest.addOrder(createOrder(Side.BUY, 13.0, 5, "user 4"));
+        underTest.subscribe(late);
+        assertEquals(4, late.sequence);
+
+        underTest.removeOrder(order1);
+        underTest.removeOrder(Side.BUY, "user 2", 12.4, 1);
+        underTest.applyBatch(Arrays.asList(
+                Command.add(order1),
+                Command.removeOrder(order1),
+                Command.add(createOrder(Side.BUY, 11.0, 3, "user 5"))));
+
+        assertEquals(DepthUpdate.Type.REMOVED, late.updates.get(1).getType());
+        early.assertSameAs(underTest.getPriceVolumePairs(Side.BUY));
+        late.assertSameAs(underTest.getPriceVolumePairs(Side.BUY));
+
+        assertTrue(underTest.unsubscribe(early));
+        assertFalse(underTest.unsubscribe(early));
+        underTest.addOrder(createOrder(Side.BUY, 10.0, 1, "user 6"));
+        assertEquals(9, early.updates.size());
+        assertEquals(6, late.updates.size());
+    }
+
+    @Test
+    public void cancelsEveryOrderOfAUser() {
+        Order order1 = createOrder(Side.BUY, 12.4, 23.4, "user");
+        Order order2 = createOrder(Side.BUY, 12.4, 1, "user 2");
+        Order order3 = createOrder(Side.SELL, 13.1, 2, "user");
+        Order order4 = createOrder(Side.BUY, 9.87, 5, "user");
+        underTest.addOrder(order1);
+        underTest.addOrder(order2);
+        underTest.addOrder(order3);
+        underTest.addOrder(order4);
+
+        assertEquals(Arrays.asList(order1, order3, order4), underTest.getOrdersForUser("user"));
+        assertEquals(3, underTest.cancelAllForUser("user"));
+
+        assertEquals(Collections.emptyList(), underTest.getOrdersForUser("user"));
+        assertEquals(Collections.singletonList(order2), underTest.getOrdersForUser("user 2"));
+        List<PriceVolumePair> bids = underTest.getPriceVolumePairs(Side.BUY);
+        assertEquals(1, bids.size());
+        assertEquals(1, bids.get(0).getVolume(), 0.0);
+        assertEquals(0, underTest.getPriceVolumePairs(Side.SELL).size());
+        assertFalse(underTest.removeOrder(order1.getId()));
+
+        assertEquals(0, underTest.cancelAllForUser("user"));
+        assertEquals(0, underTest.cancelAllForUser("nobody"));
+        assertEquals(Collections.emptyList(), underTest.getOrdersForUser("nobody"));
+
+        //The user can come back.
+        Order order5 = createOrder(Side.SELL, 13.1, 4, "user");
+        underTest.addOrder(order5);
+        assertEquals(Collections.singletonList(order5), underTest.getOrdersForUser("user"));
+    }
+
+    @Test
+    public void keepsTheOrdersOfAUserUpToDateOnEveryRemoval() {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            //A deep level shared with other users, and a few orders of the user elsewhere.
+            Order order = createOrder(Side.BUY, i % 4 == 0 ? 9.87 : 12.4, 1 + i, i % 2 == 0 ? "user" : "other " + i);
+            underTest.addOrder(order);
+            orders.add(order);
+        }
+
+        assertTrue(underTest.removeOrder(orders.get(0).getId()));
+        assertTrue(underTest.removeOrder(orders.get(2)));
+        //The user has fewer orders than the level at 12.4, so they are looked through instead of the level.
+        assertTrue(underTest.removeOrder(Side.BUY, "user", 12.4, 7));
+        assertFalse(underTest.removeOrder(Side.BUY, "user", 12.4, 8));
+        assertFalse(underTest.removeOrder(Side.SELL, "user", 12.4, 11));
+        //And more orders than the level at 9.87, so the level is looked through instead.
+        assertTrue(underTest.removeOrder(Side.BUY, "user", 9.87, 9));
+        assertFalse(underTest.removeOrder(Side.BUY, "nobody", 12.4, 2));
+
+        assertEquals(Arrays.asList(orders.get(4), orders.get(10), orders.get(12), orders.get(14), orders.get(16),
+                orders.get(18)), underTest.getOrdersForUser("user"));
+        assertEquals(Collections.singletonList(orders.get(3)), underTest.getOrdersForUser("other 3"));
+    }
 }
@@ -0,0 +1,200 @@
+package com.company;
+
+import com.company.loop.WaitStrategy;
+import com.company.model.Order;
+import com.company.model.Side;
+import com.company.order.book.DepthSnapshot;
+import com.company.order.book.PriceVolumePair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EventLoopDashboardTest {
+
+    private static final int THREADS = 4;
+    private static final int ORDERS_PER_THREAD = 2_000;
+    private static final double[] PRICES = {9.87, 9.88, 9.89, 9.9, 12.4, 12.41, 13.1};
+
+    private EventLoopDashboard underTest;
+
+    @Before
+    public void setUp() {
+        //A small ring buffer, so that the submitting threads also have to wait for free slots.
+        underTest = new EventLoopDashboard(new Dashboard(), 64, WaitStrategy.PARK).start();
+    }
+
+    @After
+    public void tearDown() {
+        underTest.close();
+    }
+
+    private Order createOrder(Side side, double price, double volume, String userId) {
+        return new Order(side, userId, volume, price);
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void commandsAreAppliedInOrderAndAnswered() throws Exception {
+        Order order = createOrder(Side.BUY, 12.4, 23.4, "user");
+        underTest.addOrder(order);
+        underTest.addOrder(createOrder(Side.BUY, 13.1, 23.4, "user 2"));
+        underTest.addOrder(createOrder(Side.SELL, 9.87, 10.21, "user 3"));
+        CompletableFuture<Boolean> removed = underTest.removeOrder(order.getId());
+        CompletableFuture<Boolean> removedAgain = underTest.removeOrder(order);
+
+        assertTrue(await(removed));
+        assertFalse(await(removedAgain));
+        assertTrue(await(underTest.removeOrder(Side.SELL, "user 3", 9.87, 10.21)));
+
+        List<PriceVolumePair> bids = await(underTest.getPriceVolumePairs(Side.BUY));
+        assertEquals(1, bids.size());
+        assertEquals(13.1, bids.get(0).getPrice(), 0.0);
+        assertTrue(await(underTest.getPriceVolumePairs(Side.SELL)).isEmpty());
+    }
+
+    @Test
+    public void rejectedOrdersCompleteExceptionally() throws Exception {
+        Order order = createOrder(Side.SELL, 9.87, 1, "user");
+        assertTrue(await(underTest.addOrder(order)));
+
+        try {
+            await(underTest.addOrder(order));
+            fail("The duplicate order should have been rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        //The event loop keeps going after a rejection.
+        assertTrue(await(underTest.removeOrder(order)));
+    }
+
+    @Test
+    public void snapshotsArePublishedAfterEachBatch() throws Exception {
+        assertEquals(0, underTest.getSnapshot(Side.BUY).getPriceVolumePairs().size());
+
+        //The future is only completed once the snapshot of the batch that applied the order is published.
+        await(underTest.addOrder(createOrder(Side.BUY, 12.4, 2, "user")));
+
+        DepthSnapshot snapshot = underTest.getSnapshot(Side.BUY);
+        assertEquals(1, snapshot.getSequence());
+        assertEquals(2.0, snapshot.getPriceVolumePairs().get(0).getVolume(), 0.0);
+    }
+
+    @Test
+    public void concurrentProducersEndInTheSameStateAsASequentialDashboard() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<List<Order>>> producers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                producers.add(executor.submit(() -> {
+                    Random random = new Random(thread);
+                    List<Order> remaining = new ArrayList<>();
+                    List<CompletableFuture<Boolean>> cancels = new ArrayList<>();
+                    for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+                        Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+                        Order order = createOrder(side, PRICES[random.nextInt(PRICES.length)],
+                                1 + random.nextInt(50), "user " + thread + "-" + i);
+                        underTest.addOrder(order);
+                        //Commands of one thread are applied in order, so the cancel always finds the order.
+                        if (i % 2 == 0) {
+                            cancels.add(underTest.removeOrder(order.getId()));
+                        } else {
+                            remaining.add(order);
+                        }
+                    }
+                    for (CompletableFuture<Boolean> cancel : cancels) {
+                        assertTrue(await(cancel));
+                    }
+                    return remaining;
+                }));
+            }
+
+            Dashboard expected = new Dashboard();
+            for (Future<List<Order>> producer : producers) {
+                for (Order order : producer.get(60, TimeUnit.SECONDS)) {
+                    expected.addOrder(order);
+                }
+            }
+
+            for (Side side : Side.values()) {
+                List<PriceVolumePair> expectedPairs = expected.getPriceVolumePairs(side);
+                List<PriceVolumePair> actualPairs = await(underTest.getPriceVolumePairs(side));
+                assertEquals(expectedPairs.size(), actualPairs.size());
+                for (int i = 0; i < expectedPairs.size(); i++) {
+                    assertEquals(expectedPairs.get(i).getPriceTicks(), actualPairs.get(i).getPriceTicks());
+                    assertEquals(expectedPairs.get(i).getVolumeLots(), actualPairs.get(i).getVolumeLots());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void errorsFailTheirCommandWithoutStoppingTheEventLoop() throws Exception {
+        underTest.close();
+        underTest = new EventLoopDashboard(new Dashboard() {
+            @Override
+            public void addOrder(Order order) {
+                if (order.getUserId().equals("broken")) {
+                    throw new AssertionError("Inconsistent book");
+                }
+                super.addOrder(order);
+            }
+        }, 64, WaitStrategy.PARK).start();
+
+        CompletableFuture<Boolean> before = underTest.addOrder(createOrder(Side.BUY, 9.9, 1, "user"));
+        CompletableFuture<Boolean> broken = underTest.addOrder(createOrder(Side.BUY, 9.9, 1, "broken"));
+        CompletableFuture<Boolean> after = underTest.addOrder(createOrder(Side.BUY, 9.9, 1, "user"));
+
+        assertTrue(await(before));
+        try {
+            await(broken);
+            fail("The error should have failed the command");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AssertionError);
+        }
+        assertTrue(await(after));
+        assertEquals(2, await(underTest.getPriceVolumePairs(Side.BUY)).get(0).getVolume(), 1e-9);
+    }
+
+    @Test
+    public void closeAppliesPendingCommandsAndRejectsNewOnes() throws Exception {
+        List<CompletableFuture<Boolean>> adds = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            adds.add(underTest.addOrder(createOrder(Side.SELL, PRICES[i % PRICES.length], 1, "user")));
+        }
+
+        underTest.close();
+
+        for (CompletableFuture<Boolean> add : adds) {
+            assertTrue(add.isDone());
+            assertTrue(add.get());
+        }
+        assertEquals(100, underTest.getSnapshot(Side.SELL).getSequence());
+        try {
+            await(underTest.removeOrder("id"));
+            fail("The closed dashboard should have rejected the command");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
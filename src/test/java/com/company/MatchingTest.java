@@ -0,0 +1,353 @@
+package com.company;
+
+import com.company.journal.FsyncPolicy;
+import com.company.journal.Journal;
+import com.company.model.Command;
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.OrderIdGenerator;
+import com.company.model.OrderPool;
+import com.company.model.Side;
+import com.company.order.book.PriceVolumePair;
+import com.company.order.book.Trade;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MatchingTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> trades = new ArrayList<>();
+
+    private Dashboard matchingDashboard() {
+        Dashboard dashboard = new Dashboard(Increments.DEFAULT, null, true);
+        dashboard.setTradeListener(this::record);
+        return dashboard;
+    }
+
+    private void record(Trade trade) {
+        trades.add(describe(trade.getIncomingOrderId(), trade.getRestingOrderId(), trade.getPriceTicks(),
+                trade.getQuantityLots()));
+    }
+
+    private static String describe(String incomingId, String restingId, long priceTicks, long lots) {
+        return incomingId + " x " + restingId + " " + lots + " @ " + priceTicks;
+    }
+
+    private static Order order(long id, Side side, String userId, long lots, long ticks) {
+        return Order.inTicks(id, side, userId, lots, ticks, Increments.DEFAULT);
+    }
+
+    /**
+     * @return every resting order of the dashboard as "id side userId ticks lots", best price first.
+     */
+    private static List<String> ordersOf(Dashboard dashboard) {
+        List<String> orders = new ArrayList<>();
+        for (Side side : Side.values()) {
+            dashboard.forEachOrder(side, order -> orders.add(order.getId() + " " + order.getSide() + " "
+                    + order.getUserId() + " " + order.getPriceTicks() + " " + order.getQuantityLots()));
+        }
+        return orders;
+    }
+
+    @Test
+    public void fillsTheBestPricesFirstAndTheOldestOrdersFirstWithinAPrice() {
+        Dashboard underTest = matchingDashboard();
+        underTest.addOrder(order(1, Side.SELL, "a", 5, 1002));
+        underTest.addOrder(order(2, Side.SELL, "b", 3, 1001));
+        underTest.addOrder(order(3, Side.SELL, "c", 4, 1001));
+        underTest.addOrder(order(4, Side.SELL, "d", 7, 1003));
+        assertEquals(Collections.emptyList(), trades);
+
+        Order incoming = order(5, Side.BUY, "e", 10, 1002);
+        underTest.addOrder(incoming);
+
+        assertEquals(Arrays.asList(describe("5", "2", 1001, 3), describe("5", "3", 1001, 4),
+                describe("5", "1", 1002, 3)), trades);
+        assertEquals(0, incoming.getQuantityLots());
+        //The partially filled order keeps its place, with what is left of it.
+        assertEquals(Arrays.asList("1 SELL a 1002 2", "4 SELL d 1003 7"), ordersOf(underTest));
+        assertFalse(underTest.removeOrder(5));
+        assertEquals(Collections.emptyList(), underTest.getOrdersForUser("e"));
+    }
+
+    @Test
+    public void restsWhatIsLeftOnceTheOtherSideNoLongerCrosses() {
+        Dashboard underTest = matchingDashboard();
+        underTest.addOrder(order(1, Side.BUY, "a", 5, 1000));
+        underTest.addOrder(order(2, Side.BUY, "b", 5, 998));
+
+        underTest.addOrder(order(3, Side.SELL, "c", 8, 999));
+
+        assertEquals(Collections.singletonList(describe("3", "1", 1000, 5)), trades);
+        assertEquals(Arrays.asList("2 BUY b 998 5", "3 SELL c 999 3"), ordersOf(underTest));
+        PriceVolumePair bestOffer = underTest.getTopOfBook(Side.SELL);
+        assertEquals(999, bestOffer.getPriceTicks());
+        assertEquals(3, bestOffer.getVolumeLots());
+        assertTrue(underTest.removeOrder(3));
+    }
+
+    @Test
+    public void tradesNothingForARejectedOrder() {
+        Dashboard underTest = matchingDashboard();
+        underTest.addOrder(order(1, Side.SELL, "a", 5, 1000));
+        underTest.addOrder(order(2, Side.BUY, "b", 5, 999));
+
+        try {
+            underTest.addOrder(order(2, Side.BUY, "b", 5, 1000));
+            fail("The order is already on the dashboard");
+        } catch (IllegalArgumentException expected) {
+            //Rejected before it could trade.
+        }
+        assertEquals(Collections.emptyList(), trades);
+        assertEquals(Arrays.asList("2 BUY b 999 5", "1 SELL a 1000 5"), ordersOf(underTest));
+    }
+
+    @Test
+    public void rejectsOrdersWithoutAPositiveQuantity() {
+        for (Dashboard underTest : Arrays.asList(matchingDashboard(), new Dashboard())) {
+            underTest.addOrder(order(1, Side.SELL, "a", 10, 1000));
+            for (long lots : new long[]{0, -4}) {
+                try {
+                    underTest.addOrder(order(2, Side.BUY, "b", lots, 1000));
+                    fail("An order of " + lots + " lots must be rejected");
+                } catch (IllegalArgumentException expected) {
+                    //Neither traded nor rested.
+                }
+                try {
+                    underTest.addOrder(order(3, Side.SELL, "b", lots, 1000));
+                    fail("An order of " + lots + " lots must be rejected");
+                } catch (IllegalArgumentException expected) {
+                    //The level keeps its volume.
+                }
+            }
+            assertArrayEquals(new boolean[]{false}, underTest.applyBatch(Collections.singletonList(
+                    Command.add(order(4, Side.BUY, "b", -5, 1000)))));
+            assertEquals(Collections.emptyList(), trades);
+            assertEquals(Collections.singletonList("1 SELL a 1000 10"), ordersOf(underTest));
+            assertEquals(10, underTest.getTopOfBook(Side.SELL).getVolumeLots());
+        }
+    }
+
+    @Test
+    public void removesPartlyFilledOrdersGivenAsTheyWereAdded() {
+        Dashboard underTest = matchingDashboard();
+        underTest.addOrder(order(1, Side.SELL, "a", 10, 1000));
+        underTest.addOrder(order(2, Side.BUY, "b", 4, 1000));
+        underTest.addOrder(order(3, Side.BUY, "c", 15, 1000));
+        assertEquals(Collections.singletonList("3 BUY c 1000 9"), ordersOf(underTest));
+
+        assertFalse(underTest.removeOrder(order(3, Side.BUY, "c", 15, 1001)));
+        assertFalse(underTest.removeOrder(order(3, Side.BUY, "d", 15, 1000)));
+        assertTrue(underTest.removeOrder(order(3, Side.BUY, "c", 15, 1000)));
+        assertEquals(Collections.emptyList(), ordersOf(underTest));
+
+        underTest.addOrder(order(4, Side.SELL, "a", 10, 1000));
+        underTest.addOrder(order(5, Side.BUY, "b", 4, 1000));
+        assertTrue(underTest.removeOrder(order(4, Side.SELL, "a", 10, 1000)));
+        assertEquals(Collections.emptyList(), ordersOf(underTest));
+    }
+
+    @Test
+    public void keepsOrdersCreatedByCallersOutOfThePool() {
+        OrderPool pool = new OrderPool(Increments.DEFAULT, new OrderIdGenerator(), 16);
+        Dashboard underTest = new Dashboard(Increments.DEFAULT, pool, true);
+        Order resting = order(1, Side.SELL, "a", 5, 1000);
+        Order incoming = order(2, Side.BUY, "b", 5, 1000);
+        underTest.addOrder(resting);
+        underTest.addOrder(incoming);
+
+        assertEquals(0, pool.getFreeCount());
+        Order acquired = pool.acquire(Side.BUY, "c", 3, 999);
+        assertTrue(acquired != resting && acquired != incoming);
+        assertEquals(2, incoming.getNumericId());
+    }
+
+    @Test
+    public void releasesFilledOrdersToThePool() {
+        OrderPool pool = new OrderPool(Increments.DEFAULT, new OrderIdGenerator(), 16);
+        Dashboard underTest = new Dashboard(Increments.DEFAULT, pool, true);
+        underTest.addOrder(pool.acquire(Side.SELL, "a", 5, 1000));
+        underTest.addOrder(pool.acquire(Side.BUY, "b", 5, 1000));
+
+        //Both the resting order and the incoming one were filled completely.
+        assertEquals(2, pool.getFreeCount());
+        assertEquals(Collections.emptyList(), ordersOf(underTest));
+    }
+
+    @Test
+    public void matchesWithinABatch() {
+        Dashboard underTest = matchingDashboard();
+        boolean[] results = underTest.applyBatch(Arrays.asList(
+                Command.add(order(1, Side.SELL, "a", 5, 1001)),
+                Command.add(order(2, Side.SELL, "a", 5, 1000)),
+                Command.add(order(3, Side.BUY, "b", 7, 1001)),
+                Command.add(order(4, Side.BUY, "b", 1, 1000)),
+                Command.add(order(5, Side.SELL, "c", 2, 999))));
+
+        assertArrayEquals(new boolean[]{true, true, true, true, true}, results);
+        assertEquals(Arrays.asList(describe("3", "2", 1000, 5), describe("3", "1", 1001, 2),
+                describe("5", "4", 1000, 1)), trades);
+        assertEquals(Arrays.asList("5 SELL c 999 1", "1 SELL a 1001 3"), ordersOf(underTest));
+        assertEquals(2, underTest.getPriceVolumePairs(Side.SELL).size());
+        assertEquals(0, underTest.getPriceVolumePairs(Side.BUY).size());
+    }
+
+    /**
+     * Orders of a seeded random stream, with prices around a mid price so that about half of them cross.
+     */
+    private static List<long[]> randomStream(long seed, int count) {
+        Random random = new Random(seed);
+        List<long[]> stream = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            //id, side, user, lots, ticks, and the id of an earlier order to cancel, or -1.
+            stream.add(new long[]{i, random.nextInt(2), random.nextInt(20), 1 + random.nextInt(20),
+                    990 + random.nextInt(21), i > 0 && random.nextInt(5) == 0 ? random.nextInt(i) : -1});
+        }
+        return stream;
+    }
+
+    private static Order orderOf(long[] command) {
+        return order(command[0], command[1] == 0 ? Side.BUY : Side.SELL, "user " + command[2], command[3],
+                command[4]);
+    }
+
+    @Test
+    public void matchesLikeAReferenceMatcher() {
+        Dashboard underTest = matchingDashboard();
+        ReferenceMatcher reference = new ReferenceMatcher();
+        for (long[] command : randomStream(11, 5000)) {
+            underTest.addOrder(orderOf(command));
+            reference.add(command);
+            if (command[5] >= 0) {
+                assertEquals(reference.cancel(command[5]), underTest.removeOrder(command[5]));
+            }
+            PriceVolumePair bestBid = underTest.getTopOfBook(Side.BUY);
+            PriceVolumePair bestOffer = underTest.getTopOfBook(Side.SELL);
+            assertTrue("The dashboard is crossed", bestBid == null || bestOffer == null
+                    || bestBid.getPriceTicks() < bestOffer.getPriceTicks());
+        }
+        assertEquals(reference.trades, trades);
+        assertEquals(reference.ordersOf(), ordersOf(underTest));
+    }
+
+    @Test
+    public void replaysToTheSameTradesAndOrders() throws IOException {
+        List<long[]> stream = randomStream(12, 3000);
+        Path directory = folder.getRoot().toPath().resolve("journal");
+        List<String> expectedOrders;
+        try (JournaledDashboard journaled = new JournaledDashboard(matchingDashboard(),
+                new Journal(directory, Increments.DEFAULT, FsyncPolicy.OS, 1 << 16, 8))) {
+            List<Command> batch = new ArrayList<>();
+            for (long[] command : stream) {
+                //Alternately one order at a time and in batches, which must match the same way.
+                if (command[0] % 200 < 100) {
+                    journaled.addOrder(orderOf(command));
+                    if (command[5] >= 0) {
+                        journaled.removeOrder(command[5]);
+                    }
+                } else {
+                    batch.add(Command.add(orderOf(command)));
+                    if (command[5] >= 0) {
+                        batch.add(Command.removeById(Long.toString(command[5])));
+                    }
+                    if (command[0] % 200 == 199) {
+                        journaled.applyBatch(batch);
+                        batch.clear();
+                    }
+                }
+            }
+            expectedOrders = ordersOf(journaled.getDashboard());
+        }
+        List<String> expectedTrades = new ArrayList<>(trades);
+        assertTrue(expectedTrades.size() > 1000);
+
+        trades.clear();
+        try (JournaledDashboard replayed = new JournaledDashboard(matchingDashboard(),
+                new Journal(directory, Increments.DEFAULT, FsyncPolicy.OS, 1 << 16, 8))) {
+            assertEquals(expectedTrades, trades);
+            assertEquals(expectedOrders, ordersOf(replayed.getDashboard()));
+        }
+    }
+
+    /**
+     * Straightforward price-time priority matcher over plain lists, to check the dashboard against.
+     */
+    private static final class ReferenceMatcher {
+
+        private final List<long[]> bids = new ArrayList<>();
+        private final List<long[]> offers = new ArrayList<>();
+        private final List<String> trades = new ArrayList<>();
+
+        void add(long[] command) {
+            long[] incoming = command.clone();
+            boolean buy = incoming[1] == 0;
+            List<long[]> opposite = buy ? offers : bids;
+            while (incoming[3] > 0) {
+                long[] best = null;
+                for (long[] resting : opposite) {
+                    //Strictly better only, so the oldest order wins at the same price.
+                    if (best == null || (buy ? resting[4] < best[4] : resting[4] > best[4])) {
+                        best = resting;
+                    }
+                }
+                if (best == null || (buy ? best[4] > incoming[4] : best[4] < incoming[4])) {
+                    break;
+                }
+                long lots = Math.min(incoming[3], best[3]);
+                trades.add(describe(Long.toString(incoming[0]), Long.toString(best[0]), best[4], lots));
+                incoming[3] -= lots;
+                best[3] -= lots;
+                if (best[3] == 0) {
+                    opposite.remove(best);
+                }
+            }
+            if (incoming[3] > 0) {
+                (buy ? bids : offers).add(incoming);
+            }
+        }
+
+        boolean cancel(long id) {
+            for (List<long[]> side : Arrays.asList(bids, offers)) {
+                for (int i = 0; i < side.size(); i++) {
+                    if (side.get(i)[0] == id) {
+                        side.remove(i);
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        List<String> ordersOf() {
+            List<String> orders = new ArrayList<>();
+            for (List<long[]> side : Arrays.asList(bids, offers)) {
+                List<long[]> sorted = new ArrayList<>(side);
+                boolean buy = side == bids;
+                //A stable sort keeps the arrival order within a price.
+                sorted.sort((a, b) -> buy ? Long.compare(b[4], a[4]) : Long.compare(a[4], b[4]));
+                for (long[] order : sorted) {
+                    orders.add(order[0] + " " + (buy ? "BUY" : "SELL") + " user " + order[2] + " " + order[4] + " "
+                            + order[3]);
+                }
+            }
+            return orders;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.company.codec;
+
+import com.company.Dashboard;
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.OrderIdGenerator;
+import com.company.model.OrderPool;
+import com.company.model.Side;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CommandApplierTest {
+
+    @Test
+    public void encodesAndDecodesOrdersInPlace() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+        OrderMessage message = new OrderMessage();
+        //User ids with characters of every UTF-8 length, including a surrogate pair.
+        Order order = new Order(Side.SELL, "us\u00e9r \u0394 \uD83D\uDE00", 2.5, 12.41);
+
+        int length = message.encode(buffer, 16, order);
+
+        OrderMessage decoded = new OrderMessage().wrap(buffer, 16);
+        assertEquals(length, decoded.getEncodedLength());
+        assertFalse(decoded.hasNumericId());
+        assertEquals(order.getId(), decoded.getId());
+        assertEquals(Side.SELL, decoded.getSide());
+        assertEquals(order.getUserId(), decoded.getUserId());
+        assertEquals(1241, decoded.getPriceTicks());
+        assertEquals(250, decoded.getQuantityLots());
+
+        message.encode(buffer, 16, new Order(42, Side.BUY, "user", 1.0, 9.87, Increments.DEFAULT));
+        assertTrue(decoded.wrap(buffer, 16).hasNumericId());
+        assertEquals("42", decoded.getId());
+        assertEquals(Side.BUY, decoded.getSide());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAMessageOfAnotherTemplate() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        new CancelMessage().encode(buffer, 0, 42);
+
+        new OrderMessage().wrap(buffer, 0);
+    }
+
+    @Test
+    public void appliesAStreamOfCommandsWithPooledOrders() {
+        OrderPool pool = new OrderPool(Increments.DEFAULT, new OrderIdGenerator(), 10);
+        Dashboard dashboard = new Dashboard(Increments.DEFAULT, pool);
+        CommandApplier underTest = new CommandApplier(dashboard, pool);
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        OrderMessage orders = new OrderMessage();
+        CancelMessage cancels = new CancelMessage();
+        Order uuidOrder = new Order(Side.SELL, "user 2", 3.0, 13.1);
+        int end = 0;
+        end += orders.encode(buffer, end, 7, "", Side.BUY, "user 1", 100, 987);
+        end += orders.encode(buffer, end, 8, "", Side.BUY, "user 1", 150, 987);
+        end += orders.encode(buffer, end, uuidOrder);
+        end += cancels.encode(buffer, end, 7);
+        end += orders.encode(buffer, end, 8, "", Side.BUY, "user 1", 150, 987);
+        end += cancels.encode(buffer, end, "99");
+        end += cancels.encode(buffer, end, uuidOrder.getId());
+        end += orders.encode(buffer, end, 10, "", Side.BUY, "user 1", 50, 988);
+
+        boolean[] results = new boolean[8];
+        int offset = 0;
+        for (int i = 0; offset < end; i++) {
+            results[i] = underTest.apply(buffer, offset);
+            offset = underTest.getLimit();
+        }
+
+        assertEquals(end, offset);
+        assertTrue(results[0] && results[1] && results[2] && results[3]);
+        //A second order 8 is rejected, and there is no order 99.
+        assertFalse(results[4]);
+        assertFalse(results[5]);
+        assertTrue(results[6] && results[7]);
+        assertEquals(2, dashboard.getPriceVolumePairs(Side.BUY).size());
+        assertEquals(1.5, dashboard.getPriceVolumePairs(Side.BUY).get(1).getVolume(), 0.0);
+        assertTrue(dashboard.getPriceVolumePairs(Side.SELL).isEmpty());
+        //Cancelled order 7 went back to the pool, was taken and given back by the rejected order 8, and was then
+        //reused for order 10. Both resting orders share the cached user id.
+        assertEquals(0, pool.getFreeCount());
+        List<Order> resting = new ArrayList<>();
+        dashboard.forEachOrder(Side.BUY, resting::add);
+        assertEquals(10, resting.get(0).getNumericId());
+        assertSame(resting.get(0).getUserId(), resting.get(1).getUserId());
+    }
+
+    @Test
+    public void cancelsOrdersAddedWithStringIdsThatAreNumbers() {
+        Dashboard dashboard = new Dashboard();
+        CommandApplier underTest = new CommandApplier(dashboard, null);
+        dashboard.addOrder(Order.inTicks("123", Side.BUY, "user", 100, 987, Increments.DEFAULT));
+        dashboard.addOrder(Order.inTicks("0124", Side.BUY, "user", 100, 987, Increments.DEFAULT));
+
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        CancelMessage cancels = new CancelMessage();
+        int end = cancels.encode(buffer, 0, "123");
+        end += cancels.encode(buffer, end, "0124");
+        end += cancels.encode(buffer, end, 124);
+
+        assertTrue(underTest.apply(buffer, 0));
+        assertTrue(underTest.apply(buffer, underTest.getLimit()));
+        assertFalse(underTest.apply(buffer, underTest.getLimit()));
+        assertEquals(end, underTest.getLimit());
+        assertTrue(dashboard.getPriceVolumePairs(Side.BUY).isEmpty());
+    }
+
+    @Test
+    public void doesNotTakeIdsWithLeadingZerosForNumbers() {
+        Dashboard dashboard = new Dashboard();
+        CommandApplier underTest = new CommandApplier(dashboard, null);
+        Order numeric = Order.inTicks(7, Side.BUY, "user", 100, 987, Increments.DEFAULT);
+        Order string = Order.inTicks("007", Side.BUY, "user", 100, 988, Increments.DEFAULT);
+        dashboard.addOrder(numeric);
+        dashboard.addOrder(string);
+
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        CancelMessage cancels = new CancelMessage();
+        cancels.encode(buffer, 0, "007");
+        assertTrue(underTest.apply(buffer, 0));
+        List<Order> resting = new ArrayList<>();
+        dashboard.forEachOrder(Side.BUY, resting::add);
+        assertEquals(Collections.singletonList(numeric), resting);
+
+        cancels.encode(buffer, 0, "007");
+        assertFalse(underTest.apply(buffer, 0));
+        cancels.encode(buffer, 0, 7);
+        assertTrue(underTest.apply(buffer, 0));
+        assertTrue(dashboard.getPriceVolumePairs(Side.BUY).isEmpty());
+    }
+}
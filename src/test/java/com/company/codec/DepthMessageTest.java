@@ -0,0 +1,52 @@
+package com.company.codec;
+
+import com.company.Dashboard;
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.Side;
+import com.company.order.book.DepthSnapshot;
+import com.company.order.book.PriceVolumePair;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class DepthMessageTest {
+
+    @Test
+    public void encodesTheDepthOfADashboard() {
+        Dashboard dashboard = new Dashboard();
+        dashboard.addOrder(new Order(Side.BUY, "user 1", 1.5, 9.87));
+        dashboard.addOrder(new Order(Side.BUY, "user 2", 2.0, 9.9));
+        dashboard.addOrder(new Order(Side.BUY, "user 3", 0.5, 9.87));
+        dashboard.publishSnapshots();
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        DepthMessage underTest = new DepthMessage();
+
+        int length = underTest.encode(buffer, 0, dashboard.getSnapshot(Side.BUY), Increments.DEFAULT);
+
+        DepthMessage decoded = new DepthMessage().wrap(buffer, 0);
+        assertEquals(length, decoded.getEncodedLength());
+        assertEquals(Side.BUY, decoded.getSide());
+        assertEquals(3, decoded.getSequence());
+        assertEquals(2, decoded.getLevelCount());
+        assertEquals(990, decoded.getPriceTicks(0));
+        assertEquals(200, decoded.getVolumeLots(0));
+        assertEquals(987, decoded.getPriceTicks(1));
+        assertEquals(200, decoded.getVolumeLots(1));
+
+        long[] priceTicks = new long[10];
+        long[] volumeLots = new long[10];
+        int count = dashboard.getDepth(Side.BUY, priceTicks, volumeLots);
+        assertEquals(length, underTest.encode(buffer, 0, Side.BUY, 3, Increments.DEFAULT, priceTicks, volumeLots,
+                count));
+
+        DepthSnapshot snapshot = decoded.wrap(buffer, 0).toSnapshot();
+        List<PriceVolumePair> levels = snapshot.getPriceVolumePairs();
+        assertEquals(3, snapshot.getSequence());
+        assertEquals(9.9, levels.get(0).getPrice(), 0.0);
+        assertEquals(2.0, levels.get(1).getVolume(), 0.0);
+    }
+}
@@ -0,0 +1,191 @@
+package com.company.gateway;
+
+import com.company.Dashboard;
+import com.company.codec.DepthMessage;
+import com.company.model.Order;
+import com.company.model.Side;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GatewayServerTest {
+
+    private GatewayServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new GatewayServer(new Dashboard(), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                .start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    /**
+     * Keeps the results in order and the latest depth of each side.
+     */
+    static class Recorder implements GatewayClient.Listener {
+
+        final List<Boolean> results = new ArrayList<>();
+        final List<Long> requests = new ArrayList<>();
+        long[] bids;
+        long[] offers;
+        long bidsSequence = -1;
+
+        @Override
+        public void onResult(long request, boolean accepted) {
+            requests.add(request);
+            results.add(accepted);
+        }
+
+        @Override
+        public void onDepth(DepthMessage depth) {
+            long[] levels = new long[depth.getLevelCount() * 2];
+            for (int i = 0; i < depth.getLevelCount(); i++) {
+                levels[2 * i] = depth.getPriceTicks(i);
+                levels[2 * i + 1] = depth.getVolumeLots(i);
+            }
+            if (depth.getSide() == Side.BUY) {
+                bids = levels;
+                bidsSequence = depth.getSequence();
+            } else {
+                offers = levels;
+            }
+        }
+    }
+
+    @Test
+    public void answersPipelinedRequestsInOrder() throws IOException {
+        try (GatewayClient client = new GatewayClient(server.getAddress())) {
+            Order uuidOrder = new Order(Side.SELL, "user 2", 1.0, 13.1);
+            for (int i = 0; i < 1000; i++) {
+                client.sendOrder(i, Side.BUY, "user 1", 100, 900 + i % 10);
+            }
+            client.sendOrder(uuidOrder);
+            client.sendOrder(5, Side.BUY, "user 1", 100, 987);
+            for (int i = 0; i < 1000; i += 2) {
+                client.sendCancel(i);
+            }
+            client.sendCancel(uuidOrder.getId());
+            client.sendCancel(uuidOrder.getId());
+            client.flush();
+
+            Recorder recorder = new Recorder();
+            while (recorder.results.size() < 1504) {
+                client.poll(recorder);
+            }
+
+            for (int i = 0; i < recorder.requests.size(); i++) {
+                assertEquals(i, (long) recorder.requests.get(i));
+            }
+            for (int i = 0; i < 1001; i++) {
+                assertTrue(recorder.results.get(i));
+            }
+            //Order 5 is already resting, and the second cancel of the UUID order finds nothing.
+            assertFalse(recorder.results.get(1001));
+            assertTrue(recorder.results.get(1502));
+            assertFalse(recorder.results.get(1503));
+        }
+    }
+
+    @Test
+    public void sendsTheLatestDepthToSubscribers() throws IOException {
+        try (GatewayClient trader = new GatewayClient(server.getAddress());
+             GatewayClient viewer = new GatewayClient(server.getAddress())) {
+            Recorder traderResults = new Recorder();
+            trader.sendOrder(1, Side.BUY, "user 1", 150, 987);
+            trader.flush();
+            trader.poll(traderResults);
+
+            Recorder depth = new Recorder();
+            viewer.subscribe();
+            viewer.flush();
+            //The result of the subscription and the current depth of both sides.
+            while (depth.results.isEmpty() || depth.bids == null || depth.offers == null) {
+                viewer.poll(depth);
+            }
+            assertEquals(2, depth.bids.length);
+            assertEquals(987, depth.bids[0]);
+            assertEquals(0, depth.offers.length);
+
+            trader.sendOrder(2, Side.BUY, "user 1", 50, 990);
+            trader.sendOrder(3, Side.BUY, "user 2", 25, 987);
+            trader.sendCancel(1);
+            trader.flush();
+            while (traderResults.results.size() < 4) {
+                trader.poll(traderResults);
+            }
+            while (depth.bidsSequence < 4) {
+                viewer.poll(depth);
+            }
+            assertEquals(4, depth.bids.length);
+            assertEquals(990, depth.bids[0]);
+            assertEquals(50, depth.bids[1]);
+            assertEquals(987, depth.bids[2]);
+            assertEquals(25, depth.bids[3]);
+        }
+    }
+
+    @Test
+    public void keepsTheOtherConnectionsWhenOneCannotBeSetUp() throws IOException {
+        server.close();
+        AtomicInteger accepted = new AtomicInteger();
+        server = new GatewayServer(new Dashboard(), null, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                GatewayServer.DEFAULT_DEPTH_LEVELS) {
+            @Override
+            void configure(SocketChannel channel) throws IOException {
+                if (accepted.incrementAndGet() == 2) {
+                    throw new IOException("Cannot set the connection up");
+                }
+                super.configure(channel);
+            }
+        }.start();
+
+        try (GatewayClient first = new GatewayClient(server.getAddress())) {
+            Recorder firstResults = new Recorder();
+            first.sendOrder(1, Side.BUY, "user 1", 100, 987);
+            first.flush();
+            first.poll(firstResults);
+
+            try (GatewayClient second = new GatewayClient(server.getAddress())) {
+                second.sendOrder(2, Side.BUY, "user 2", 100, 987);
+                second.flush();
+                second.poll(new Recorder());
+                fail("The second connection must be closed by the server");
+            } catch (IOException expected) {
+                //Closed or reset.
+            }
+
+            first.sendOrder(3, Side.BUY, "user 1", 100, 988);
+            first.flush();
+            while (firstResults.results.size() < 2) {
+                first.poll(firstResults);
+            }
+            assertEquals(Arrays.asList(true, true), firstResults.results);
+
+            try (GatewayClient third = new GatewayClient(server.getAddress())) {
+                Recorder thirdResults = new Recorder();
+                third.sendOrder(2, Side.BUY, "user 3", 100, 987);
+                third.flush();
+                third.poll(thirdResults);
+                assertTrue(thirdResults.results.get(0));
+            }
+        }
+    }
+}
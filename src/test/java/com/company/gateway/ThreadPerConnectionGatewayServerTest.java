@@ -0,0 +1,97 @@
+package com.company.gateway;
+
+import com.company.Dashboard;
+import com.company.model.Side;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ThreadFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadPerConnectionGatewayServerTest {
+
+    private ThreadPerConnectionGatewayServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        //Platform threads, as the build also runs on JVMs without virtual threads.
+        server = new ThreadPerConnectionGatewayServer(new Dashboard(), null,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 10, Thread::new).start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void servesRequestsAndDepthFromSeveralConnections() throws IOException {
+        try (GatewayClient first = new GatewayClient(server.getAddress());
+             GatewayClient second = new GatewayClient(server.getAddress());
+             GatewayClient viewer = new GatewayClient(server.getAddress())) {
+            GatewayServerTest.Recorder depth = new GatewayServerTest.Recorder();
+            viewer.subscribe();
+            viewer.flush();
+            while (depth.bids == null || depth.offers == null) {
+                viewer.poll(depth);
+            }
+            assertEquals(0, depth.bids.length);
+
+            for (int i = 0; i < 500; i++) {
+                first.sendOrder(i, Side.BUY, "user 1", 10, 900 + i % 5);
+                second.sendOrder(1000 + i, Side.SELL, "user 2", 10, 1000 + i % 5);
+            }
+            first.sendOrder(0, Side.BUY, "user 1", 10, 900);
+            second.sendCancel(1000);
+            first.flush();
+            second.flush();
+
+            GatewayServerTest.Recorder firstResults = new GatewayServerTest.Recorder();
+            GatewayServerTest.Recorder secondResults = new GatewayServerTest.Recorder();
+            while (firstResults.results.size() < 501) {
+                first.poll(firstResults);
+            }
+            while (secondResults.results.size() < 501) {
+                second.poll(secondResults);
+            }
+            for (int i = 0; i < 500; i++) {
+                assertEquals(i, (long) firstResults.requests.get(i));
+                assertTrue(firstResults.results.get(i));
+                assertTrue(secondResults.results.get(i));
+            }
+            assertFalse(firstResults.results.get(500));
+            assertTrue(secondResults.results.get(500));
+
+            while (depth.bidsSequence < 500 || depth.offers.length < 2 || depth.offers[1] != 990) {
+                viewer.poll(depth);
+            }
+            assertEquals(10, depth.bids.length);
+            assertEquals(904, depth.bids[0]);
+            assertEquals(1000, depth.bids[1]);
+            assertEquals(10, depth.offers.length);
+            assertEquals(1000, depth.offers[0]);
+            assertEquals(990, depth.offers[1]);
+        }
+    }
+
+    @Test
+    public void providesVirtualThreadsFromJava21() {
+        boolean supported = !System.getProperty("java.specification.version").startsWith("1.")
+                && Integer.parseInt(System.getProperty("java.specification.version")) >= 21;
+        try {
+            ThreadFactory factory = ThreadPerConnectionGatewayServer.virtualThreadFactory();
+            assertTrue(supported);
+            assertNotNull(factory.newThread(() -> { }));
+        } catch (UnsupportedOperationException e) {
+            assertFalse(supported);
+        }
+    }
+}
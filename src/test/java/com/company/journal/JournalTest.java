@@ -0,0 +1,172 @@
+package com.company.journal;
+
+import com.company.Dashboard;
+import com.company.JournaledDashboard;
+import com.company.model.Command;
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.Side;
+import com.company.order.book.PriceVolumePair;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JournalTest {
+
+    private static final double[] PRICES = {9.87, 9.88, 9.89, 9.9, 12.4, 12.41, 13.1};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private JournaledDashboard open(Path directory, FsyncPolicy fsyncPolicy, int segmentSize) throws IOException {
+        return new JournaledDashboard(new Dashboard(),
+                new Journal(directory, Increments.DEFAULT, fsyncPolicy, segmentSize, 8));
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static void assertSameDepth(Dashboard expected, Dashboard actual) {
+        for (Side side : Side.values()) {
+            List<PriceVolumePair> expectedPairs = expected.getPriceVolumePairs(side);
+            List<PriceVolumePair> actualPairs = actual.getPriceVolumePairs(side);
+            assertEquals(expectedPairs.size(), actualPairs.size());
+            for (int i = 0; i < expectedPairs.size(); i++) {
+                assertEquals(expectedPairs.get(i).getPriceTicks(), actualPairs.get(i).getPriceTicks());
+                assertEquals(expectedPairs.get(i).getVolumeLots(), actualPairs.get(i).getVolumeLots());
+            }
+        }
+    }
+
+    @Test
+    public void replaysEveryKindOfCommandAcrossSegments() throws IOException {
+        Path directory = folder.getRoot().toPath().resolve("journal");
+        Random random = new Random(1);
+        Dashboard expected = new Dashboard();
+
+        try (JournaledDashboard underTest = open(directory, FsyncPolicy.BATCHED, 512)) {
+            List<Order> resting = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                Order order = i % 2 == 0
+                        ? new Order(random.nextBoolean() ? Side.BUY : Side.SELL, "user " + i, 1 + random.nextInt(50),
+                                PRICES[random.nextInt(PRICES.length)])
+                        : new Order(i, Side.BUY, (i % 3 == 0 ? "us\u00e9r " : "\u0394 ") + i, 1 + random.nextInt(50),
+                                PRICES[random.nextInt(PRICES.length)], Increments.DEFAULT);
+                underTest.addOrder(order);
+                expected.addOrder(order);
+                resting.add(order);
+                if (i % 5 == 0) {
+                    Order removed = resting.remove(random.nextInt(resting.size()));
+                    switch (i % 4) {
+                        case 0:
+                            assertTrue(underTest.removeOrder(removed.getId()));
+                            break;
+                        case 1:
+                            assertTrue(removed.hasNumericId() ? underTest.removeOrder(removed.getNumericId())
+                                    : underTest.removeOrder(removed.getId()));
+                            break;
+                        case 2:
+                            assertTrue(underTest.removeOrder(removed));
+                            break;
+                        default:
+                            assertTrue(underTest.removeOrder(removed.getSide(), removed.getUserId(),
+                                    removed.getPrice(), removed.getVolume()));
+                    }
+                    expected.removeOrder(removed);
+                }
+            }
+            for (int i = 0; i < 5; i++) {
+                Order order = new Order(i % 2 == 0 ? Side.BUY : Side.SELL, "leaving", 1 + i, PRICES[i]);
+                underTest.addOrder(order);
+                expected.addOrder(order);
+            }
+            assertEquals(5, underTest.cancelAllForUser("leaving"));
+            expected.cancelAllForUser("leaving");
+            Order last = resting.get(0);
+            underTest.applyBatch(Arrays.asList(Command.removeOrder(last), Command.add(last)));
+            //Rejected commands are journaled too, and rejected again on replay.
+            try {
+                underTest.addOrder(last);
+            } catch (IllegalArgumentException expectedRejection) {
+                //The order is already on the dashboard.
+            }
+            assertFalse(underTest.removeOrder("not an order"));
+        }
+        assertTrue(segments(directory).size() > 1);
+
+        try (JournaledDashboard reopened = open(directory, FsyncPolicy.BATCHED, 512)) {
+            assertSameDepth(expected, reopened.getDashboard());
+
+            //New records go after the replayed ones.
+            Order order = new Order(Side.SELL, "user", 1, 20.0);
+            reopened.addOrder(order);
+            expected.addOrder(order);
+        }
+        try (JournaledDashboard reopened = open(directory, FsyncPolicy.OS, 512)) {
+            assertSameDepth(expected, reopened.getDashboard());
+        }
+    }
+
+    @Test
+    public void ignoresATornRecordAndWritesOverIt() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Order kept = new Order(Side.BUY, "user", 1, 10.0);
+        try (JournaledDashboard underTest = open(directory, FsyncPolicy.EVERY_WRITE, 4096)) {
+            underTest.addOrder(kept);
+            underTest.addOrder(new Order(Side.BUY, "user", 2, 11.0));
+        }
+        //Corrupts the last byte of the second record, as if the process died while writing it.
+        Path segment = segments(directory).get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int position = 32;
+            position += 8 + buffer.getInt(position);
+            int end = position + 8 + buffer.getInt(position);
+            buffer.put(end - 1, (byte) (buffer.get(end - 1) + 1));
+        }
+
+        Order added = new Order(Side.SELL, "user", 3, 12.0);
+        try (JournaledDashboard reopened = open(directory, FsyncPolicy.EVERY_WRITE, 4096)) {
+            assertEquals(1, reopened.getDashboard().getPriceVolumePairs(Side.BUY).size());
+            reopened.addOrder(added);
+        }
+        try (JournaledDashboard reopened = open(directory, FsyncPolicy.EVERY_WRITE, 4096)) {
+            assertEquals(10.0, reopened.getDashboard().getTopOfBook(Side.BUY).getPrice(), 0.0);
+            assertEquals(1, reopened.getDashboard().getPriceVolumePairs(Side.BUY).size());
+            assertEquals(12.0, reopened.getDashboard().getTopOfBook(Side.SELL).getPrice(), 0.0);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsAJournalWrittenWithOtherIncrements() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        new Journal(directory, Increments.DEFAULT, FsyncPolicy.OS).close();
+
+        new Journal(directory, new Increments(0.5, 1), FsyncPolicy.OS);
+    }
+}
@@ -0,0 +1,153 @@
+package com.company.journal;
+
+import com.company.Dashboard;
+import com.company.JournaledDashboard;
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.Side;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotStoreTest {
+
+    private static final double[] PRICES = {9.87, 9.88, 9.89, 9.9, 12.4, 12.41, 13.1};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(7);
+    private long nextId;
+
+    private JournaledDashboard open(Dashboard dashboard) throws IOException {
+        Path root = folder.getRoot().toPath();
+        return new JournaledDashboard(dashboard,
+                new Journal(root.resolve("journal"), Increments.DEFAULT, FsyncPolicy.OS, 512, 8),
+                new SnapshotStore(root.resolve("snapshots"), Increments.DEFAULT, Runnable::run));
+    }
+
+    private List<Order> addOrders(JournaledDashboard dashboard, int count) {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+            double quantity = 1 + random.nextInt(50);
+            double price = PRICES[random.nextInt(PRICES.length)];
+            //A few users with many orders each, some of them with user ids that are not Latin-1.
+            String userId = (i % 3 == 0 ? "\u0394 " : "user ") + random.nextInt(5);
+            Order order = i % 2 == 0
+                    ? new Order(side, userId, quantity, price)
+                    : new Order(nextId++, side, userId, quantity, price, Increments.DEFAULT);
+            dashboard.addOrder(order);
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    /**
+     * @return every order of the dashboard, in the order that rebuilds it.
+     */
+    private static List<String> ordersOf(Dashboard dashboard) {
+        List<String> orders = new ArrayList<>();
+        for (Side side : Side.values()) {
+            dashboard.forEachOrder(side, order -> orders.add(order.getId() + " " + order.getSide() + " "
+                    + order.getUserId() + " " + order.getPriceTicks() + " " + order.getQuantityLots()));
+        }
+        return orders;
+    }
+
+    @Test
+    public void restoresTheNewestSnapshotAndReplaysOnlyTheTail() throws IOException {
+        List<String> expected;
+        try (JournaledDashboard underTest = open(new Dashboard())) {
+            List<Order> orders = addOrders(underTest, 200);
+            underTest.snapshot().join();
+            addOrders(underTest, 100);
+            for (int i = 0; i < 50; i++) {
+                underTest.removeOrder(orders.get(i).getId());
+            }
+            expected = ordersOf(underTest.getDashboard());
+        }
+
+        Path root = folder.getRoot().toPath();
+        Dashboard restored = new Dashboard();
+        long position = new SnapshotStore(root.resolve("snapshots"), Increments.DEFAULT, Runnable::run)
+                .restore(restored);
+        assertTrue(position > 0);
+        try (Journal journal = new Journal(root.resolve("journal"), Increments.DEFAULT, FsyncPolicy.OS, 512, 8)) {
+            assertEquals(150, journal.replay(restored, position));
+        }
+        assertEquals(expected, ordersOf(restored));
+
+        try (JournaledDashboard reopened = open(new Dashboard())) {
+            assertEquals(expected, ordersOf(reopened.getDashboard()));
+        }
+    }
+
+    @Test
+    public void buildsSnapshotsInTheBackgroundAtThePositionTheyWereTakenAt() throws IOException {
+        Path root = folder.getRoot().toPath();
+        List<Runnable> background = new ArrayList<>();
+        SnapshotStore deferred = new SnapshotStore(root.resolve("snapshots"), Increments.DEFAULT, background::add);
+        try (JournaledDashboard underTest = new JournaledDashboard(new Dashboard(Increments.DEFAULT, null, true),
+                new Journal(root.resolve("journal"), Increments.DEFAULT, FsyncPolicy.OS, 512, 8), deferred)) {
+            for (int round = 0; round < 2; round++) {
+                List<Order> orders = addOrders(underTest, 200);
+                List<String> expected = ordersOf(underTest.getDashboard());
+                CompletableFuture<Path> snapshot = underTest.snapshot();
+                //Applied before the snapshot is built, and left out of it.
+                addOrders(underTest, 100);
+                for (int i = 0; i < 50; i++) {
+                    underTest.removeOrder(orders.get(i).getId());
+                }
+                assertFalse(snapshot.isDone());
+                while (!background.isEmpty()) {
+                    background.remove(0).run();
+                }
+                snapshot.join();
+
+                Dashboard restored = new Dashboard(Increments.DEFAULT, null, true);
+                new SnapshotStore(root.resolve("snapshots"), Increments.DEFAULT, Runnable::run).restore(restored);
+                assertEquals(expected, ordersOf(restored));
+            }
+        }
+    }
+
+    @Test
+    public void skipsADamagedSnapshot() throws IOException {
+        List<String> expected;
+        Path newest;
+        try (JournaledDashboard underTest = open(new Dashboard())) {
+            addOrders(underTest, 100);
+            underTest.snapshot().join();
+            addOrders(underTest, 100);
+            newest = underTest.snapshot().join();
+            expected = ordersOf(underTest.getDashboard());
+        }
+
+        try (FileChannel channel = FileChannel.open(newest, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer middle = ByteBuffer.allocate(1);
+            channel.read(middle, channel.size() / 2);
+            middle.put(0, (byte) ~middle.get(0));
+            middle.rewind();
+            channel.write(middle, channel.size() / 2);
+        }
+
+        try (JournaledDashboard reopened = open(new Dashboard())) {
+            assertEquals(expected, ordersOf(reopened.getDashboard()));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.company.loop;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+public class RingBufferTest {
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(8, new RingBuffer<>(5, AtomicLong::new, WaitStrategy.BUSY_SPIN).getCapacity());
+        assertEquals(8, new RingBuffer<>(8, AtomicLong::new, WaitStrategy.BUSY_SPIN).getCapacity());
+    }
+
+    @Test
+    public void slotsAreDrainedInSequenceOrderAndOnlyOncePublished() {
+        RingBuffer<AtomicLong> underTest = new RingBuffer<>(4, AtomicLong::new, WaitStrategy.BUSY_SPIN);
+        List<Long> drained = new ArrayList<>();
+
+        long first = underTest.claim();
+        long second = underTest.claim();
+        underTest.get(second).set(2);
+        underTest.publish(second);
+
+        //The second slot is published but cannot be consumed before the first one.
+        assertEquals(0, underTest.drain(slot -> drained.add(slot.get()), 10));
+
+        underTest.get(first).set(1);
+        underTest.publish(first);
+        assertEquals(2, underTest.drain(slot -> drained.add(slot.get()), 10));
+        assertEquals(0, underTest.size());
+
+        //The slots are reused once the ring has wrapped around.
+        for (long value = 3; value <= 6; value++) {
+            long sequence = underTest.claim();
+            underTest.get(sequence).set(value);
+            underTest.publish(sequence);
+        }
+        assertEquals(1, underTest.drain(slot -> drained.add(slot.get()), 1));
+        assertEquals(3, underTest.drain(slot -> drained.add(slot.get()), 10));
+
+        List<Long> expected = new ArrayList<>();
+        for (long value = 1; value <= 6; value++) {
+            expected.add(value);
+        }
+        assertEquals(expected, drained);
+    }
+}
@@ -0,0 +1,44 @@
+package com.company.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementsTest {
+
+    @Test
+    public void convertsPricesAndQuantitiesToWholeIncrements() {
+        Increments underTest = new Increments(0.01, 0.5);
+
+        assertEquals(987, underTest.toTicks(9.87));
+        assertEquals(9.87, underTest.toPrice(987), 0.0);
+        assertEquals(5, underTest.toLots(2.5));
+        assertEquals(2.5, underTest.toQuantity(5), 0.0);
+    }
+
+    @Test
+    public void sumsOfLotsHaveNoRoundingErrors() {
+        Increments underTest = Increments.DEFAULT;
+
+        long lots = underTest.toLots(23.4) + underTest.toLots(0.7);
+
+        assertEquals(24.1, underTest.toQuantity(lots), 0.0);
+        assertEquals(0.7, underTest.toQuantity(lots - underTest.toLots(23.4)), 0.0);
+    }
+
+    @Test
+    public void detectsValuesThatAreNotMultiples() {
+        Increments underTest = new Increments(0.25, 1);
+
+        assertTrue(underTest.isTickMultiple(10.75));
+        assertFalse(underTest.isTickMultiple(10.7));
+        assertFalse(underTest.isLotMultiple(1.5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPricesOffTheTick() {
+        new Order(Side.BUY, "user", 1.0, 12.345);
+    }
+}
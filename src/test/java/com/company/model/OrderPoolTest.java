@@ -0,0 +1,72 @@
+package com.company.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OrderPoolTest {
+
+    @Test
+    public void generatesIncreasingIdsPrefixedWithTheNode() {
+        OrderIdGenerator underTest = new OrderIdGenerator(3);
+
+        long first = underTest.nextId();
+        long second = underTest.nextId();
+
+        assertTrue(second > first);
+        assertEquals(3, first >>> 48);
+        assertNotEquals(new OrderIdGenerator(4).nextId(), new OrderIdGenerator(3).nextId());
+    }
+
+    @Test
+    public void reusesReleasedOrdersWithNewIds() {
+        OrderPool underTest = new OrderPool(Increments.DEFAULT, new OrderIdGenerator(), 10);
+
+        Order order = underTest.acquire(Side.BUY, "user", 250, 1240);
+        long firstId = order.getNumericId();
+        assertEquals(Long.toString(firstId), order.getId());
+
+        underTest.release(order);
+        assertEquals(1, underTest.getFreeCount());
+
+        Order reused = underTest.acquire(Side.SELL, "user 2", 100, 1310);
+
+        assertSame(order, reused);
+        assertNotEquals(firstId, reused.getNumericId());
+        assertEquals(Long.toString(reused.getNumericId()), reused.getId());
+        assertEquals(Side.SELL, reused.getSide());
+        assertEquals("user 2", reused.getUserId());
+        assertEquals(13.1, reused.getPrice(), 0.0);
+        assertEquals(1.0, reused.getVolume(), 0.0);
+    }
+
+    @Test
+    public void ignoresOrdersWithUuids() {
+        OrderPool underTest = new OrderPool(Increments.DEFAULT, new OrderIdGenerator(), 10);
+
+        underTest.release(new Order(Side.BUY, "user", 1.0, 12.4));
+
+        assertEquals(0, underTest.getFreeCount());
+    }
+
+    @Test
+    public void onlyTakesBackItsOwnOrdersOnce() {
+        OrderPool underTest = new OrderPool(Increments.DEFAULT, new OrderIdGenerator(), 10);
+        Order callers = Order.inTicks(7, Side.BUY, "user", 250, 1240, Increments.DEFAULT);
+        Order acquired = underTest.acquire(Side.BUY, "user", 250, 1240);
+
+        underTest.release(callers);
+        underTest.release(acquired);
+        underTest.release(acquired);
+
+        assertEquals(1, underTest.getFreeCount());
+        assertSame(acquired, underTest.acquire(Side.SELL, "user 2", 100, 1310));
+        assertNotSame(acquired, underTest.acquire(Side.SELL, "user 2", 100, 1310));
+        assertEquals(7, callers.getNumericId());
+        assertEquals(250, callers.getQuantityLots());
+    }
+}
@@ -97,7 +97,7 @@ public class BookTest {
 
 
         assertEquals(10.0, priceVolumePairs.get(1).getPrice(), 0.0);
-        assertEquals(23.4 + 0.7, priceVolumePairs.get(1).getVolume());
+        assertEquals(24.1, priceVolumePairs.get(1).getVolume());
 
         assertEquals(13.3, priceVolumePairs.get(0).getPrice(), 0.0);
         assertEquals(23.45 + 12.35, priceVolumePairs.get(0).getVolume());
@@ -243,6 +243,75 @@ public class BookTest {
         List<PriceVolumePair> priceVolumePairs = underTest.getPriceVolumePairs();
 
         assertEquals(10.0, priceVolumePairs.get(0).getPrice(), 0.0);
-        assertEquals(23.4 + 0.7, priceVolumePairs.get(0).getVolume(), 0.0);
+        assertEquals(24.1, priceVolumePairs.get(0).getVolume(), 0.0);
+    }
+
+    @Test
+    public void keepsOrderingAfterRemovingLevelsInTheMiddle() {
+        Order order1 = createOrder(10.0, 23.4, "user 1");
+        Order order2 = createOrder(13.0, 0.7, "user 1");
+        Order order3 = createOrder(11.5, 23.45, "user 2");
+        Order order4 = createOrder(6.0, 12.35, "user 2");
+
+        underTest.add(order1);
+        underTest.add(order2);
+        underTest.add(order3);
+        underTest.add(order4);
+
+        underTest.removeOrder(order3);
+        underTest.removeOrder("user 1", 10.0, 23.4);
+
+        List<PriceVolumePair> result = underTest.getPriceVolumePairs();
+
+        assertEquals(2, result.size());
+        assertEquals(13.0, result.get(0).getPrice(), 0.0);
+        assertEquals(6.0, result.get(1).getPrice(), 0.0);
+    }
+
+    @Test
+    public void batchedChangesEndInTheSameLevelsAsSingleChanges() {
+        Book expected = new Book(Side.BUY, comparator);
+        Order resting = createOrder(8.0, 1, "user 1");
+        Order emptied = createOrder(11.0, 2, "user 1");
+        expected.add(resting);
+        expected.add(emptied);
+        underTest.add(resting);
+        underTest.add(emptied);
+
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            orders.add(createOrder(9.0 + (i * 7 % 20) * 0.25, 1 + i, "user " + i));
+        }
+        Order addedAndRemoved = createOrder(50.0, 1, "user 1");
+        Order readded = createOrder(11.0, 3, "user 2");
+
+        underTest.beginBatch();
+        for (Order order : orders) {
+            underTest.add(order);
+        }
+        underTest.add(addedAndRemoved);
+        underTest.removeOrder(addedAndRemoved);
+        underTest.removeOrder(emptied);
+        underTest.removeOrder(resting);
+        underTest.add(readded);
+        underTest.endBatch();
+
+        for (Order order : orders) {
+            expected.add(order);
+        }
+        expected.removeOrder(emptied);
+        expected.removeOrder(resting);
+        expected.add(readded);
+
+        List<PriceVolumePair> expectedPairs = expected.getPriceVolumePairs();
+        List<PriceVolumePair> actualPairs = underTest.getPriceVolumePairs();
+        assertEquals(expectedPairs.size(), actualPairs.size());
+        for (int i = 0; i < expectedPairs.size(); i++) {
+            assertEquals(expectedPairs.get(i).getPriceTicks(), actualPairs.get(i).getPriceTicks());
+            assertEquals(expectedPairs.get(i).getVolumeLots(), actualPairs.get(i).getVolumeLots());
+        }
+        //The levels emptied in the batch are gone and can be created again.
+        underTest.add(resting);
+        assertEquals(expectedPairs.size() + 1, underTest.getPriceVolumePairs().size());
     }
 }
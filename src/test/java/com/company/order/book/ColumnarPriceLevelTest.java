@@ -0,0 +1,103 @@
+package com.company.order.book;
+
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.Side;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ColumnarPriceLevelTest {
+
+    private static Order order(long id, String userId, long lots) {
+        return Order.inTicks(id, Side.BUY, userId, lots, 1000, Increments.DEFAULT);
+    }
+
+    private static List<Order> ordersOf(PriceLevel level) {
+        List<Order> orders = new ArrayList<>();
+        level.forEachOrder(orders::add);
+        return orders;
+    }
+
+    private static List<Order> ordersOf(ColumnarPriceLevel level) {
+        List<Order> orders = new ArrayList<>();
+        level.forEachOrder(orders::add);
+        return orders;
+    }
+
+    @Test
+    public void keepsTheSameOrdersAsAPriceLevel() {
+        PriceLevel expected = new PriceLevel(1000, Increments.DEFAULT);
+        ColumnarPriceLevel underTest = new ColumnarPriceLevel(1000, Increments.DEFAULT);
+        Random random = new Random(3);
+        List<Order> resting = new ArrayList<>();
+        for (long id = 0; id < 3000; id++) {
+            Order order = order(id, "user " + random.nextInt(10), 1 + random.nextInt(5));
+            expected.addOrder(order);
+            underTest.addOrder(order);
+            resting.add(order);
+            switch (random.nextInt(4)) {
+                case 0: {
+                    Order removed = resting.remove(random.nextInt(resting.size()));
+                    assertTrue(expected.removeOrder(removed));
+                    assertTrue(underTest.removeOrder(removed.getNumericId()));
+                    assertFalse(underTest.removeOrder(removed.getNumericId()));
+                    break;
+                }
+                case 1: {
+                    String userId = "user " + random.nextInt(12);
+                    double quantity = (1 + random.nextInt(5)) * 0.01;
+                    boolean removed = expected.removeOrder(userId, quantity);
+                    assertEquals(removed, underTest.removeOrder(userId, quantity));
+                    resting = ordersOf(expected);
+                    break;
+                }
+                default:
+                    break;
+            }
+            assertEquals(expected.getNumberOfOrders(), underTest.getNumberOfOrders());
+            assertEquals(expected.getTotalVolumeLots(), underTest.getTotalVolumeLots());
+        }
+        assertEquals(ordersOf(expected), ordersOf(underTest));
+        for (Order order : resting) {
+            assertTrue(underTest.removeOrder(order));
+        }
+        assertEquals(0, underTest.getNumberOfOrders());
+        assertEquals(0, underTest.recomputeTotalVolumeLots());
+    }
+
+    @Test
+    public void addsUpTheVolumeOfAUser() {
+        Map<String, Integer> userNumbers = new HashMap<>();
+        ColumnarPriceLevel underTest = new ColumnarPriceLevel(1000, Increments.DEFAULT, userNumbers);
+        ColumnarPriceLevel other = new ColumnarPriceLevel(1001, Increments.DEFAULT, userNumbers);
+        other.addOrder(order(1, "b", 50));
+        underTest.addOrder(order(2, "a", 3));
+        underTest.addOrder(order(3, "b", 4));
+        underTest.addOrder(order(4, "a", 5));
+
+        assertEquals(8, underTest.getVolumeLots("a"));
+        assertEquals(4, underTest.getVolumeLots("b"));
+        assertEquals(0, underTest.getVolumeLots("c"));
+        assertEquals(0.12, underTest.getTotalVolume(), 1e-9);
+        //Numbered in the order the levels first saw them.
+        assertEquals(0, (int) userNumbers.get("b"));
+
+        assertFalse(underTest.removeOrder(order(2, "a", 4)));
+        try {
+            underTest.addOrder(Order.inTicks("not numeric", Side.BUY, "a", 1, 1000, Increments.DEFAULT));
+            fail("Only orders with numeric ids can be added");
+        } catch (IllegalArgumentException expected) {
+            assertEquals(3, underTest.getNumberOfOrders());
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.company.order.book;
+
+import com.company.Dashboard;
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.Side;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConflatingDepthPublisherTest {
+
+    private static final double[] PRICES = {9.87, 9.88, 9.89, 9.9, 12.4, 12.41, 13.1};
+
+    private Dashboard dashboard;
+
+    @Before
+    public void setUp() {
+        dashboard = new Dashboard();
+    }
+
+    private static DepthUpdate update(DepthUpdate.Type type, long sequence, long lots) {
+        return new DepthUpdate(type, Side.BUY, sequence, 1000, lots, 1, Increments.DEFAULT);
+    }
+
+    /**
+     * Keeps the volume of every level it is told about, as a viewer would.
+     */
+    private static class Viewer implements Subscriber<DepthUpdate> {
+        private final Map<Long, Long> bids = new HashMap<>();
+        private final Map<Long, Long> offers = new HashMap<>();
+        private final List<DepthUpdate> received = new ArrayList<>();
+        private volatile Subscription subscription;
+        private volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public synchronized void onNext(DepthUpdate update) {
+            received.add(update);
+            Map<Long, Long> side = update.getSide() == Side.BUY ? bids : offers;
+            switch (update.getType()) {
+                case CREATED:
+                    assertNull(side.put(update.getPriceTicks(), update.getVolumeLots()));
+                    break;
+                case CHANGED:
+                    assertTrue(side.put(update.getPriceTicks(), update.getVolumeLots()) != null);
+                    break;
+                default:
+                    assertTrue(side.remove(update.getPriceTicks()) != null);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        synchronized boolean hasSameDepthAs(Dashboard dashboard) {
+            return sameLevels(bids, dashboard.getPriceVolumePairs(Side.BUY))
+                    && sameLevels(offers, dashboard.getPriceVolumePairs(Side.SELL));
+        }
+
+        private static boolean sameLevels(Map<Long, Long> levels, List<PriceVolumePair> pairs) {
+            if (levels.size() != pairs.size()) {
+                return false;
+            }
+            for (PriceVolumePair pair : pairs) {
+                if (!Long.valueOf(pair.getVolumeLots()).equals(levels.get(pair.getPriceTicks()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private void changeDashboard(Random random, int changes) {
+        List<Order> resting = new ArrayList<>();
+        for (int i = 0; i < changes; i++) {
+            if (!resting.isEmpty() && random.nextInt(3) == 0) {
+                dashboard.removeOrder(resting.remove(random.nextInt(resting.size())));
+            } else {
+                Order order = new Order(random.nextBoolean() ? Side.BUY : Side.SELL, "user",
+                        1 + random.nextInt(50), PRICES[random.nextInt(PRICES.length)]);
+                dashboard.addOrder(order);
+                resting.add(order);
+            }
+        }
+    }
+
+    @Test
+    public void laterUpdatesReplaceTheOnesNotTakenYet() {
+        DepthUpdate created = update(DepthUpdate.Type.CREATED, 1, 100);
+        DepthUpdate changed = update(DepthUpdate.Type.CHANGED, 2, 200);
+        DepthUpdate removed = update(DepthUpdate.Type.REMOVED, 3, 0);
+
+        assertEquals(changed, ConflatingDepthPublisher.conflate(null, changed));
+        DepthUpdate createdAndChanged = ConflatingDepthPublisher.conflate(created, changed);
+        assertEquals(DepthUpdate.Type.CREATED, createdAndChanged.getType());
+        assertEquals(200, createdAndChanged.getVolumeLots());
+        assertEquals(2, createdAndChanged.getSequence());
+        assertNull(ConflatingDepthPublisher.conflate(created, removed));
+        assertEquals(removed, ConflatingDepthPublisher.conflate(changed, removed));
+        DepthUpdate removedAndCreated = ConflatingDepthPublisher.conflate(removed,
+                update(DepthUpdate.Type.CREATED, 4, 300));
+        assertEquals(DepthUpdate.Type.CHANGED, removedAndCreated.getType());
+        assertEquals(300, removedAndCreated.getVolumeLots());
+    }
+
+    @Test
+    public void slowViewersGetTheLatestDepthConflated() {
+        ConflatingDepthPublisher underTest = new ConflatingDepthPublisher(Runnable::run, 64);
+        dashboard.addOrder(new Order(Side.SELL, "user", 5, 20.0));
+        dashboard.subscribe(underTest);
+
+        Viewer fast = new Viewer();
+        Viewer slow = new Viewer();
+        underTest.subscribe(fast);
+        underTest.subscribe(slow);
+        fast.subscription.request(Long.MAX_VALUE);
+
+        changeDashboard(new Random(1), 500);
+        assertTrue(fast.hasSameDepthAs(dashboard));
+        assertTrue(slow.received.isEmpty());
+
+        slow.subscription.request(Long.MAX_VALUE);
+        assertTrue(slow.hasSameDepthAs(dashboard));
+        //At most one update per level that ever existed, against hundreds of changes.
+        assertTrue(slow.received.size() <= 2 * PRICES.length + 1);
+        assertTrue(fast.received.size() > 100);
+    }
+
+    @Test
+    public void viewersOnlyGetWhatTheyRequest() {
+        ConflatingDepthPublisher underTest = new ConflatingDepthPublisher(Runnable::run, 64);
+        dashboard.subscribe(underTest);
+        Viewer viewer = new Viewer();
+        underTest.subscribe(viewer);
+
+        for (double price : PRICES) {
+            dashboard.addOrder(new Order(Side.BUY, "user", 1, price));
+        }
+        viewer.subscription.request(3);
+        assertEquals(3, viewer.received.size());
+
+        viewer.subscription.cancel();
+        viewer.subscription.request(10);
+        assertEquals(3, viewer.received.size());
+        assertEquals(0, underTest.getSubscriberCount());
+    }
+
+    @Test
+    public void viewersTooFarBehindAreFailed() {
+        ConflatingDepthPublisher underTest = new ConflatingDepthPublisher(Runnable::run, 3);
+        dashboard.subscribe(underTest);
+        Viewer viewer = new Viewer();
+        underTest.subscribe(viewer);
+
+        for (double price : PRICES) {
+            dashboard.addOrder(new Order(Side.BUY, "user", 1, price));
+        }
+
+        assertTrue(viewer.error instanceof IllegalStateException);
+        assertEquals(0, underTest.getSubscriberCount());
+    }
+
+    @Test
+    public void manyViewersOnAThreadPoolCatchUp() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ConflatingDepthPublisher underTest = new ConflatingDepthPublisher(executor, 64);
+            dashboard.subscribe(underTest);
+            List<Viewer> viewers = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                Viewer viewer = new Viewer();
+                underTest.subscribe(viewer);
+                viewer.subscription.request(Long.MAX_VALUE);
+                viewers.add(viewer);
+            }
+
+            changeDashboard(new Random(2), 2_000);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            for (Viewer viewer : viewers) {
+                while (!viewer.hasSameDepthAs(dashboard) && System.nanoTime() < deadline) {
+                    Thread.sleep(1);
+                }
+                assertTrue(viewer.hasSameDepthAs(dashboard));
+                assertNull(viewer.error);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.company.order.book;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LongObjectHashMapTest {
+
+    @Test
+    public void storesAndRemovesValues() {
+        LongObjectHashMap<String> underTest = new LongObjectHashMap<>();
+
+        underTest.put(1230, "a");
+        underTest.put(-5, "b");
+        underTest.put(0, "c");
+
+        assertEquals("a", underTest.get(1230));
+        assertEquals("b", underTest.get(-5));
+        assertEquals("c", underTest.get(0));
+        assertEquals("a", underTest.put(1230, "d"));
+        assertEquals(3, underTest.size());
+
+        assertEquals("b", underTest.remove(-5));
+        assertNull(underTest.get(-5));
+        assertNull(underTest.remove(-5));
+        assertEquals(2, underTest.size());
+    }
+
+    @Test
+    public void behavesLikeAHashMapUnderRandomOperations() {
+        LongObjectHashMap<Long> underTest = new LongObjectHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            //A small key range forces long probe sequences and many removals in the middle of them.
+            long key = random.nextInt(2_000) * 64L;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), underTest.remove(key));
+            } else {
+                assertEquals(expected.put(key, (long) i), underTest.put(key, (long) i));
+            }
+        }
+
+        assertEquals(expected.size(), underTest.size());
+        for (long key = 0; key < 2_000 * 64L; key += 64) {
+            assertEquals(expected.get(key), underTest.get(key));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.company.order.book;
+
+import com.company.model.Increments;
+import com.company.model.Order;
+import com.company.model.Side;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OffHeapBookTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Order order(long id, Side side, String userId, long lots, long ticks) {
+        return Order.inTicks(id, side, userId, lots, ticks, Increments.DEFAULT);
+    }
+
+    private static String describe(long id, String userId, long ticks, long lots) {
+        return id + " " + userId + " " + ticks + " " + lots;
+    }
+
+    private static List<String> ordersOf(Book book) {
+        List<String> orders = new ArrayList<>();
+        book.forEachOrder(order -> orders.add(describe(order.getNumericId(), order.getUserId(),
+                order.getPriceTicks(), order.getQuantityLots())));
+        return orders;
+    }
+
+    private static List<String> ordersOf(OffHeapBook book) {
+        List<String> orders = new ArrayList<>();
+        book.forEachOrder(order -> orders.add(describe(order.getNumericId(), order.getUserId(),
+                order.getPriceTicks(), order.getQuantityLots())));
+        return orders;
+    }
+
+    private static void assertSameLevels(Book expected, OffHeapBook actual) {
+        List<PriceVolumePair> expectedPairs = expected.getPriceVolumePairs();
+        List<PriceVolumePair> actualPairs = actual.getPriceVolumePairs();
+        assertEquals(expectedPairs.size(), actualPairs.size());
+        for (int i = 0; i < expectedPairs.size(); i++) {
+            assertEquals(expectedPairs.get(i).getPriceTicks(), actualPairs.get(i).getPriceTicks());
+            assertEquals(expectedPairs.get(i).getVolumeLots(), actualPairs.get(i).getVolumeLots());
+        }
+    }
+
+    @Test
+    public void keepsTheSameLevelsAndOrdersAsABook() {
+        for (Side side : Side.values()) {
+            Book book = new Book(side, side == Side.BUY
+                    ? (p1, p2) -> Long.compare(p2.getPriceTicks(), p1.getPriceTicks())
+                    : (p1, p2) -> Long.compare(p1.getPriceTicks(), p2.getPriceTicks()));
+            //Small chunks, so that the slab grows many times and slots are reused across chunks.
+            OffHeapBook underTest = new OffHeapBook(side, Increments.DEFAULT, 16, 64);
+            Random random = new Random(side.ordinal());
+            List<Long> resting = new ArrayList<>();
+            for (long id = 0; id < 20000; id++) {
+                if (!resting.isEmpty() && random.nextInt(3) == 0) {
+                    long removed = resting.remove(random.nextInt(resting.size()));
+                    assertTrue(book.removeOrder(removed));
+                    assertTrue(underTest.removeOrder(removed));
+                    assertFalse(underTest.removeOrder(removed));
+                }
+                Order order = order(id, side, "user " + random.nextInt(50), 1 + random.nextInt(100),
+                        900 + random.nextInt(200));
+                book.add(order);
+                underTest.add(order);
+                resting.add(id);
+                if (id % 1000 == 0) {
+                    assertSameLevels(book, underTest);
+                }
+            }
+            assertSameLevels(book, underTest);
+            assertEquals(ordersOf(book), ordersOf(underTest));
+            assertEquals(resting.size(), underTest.getNumberOfOrders());
+            assertEquals(book.getBest().getPriceTicks(), underTest.getBest().getPriceTicks());
+
+            for (long id : resting) {
+                assertTrue(underTest.removeOrder(id));
+            }
+            assertEquals(0, underTest.getNumberOfLevels());
+            assertNull(underTest.getBest());
+        }
+    }
+
+    @Test
+    public void readsOrdersBackThroughViews() {
+        OffHeapBook underTest = new OffHeapBook(Side.SELL, Increments.DEFAULT, 16);
+        Order order = order(7, Side.SELL, "user", 250, 1001);
+        underTest.add(order);
+        underTest.add(8, "other user", 3, 1000);
+
+        OrderView view = underTest.newView();
+        assertFalse(underTest.getOrder(9, view));
+        assertTrue(underTest.getOrder(7, view));
+        assertEquals("7", view.getId());
+        assertEquals(Side.SELL, view.getSide());
+        assertEquals("user", view.getUserId());
+        assertEquals(2.5, view.getVolume(), 0.0);
+        assertEquals(10.01, view.getPrice(), 1e-9);
+        assertEquals(order, view.toOrder());
+
+        long[] ticks = new long[4];
+        long[] lots = new long[4];
+        assertEquals(2, underTest.getDepth(ticks, lots));
+        assertEquals(1000, ticks[0]);
+        assertEquals(3, lots[0]);
+        assertEquals(2, underTest.getSnapshot().getSequence());
+
+        for (Order rejected : Arrays.asList(order(7, Side.SELL, "user", 1, 1000),
+                order(10, Side.BUY, "user", 1, 1000),
+                Order.inTicks("not numeric", Side.SELL, "user", 1, 1000, Increments.DEFAULT),
+                Order.inTicks(11, Side.SELL, "user", 1, 1000, new Increments(0.5, 1.0)))) {
+            try {
+                underTest.add(rejected);
+                fail("Order " + rejected + " must be rejected");
+            } catch (IllegalArgumentException expected) {
+                //The book is unchanged.
+            }
+        }
+        assertEquals(2, underTest.getVersion());
+    }
+
+    @Test
+    public void mapsTheRecordsFromAFile() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("bids.slab");
+        try (OffHeapBook underTest = OffHeapBook.mapped(Side.BUY, Increments.DEFAULT, 16, file)) {
+            for (long id = 0; id < 100000; id++) {
+                underTest.add(id, "user", 1, 1000 - id % 10);
+            }
+            assertEquals(10, underTest.getNumberOfLevels());
+            assertEquals(10000, underTest.getBest().getVolumeLots());
+            assertEquals(1000, underTest.getBest().getPriceTicks());
+            assertTrue(Files.size(file) >= 100000L * OrderSlab.RECORD_SIZE);
+            assertEquals(Files.size(file), underTest.getOffHeapBytes());
+        }
+    }
+}
@@ -6,8 +6,14 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
 
 
 @RunWith(MockitoJUnitRunner.class)
@@ -58,4 +64,87 @@ public class PriceLevelTest {
 
 
     }
+
+    @Test
+    public void keepsArrivalOrderAfterRemovingMostOrders() {
+        PriceLevel underTest = new PriceLevel(13.4);
+
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Order order = createOrder(13.4, i + 1, "user " + i);
+            orders.add(order);
+            underTest.addOrder(order);
+        }
+
+        for (int i = 0; i < 40; i++) {
+            if (i % 4 != 0) {
+                assertTrue(underTest.removeOrder(orders.get(i).getId()));
+            }
+        }
+
+        assertEquals(10, underTest.getNumberOfOrders());
+        assertEquals(1 + 5 + 9 + 13 + 17 + 21 + 25 + 29 + 33 + 37, underTest.getTotalVolume(), 0.0);
+
+        assertTrue(underTest.removeOrder(orders.get(0)));
+        assertTrue(underTest.removeOrder("user 36", 37));
+        assertFalse(underTest.removeOrder(orders.get(1).getId()));
+        assertEquals(8, underTest.getNumberOfOrders());
+    }
+
+    @Test
+    public void runningTotalsMatchTheOrdersInTheLevel() {
+        PriceLevel underTest = new PriceLevel(13.4);
+
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Order order = createOrder(13.4, 0.1 * (i % 7) + 1.3, "user " + (i % 3));
+            orders.add(order);
+            underTest.addOrder(order);
+        }
+        for (int i = 0; i < 100; i += 3) {
+            underTest.removeOrder(orders.get(i));
+        }
+
+        assertEquals(66, underTest.getNumberOfOrders());
+        assertEquals(underTest.recomputeTotalVolumeLots(), underTest.getTotalVolumeLots());
+
+        for (int i = 0; i < 100; i++) {
+            underTest.removeOrder(orders.get(i).getId());
+        }
+
+        assertEquals(0, underTest.getNumberOfOrders());
+        assertEquals(0.0, underTest.getTotalVolume(), 0.0);
+    }
+
+    @Test
+    public void keepsTimePriorityWhenOrdersAreUnlinkedAnywhere() {
+        PriceLevel underTest = new PriceLevel(13.4);
+
+        List<OrderEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            OrderEntry entry = new OrderEntry(createOrder(13.4, i + 1, "user " + i), Side.BUY);
+            entries.add(entry);
+            underTest.addEntry(entry);
+        }
+
+        //The head, one in the middle and the tail.
+        underTest.removeEntry(entries.get(0));
+        underTest.removeEntry(entries.get(3));
+        underTest.removeEntry(entries.get(5));
+        OrderEntry late = new OrderEntry(createOrder(13.4, 10, "user 6"), Side.BUY);
+        underTest.addEntry(late);
+
+        List<Order> orders = new ArrayList<>();
+        underTest.forEachOrder(orders::add);
+        assertEquals(Arrays.asList(entries.get(1).getOrder(), entries.get(2).getOrder(), entries.get(4).getOrder(),
+                late.getOrder()), orders);
+        assertEquals(2 + 3 + 5 + 10, underTest.getTotalVolume(), 0.0);
+
+        underTest.removeEntry(late);
+        underTest.removeEntry(entries.get(1));
+        underTest.removeEntry(entries.get(2));
+        underTest.removeEntry(entries.get(4));
+        assertEquals(0, underTest.getNumberOfOrders());
+        assertNull(entries.get(4).getLevel());
+    }
 }